@@ -0,0 +1,32 @@
+package net.bramp.ffmpeg;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/** Loads the test fixtures, which the benchmark build copies from src/test/resources. */
+public final class BenchmarkFixtures {
+
+  private BenchmarkFixtures() {
+    throw new AssertionError("No instances for you!");
+  }
+
+  public static byte[] loadBytes(String name) {
+    checkNotNull(name);
+    try (InputStream in = BenchmarkFixtures.class.getResourceAsStream("fixtures/" + name)) {
+      checkState(in != null, "Missing fixture %s", name);
+      return ByteStreams.toByteArray(in);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public static String load(String name) {
+    return new String(loadBytes(name), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,42 @@
+package net.bramp.ffmpeg;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures the helpers used when building arguments and parsing ffmpeg's output. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FFmpegUtilsBenchmark {
+
+  // Not final, so the JIT can't fold them into constants
+  String timecode = "01:02:03.456789";
+  String bitrate = "1234.5kbits/s";
+  long duration = 3_723_456_789L;
+
+  @Benchmark
+  public long fromTimecode() {
+    return FFmpegUtils.fromTimecode(timecode);
+  }
+
+  @Benchmark
+  public String toTimecode() {
+    return FFmpegUtils.toTimecode(duration, TimeUnit.MICROSECONDS);
+  }
+
+  @Benchmark
+  public long parseBitrate() {
+    return FFmpegUtils.parseBitrate(bitrate);
+  }
+}
@@ -0,0 +1,66 @@
+package net.bramp.ffmpeg;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures deserialising ffprobe's JSON output, the same way {@link FFprobe} does. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FFprobeBenchmark {
+
+  @Param({
+    "ffprobe-big_buck_bunny_720p_1mb.mp4",
+    "ffprobe-big_buck_bunny_720p_1mb_packets_and_frames.mp4"
+  })
+  public String fixture;
+
+  /** Repeats every list in the fixture this many times, to make larger synthetic inputs. */
+  @Param({"1", "10"})
+  public int copies;
+
+  String json;
+
+  @Setup
+  public void setup() {
+    JsonObject root = JsonParser.parseString(BenchmarkFixtures.load(fixture)).getAsJsonObject();
+
+    for (Map.Entry<String, JsonElement> entry : root.entrySet()) {
+      if (entry.getValue().isJsonArray()) {
+        JsonArray original = entry.getValue().getAsJsonArray();
+        JsonArray repeated = new JsonArray();
+        for (int i = 0; i < copies; i++) {
+          repeated.addAll(original);
+        }
+        entry.setValue(repeated);
+      }
+    }
+
+    json = root.toString();
+  }
+
+  @Benchmark
+  public FFmpegProbeResult parse() {
+    return FFmpegUtils.getGson().fromJson(new StringReader(json), FFmpegProbeResult.class);
+  }
+}
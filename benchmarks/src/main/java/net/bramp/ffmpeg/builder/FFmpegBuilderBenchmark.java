@@ -0,0 +1,79 @@
+package net.bramp.ffmpeg.builder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.bramp.ffmpeg.FFmpeg;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures building the arguments, compared to filling in a compiled template. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FFmpegBuilderBenchmark {
+
+  /** Number of outputs, such as the renditions of an adaptive bitrate ladder. */
+  @Param({"1", "8"})
+  public int outputs;
+
+  FFmpegBuilder builder;
+  FFmpegCommandTemplate template;
+
+  @Setup
+  public void setup() {
+    builder = newBuilder("input.mp4", "output");
+    template = newBuilder("${input}", "${output}").compile();
+  }
+
+  FFmpegBuilder newBuilder(String input, String output) {
+    FFmpegBuilder builder =
+        new FFmpegBuilder()
+            .setVerbosity(FFmpegBuilder.Verbosity.INFO)
+            .overrideOutputFiles(true)
+            .addInput(input)
+            .setStartOffset(1500, TimeUnit.MILLISECONDS)
+            .done();
+
+    for (int i = 0; i < outputs; i++) {
+      builder
+          .addOutput(output + "-" + i + ".mp4")
+          .setFormat("mp4")
+          .setDuration(90, TimeUnit.SECONDS)
+          .addMetaTag("title", "Rendition " + i)
+          .setVideoCodec("libx264")
+          .setVideoFrameRate(FFmpeg.FPS_29_97)
+          .setVideoResolution(1920 >> (i % 4), 1080 >> (i % 4))
+          .setVideoBitRate(5_000_000L >> (i % 4))
+          .setVideoFilter("scale=trunc(iw/2)*2:trunc(ih/2)*2")
+          .setAudioCodec("aac")
+          .setAudioChannels(FFmpeg.AUDIO_STEREO)
+          .setAudioSampleRate(FFmpeg.AUDIO_SAMPLE_48000)
+          .setAudioBitRate(128_000)
+          .setStrict(Strict.EXPERIMENTAL)
+          .done();
+    }
+    return builder;
+  }
+
+  @Benchmark
+  public List<String> build() {
+    return builder.build();
+  }
+
+  @Benchmark
+  public List<String> instantiateTemplate() {
+    return template.instantiate("input.mp4", "output");
+  }
+}
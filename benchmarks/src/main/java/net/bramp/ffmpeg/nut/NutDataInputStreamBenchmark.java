@@ -0,0 +1,78 @@
+package net.bramp.ffmpeg.nut;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures decoding the Nut datatypes with {@link NutDataInputStream}, over a synthetic stream of
+ * frame headers, each a frame code, a few varints, and a payload, with the CRC checked per frame.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NutDataInputStreamBenchmark {
+
+  static final int FRAMES = 10_000;
+
+  @Param({"16", "65536"})
+  public int payload;
+
+  @Param({"false", "true"})
+  public boolean direct;
+
+  byte[] bytes;
+  ByteBuffer buffer;
+
+  @Setup
+  public void setup() {
+    ByteBuffer out = ByteBuffer.allocate(FRAMES * (payload + 16));
+    for (int i = 0; i < FRAMES; i++) {
+      out.put((byte) 0x00); // frame code
+      out.put((byte) 0x81).put((byte) 0x00); // 128
+      out.put((byte) 0x05);
+      out.put((byte) 0x84).put((byte) 0x80).put((byte) 0x00); // 65536
+      out.position(out.position() + payload);
+    }
+    bytes = new byte[out.position()];
+    out.flip();
+    out.get(bytes);
+
+    int size = NutDataInputStream.DEFAULT_BUFFER_SIZE;
+    buffer = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+  }
+
+  @Benchmark
+  public void read(Blackhole bh) throws IOException {
+    NutDataInputStream in =
+        new NutDataInputStream(Channels.newChannel(new ByteArrayInputStream(bytes)), buffer);
+    byte[] data = new byte[payload];
+
+    for (int i = 0; i < FRAMES; i++) {
+      in.resetCRC();
+      bh.consume(in.readStartCode());
+      bh.consume(in.readVarLong());
+      bh.consume(in.readSignedVarInt());
+      bh.consume(in.readVarInt());
+      in.readFully(data);
+      bh.consume(in.getCRC());
+    }
+  }
+}
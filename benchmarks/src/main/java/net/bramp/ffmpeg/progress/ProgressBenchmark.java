@@ -0,0 +1,79 @@
+package net.bramp.ffmpeg.progress;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import net.bramp.ffmpeg.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures parsing ffmpeg's progress output, line by line with {@link Progress#parseLine(String)},
+ * and as whole streams with {@link StreamProgressParser} and {@link ByteProgressParser}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgressBenchmark {
+
+  static final String[] FIXTURES = {
+    "ffmpeg-progress-0", "ffmpeg-progress-1", "ffmpeg-progress-2", "ffmpeg-progress-na"
+  };
+
+  /** Repeats the fixtures this many times, to make a longer synthetic stream. */
+  @Param({"1", "1000"})
+  public int copies;
+
+  String[] lines;
+  byte[] bytes;
+
+  @Setup
+  public void setup() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < copies; i++) {
+      for (String fixture : FIXTURES) {
+        sb.append(BenchmarkFixtures.load(fixture));
+      }
+    }
+
+    lines = sb.toString().split("\n");
+    bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public void parseLine(Blackhole bh) {
+    Progress progress = new Progress();
+    for (String line : lines) {
+      if (progress.parseLine(line)) {
+        bh.consume(progress);
+        progress = new Progress();
+      }
+    }
+  }
+
+  @Benchmark
+  public void streamProgressParser(Blackhole bh) throws IOException {
+    new StreamProgressParser(bh::consume).processStream(new ByteArrayInputStream(bytes));
+  }
+
+  @Benchmark
+  public void byteProgressParser(Blackhole bh) {
+    ByteProgressParser parser = ByteProgressParser.forRecords(bh::consume);
+    parser.process(bytes, 0, bytes.length);
+    parser.finish();
+  }
+}
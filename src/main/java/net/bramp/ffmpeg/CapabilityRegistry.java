@@ -0,0 +1,298 @@
+package net.bramp.ffmpeg;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Splitter;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shares what the ffmpeg and ffprobe binaries print about themselves ({@code -version}, {@code
+ * -codecs}, {@code -formats}, etc) between all the {@link FFmpeg} and {@link FFprobe} instances in
+ * the process. Each binary is only asked once, instead of once per instance.
+ *
+ * <p>Entries are keyed by the binary's resolved path, size and modification time, so upgrading
+ * the binary is noticed by the instances created afterwards. Each instance resolves its key once.
+ * Optionally the entries are saved to a cache file, so that on a warm cache creating an FFmpeg
+ * starts no processes at all.
+ *
+ * <p>Instances created with the default {@link RunProcessFunction} use {@link #getDefault()}.
+ * Instances with a custom {@link ProcessFunction} only share if given a registry explicitly.
+ */
+public class CapabilityRegistry {
+
+  static final Logger LOG = LoggerFactory.getLogger(CapabilityRegistry.class);
+
+  private static final CapabilityRegistry DEFAULT = new CapabilityRegistry();
+
+  private static final Type CACHE_TYPE =
+      new TypeToken<Map<String, Map<String, String>>>() {}.getType();
+
+  /** Runs the binary, returning its output. */
+  interface Loader {
+    String load() throws IOException;
+  }
+
+  /** Binary key, to option, to the output printed for that option. */
+  final ConcurrentMap<String, ConcurrentMap<String, String>> outputs = new ConcurrentHashMap<>();
+
+  @Nullable private Path cacheFile = null;
+  private boolean cacheLoaded = false;
+
+  /** While positive, saving the cache file is put off until the batch ends. */
+  private int batchDepth = 0;
+
+  /** If there are entries the cache file is missing, because saving was put off. */
+  private boolean dirty = false;
+
+  public CapabilityRegistry() {}
+
+  /**
+   * @param cacheFile File the registry is loaded from, and saved to.
+   */
+  public CapabilityRegistry(Path cacheFile) {
+    this.cacheFile = checkNotNull(cacheFile);
+  }
+
+  /**
+   * Returns the registry shared by all instances using the default {@link RunProcessFunction}.
+   *
+   * @return the process wide registry.
+   */
+  public static CapabilityRegistry getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Sets the file the registry is loaded from, and saved to, or null to only keep it in memory.
+   *
+   * @param cacheFile the file.
+   */
+  public synchronized void setCacheFile(@Nullable Path cacheFile) {
+    this.cacheFile = cacheFile;
+    this.cacheLoaded = false;
+  }
+
+  @Nullable
+  public synchronized Path getCacheFile() {
+    return cacheFile;
+  }
+
+  /**
+   * Asks the ffmpeg binary for everything {@link FFmpeg} may need, so later instances start
+   * without running any processes. The cache file is written once, at the end.
+   *
+   * @param path The path to ffmpeg.
+   * @throws IOException if ffmpeg could not be run.
+   */
+  public void preload(String path) throws IOException {
+    preload(path, new RunProcessFunction());
+  }
+
+  void preload(String path, ProcessFunction runFunction) throws IOException {
+    beginBatch();
+    try {
+      FFmpeg ffmpeg = new FFmpeg(path, runFunction, this);
+      ffmpeg.codecs();
+      ffmpeg.formats();
+      ffmpeg.filters();
+      ffmpeg.pixelFormats();
+      ffmpeg.channelLayouts();
+    } finally {
+      endBatch();
+    }
+  }
+
+  private synchronized void beginBatch() {
+    batchDepth++;
+  }
+
+  private synchronized void endBatch() {
+    if (--batchDepth == 0 && dirty) {
+      dirty = false;
+      saveCacheFile();
+    }
+  }
+
+  /** Number of binaries with anything registered. */
+  public int size() {
+    return outputs.size();
+  }
+
+  /** Forgets everything, but leaves the cache file alone. */
+  public void invalidateAll() {
+    outputs.clear();
+  }
+
+  /**
+   * Returns the output of running the binary with the option, loading it if this is the first
+   * time it has been asked for.
+   */
+  String get(BinaryKey key, String option, Loader loader) throws IOException {
+    loadCacheFile();
+
+    ConcurrentMap<String, String> options =
+        outputs.computeIfAbsent(key.key, k -> new ConcurrentHashMap<>());
+
+    String output = options.get(option);
+    if (output == null) {
+      output = loader.load();
+      String existing = options.putIfAbsent(option, output);
+      if (existing != null) {
+        return existing; // Another thread got there first
+      }
+
+      if (key.persistent) {
+        save();
+      }
+    }
+    return output;
+  }
+
+  private synchronized void loadCacheFile() {
+    if (cacheLoaded || cacheFile == null) {
+      return;
+    }
+    cacheLoaded = true;
+
+    if (!Files.isRegularFile(cacheFile)) {
+      return;
+    }
+
+    try (Reader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+      Map<String, Map<String, String>> cached =
+          FFmpegUtils.getGson().fromJson(reader, CACHE_TYPE);
+      if (cached == null) {
+        return;
+      }
+
+      for (Map.Entry<String, Map<String, String>> entry : cached.entrySet()) {
+        outputs
+            .computeIfAbsent(entry.getKey(), k -> new ConcurrentHashMap<>())
+            .putAll(entry.getValue());
+      }
+    } catch (IOException | JsonParseException e) {
+      // The cache is only an optimisation, so carry on without it.
+      LOG.warn("Failed to read capability cache {}", cacheFile, e);
+    }
+  }
+
+  private synchronized void save() {
+    if (batchDepth > 0) {
+      dirty = true;
+    } else {
+      saveCacheFile();
+    }
+  }
+
+  synchronized void saveCacheFile() {
+    if (cacheFile == null) {
+      return;
+    }
+
+    Map<String, Map<String, String>> persistent = new HashMap<>();
+    for (Map.Entry<String, ConcurrentMap<String, String>> entry : outputs.entrySet()) {
+      if (BinaryKey.isPersistent(entry.getKey())) {
+        persistent.put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    try {
+      Path dir = cacheFile.toAbsolutePath().getParent();
+      Files.createDirectories(dir);
+
+      // Write then move, so a concurrent reader never sees a partial file.
+      Path tmp = Files.createTempFile(dir, cacheFile.getFileName().toString(), ".tmp");
+      try {
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+          FFmpegUtils.getGson().toJson(persistent, CACHE_TYPE, writer);
+        }
+        Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to write capability cache {}", cacheFile, e);
+    }
+  }
+
+  /** Identifies a particular build of a binary. */
+  static class BinaryKey {
+    static final String SEPARATOR = "|";
+
+    final String key;
+
+    /** True if the binary was found on disk, so the key changes when it is replaced. */
+    final boolean persistent;
+
+    BinaryKey(String key, boolean persistent) {
+      this.key = key;
+      this.persistent = persistent;
+    }
+
+    static BinaryKey of(String binary) {
+      Path path = resolve(binary);
+      if (path != null) {
+        try {
+          BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+          return new BinaryKey(
+              path.toAbsolutePath()
+                  + SEPARATOR
+                  + attrs.size()
+                  + SEPARATOR
+                  + attrs.lastModifiedTime().toMillis(),
+              true);
+        } catch (IOException e) {
+          // Fall through
+        }
+      }
+      return new BinaryKey(binary, false);
+    }
+
+    static boolean isPersistent(String key) {
+      return key.contains(SEPARATOR);
+    }
+
+    /** Finds the binary the same way the OS would when running it. */
+    @Nullable
+    static Path resolve(String binary) {
+      if (binary.contains(File.separator) || binary.contains("/")) {
+        Path path = Paths.get(binary);
+        return Files.isRegularFile(path) ? path : null;
+      }
+
+      String pathEnv = System.getenv("PATH");
+      if (pathEnv == null) {
+        return null;
+      }
+
+      for (String dir : Splitter.on(File.pathSeparatorChar).omitEmptyStrings().split(pathEnv)) {
+        for (String name : new String[] {binary, binary + ".exe"}) {
+          Path path = Paths.get(dir, name);
+          if (Files.isRegularFile(path) && Files.isExecutable(path)) {
+            return path;
+          }
+        }
+      }
+      return null;
+    }
+  }
+}
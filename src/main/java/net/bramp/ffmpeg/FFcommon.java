@@ -4,31 +4,85 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.CharStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import net.bramp.ffmpeg.io.ProcessUtils;
+import net.bramp.ffmpeg.io.TailAppendable;
+import net.bramp.ffmpeg.metrics.Counter;
+import net.bramp.ffmpeg.metrics.Histogram;
+import net.bramp.ffmpeg.metrics.Metrics;
 import net.bramp.ffmpeg.probe.FFmpegError;
 import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import net.bramp.ffmpeg.progress.ResourceSampler;
+import net.bramp.ffmpeg.progress.StreamProgressParser;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /** Private class to contain common methods for both FFmpeg and FFprobe. */
 abstract class FFcommon {
 
+  private static final Logger LOG = LoggerFactory.getLogger(FFcommon.class);
+
+  /** Number of threads completing the futures of the asynchronous methods, by default */
+  static final int ASYNC_THREADS = 4;
+
+  /**
+   * Executor used by the asynchronous methods when the caller does not supply one. No thread waits
+   * on a running process, the {@link ProcessMonitor} polls them, so this only runs the short tasks
+   * after each exits, such as parsing ffprobe's output.
+   */
+  static final ExecutorService ASYNC_EXECUTOR =
+      Executors.newFixedThreadPool(
+          ASYNC_THREADS,
+          new ThreadFactoryBuilder().setNameFormat("FFcommon-async-%d").setDaemon(true).build());
+
+  /**
+   * Copies the streams of processes run by the blocking methods, which already block a thread per
+   * process. Threads are created on demand, and reclaimed once idle.
+   */
+  static final ExecutorService PUMP_EXECUTOR =
+      Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder().setNameFormat("FFcommon-pump-%d").setDaemon(true).build());
+
+  static final Histogram RUN_NANOS = Metrics.histogram("ffmpeg.process.run.nanos");
+  static final Counter FAILURES = Metrics.counter("ffmpeg.process.failures");
+
   /** Path to the binary (e.g. /usr/bin/ffmpeg) */
   final String path;
 
   /** Function to run FFmpeg. We define it like this so we can swap it out (during testing) */
   final ProcessFunction runFunc;
 
+  /** Shares the output of -version etc between instances, or null to not share */
+  @Nullable final CapabilityRegistry registry;
+
+  /** Identifies the binary in the registry. Resolved once, as that stats it and searches PATH. */
+  @Nullable private CapabilityRegistry.BinaryKey binaryKey = null;
+
   /** Version string */
   String version = null;
 
@@ -38,14 +92,25 @@ abstract class FFcommon {
   /** Process error stream */
   Appendable processErrorStream = System.err;
 
+  /** Number of characters of output to remember for error messages, or zero to disable */
+  int errorTailSize = 0;
+
   public FFcommon(@Nonnull String path) {
-    this(path, new RunProcessFunction());
+    this(path, new RunProcessFunction(), CapabilityRegistry.getDefault());
   }
 
   protected FFcommon(@Nonnull String path, @Nonnull ProcessFunction runFunction) {
+    this(path, runFunction, null);
+  }
+
+  protected FFcommon(
+      @Nonnull String path,
+      @Nonnull ProcessFunction runFunction,
+      @Nullable CapabilityRegistry registry) {
     Preconditions.checkArgument(!Strings.isNullOrEmpty(path));
     this.runFunc = checkNotNull(runFunction);
     this.path = path;
+    this.registry = registry;
   }
 
   public void setProcessOutputStream(@Nonnull Appendable processOutputStream) {
@@ -58,6 +123,18 @@ abstract class FFcommon {
     this.processErrorStream = processErrorStream;
   }
 
+  /**
+   * Remembers the last {@code size} characters the process writes, and includes them in the
+   * exception thrown when it exits with a non-zero status. Memory use is bounded no matter how
+   * verbose the process is.
+   *
+   * @param size The number of characters to remember, or zero to disable.
+   */
+  public void setErrorTailSize(int size) {
+    Preconditions.checkArgument(size >= 0, "size must be positive");
+    this.errorTailSize = size;
+  }
+
   private BufferedReader _wrapInReader(final InputStream inputStream) {
     return new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
   }
@@ -71,12 +148,31 @@ abstract class FFcommon {
   }
 
   protected void throwOnError(Process p) throws IOException {
+    throwOnErrorWithTail(p, null);
+  }
+
+  /**
+   * Throws if the process failed, including the end of its output in the message.
+   *
+   * @param p The process.
+   * @param tail The end of the process's output, or null.
+   * @throws IOException If the process exited with a non-zero status, or did not exit.
+   */
+  protected void throwOnErrorWithTail(Process p, @Nullable TailAppendable tail)
+      throws IOException {
     try {
       if (ProcessUtils.waitForWithTimeout(p, 1, TimeUnit.SECONDS) != 0) {
-        // TODO Parse the error
-        throw new IOException(path + " returned non-zero exit status. Check stdout.");
+        FAILURES.increment();
+        String message = path + " returned non-zero exit status.";
+        if (tail != null && tail.getLength() > 0) {
+          message += (tail.isTruncated() ? " Output ended with:\n..." : " Output:\n") + tail;
+        } else {
+          message += " Check its output.";
+        }
+        throw new IOException(message);
       }
     } catch (TimeoutException e) {
+      FAILURES.increment();
       throw new IOException("Timed out waiting for " + path + " to finish.");
     }
   }
@@ -84,12 +180,14 @@ abstract class FFcommon {
   protected void throwOnError(Process p, FFmpegProbeResult result) throws IOException {
     try {
       if (ProcessUtils.waitForWithTimeout(p, 1, TimeUnit.SECONDS) != 0) {
+        FAILURES.increment();
         // TODO Parse the error
         final FFmpegError ffmpegError = null == result ? null : result.getError();
         throw new FFmpegException(
                 path + " returned non-zero exit status. Check stdout.", ffmpegError);
       }
     } catch (TimeoutException e) {
+      FAILURES.increment();
       throw new IOException("Timed out waiting for " + path + " to finish.");
     }
   }
@@ -102,20 +200,46 @@ abstract class FFcommon {
    */
   public synchronized @Nonnull String version() throws IOException {
     if (this.version == null) {
-      Process p = runFunc.run(ImmutableList.of(path, "-version"));
-      try {
-        BufferedReader r = wrapInReader(p);
-        this.version = r.readLine();
-        CharStreams.copy(r, CharStreams.nullWriter()); // Throw away rest of the output
-
-        throwOnError(p);
-      } finally {
-        p.destroy();
-      }
+      this.version = info("-version").readLine(); // The rest of the output is ignored
     }
     return version;
   }
 
+  /**
+   * Runs the binary with a single option that prints information about itself (e.g "-codecs"),
+   * returning what it printed. The output is shared through the {@link CapabilityRegistry} if
+   * this instance has one, so the binary may not be run at all.
+   *
+   * @param option The option, e.g "-codecs".
+   * @return A reader over the output.
+   * @throws IOException If there is an error capturing output from the binary.
+   */
+  protected BufferedReader info(String option) throws IOException {
+    final String output =
+        registry == null
+            ? runInfo(option)
+            : registry.get(binaryKey(), option, () -> runInfo(option));
+    return new BufferedReader(new StringReader(output));
+  }
+
+  private synchronized CapabilityRegistry.BinaryKey binaryKey() {
+    if (binaryKey == null) {
+      binaryKey = CapabilityRegistry.BinaryKey.of(path);
+    }
+    return binaryKey;
+  }
+
+  private String runInfo(String option) throws IOException {
+    Process p = runFunc.run(ImmutableList.of(path, option));
+    try {
+      String output = CharStreams.toString(wrapInReader(p));
+      throwOnError(p);
+      return output;
+    } finally {
+      p.destroy();
+    }
+  }
+
   public String getPath() {
     return path;
   }
@@ -134,25 +258,328 @@ abstract class FFcommon {
   /**
    * Runs the binary (ffmpeg) with the supplied args. Blocking until finished.
    *
+   * <p>stdout is read on the calling thread, while stderr is drained concurrently, so a process
+   * writing a lot to either stream can never block on a full pipe.
+   *
    * @param args The arguments to pass to the binary.
    * @throws IOException If there is a problem executing the binary.
    */
   public void run(List<String> args) throws IOException {
     checkNotNull(args);
 
+    long start = System.nanoTime();
     Process p = runFunc.run(path(args));
     assert (p != null);
 
+    waitFor(p, null, null, start);
+  }
+
+  /**
+   * Runs the binary (ffmpeg) with the supplied args, parsing the progress it writes to stdout
+   * (with {@code -progress pipe:1}) directly on the calling thread. No socket or extra thread is
+   * needed. stderr is drained concurrently, as in {@link #run(List)}.
+   *
+   * @param args The arguments to pass to the binary.
+   * @param progressParser The parser to feed stdout into.
+   * @throws IOException If there is a problem executing the binary.
+   */
+  protected void run(List<String> args, StreamProgressParser progressParser) throws IOException {
+    checkNotNull(progressParser);
+    run(args, progressParser, null);
+  }
+
+  /**
+   * Runs the binary with the supplied args, optionally parsing progress from stdout, as {@link
+   * #run(List, StreamProgressParser)}, and optionally sampling the resources the process uses.
+   *
+   * @param args The arguments to pass to the binary.
+   * @param progressParser The parser to feed stdout into, or null to discard stdout.
+   * @param sampler The sampler to start once the process has started, or null.
+   * @throws IOException If there is a problem executing the binary.
+   */
+  protected void run(
+      List<String> args,
+      @Nullable StreamProgressParser progressParser,
+      @Nullable ResourceSampler sampler)
+      throws IOException {
+    checkNotNull(args);
+
+    long start = System.nanoTime();
+    Process p =
+        progressParser != null
+            ? runFunc.runWithSeparateErrorStream(path(args))
+            : runFunc.run(path(args));
+    assert (p != null);
+
+    if (sampler != null) {
+      sampler.start(p);
+    }
+
+    waitFor(p, progressParser, sampler, start);
+  }
+
+  /** Drains the process output until it exits, throwing if it failed. */
+  private void waitFor(
+      Process p,
+      @Nullable StreamProgressParser progressParser,
+      @Nullable ResourceSampler sampler,
+      long start)
+      throws IOException {
     try {
-      // TODO Move the copy onto a thread, so that FFmpegProgressListener can be on this thread.
+      final TailAppendable tail = newErrorTail();
+      final Appendable out = tee(processOutputStream, tail);
+      final Future<?> errorPump = pumpErrorStream(p, tail);
 
-      // Now block reading ffmpeg's stdout. We are effectively throwing away the output.
-      CharStreams.copy(wrapInReader(p), processOutputStream);
-      CharStreams.copy(wrapErrorInReader(p), processErrorStream);
-      throwOnError(p);
+      if (progressParser != null) {
+        // stdout carries the progress, so parse it as it arrives.
+        progressParser.processStream(p.getInputStream());
+      } else {
+        // Now block reading ffmpeg's stdout. We are effectively throwing away the output.
+        CharStreams.copy(wrapInReader(p), out);
+      }
+
+      if (errorPump != null) {
+        awaitPump(errorPump);
+      }
+
+      // Stop sampling now the output has ended. The JDK reaps a process as soon as it exits, so
+      // the final sample usually finds it gone, and the summary is the last periodic sample.
+      if (sampler != null) {
+        sampler.stop();
+      }
+
+      throwOnErrorWithTail(p, tail);
 
     } finally {
+      if (sampler != null) {
+        sampler.stop();
+      }
       p.destroy();
+      RUN_NANOS.record(System.nanoTime() - start);
     }
   }
+
+  /** Returns a tail to remember the process output in, or null if disabled. */
+  @Nullable
+  TailAppendable newErrorTail() {
+    return errorTailSize > 0 ? new TailAppendable(errorTailSize) : null;
+  }
+
+  /**
+   * Starts copying the process's stderr to the process error stream, and the tail if there is one,
+   * on the {@link #PUMP_EXECUTOR}.
+   *
+   * @return The running copy, or null if the process has no separate stderr.
+   */
+  @Nullable
+  Future<?> pumpErrorStream(Process p, @Nullable TailAppendable tail) {
+    if (p.getErrorStream() == null) {
+      return null;
+    }
+
+    final Reader reader = wrapErrorInReader(p);
+    final Appendable err = tee(processErrorStream, tail);
+    return PUMP_EXECUTOR.submit(() -> CharStreams.copy(reader, err));
+  }
+
+  /**
+   * Starts copying the process's stdout to the process output stream, and the tail if there is
+   * one, on the {@link #PUMP_EXECUTOR}.
+   *
+   * @return The running copy, or null if the process has no stdout.
+   */
+  @Nullable
+  Future<?> pumpOutputStream(Process p, @Nullable TailAppendable tail) {
+    if (p.getInputStream() == null) {
+      return null;
+    }
+
+    final Reader reader = wrapInReader(p);
+    final Appendable out = tee(processOutputStream, tail);
+    return PUMP_EXECUTOR.submit(() -> CharStreams.copy(reader, out));
+  }
+
+  /**
+   * Returns if the process exited with an error. Used once its output was cut short, so waits a
+   * little for it to exit.
+   */
+  static boolean exitedWithError(Process p) {
+    try {
+      return ProcessUtils.waitForWithTimeout(p, 1, TimeUnit.SECONDS) != 0;
+    } catch (TimeoutException e) {
+      return false;
+    }
+  }
+
+  /** Waits for a stream pump to finish, rethrowing any failure it had. */
+  static void awaitPump(Future<?> pump) throws IOException {
+    try {
+      pump.get();
+    } catch (InterruptedException e) {
+      pump.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading process output");
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /** Returns an Appendable writing to both, or just the first if the second is null. */
+  static Appendable tee(final Appendable first, @Nullable final Appendable second) {
+    if (second == null) {
+      return first;
+    }
+
+    return new Appendable() {
+      @Override
+      public Appendable append(CharSequence csq) throws IOException {
+        first.append(csq);
+        second.append(csq);
+        return this;
+      }
+
+      @Override
+      public Appendable append(CharSequence csq, int start, int end) throws IOException {
+        first.append(csq, start, end);
+        second.append(csq, start, end);
+        return this;
+      }
+
+      @Override
+      public Appendable append(char c) throws IOException {
+        first.append(c);
+        second.append(c);
+        return this;
+      }
+    };
+  }
+
+  /**
+   * Runs the binary (ffmpeg) with the supplied args, without blocking the caller, or any other
+   * thread, while it runs.
+   *
+   * @param args The arguments to pass to the binary.
+   * @return A future completed once the process has finished, or completed exceptionally with the
+   *     {@link IOException} thrown by {@link #run(List)}. Cancelling it destroys the process.
+   */
+  public CompletableFuture<Void> runAsync(List<String> args) {
+    return runAsync(args, ASYNC_EXECUTOR);
+  }
+
+  /**
+   * Runs the binary (ffmpeg) with the supplied args, without blocking the caller, completing the
+   * returned future on the executor.
+   *
+   * @param args The arguments to pass to the binary.
+   * @param executor The executor used to read the last of the output, and complete the future.
+   * @return A future completed once the process has finished, or completed exceptionally with the
+   *     {@link IOException} thrown by {@link #run(List)}. Cancelling it destroys the process.
+   */
+  public CompletableFuture<Void> runAsync(List<String> args, Executor executor) {
+    checkNotNull(args);
+    checkNotNull(executor);
+
+    final TailAppendable tail = newErrorTail();
+    return startAsync(
+        () -> runFunc.run(path(args)),
+        outputSink(tail),
+        tail,
+        p -> {
+          throwOnErrorWithTail(p, tail);
+          return null;
+        },
+        null,
+        executor);
+  }
+
+  /** Returns a sink copying stdout to the process output stream, and the tail if there is one. */
+  ProcessMonitor.Sink outputSink(@Nullable TailAppendable tail) {
+    return ProcessMonitor.decodeTo(tee(processOutputStream, tail), StandardCharsets.UTF_8);
+  }
+
+  /** Starts a process, as {@link ProcessFunction} does. */
+  interface ProcessStarter {
+    Process start() throws IOException;
+  }
+
+  /**
+   * Starts a process, and has the {@link ProcessMonitor} supervise it, so no thread waits on it.
+   * Anything thrown while starting the process fails the returned future, instead of being thrown.
+   *
+   * @param starter Starts the process.
+   * @param stdout Receives the process's stdout.
+   * @param tail The tail to remember stderr in, or null.
+   * @param onExit Checks the exited process, and returns the result.
+   * @param cleanup Closed once the process has exited, or been cancelled, or null.
+   * @param executor Runs the final read of the output, and onExit.
+   * @return A future completed with the result. Cancelling it destroys the process.
+   */
+  <T> CompletableFuture<T> startAsync(
+      ProcessStarter starter,
+      ProcessMonitor.Sink stdout,
+      @Nullable TailAppendable tail,
+      ProcessMonitor.ExitHandler<T> onExit,
+      @Nullable Closeable cleanup,
+      Executor executor) {
+    final long start = System.nanoTime();
+    final Closeable once = closeOnce(cleanup);
+
+    CompletableFuture<T> future;
+    try {
+      Process p = starter.start();
+      future =
+          ProcessMonitor.DEFAULT.watch(
+              p,
+              stdout,
+              ProcessMonitor.decodeTo(tee(processErrorStream, tail), StandardCharsets.UTF_8),
+              process -> {
+                try {
+                  return onExit.exited(process);
+                } finally {
+                  close(once);
+                }
+              },
+              executor);
+    } catch (IOException | RuntimeException e) {
+      close(once);
+      return failedFuture(e);
+    }
+
+    // Only needed for its side effects, the caller sees the outcome through the returned future
+    CompletableFuture<T> unused =
+        future.whenComplete(
+            (result, t) -> {
+              if (future.isCancelled()) {
+                close(once);
+              }
+              RUN_NANOS.record(System.nanoTime() - start);
+            });
+    return future;
+  }
+
+  /** Returns a Closeable which closes the cleanup, if any, the first time it is closed. */
+  private static Closeable closeOnce(@Nullable Closeable cleanup) {
+    final AtomicBoolean closed = new AtomicBoolean(cleanup == null);
+    return () -> {
+      if (closed.compareAndSet(false, true)) {
+        cleanup.close();
+      }
+    };
+  }
+
+  private static void close(Closeable cleanup) {
+    try {
+      cleanup.close();
+    } catch (IOException e) {
+      LOG.warn("Failed to clean up after process", e);
+    }
+  }
+
+  static <T> CompletableFuture<T> failedFuture(Throwable t) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    future.completeExceptionally(t);
+    return future;
+  }
 }
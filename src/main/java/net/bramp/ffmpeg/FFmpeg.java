@@ -1,25 +1,43 @@
 package net.bramp.ffmpeg;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.collect.ImmutableList;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import net.bramp.ffmpeg.builder.AbstractFFmpegInputBuilder;
+import net.bramp.ffmpeg.builder.AbstractFFmpegOutputBuilder;
 import net.bramp.ffmpeg.builder.FFmpegBuilder;
+import net.bramp.ffmpeg.builder.FFmpegCommandTemplate;
 import net.bramp.ffmpeg.info.*;
+import net.bramp.ffmpeg.io.TailAppendable;
+import net.bramp.ffmpeg.nut.FrameBufferPool;
+import net.bramp.ffmpeg.nut.NutReaderListener;
+import net.bramp.ffmpeg.progress.ByteProgressParser;
+import net.bramp.ffmpeg.progress.NamedPipeProgressParser;
+import net.bramp.ffmpeg.progress.ProgressHub;
 import net.bramp.ffmpeg.progress.ProgressListener;
 import net.bramp.ffmpeg.progress.ProgressParser;
+import net.bramp.ffmpeg.progress.ResourceSampler;
+import net.bramp.ffmpeg.progress.ResourceUsageListener;
+import net.bramp.ffmpeg.progress.StreamProgressParser;
 import net.bramp.ffmpeg.progress.TcpProgressParser;
+import net.bramp.ffmpeg.progress.UnixSocketProgressParser;
 import org.apache.commons.lang3.math.Fraction;
 
 /**
@@ -62,6 +80,12 @@ public class FFmpeg extends FFcommon {
   public static final int AUDIO_SAMPLE_48000 = 48000;
   public static final int AUDIO_SAMPLE_96000 = 96000;
 
+  /** Progress URL used by {@link #setProgressOnStdout(boolean)} */
+  static final URI PROGRESS_STDOUT = URI.create("pipe:1");
+
+  /** Format of {@link #frames(FFmpegBuilder)} and {@link #frameWriter(FFmpegBuilder)} */
+  static final String NUT = "nut";
+
   static final Pattern CODECS_REGEX =
       Pattern.compile("^ ([.D][.E][VASD][.I][.L][.S]) (\\S{2,})\\s+(.*)$");
   static final Pattern FORMATS_REGEX = Pattern.compile("^ ([ D][ E]) (\\S+)\\s+(.*)$");
@@ -84,8 +108,23 @@ public class FFmpeg extends FFcommon {
   /** Supported channel layouts */
   private List<ChannelLayout> channelLayouts = null;
 
+  /** Index over the codecs, formats, filters and pixel formats */
+  private CapabilityIndex capabilityIndex = null;
+
+  /** Optional shared progress server, used instead of a new TCP server per job. */
+  @Nullable private volatile ProgressHub progressHub = null;
+
+  /** If true, progress is read from ffmpeg's stdout when possible, instead of a socket. */
+  private volatile boolean progressOnStdout = false;
+
+  /** If true, progress is received through a Unix domain socket or named pipe, if supported. */
+  private volatile boolean localProgress = false;
+
+  /** How often to sample the resources each process uses, or zero to not sample. */
+  private volatile long resourceSampleIntervalMillis = 0;
+
   public FFmpeg() throws IOException {
-    this(DEFAULT_PATH, new RunProcessFunction());
+    this(DEFAULT_PATH, new RunProcessFunction(), CapabilityRegistry.getDefault());
   }
 
   public FFmpeg(@Nonnull ProcessFunction runFunction) throws IOException {
@@ -93,7 +132,7 @@ public class FFmpeg extends FFcommon {
   }
 
   public FFmpeg(@Nonnull String path) throws IOException {
-    this(path, new RunProcessFunction());
+    this(path, new RunProcessFunction(), CapabilityRegistry.getDefault());
   }
 
   @SuppressWarnings("this-escape")
@@ -102,6 +141,22 @@ public class FFmpeg extends FFcommon {
     version();
   }
 
+  /**
+   * @param path The path to ffmpeg.
+   * @param runFunction The function used to run ffmpeg.
+   * @param registry Shares the version, codecs, formats, etc with other instances, or null.
+   * @throws IOException If ffmpeg's version could not be read.
+   */
+  @SuppressWarnings("this-escape")
+  public FFmpeg(
+      @Nonnull String path,
+      @Nonnull ProcessFunction runFunction,
+      @Nullable CapabilityRegistry registry)
+      throws IOException {
+    super(path, runFunction, registry);
+    version();
+  }
+
   /**
    * Returns true if the binary we are using is the true ffmpeg. This is to avoid conflict with
    * avconv (from the libav project), that some symlink to ffmpeg.
@@ -132,22 +187,16 @@ public class FFmpeg extends FFcommon {
     if (this.codecs == null) {
       codecs = new ArrayList<>();
 
-      Process p = runFunc.run(ImmutableList.of(path, "-codecs"));
-      try {
-        BufferedReader r = wrapInReader(p);
-        String line;
-        while ((line = r.readLine()) != null) {
-          Matcher m = CODECS_REGEX.matcher(line);
-          if (!m.matches()) continue;
-
-          codecs.add(new Codec(m.group(2), m.group(3), m.group(1)));
-        }
+      BufferedReader r = info("-codecs");
+      String line;
+      while ((line = r.readLine()) != null) {
+        Matcher m = CODECS_REGEX.matcher(line);
+        if (!m.matches()) continue;
 
-        throwOnError(p);
-        this.codecs = ImmutableList.copyOf(codecs);
-      } finally {
-        p.destroy();
+        codecs.add(new Codec(m.group(2), m.group(3), m.group(1)));
       }
+
+      this.codecs = ImmutableList.copyOf(codecs);
     }
 
     return codecs;
@@ -159,32 +208,26 @@ public class FFmpeg extends FFcommon {
     if (this.filters == null) {
       filters = new ArrayList<>();
 
-      Process p = runFunc.run(ImmutableList.of(path, "-filters"));
-      try {
-        BufferedReader r = wrapInReader(p);
-        String line;
-        while ((line = r.readLine()) != null) {
-          Matcher m = FILTERS_REGEX.matcher(line);
-          if (!m.matches()) continue;
-
-          // (?<inputpattern>[AVN|]+)->(?<outputpattern>[AVN|]+)\s+(?<description>.*)$
-
-          filters.add(new Filter(
-                  m.group("timelinesupport").equals("T"),
-                  m.group("slicethreading").equals("S"),
-                  m.group("commandsupport").equals("C"),
-                  m.group("name"),
-                  new FilterPattern(m.group("inputpattern")),
-                  new FilterPattern(m.group("outputpattern")),
-                  m.group("description")
-          ));
-        }
-
-        throwOnError(p);
-        this.filters = ImmutableList.copyOf(filters);
-      } finally {
-        p.destroy();
+      BufferedReader r = info("-filters");
+      String line;
+      while ((line = r.readLine()) != null) {
+        Matcher m = FILTERS_REGEX.matcher(line);
+        if (!m.matches()) continue;
+
+        // (?<inputpattern>[AVN|]+)->(?<outputpattern>[AVN|]+)\s+(?<description>.*)$
+
+        filters.add(new Filter(
+                m.group("timelinesupport").equals("T"),
+                m.group("slicethreading").equals("S"),
+                m.group("commandsupport").equals("C"),
+                m.group("name"),
+                new FilterPattern(m.group("inputpattern")),
+                new FilterPattern(m.group("outputpattern")),
+                m.group("description")
+        ));
       }
+
+      this.filters = ImmutableList.copyOf(filters);
     }
 
     return this.filters;
@@ -196,22 +239,16 @@ public class FFmpeg extends FFcommon {
     if (this.formats == null) {
       formats = new ArrayList<>();
 
-      Process p = runFunc.run(ImmutableList.of(path, "-formats"));
-      try {
-        BufferedReader r = wrapInReader(p);
-        String line;
-        while ((line = r.readLine()) != null) {
-          Matcher m = FORMATS_REGEX.matcher(line);
-          if (!m.matches()) continue;
-
-          formats.add(new Format(m.group(2), m.group(3), m.group(1)));
-        }
+      BufferedReader r = info("-formats");
+      String line;
+      while ((line = r.readLine()) != null) {
+        Matcher m = FORMATS_REGEX.matcher(line);
+        if (!m.matches()) continue;
 
-        throwOnError(p);
-        this.formats = ImmutableList.copyOf(formats);
-      } finally {
-        p.destroy();
+        formats.add(new Format(m.group(2), m.group(3), m.group(1)));
       }
+
+      this.formats = ImmutableList.copyOf(formats);
     }
     return formats;
   }
@@ -222,25 +259,19 @@ public class FFmpeg extends FFcommon {
     if (this.pixelFormats == null) {
       pixelFormats = new ArrayList<>();
 
-      Process p = runFunc.run(ImmutableList.of(path, "-pix_fmts"));
-      try {
-        BufferedReader r = wrapInReader(p);
-        String line;
-        while ((line = r.readLine()) != null) {
-          Matcher m = PIXEL_FORMATS_REGEX.matcher(line);
-          if (!m.matches()) continue;
-          String flags = m.group(1);
-
-          pixelFormats.add(
-              new PixelFormat(
-                  m.group(2), Integer.parseInt(m.group(3)), Integer.parseInt(m.group(4)), flags));
-        }
+      BufferedReader r = info("-pix_fmts");
+      String line;
+      while ((line = r.readLine()) != null) {
+        Matcher m = PIXEL_FORMATS_REGEX.matcher(line);
+        if (!m.matches()) continue;
+        String flags = m.group(1);
 
-        throwOnError(p);
-        this.pixelFormats = ImmutableList.copyOf(pixelFormats);
-      } finally {
-        p.destroy();
+        pixelFormats.add(
+            new PixelFormat(
+                m.group(2), Integer.parseInt(m.group(3)), Integer.parseInt(m.group(4)), flags));
       }
+
+      this.pixelFormats = ImmutableList.copyOf(pixelFormats);
     }
 
     return pixelFormats;
@@ -250,26 +281,138 @@ public class FFmpeg extends FFcommon {
     checkIfFFmpeg();
 
     if (this.channelLayouts == null) {
-      Process p = runFunc.run(ImmutableList.of(path, "-layouts"));
+      BufferedReader r = info("-layouts");
+      this.channelLayouts = Collections.unmodifiableList(InfoParser.parseLayouts(r));
+    }
 
-      try {
-        BufferedReader r = wrapInReader(p);
-        this.channelLayouts = Collections.unmodifiableList(InfoParser.parseLayouts(r));
-      } finally {
-        p.destroy();
-      }
+    return this.channelLayouts;
+  }
 
+  /**
+   * Returns an index over the codecs, formats, filters and pixel formats, for fast lookups by
+   * name and by capability. It is built once, and cached.
+   *
+   * @return The index.
+   * @throws IOException If a I/O error occurs while executing ffmpeg.
+   */
+  public synchronized @Nonnull CapabilityIndex capabilityIndex() throws IOException {
+    if (this.capabilityIndex == null) {
+      this.capabilityIndex = new CapabilityIndex(codecs(), formats(), filters(), pixelFormats());
     }
+    return this.capabilityIndex;
+  }
 
-    return this.channelLayouts;
+  /**
+   * Sends the progress of every job run by this FFmpeg through a single shared {@link
+   * ProgressHub}, instead of opening a new server socket and thread per job. The hub may be shared
+   * between FFmpeg instances, and is not closed by this class.
+   *
+   * @param progressHub The hub to use, or null to go back to one TCP server per job.
+   */
+  public void setProgressHub(@Nullable ProgressHub progressHub) {
+    this.progressHub = progressHub;
+  }
+
+  @Nullable
+  public ProgressHub getProgressHub() {
+    return progressHub;
+  }
+
+  /**
+   * Has ffmpeg write its progress to stdout ({@code -progress pipe:1}), which is then parsed on
+   * the thread that runs ffmpeg. There is no socket, extra thread, or start up handshake, which
+   * makes this the cheapest option for short jobs. It is used for any job that doesn't itself
+   * output to stdout, otherwise {@link #createProgressParser(ProgressListener)} is used.
+   *
+   * <p>In this mode ffmpeg's stdout is not copied to the {@link #setProcessOutputStream
+   * process output stream}, and its stderr is kept separate, going to the {@link
+   * #setProcessErrorStream process error stream}.
+   *
+   * @param progressOnStdout true to read progress from stdout.
+   */
+  public void setProgressOnStdout(boolean progressOnStdout) {
+    this.progressOnStdout = progressOnStdout;
   }
 
+  public boolean isProgressOnStdout() {
+    return progressOnStdout;
+  }
+
+  /**
+   * Has ffmpeg send its progress through a Unix domain socket (Java 16+), or failing that a named
+   * pipe (Unix-like systems), instead of a TCP socket. Neither uses a port, or can be connected to
+   * from another machine. Off by default, as TCP works everywhere, and has been used for longest.
+   * Ignored if a {@link #setProgressHub ProgressHub} is set.
+   *
+   * @param localProgress true to use a Unix domain socket or named pipe when supported.
+   */
+  public void setLocalProgress(boolean localProgress) {
+    this.localProgress = localProgress;
+  }
+
+  public boolean isLocalProgress() {
+    return localProgress;
+  }
+
+  /**
+   * Samples the CPU time, memory and I/O used by ffmpeg at this interval, while it runs. The
+   * samples, and a summary once ffmpeg exits, are sent to any {@link ProgressListener} that also
+   * implements {@link ResourceUsageListener}. Only supported on Linux, see {@link
+   * ResourceSampler}.
+   *
+   * @param interval The interval, or zero to stop sampling.
+   * @param unit The unit of the interval.
+   */
+  public void setResourceSampleInterval(long interval, TimeUnit unit) {
+    checkArgument(interval >= 0, "interval must not be negative");
+    this.resourceSampleIntervalMillis = unit.toMillis(interval);
+  }
+
+  public long getResourceSampleInterval(TimeUnit unit) {
+    return unit.convert(resourceSampleIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /** Returns a sampler for the listener, or null if it doesn't want samples. */
+  @Nullable
+  private ResourceSampler newResourceSampler(ProgressListener listener) {
+    long interval = resourceSampleIntervalMillis;
+    if (interval <= 0 || !(listener instanceof ResourceUsageListener)) {
+      return null;
+    }
+    return new ResourceSampler((ResourceUsageListener) listener, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates the progress parser for a job. In order of preference: the shared {@link ProgressHub}
+   * if one is set, then if {@link #setLocalProgress(boolean) local progress} is enabled a Unix
+   * domain socket (Java 16+) or a named pipe (Unix-like systems), and finally a TCP socket.
+   *
+   * @param listener The listener to receive progress.
+   * @return A new progress parser.
+   * @throws IOException if the parser could not be created.
+   */
   protected ProgressParser createProgressParser(ProgressListener listener) throws IOException {
-    // TODO In future create the best kind for this OS, unix socket, named pipe, or TCP.
+    checkNotNull(listener);
+
+    ProgressHub hub = this.progressHub;
+    if (hub != null) {
+      return hub.newParser(listener);
+    }
+
     try {
-      // Default to TCP because it is supported across all OSes, and is better than UDP because it
+      if (localProgress) {
+        if (UnixSocketProgressParser.isSupported()) {
+          return new UnixSocketProgressParser(listener);
+        }
+
+        if (NamedPipeProgressParser.isSupported()) {
+          return new NamedPipeProgressParser(listener);
+        }
+      }
+
+      // Otherwise TCP because it is supported across all OSes, and is better than UDP because it
       // provides good properties such as in-order packets, reliability, error checking, etc.
-      return new TcpProgressParser(checkNotNull(listener));
+      return new TcpProgressParser(listener);
     } catch (URISyntaxException e) {
       throw new IOException(e);
     }
@@ -288,18 +431,400 @@ public class FFmpeg extends FFcommon {
   public void run(FFmpegBuilder builder, @Nullable ProgressListener listener) throws IOException {
     checkNotNull(builder);
 
-    if (listener != null) {
+    if (listener != null && progressOnStdout && !builder.writesToStdout()) {
+      builder = builder.addProgress(PROGRESS_STDOUT);
+
+      // -nostats stops the interactive stats line being mixed in, if stderr can't be kept apart
+      List<String> args =
+          ImmutableList.<String>builder().add("-nostats").addAll(builder.build()).build();
+
+      checkIfFFmpeg();
+      run(args, new StreamProgressParser(listener), newResourceSampler(listener));
+
+    } else if (listener != null) {
       try (ProgressParser progressParser = createProgressParser(listener)) {
         progressParser.start();
         builder = builder.addProgress(progressParser.getUri());
 
-        run(builder.build());
+        checkIfFFmpeg();
+        run(builder.build(), null, newResourceSampler(listener));
       }
     } else {
       run(builder.build());
     }
   }
 
+  /**
+   * Runs ffmpeg with arguments made by a template.
+   *
+   * @param template The template the arguments were made by.
+   * @param args The arguments returned by {@link FFmpegCommandTemplate#instantiate(String...)}.
+   * @param listener Optional listener to receive progress updates.
+   * @throws IOException if ffmpeg could not be run, or failed.
+   */
+  public void run(
+      FFmpegCommandTemplate template, List<String> args, @Nullable ProgressListener listener)
+      throws IOException {
+    checkNotNull(template);
+    checkNotNull(args);
+
+    if (listener != null && progressOnStdout && !template.writesToStdout(args)) {
+      List<String> withProgress =
+          ImmutableList.<String>builder()
+              .add("-nostats", "-progress", PROGRESS_STDOUT.toString())
+              .addAll(args)
+              .build();
+
+      checkIfFFmpeg();
+      run(withProgress, new StreamProgressParser(listener), newResourceSampler(listener));
+
+    } else if (listener != null) {
+      try (ProgressParser progressParser = createProgressParser(listener)) {
+        progressParser.start();
+
+        checkIfFFmpeg();
+        run(
+            ImmutableList.<String>builder()
+                .add("-progress", progressParser.getUri().toString())
+                .addAll(args)
+                .build(),
+            null,
+            newResourceSampler(listener));
+      }
+    } else {
+      run(args);
+    }
+  }
+
+  /**
+   * Runs ffmpeg with the builder's arguments, without blocking the caller.
+   *
+   * @param builder The builder describing the job.
+   * @return A future completed once ffmpeg has finished.
+   */
+  public CompletableFuture<Void> runAsync(FFmpegBuilder builder) {
+    return runAsync(builder, null);
+  }
+
+  /**
+   * Runs ffmpeg with the builder's arguments, without blocking the caller, reporting its progress
+   * as {@link #run(FFmpegBuilder, ProgressListener)} does.
+   *
+   * @param builder The builder describing the job.
+   * @param listener Optional listener to receive progress updates.
+   * @return A future completed once ffmpeg has finished. Cancelling it destroys ffmpeg.
+   */
+  public CompletableFuture<Void> runAsync(
+      FFmpegBuilder builder, @Nullable ProgressListener listener) {
+    return runAsync(builder, listener, ASYNC_EXECUTOR);
+  }
+
+  /**
+   * Runs ffmpeg with the builder's arguments, without blocking the caller, or any other thread,
+   * while it runs. Its output is read, and progress parsed, as it is written.
+   *
+   * @param builder The builder describing the job.
+   * @param listener Optional listener to receive progress updates.
+   * @param executor The executor used to read the last of the output, and complete the future.
+   * @return A future completed once ffmpeg has finished, or completed exceptionally with the
+   *     {@link IOException} that {@link #run(FFmpegBuilder, ProgressListener)} would throw.
+   *     Cancelling it destroys ffmpeg.
+   */
+  public CompletableFuture<Void> runAsync(
+      FFmpegBuilder builder, @Nullable ProgressListener listener, Executor executor) {
+    checkNotNull(builder);
+    checkNotNull(executor);
+
+    if (listener == null) {
+      return runAsync(builder.build(), executor);
+    }
+
+    return runAsync(
+        builder.writesToStdout(),
+        progress -> builder.addProgress(progress).build(),
+        listener,
+        executor);
+  }
+
+  /**
+   * Runs ffmpeg with arguments made by a template, without blocking the caller, reporting its
+   * progress as {@link #run(FFmpegCommandTemplate, List, ProgressListener)} does.
+   *
+   * @param template The template the arguments were made by.
+   * @param args The arguments returned by {@link FFmpegCommandTemplate#instantiate(String...)}.
+   * @param listener Optional listener to receive progress updates.
+   * @return A future completed once ffmpeg has finished. Cancelling it destroys ffmpeg.
+   */
+  public CompletableFuture<Void> runAsync(
+      FFmpegCommandTemplate template, List<String> args, @Nullable ProgressListener listener) {
+    return runAsync(template, args, listener, ASYNC_EXECUTOR);
+  }
+
+  /**
+   * Runs ffmpeg with arguments made by a template, without blocking the caller, or any other
+   * thread, while it runs.
+   *
+   * @param template The template the arguments were made by.
+   * @param args The arguments returned by {@link FFmpegCommandTemplate#instantiate(String...)}.
+   * @param listener Optional listener to receive progress updates.
+   * @param executor The executor used to read the last of the output, and complete the future.
+   * @return A future completed once ffmpeg has finished, or completed exceptionally with the
+   *     {@link IOException} that {@link #run(FFmpegCommandTemplate, List, ProgressListener)}
+   *     would throw. Cancelling it destroys ffmpeg.
+   */
+  public CompletableFuture<Void> runAsync(
+      FFmpegCommandTemplate template,
+      List<String> args,
+      @Nullable ProgressListener listener,
+      Executor executor) {
+    checkNotNull(template);
+    checkNotNull(args);
+    checkNotNull(executor);
+
+    if (listener == null) {
+      return runAsync(args, executor);
+    }
+
+    return runAsync(
+        template.writesToStdout(args),
+        progress ->
+            ImmutableList.<String>builder()
+                .add("-progress", progress.toString())
+                .addAll(args)
+                .build(),
+        listener,
+        executor);
+  }
+
+  /** Makes the arguments to run ffmpeg with, given where it should write its progress. */
+  private interface ProgressArgs {
+    List<String> withProgress(URI progress);
+  }
+
+  /**
+   * Runs ffmpeg without blocking, reporting its progress on stdout if it can, otherwise through a
+   * progress parser.
+   */
+  private CompletableFuture<Void> runAsync(
+      boolean writesToStdout,
+      ProgressArgs progressArgs,
+      ProgressListener listener,
+      Executor executor) {
+    try {
+      checkIfFFmpeg();
+    } catch (IOException | RuntimeException e) {
+      return failedFuture(e);
+    }
+
+    final ResourceSampler sampler = newResourceSampler(listener);
+    final TailAppendable tail = newErrorTail();
+    final ProcessMonitor.ExitHandler<Void> onExit =
+        p -> {
+          // Stop sampling now the output has ended, as run() does
+          if (sampler != null) {
+            sampler.stop();
+          }
+          throwOnErrorWithTail(p, tail);
+          return null;
+        };
+
+    if (progressOnStdout && !writesToStdout) {
+      // -nostats stops the interactive stats line being mixed in, if stderr can't be kept apart
+      final List<String> args =
+          ImmutableList.<String>builder()
+              .add("-nostats")
+              .addAll(progressArgs.withProgress(PROGRESS_STDOUT))
+              .build();
+
+      return startAsync(
+          () -> startSampling(runFunc.runWithSeparateErrorStream(path(args)), sampler),
+          progressSink(new ByteProgressParser(listener)),
+          tail,
+          onExit,
+          () -> stopSampling(sampler),
+          executor);
+    }
+
+    final ProgressParser progressParser;
+    try {
+      progressParser = createProgressParser(listener);
+    } catch (IOException | RuntimeException e) {
+      return failedFuture(e);
+    }
+
+    return startAsync(
+        () -> {
+          progressParser.start();
+          List<String> args = progressArgs.withProgress(progressParser.getUri());
+          return startSampling(runFunc.run(path(args)), sampler);
+        },
+        outputSink(tail),
+        tail,
+        onExit,
+        () -> {
+          stopSampling(sampler);
+          progressParser.close();
+        },
+        executor);
+  }
+
+  /**
+   * Runs the binary (ffmpeg) with the supplied args, without blocking the caller, once it has
+   * checked the binary is ffmpeg.
+   *
+   * @param args The arguments to pass to ffmpeg.
+   * @param executor The executor used to read the last of the output, and complete the future.
+   * @return A future completed once ffmpeg has finished. Cancelling it destroys ffmpeg.
+   */
+  @Override
+  public CompletableFuture<Void> runAsync(List<String> args, Executor executor) {
+    try {
+      checkIfFFmpeg();
+    } catch (IOException | RuntimeException e) {
+      return failedFuture(e);
+    }
+    return super.runAsync(args, executor);
+  }
+
+  private static Process startSampling(Process p, @Nullable ResourceSampler sampler) {
+    if (sampler != null) {
+      sampler.start(p);
+    }
+    return p;
+  }
+
+  private static void stopSampling(@Nullable ResourceSampler sampler) {
+    if (sampler != null) {
+      sampler.stop();
+    }
+  }
+
+  /** Returns a sink parsing the progress ffmpeg writes to stdout. */
+  private static ProcessMonitor.Sink progressSink(final ByteProgressParser parser) {
+    return new ProcessMonitor.Sink() {
+      @Override
+      public void write(byte[] b, int off, int len) {
+        parser.process(b, off, len);
+      }
+
+      @Override
+      public void finish() {
+        parser.finish();
+      }
+    };
+  }
+
+  /**
+   * Runs ffmpeg, returning the frames it decodes as they are decoded. See {@link
+   * #frames(FFmpegBuilder, int, FrameBufferPool)}.
+   *
+   * @param builder The builder describing the input, and optionally the Nut output. An output may
+   *     be added to it.
+   * @return The frames, which must be closed.
+   * @throws IOException If ffmpeg could not be started.
+   */
+  public FFmpegFrameStream frames(FFmpegBuilder builder) throws IOException {
+    return frames(builder, FFmpegFrameStream.DEFAULT_QUEUE_SIZE, null);
+  }
+
+  /**
+   * Runs ffmpeg, writing Nut to stdout, and demuxes it on another thread, returning the frames as
+   * they are decoded. At most queueSize frames are demuxed ahead of the caller, after which ffmpeg
+   * waits for the caller.
+   *
+   * <p>If the builder has no outputs, raw video and 16 bit PCM audio is written to stdout, and that
+   * output is added to the builder, so reusing it runs the same command. Otherwise its only output
+   * must write the "nut" format to stdout, which allows the pixel format, size etc to be chosen.
+   *
+   * @param builder The builder describing the input, and optionally the Nut output. An output may
+   *     be added to it.
+   * @param queueSize The number of frames to demux ahead of the caller.
+   * @param pool The pool to read the frames' data into, or null to allocate each.
+   * @return The frames, which must be closed.
+   * @throws IOException If ffmpeg could not be started.
+   */
+  public FFmpegFrameStream frames(
+      FFmpegBuilder builder, int queueSize, @Nullable FrameBufferPool pool) throws IOException {
+    checkNotNull(builder);
+    checkArgument(queueSize > 0, "queueSize must be positive");
+
+    List<AbstractFFmpegOutputBuilder<?>> outputs = builder.getOutputs();
+    if (outputs.isEmpty()) {
+      builder
+          .addStdoutOutput()
+          .setFormat(NUT)
+          .setVideoCodec("rawvideo")
+          .setAudioCodec("pcm_s16le")
+          .done();
+    } else {
+      checkArgument(
+          outputs.size() == 1 && builder.writesToStdout() && NUT.equals(outputs.get(0).format),
+          "builder must have no outputs, or a single nut output to stdout");
+    }
+
+    checkIfFFmpeg();
+    long start = System.nanoTime();
+    Process p = runFunc.runWithSeparateErrorStream(path(builder.build()));
+    return FFmpegFrameStream.start(this, p, queueSize, pool, start);
+  }
+
+  /**
+   * Runs ffmpeg, passing each stream and frame it decodes to the listener, on the calling thread,
+   * until ffmpeg finishes. ffmpeg's output is still demuxed on another thread, as {@link
+   * #frames(FFmpegBuilder)}.
+   *
+   * @param builder The builder describing the input, and optionally the Nut output. An output may
+   *     be added to it.
+   * @param listener The listener.
+   * @throws IOException If ffmpeg could not be run, or failed.
+   */
+  public void readFrames(FFmpegBuilder builder, NutReaderListener listener) throws IOException {
+    checkNotNull(listener);
+    try (FFmpegFrameStream frames = frames(builder)) {
+      frames.read(listener);
+    }
+  }
+
+  /**
+   * Runs ffmpeg reading Nut from stdin, returning a writer to push raw frames into it. Writes block
+   * while ffmpeg's input is full, so frames are produced no faster than ffmpeg encodes them.
+   *
+   * <p>If the builder has no stdin input, one is added to the builder after any other inputs, so
+   * reusing it runs the same command. Otherwise its stdin input must have the "nut" format.
+   *
+   * <pre>
+   * <code>FFmpegBuilder builder = new FFmpegBuilder()
+   *   .addOutput("output.mp4")
+   *   .setVideoCodec("libx264")
+   *   .done();
+   *
+   * try (FFmpegFrameWriter writer = ffmpeg.frameWriter(builder)) {
+   *   int video = writer.addVideoStream("RGBA", 640, 480, Fraction.getFraction(1, 25));
+   *   ...
+   * }</code>
+   * </pre>
+   *
+   * @param builder The builder describing the outputs, and optionally the Nut input. An input may
+   *     be added to it.
+   * @return The writer, which must be closed to finish the encode.
+   * @throws IOException If ffmpeg could not be started.
+   */
+  public FFmpegFrameWriter frameWriter(FFmpegBuilder builder) throws IOException {
+    checkNotNull(builder);
+
+    AbstractFFmpegInputBuilder<?> input = builder.getStdinInput();
+    if (input == null) {
+      builder.addStdinInput().setFormat(NUT).done();
+    } else {
+      checkArgument(NUT.equals(input.format), "the stdin input must have the nut format");
+    }
+
+    checkIfFFmpeg();
+    long start = System.nanoTime();
+    Process p = runFunc.runWithSeparateErrorStream(path(builder.build()));
+    return new FFmpegFrameWriter(this, p, start);
+  }
+
   @CheckReturnValue
   public FFmpegBuilder builder() {
     return new FFmpegBuilder();
@@ -3,9 +3,14 @@ package net.bramp.ffmpeg;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import net.bramp.ffmpeg.builder.FFmpegBuilder;
+import net.bramp.ffmpeg.builder.FFmpegCommandTemplate;
 import net.bramp.ffmpeg.job.FFmpegJob;
+import net.bramp.ffmpeg.job.SegmentedFFmpegJob;
 import net.bramp.ffmpeg.job.SinglePassFFmpegJob;
+import net.bramp.ffmpeg.job.TemplateFFmpegJob;
 import net.bramp.ffmpeg.job.TwoPassFFmpegJob;
 import net.bramp.ffmpeg.progress.ProgressListener;
 
@@ -35,6 +40,23 @@ public class FFmpegExecutor {
     return new SinglePassFFmpegJob(ffmpeg, builder, listener);
   }
 
+  /**
+   * Creates a job from a template, filling in its placeholders now so missing values are caught
+   * early.
+   *
+   * @param template The compiled template, see {@link FFmpegBuilder#compile()}
+   * @param values The value of each placeholder, keyed by name.
+   * @return A new FFmpegJob
+   */
+  public FFmpegJob createJob(FFmpegCommandTemplate template, Map<String, String> values) {
+    return new TemplateFFmpegJob(ffmpeg, template, template.instantiate(values));
+  }
+
+  public FFmpegJob createJob(
+      FFmpegCommandTemplate template, Map<String, String> values, ProgressListener listener) {
+    return new TemplateFFmpegJob(ffmpeg, template, template.instantiate(values), listener);
+  }
+
   /**
    * Creates a two pass job, which will execute FFmpeg twice to produce a better quality output.
    * More info: https://trac.ffmpeg.org/wiki/x264EncodingGuide#twopass
@@ -49,4 +71,29 @@ public class FFmpegExecutor {
   public FFmpegJob createTwoPassJob(FFmpegBuilder builder, ProgressListener listener) {
     return new TwoPassFFmpegJob(ffmpeg, builder, listener);
   }
+
+  /**
+   * Creates a job which splits the input at keyframes, and transcodes the segments concurrently,
+   * one per CPU, before joining them into the output.
+   *
+   * @param builder The FFmpegBuilder, with a single input and output
+   * @return A new segmented FFmpegJob
+   */
+  public FFmpegJob createSegmentedJob(FFmpegBuilder builder) {
+    return new SegmentedFFmpegJob(ffmpeg, ffprobe, builder);
+  }
+
+  public FFmpegJob createSegmentedJob(FFmpegBuilder builder, ProgressListener listener) {
+    return new SegmentedFFmpegJob(ffmpeg, ffprobe, builder, listener);
+  }
+
+  public FFmpegJob createSegmentedJob(
+      FFmpegBuilder builder,
+      int parallelism,
+      long segmentDuration,
+      TimeUnit unit,
+      ProgressListener listener) {
+    return new SegmentedFFmpegJob(
+        ffmpeg, ffprobe, builder, parallelism, segmentDuration, unit, listener);
+  }
 }
@@ -0,0 +1,287 @@
+package net.bramp.ffmpeg;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.Channels;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+import net.bramp.ffmpeg.io.TailAppendable;
+import net.bramp.ffmpeg.nut.Frame;
+import net.bramp.ffmpeg.nut.FrameBufferPool;
+import net.bramp.ffmpeg.nut.NutReader;
+import net.bramp.ffmpeg.nut.NutReaderListener;
+import net.bramp.ffmpeg.nut.Stream;
+
+/**
+ * The decoded frames of a running ffmpeg, which writes them to stdout as Nut. See {@link
+ * FFmpeg#frames(net.bramp.ffmpeg.builder.FFmpegBuilder)}.
+ *
+ * <p>ffmpeg's output is demuxed on its own thread, which hands the frames over through a bounded
+ * queue. So the caller's work on one frame overlaps with ffmpeg decoding the next ones, and once
+ * the queue is full, ffmpeg is blocked until the caller catches up.
+ *
+ * <pre>
+ * <code>try (FFmpegFrameStream frames = ffmpeg.frames(builder)) {
+ *   Frame frame;
+ *   while ((frame = frames.readFrame()) != null) {
+ *     ...
+ *   }
+ * }</code>
+ * </pre>
+ *
+ * <p>Closing the stream before the end kills ffmpeg. Only one thread should read from a stream.
+ */
+public class FFmpegFrameStream implements Closeable {
+
+  /** Number of frames demuxed ahead of the caller, by default */
+  public static final int DEFAULT_QUEUE_SIZE = 8;
+
+  /** Queued once ffmpeg has exited successfully, after the last frame */
+  private static final Object END = new Object();
+
+  final Process process;
+
+  /** Streams, frames, then either END or the Throwable the demux failed with */
+  final BlockingQueue<Object> queue;
+
+  final List<Stream> streams = new CopyOnWriteArrayList<>();
+
+  Future<?> demux;
+
+  volatile boolean closed = false;
+
+  /** END or the failure, once the consumer has taken it */
+  @Nullable Object end = null;
+
+  FFmpegFrameStream(Process process, int queueSize) {
+    checkArgument(queueSize > 0, "queueSize must be positive");
+    this.process = checkNotNull(process);
+    this.queue = new ArrayBlockingQueue<>(queueSize);
+  }
+
+  /**
+   * Starts demuxing the process's stdout.
+   *
+   * @param ffmpeg The ffmpeg that started the process, used to report its errors.
+   * @param process The process, writing Nut to stdout.
+   * @param queueSize The number of frames to demux ahead of the caller.
+   * @param pool The pool to read the frames' data into, or null to allocate.
+   * @param start When the process was started, from {@link System#nanoTime()}.
+   * @return The stream of frames.
+   */
+  static FFmpegFrameStream start(
+      FFcommon ffmpeg,
+      Process process,
+      int queueSize,
+      @Nullable FrameBufferPool pool,
+      long start) {
+    FFmpegFrameStream stream = new FFmpegFrameStream(process, queueSize);
+
+    TailAppendable tail = ffmpeg.newErrorTail();
+    Future<?> errorPump = ffmpeg.pumpErrorStream(process, tail);
+    stream.demux =
+        FFcommon.PUMP_EXECUTOR.submit(() -> stream.demux(ffmpeg, tail, errorPump, pool, start));
+    return stream;
+  }
+
+  private void demux(
+      FFcommon ffmpeg,
+      @Nullable TailAppendable tail,
+      @Nullable Future<?> errorPump,
+      @Nullable FrameBufferPool pool,
+      long start) {
+    Object result = END;
+    try {
+      NutReader reader =
+          new NutReader(
+              Channels.newChannel(process.getInputStream()),
+              new NutReaderListener() {
+                @Override
+                public void stream(Stream stream) {
+                  streams.add(stream);
+                  put(stream);
+                }
+
+                @Override
+                public void frame(Frame frame) {
+                  put(frame);
+                }
+              });
+      reader.setFrameBufferPool(pool);
+
+      try {
+        reader.read();
+      } catch (IOException e) {
+        // Output that is cut short, or garbled, is most likely because ffmpeg failed
+        if (FFcommon.exitedWithError(process)) {
+          try {
+            awaitPump(errorPump);
+            ffmpeg.throwOnErrorWithTail(process, tail);
+          } catch (IOException failed) {
+            failed.addSuppressed(e);
+            throw failed;
+          }
+        }
+        throw e;
+      }
+
+      awaitPump(errorPump);
+      ffmpeg.throwOnErrorWithTail(process, tail);
+
+    } catch (CancellationException e) {
+      return; // Closed by the consumer
+
+    } catch (Throwable t) {
+      result = t;
+
+    } finally {
+      process.destroy();
+      FFcommon.RUN_NANOS.record(System.nanoTime() - start);
+
+      if (closed) {
+        drain();
+      }
+    }
+
+    try {
+      put(result);
+    } catch (CancellationException e) {
+      // Closed while waiting for the consumer
+    }
+  }
+
+  private static void awaitPump(@Nullable Future<?> errorPump) throws IOException {
+    if (errorPump != null) {
+      FFcommon.awaitPump(errorPump);
+    }
+  }
+
+  /** Queues the item, waiting for space, or throws CancellationException if closed. */
+  private void put(Object item) {
+    try {
+      if (!closed) {
+        queue.put(item);
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    if (item instanceof Frame) {
+      ((Frame) item).release();
+    }
+    throw new CancellationException();
+  }
+
+  /** Releases the frames left in the queue. */
+  private void drain() {
+    Object item;
+    while ((item = queue.poll()) != null) {
+      if (item instanceof Frame) {
+        ((Frame) item).release();
+      }
+    }
+  }
+
+  /** Takes the next item, throwing the demux's failure, or returning END for ever once done. */
+  private Object take() throws IOException {
+    checkState(!closed, "stream is closed");
+
+    if (end == null) {
+      Object item;
+      try {
+        item = queue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a frame");
+      }
+
+      if (item != END && !(item instanceof Throwable)) {
+        return item;
+      }
+      end = item;
+    }
+
+    if (end instanceof Throwable) {
+      Throwable t = (Throwable) end;
+      Throwables.throwIfInstanceOf(t, IOException.class);
+      Throwables.throwIfUnchecked(t);
+      throw new IOException(t);
+    }
+    return end;
+  }
+
+  /**
+   * Reads the next frame, waiting for ffmpeg to decode it if needed.
+   *
+   * <p>If the frames are read into a {@link FrameBufferPool}, each should be {@link
+   * Frame#release() released} once used.
+   *
+   * @return The frame, or null once ffmpeg has finished successfully.
+   * @throws IOException If ffmpeg failed, or its output could not be read.
+   */
+  @Nullable
+  public Frame readFrame() throws IOException {
+    Object item;
+    while ((item = take()) != END) {
+      if (item instanceof Frame) {
+        return (Frame) item;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reads every remaining stream and frame, passing them to the listener on the calling thread, and
+   * returns once ffmpeg has finished successfully.
+   *
+   * @param listener The listener.
+   * @throws IOException If ffmpeg failed, or its output could not be read.
+   */
+  public void read(NutReaderListener listener) throws IOException {
+    checkNotNull(listener);
+
+    Object item;
+    while ((item = take()) != END) {
+      if (item instanceof Frame) {
+        listener.frame((Frame) item);
+      } else {
+        listener.stream((Stream) item);
+      }
+    }
+  }
+
+  /**
+   * Returns the streams found so far. All streams are found before the first frame is read.
+   *
+   * @return The streams, in the order found.
+   */
+  public List<Stream> getStreams() {
+    return ImmutableList.copyOf(streams);
+  }
+
+  /** Stops ffmpeg, if it is still running, and releases any frames not yet read. */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    demux.cancel(true);
+    process.destroy();
+    drain();
+  }
+}
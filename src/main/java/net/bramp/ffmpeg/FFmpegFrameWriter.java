@@ -0,0 +1,193 @@
+package net.bramp.ffmpeg;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+import net.bramp.ffmpeg.io.TailAppendable;
+import net.bramp.ffmpeg.nut.NutWriter;
+import org.apache.commons.lang3.math.Fraction;
+
+/**
+ * A running ffmpeg, reading Nut from stdin, that frames are written to. See {@link
+ * FFmpeg#frameWriter(net.bramp.ffmpeg.builder.FFmpegBuilder)}.
+ *
+ * <p>Frames are muxed straight into ffmpeg's stdin, so once the pipe is full, writing blocks until
+ * ffmpeg has encoded enough to catch up. Closing the writer ends the input, and waits for ffmpeg to
+ * finish.
+ *
+ * <pre>
+ * <code>try (FFmpegFrameWriter writer = ffmpeg.frameWriter(builder)) {
+ *   int video = writer.addVideoStream("RGBA", 640, 480, Fraction.getFraction(1, 25));
+ *   for (int i = 0; i &lt; frames; i++) {
+ *     writer.writeFrame(video, i, render(i));
+ *   }
+ * }</code>
+ * </pre>
+ *
+ * <p>Only one thread should write to a writer.
+ */
+public class FFmpegFrameWriter implements Flushable, Closeable {
+
+  final FFcommon ffmpeg;
+  final Process process;
+  final NutWriter writer;
+
+  @Nullable final TailAppendable tail;
+  @Nullable final Future<?> outputPump;
+  @Nullable final Future<?> errorPump;
+
+  /** When the process was started, from {@link System#nanoTime()} */
+  final long start;
+
+  boolean closed = false;
+
+  FFmpegFrameWriter(FFcommon ffmpeg, Process process, long start) {
+    this.ffmpeg = checkNotNull(ffmpeg);
+    this.process = checkNotNull(process);
+    this.writer = new NutWriter(checkNotNull(process.getOutputStream(), "process has no stdin"));
+    this.start = start;
+
+    this.tail = ffmpeg.newErrorTail();
+    this.outputPump = ffmpeg.pumpOutputStream(process, tail);
+    this.errorPump = ffmpeg.pumpErrorStream(process, tail);
+  }
+
+  /**
+   * Adds a raw video stream. See {@link NutWriter#addVideoStream(String, int, int, Fraction)}.
+   *
+   * @param fourcc The pixel format's fourcc, e.g "RGBA"
+   * @param width The width in pixels
+   * @param height The height in pixels
+   * @param timeBase The unit of the frames' timestamps, e.g. 1/25 for 25 frames per second
+   * @return The stream's id
+   */
+  public int addVideoStream(String fourcc, int width, int height, Fraction timeBase) {
+    return writer.addVideoStream(fourcc, width, height, timeBase);
+  }
+
+  /**
+   * Adds a raw audio stream. See {@link NutWriter#addAudioStream(String, int, int, Fraction)}.
+   *
+   * @param fourcc The sample format's fourcc
+   * @param sampleRate The number of samples per second
+   * @param channels The number of channels, interleaved
+   * @param timeBase The unit of the frames' timestamps, usually 1/sampleRate
+   * @return The stream's id
+   */
+  public int addAudioStream(String fourcc, int sampleRate, int channels, Fraction timeBase) {
+    return writer.addAudioStream(fourcc, sampleRate, channels, timeBase);
+  }
+
+  /**
+   * Writes a frame, or a buffer of audio samples, waiting for ffmpeg if its input is full.
+   *
+   * @param streamId The stream the frame is in
+   * @param pts The frame's timestamp, in the stream's time base
+   * @param data The frame's data, from its position to its limit, which is left unchanged
+   * @param keyFrame If the frame can be decoded without earlier frames, as all raw frames can
+   * @throws IOException If ffmpeg failed, or its input could not be written.
+   */
+  public void writeFrame(int streamId, long pts, ByteBuffer data, boolean keyFrame)
+      throws IOException {
+    checkState(!closed, "writer is closed");
+    try {
+      writer.writeFrame(streamId, pts, data, keyFrame);
+    } catch (IOException e) {
+      throw failure(e);
+    }
+  }
+
+  /**
+   * Writes a key frame, waiting for ffmpeg if its input is full.
+   *
+   * @param streamId The stream the frame is in
+   * @param pts The frame's timestamp, in the stream's time base
+   * @param data The frame's data
+   * @throws IOException If ffmpeg failed, or its input could not be written.
+   */
+  public void writeFrame(int streamId, long pts, byte[] data) throws IOException {
+    writeFrame(streamId, pts, ByteBuffer.wrap(data), true);
+  }
+
+  /**
+   * Returns the Nut muxer writing to ffmpeg, e.g. to change its settings before the first frame.
+   *
+   * @return The muxer.
+   */
+  public NutWriter getWriter() {
+    return writer;
+  }
+
+  /**
+   * Passes the frames written so far to ffmpeg.
+   *
+   * @throws IOException If ffmpeg failed, or its input could not be written.
+   */
+  @Override
+  public void flush() throws IOException {
+    checkState(!closed, "writer is closed");
+    try {
+      writer.flush();
+    } catch (IOException e) {
+      throw failure(e);
+    }
+  }
+
+  /**
+   * Returns the exception to throw for a failed write. A broken pipe is most likely because ffmpeg
+   * failed, in which case ffmpeg's error is more useful.
+   */
+  private IOException failure(IOException e) {
+    if (FFcommon.exitedWithError(process)) {
+      try {
+        awaitPump(errorPump);
+        ffmpeg.throwOnErrorWithTail(process, tail);
+      } catch (IOException failed) {
+        failed.addSuppressed(e);
+        return failed;
+      }
+    }
+    return e;
+  }
+
+  private static void awaitPump(@Nullable Future<?> pump) throws IOException {
+    if (pump != null) {
+      FFcommon.awaitPump(pump);
+    }
+  }
+
+  /**
+   * Ends ffmpeg's input, and waits for it to finish encoding.
+   *
+   * @throws IOException If ffmpeg failed, or its input could not be written.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    try {
+      try {
+        writer.close();
+      } catch (IOException e) {
+        throw failure(e);
+      }
+
+      awaitPump(outputPump);
+      awaitPump(errorPump);
+      ffmpeg.throwOnErrorWithTail(process, tail);
+
+    } finally {
+      process.destroy();
+      FFcommon.RUN_NANOS.record(System.nanoTime() - start);
+    }
+  }
+}
@@ -4,16 +4,26 @@ import com.google.common.base.MoreObjects;
 import com.google.gson.Gson;
 import net.bramp.ffmpeg.builder.FFprobeBuilder;
 import net.bramp.ffmpeg.io.LoggingFilterReader;
+import net.bramp.ffmpeg.metrics.Histogram;
+import net.bramp.ffmpeg.metrics.Metrics;
+import net.bramp.ffmpeg.probe.FFmpegColumnarProbeResult;
 import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import net.bramp.ffmpeg.probe.ProbeListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -31,8 +41,10 @@ public class FFprobe extends FFcommon {
 
   static final Gson gson = FFmpegUtils.getGson();
 
+  static final Histogram PARSE_NANOS = Metrics.histogram("ffprobe.parse.nanos");
+
   public FFprobe() throws IOException {
-    this(DEFAULT_PATH, new RunProcessFunction());
+    this(DEFAULT_PATH, new RunProcessFunction(), CapabilityRegistry.getDefault());
   }
 
   public FFprobe(@Nonnull ProcessFunction runFunction) throws IOException {
@@ -40,13 +52,25 @@ public class FFprobe extends FFcommon {
   }
 
   public FFprobe(@Nonnull String path) throws IOException {
-    this(path, new RunProcessFunction());
+    this(path, new RunProcessFunction(), CapabilityRegistry.getDefault());
   }
 
   public FFprobe(@Nonnull String path, @Nonnull ProcessFunction runFunction) {
     super(path, runFunction);
   }
 
+  /**
+   * @param path The path to ffprobe.
+   * @param runFunction The function used to run ffprobe.
+   * @param registry Shares the version with other instances, or null.
+   */
+  public FFprobe(
+      @Nonnull String path,
+      @Nonnull ProcessFunction runFunction,
+      @Nullable CapabilityRegistry registry) {
+    super(path, runFunction, registry);
+  }
+
   public FFmpegProbeResult probe(String mediaPath) throws IOException {
     return probe(mediaPath, null);
   }
@@ -100,26 +124,143 @@ public class FFprobe extends FFcommon {
 
     Process p = runFunc.run(path(args));
     try {
-      Reader reader = wrapInReader(p);
-      if (LOG.isDebugEnabled()) {
-        reader = new LoggingFilterReader(reader, LOG);
-      }
+      return parse(p, wrapInReader(p));
+    } finally {
+      p.destroy();
+    }
+  }
+
+  /** Turns ffprobe's JSON output into a result. */
+  private interface ResultParser {
+
+    @Nullable
+    FFmpegProbeResult parse(Reader reader) throws IOException;
+  }
+
+  /** Parses ffprobe's output, and then checks it succeeded. */
+  private FFmpegProbeResult parse(Process p, Reader reader) throws IOException {
+    return parse(p, reader, r -> gson.fromJson(r, FFmpegProbeResult.class));
+  }
+
+  /** Parses ffprobe's output with the parser, and then checks it succeeded. */
+  private FFmpegProbeResult parse(Process p, Reader reader, ResultParser parser)
+      throws IOException {
+    if (LOG.isDebugEnabled()) {
+      reader = new LoggingFilterReader(reader, LOG);
+    }
 
-      FFmpegProbeResult result = gson.fromJson(reader, FFmpegProbeResult.class);
+    long start = System.nanoTime();
+    FFmpegProbeResult result = parser.parse(reader);
+    PARSE_NANOS.record(System.nanoTime() - start);
 
-      throwOnError(p, result);
+    throwOnError(p, result);
 
-      if (result == null) {
-        throw new IllegalStateException("Gson returned null, which shouldn't happen :(");
-      }
+    if (result == null) {
+      throw new IllegalStateException("Gson returned null, which shouldn't happen :(");
+    }
 
-      return result;
+    return result;
+  }
+
+  /**
+   * Probes with the builder's arguments, streaming each packet and frame to the listener as it is
+   * parsed, instead of collecting them all in the result. Memory use is therefore independent of
+   * the number of packets and frames, and the listener is called while ffprobe is still running.
+   *
+   * @param builder The builder, typically with {@link FFprobeBuilder#setShowFrames(boolean)} or
+   *     {@link FFprobeBuilder#setShowPackets(boolean)} enabled.
+   * @param listener Receives each packet and frame.
+   * @return The result, containing everything except the packets and frames.
+   * @throws IOException If there is a problem executing ffprobe or parsing its output.
+   */
+  public FFmpegProbeResult probe(FFprobeBuilder builder, ProbeListener listener)
+      throws IOException {
+    checkNotNull(builder);
+    return probe(builder.build(), listener);
+  }
+
+  /**
+   * Probes with the arguments, streaming each packet and frame to the listener as it is parsed. See
+   * {@link #probe(FFprobeBuilder, ProbeListener)}.
+   *
+   * @param args The arguments to pass to ffprobe.
+   * @param listener Receives each packet and frame.
+   * @return The result, containing everything except the packets and frames.
+   * @throws IOException If there is a problem executing ffprobe or parsing its output.
+   */
+  public FFmpegProbeResult probe(List<String> args, ProbeListener listener) throws IOException {
+    checkNotNull(listener);
+    checkIfFFprobe();
 
+    Process p = runFunc.run(path(args));
+    try {
+      return parse(p, wrapInReader(p), new StreamingProbeParser(gson, listener)::parse);
     } finally {
       p.destroy();
     }
   }
 
+  /**
+   * Probes with the builder's arguments, collecting the packets and frames into compact per-stream
+   * columns instead of individual objects.
+   *
+   * @param builder The builder, typically with frames and/or packets enabled.
+   * @return The columnar result.
+   * @throws IOException If there is a problem executing ffprobe or parsing its output.
+   */
+  public FFmpegColumnarProbeResult probeColumnar(FFprobeBuilder builder) throws IOException {
+    FFmpegColumnarProbeResult columnar = new FFmpegColumnarProbeResult();
+    columnar.setResult(probe(builder, columnar));
+    columnar.trimToSize();
+    return columnar;
+  }
+
+  public CompletableFuture<FFmpegProbeResult> probeAsync(String mediaPath) {
+    return probeAsync(this.builder().setInput(mediaPath));
+  }
+
+  public CompletableFuture<FFmpegProbeResult> probeAsync(FFprobeBuilder builder) {
+    checkNotNull(builder);
+    return probeAsync(builder.build());
+  }
+
+  public CompletableFuture<FFmpegProbeResult> probeAsync(List<String> args) {
+    return probeAsync(args, ASYNC_EXECUTOR);
+  }
+
+  /**
+   * Probes without blocking the caller, or any other thread, while ffprobe runs. Its output is
+   * collected as it is written, and parsed once it exits.
+   *
+   * @param args The arguments to pass to ffprobe.
+   * @param executor The executor used to parse the output, and complete the future.
+   * @return A future completed with the result, or completed exceptionally with the {@link
+   *     IOException} that {@link #probe(List)} would throw. Cancelling it destroys ffprobe.
+   */
+  public CompletableFuture<FFmpegProbeResult> probeAsync(List<String> args, Executor executor) {
+    checkNotNull(args);
+    checkNotNull(executor);
+
+    try {
+      checkIfFFprobe();
+    } catch (IOException | RuntimeException e) {
+      return failedFuture(e);
+    }
+
+    final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+    return startAsync(
+        () -> runFunc.run(path(args)),
+        stdout::write,
+        null,
+        p ->
+            parse(
+                p,
+                new InputStreamReader(
+                    new ByteArrayInputStream(stdout.toByteArray()), StandardCharsets.UTF_8)),
+        null,
+        executor);
+  }
+
   @CheckReturnValue
   public FFprobeBuilder builder() {
     return new FFprobeBuilder();
@@ -0,0 +1,248 @@
+package net.bramp.ffmpeg;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
+import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the results of {@link FFprobe#probe(String)}, so probing the same file again does not
+ * spawn a new ffprobe process.
+ *
+ * <p>Local files are keyed on their absolute path, size and last modified time, so a file that
+ * changes is probed again. Other inputs (such as URLs) have no identity we can check cheaply, so
+ * they are only cached if {@link #setCacheUrls(boolean)} is enabled, and are then keyed on the
+ * URL alone.
+ *
+ * <p>Results are held in memory, evicting the least recently used once the total size of the
+ * cached results (measured in characters of JSON) exceeds the maximum. The size is estimated from
+ * the number of streams, chapters, packets and frames, unless the result is also stored on disk.
+ * If a directory is given, results are also stored there, and survive restarts. Nothing is ever
+ * deleted from the directory, so it grows with every media probed, and should be cleaned up
+ * externally if that is a concern.
+ *
+ * <p>The same FFmpegProbeResult instance is returned to every caller, so it must not be modified.
+ *
+ * @author bramp
+ */
+public class ProbeCache {
+
+  static final Logger LOG = LoggerFactory.getLogger(ProbeCache.class);
+
+  /** Default maximum size of the in memory cache, 32 million characters of JSON. */
+  public static final long DEFAULT_MAXIMUM_SIZE = 32 * 1024 * 1024;
+
+  static final String FILE_SUFFIX = ".json";
+
+  // Roughly how many characters of JSON each part of a result takes, in typical ffprobe output
+  static final int FORMAT_WEIGHT = 500;
+  static final int STREAM_WEIGHT = 1000;
+  static final int CHAPTER_WEIGHT = 200;
+  static final int PACKET_WEIGHT = 250;
+  static final int FRAME_WEIGHT = 450;
+
+  static final Gson gson = FFmpegUtils.getGson();
+
+  final FFprobe ffprobe;
+  final Cache<String, Entry> cache;
+
+  @Nullable final Path directory;
+
+  boolean cacheUrls = false;
+
+  public ProbeCache(FFprobe ffprobe) {
+    this(ffprobe, DEFAULT_MAXIMUM_SIZE, null);
+  }
+
+  /**
+   * Creates a cache of probe results.
+   *
+   * @param ffprobe The ffprobe used to probe files not in the cache.
+   * @param maximumSize The maximum size of the in memory cache, in characters of JSON.
+   * @param directory Optional directory to store results in, so they survive restarts. Results are
+   *     never deleted from it.
+   */
+  public ProbeCache(FFprobe ffprobe, long maximumSize, @Nullable Path directory) {
+    checkArgument(maximumSize >= 0, "maximumSize must be positive");
+
+    this.ffprobe = checkNotNull(ffprobe);
+    this.directory = directory;
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maximumSize)
+            .weigher((String key, Entry entry) -> entry.weight)
+            .build();
+  }
+
+  /**
+   * Enables caching of inputs which are not local files, such as URLs. As there is no cheap way to
+   * tell if the remote content changed, these are keyed only on the URL.
+   *
+   * @param cacheUrls true to cache non-file inputs.
+   * @return this
+   */
+  public ProbeCache setCacheUrls(boolean cacheUrls) {
+    this.cacheUrls = cacheUrls;
+    return this;
+  }
+
+  public FFmpegProbeResult probe(String mediaPath) throws IOException {
+    return probe(mediaPath, null);
+  }
+
+  /**
+   * Returns the probe result for this media, probing it only if it has not been seen before.
+   *
+   * @param mediaPath The path or URL of the media.
+   * @param userAgent Optional user agent to use if the media needs to be fetched.
+   * @return The probe result, which must not be modified.
+   * @throws IOException If the media could not be probed.
+   */
+  public FFmpegProbeResult probe(String mediaPath, @Nullable String userAgent)
+      throws IOException {
+    checkNotNull(mediaPath);
+
+    final String key = key(mediaPath, userAgent);
+    if (key == null) {
+      return ffprobe.probe(mediaPath, userAgent);
+    }
+
+    try {
+      return cache.get(key, () -> load(key, mediaPath, userAgent)).result;
+
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Returns the key identifying this media, or null if it should not be cached.
+   *
+   * @param mediaPath The path or URL of the media.
+   * @param userAgent Optional user agent.
+   * @return The key, or null.
+   */
+  @CheckReturnValue
+  @Nullable
+  String key(String mediaPath, @Nullable String userAgent) {
+    final String prefix = ffprobe.getPath() + '\0' + (userAgent == null ? "" : userAgent) + '\0';
+
+    if (!mediaPath.contains("://")) {
+      try {
+        Path path = Paths.get(mediaPath).toAbsolutePath();
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        if (attrs.isRegularFile()) {
+          return prefix + path + '\0' + attrs.size() + '\0' + attrs.lastModifiedTime().toMillis();
+        }
+      } catch (IOException | RuntimeException e) {
+        // Not a local file we can stat, so fall through.
+      }
+    }
+
+    return cacheUrls ? prefix + mediaPath : null;
+  }
+
+  Entry load(String key, String mediaPath, @Nullable String userAgent) throws IOException {
+    final Path file = directory == null ? null : file(key);
+
+    if (file != null && Files.isRegularFile(file)) {
+      try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        FFmpegProbeResult result = gson.fromJson(reader, FFmpegProbeResult.class);
+        if (result != null) {
+          return new Entry(result, (int) Math.min(Files.size(file), Integer.MAX_VALUE));
+        }
+      } catch (IOException | JsonParseException e) {
+        LOG.warn("Ignoring unreadable probe cache file {}", file, e);
+      }
+    }
+
+    FFmpegProbeResult result = ffprobe.probe(mediaPath, userAgent);
+    if (file == null) {
+      return new Entry(result, weigh(result));
+    }
+
+    // The JSON is needed anyway, so its exact length is free
+    String json = gson.toJson(result);
+    store(file, json);
+    return new Entry(result, json.length());
+  }
+
+  /** Returns an estimate of the result's size in characters of JSON, without serializing it. */
+  static int weigh(FFmpegProbeResult result) {
+    long weight =
+        FORMAT_WEIGHT
+            + (long) STREAM_WEIGHT * result.getStreams().size()
+            + (long) CHAPTER_WEIGHT * result.getChapters().size()
+            + (long) PACKET_WEIGHT * result.getPackets().size()
+            + (long) FRAME_WEIGHT * result.getFrames().size();
+    return (int) Math.min(weight, Integer.MAX_VALUE);
+  }
+
+  Path file(String key) {
+    checkNotNull(directory);
+    return directory.resolve(
+        Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString() + FILE_SUFFIX);
+  }
+
+  /** Writes the file atomically, so a crash never leaves a partial result behind. */
+  static void store(Path file, String json) {
+    try {
+      Files.createDirectories(file.getParent());
+      Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      try {
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+          writer.write(json);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+    } catch (IOException e) {
+      // The in memory cache still works, so just log this.
+      LOG.warn("Failed to write probe cache file {}", file, e);
+    }
+  }
+
+  /** Number of results held in memory. */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Discards all results held in memory. Results stored on disk are kept. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  static class Entry {
+    final FFmpegProbeResult result;
+    final int weight;
+
+    Entry(FFmpegProbeResult result, int weight) {
+      this.result = checkNotNull(result);
+      this.weight = weight;
+    }
+  }
+}
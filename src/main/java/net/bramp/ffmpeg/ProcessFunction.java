@@ -10,4 +10,16 @@ import java.util.List;
  */
 public interface ProcessFunction {
   Process run(List<String> args) throws IOException;
+
+  /**
+   * Runs a process whose stdout carries data (such as progress), so stderr should be kept
+   * separate. By default this is the same as {@link #run(List)}.
+   *
+   * @param args The arguments, including the binary.
+   * @return The started process.
+   * @throws IOException if the process could not be started.
+   */
+  default Process runWithSeparateErrorStream(List<String> args) throws IOException {
+    return run(args);
+  }
 }
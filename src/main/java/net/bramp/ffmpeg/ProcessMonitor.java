@@ -0,0 +1,300 @@
+package net.bramp.ffmpeg;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Supervises running processes from a small, fixed number of threads, instead of a thread blocked
+ * on each. Java 8 has no {@code Process.onExit()}, so each process is polled: whatever its stdout
+ * and stderr have buffered is read without blocking, and once it has exited, the rest is read and
+ * its future is completed.
+ */
+final class ProcessMonitor {
+
+  /** Number of threads polling processes, by default. Polling never blocks, so few are needed. */
+  static final int DEFAULT_THREADS = 2;
+
+  /** How often each process is polled, by default */
+  static final long DEFAULT_POLL_MILLIS = 20;
+
+  static final ProcessMonitor DEFAULT =
+      new ProcessMonitor(DEFAULT_THREADS, DEFAULT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+
+  static final int BUFFER_SIZE = 8192;
+
+  /** Shared by every process polled on the same thread */
+  private static final ThreadLocal<byte[]> BUFFER =
+      ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+  /** Receives the bytes a process writes to one of its streams. */
+  interface Sink {
+
+    void write(byte[] b, int off, int len) throws IOException;
+
+    /** Called once the stream has ended. */
+    default void finish() throws IOException {}
+  }
+
+  /** Called once the process has exited, and all its output has been read. */
+  interface ExitHandler<T> {
+
+    T exited(Process p) throws Exception;
+  }
+
+  static final Sink DISCARD = (b, off, len) -> {};
+
+  final ScheduledExecutorService scheduler;
+  final long pollNanos;
+
+  ProcessMonitor(int threads, long poll, TimeUnit unit) {
+    checkArgument(threads > 0, "threads must be positive");
+    checkArgument(poll > 0, "poll must be positive");
+
+    this.scheduler =
+        Executors.newScheduledThreadPool(
+            threads,
+            new ThreadFactoryBuilder()
+                .setNameFormat("ffmpeg-process-monitor-%d")
+                .setDaemon(true)
+                .build());
+    this.pollNanos = unit.toNanos(poll);
+  }
+
+  /**
+   * Supervises the process until it exits. Cancelling the returned future destroys the process.
+   *
+   * @param p The process.
+   * @param stdout Receives the process's stdout.
+   * @param stderr Receives the process's stderr.
+   * @param onExit Returns the result, once the process has exited and its output has been read.
+   * @param executor Runs the final read of the output, and onExit.
+   * @return A future completed with the result of onExit, or exceptionally with what it threw.
+   */
+  <T> CompletableFuture<T> watch(
+      Process p, Sink stdout, Sink stderr, ExitHandler<T> onExit, Executor executor) {
+    Watch<T> watch = new Watch<>(p, stdout, stderr, onExit, executor);
+
+    // Only needed for its side effect, the caller sees the outcome through the returned future
+    CompletableFuture<T> unused =
+        watch.future.whenComplete(
+            (result, t) -> {
+              if (watch.future.isCancelled()) {
+                p.destroy();
+              }
+            });
+
+    watch.task = scheduler.scheduleWithFixedDelay(watch, 0, pollNanos, TimeUnit.NANOSECONDS);
+    if (watch.done) {
+      watch.task.cancel(false);
+    }
+    return watch.future;
+  }
+
+  private static final class Watch<T> implements Runnable {
+    final Process process;
+    @Nullable final InputStream stdout;
+    @Nullable final InputStream stderr;
+    final Sink out;
+    final Sink err;
+    final ExitHandler<T> onExit;
+    final Executor executor;
+
+    final CompletableFuture<T> future = new CompletableFuture<>();
+
+    volatile ScheduledFuture<?> task;
+    volatile boolean done = false;
+
+    Watch(Process process, Sink out, Sink err, ExitHandler<T> onExit, Executor executor) {
+      this.process = checkNotNull(process);
+      this.stdout = process.getInputStream();
+      this.stderr = process.getErrorStream();
+      this.out = checkNotNull(out);
+      this.err = checkNotNull(err);
+      this.onExit = checkNotNull(onExit);
+      this.executor = checkNotNull(executor);
+    }
+
+    @Override
+    public void run() {
+      if (done) {
+        return;
+      }
+      if (future.isDone()) {
+        stop(); // Cancelled, and so already destroyed
+        return;
+      }
+
+      try {
+        // Checked first, so anything written before exiting is read below, or by complete()
+        boolean exited = !process.isAlive();
+
+        byte[] buffer = BUFFER.get();
+        drainAvailable(stdout, out, buffer);
+        drainAvailable(stderr, err, buffer);
+
+        if (exited) {
+          stop();
+          executor.execute(this::complete);
+        }
+      } catch (Throwable t) {
+        stop();
+        process.destroy();
+        future.completeExceptionally(t);
+      }
+    }
+
+    private void stop() {
+      done = true;
+      ScheduledFuture<?> task = this.task;
+      if (task != null) {
+        task.cancel(false);
+      }
+    }
+
+    /**
+     * Reads the rest of the output of the exited process, and completes the future. The process is
+     * destroyed first, so its resources are released by the time the future completes.
+     */
+    private void complete() {
+      T result;
+      try {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        drainToEnd(stdout, out, buffer);
+        drainToEnd(stderr, err, buffer);
+
+        result = onExit.exited(process);
+      } catch (Throwable t) {
+        process.destroy();
+        future.completeExceptionally(t);
+        return;
+      }
+
+      process.destroy();
+      future.complete(result);
+    }
+  }
+
+  /** Reads what can be read without blocking. */
+  static void drainAvailable(@Nullable InputStream in, Sink sink, byte[] buffer)
+      throws IOException {
+    if (in == null) {
+      return;
+    }
+
+    int available;
+    while ((available = in.available()) > 0) {
+      int len = in.read(buffer, 0, Math.min(available, buffer.length));
+      if (len < 0) {
+        return;
+      }
+      sink.write(buffer, 0, len);
+    }
+  }
+
+  /** Reads until the end of the stream. */
+  static void drainToEnd(@Nullable InputStream in, Sink sink, byte[] buffer) throws IOException {
+    if (in != null) {
+      int len;
+      while ((len = in.read(buffer)) != -1) {
+        sink.write(buffer, 0, len);
+      }
+    }
+    sink.finish();
+  }
+
+  /**
+   * Returns a sink which decodes the bytes, and appends the characters. A character split across
+   * two writes is held back until its last byte arrives.
+   *
+   * @param out Where to append the characters.
+   * @param charset The charset of the bytes.
+   * @return The sink.
+   */
+  static Sink decodeTo(Appendable out, Charset charset) {
+    checkNotNull(out);
+
+    final CharsetDecoder decoder =
+        charset
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    return new Sink() {
+      final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+      /** The start of a character, left over from the last write, in write mode */
+      ByteBuffer partial = ByteBuffer.allocate(16);
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(b, off, len);
+        if (partial.position() == 0) {
+          decode(in, false);
+          ensure(in.remaining());
+          partial.put(in);
+        } else {
+          ensure(len);
+          partial.put(in);
+          partial.flip();
+          decode(partial, false);
+          partial.compact();
+        }
+      }
+
+      private void ensure(int n) {
+        if (partial.remaining() < n) {
+          ByteBuffer grown = ByteBuffer.allocate(partial.position() + n);
+          partial.flip();
+          grown.put(partial);
+          partial = grown;
+        }
+      }
+
+      @Override
+      public void finish() throws IOException {
+        partial.flip();
+        decode(partial, true);
+        partial.clear();
+
+        while (decoder.flush(chars).isOverflow()) {
+          append();
+        }
+        append();
+        decoder.reset();
+      }
+
+      private void decode(ByteBuffer in, boolean endOfInput) throws IOException {
+        CoderResult result;
+        do {
+          result = decoder.decode(in, chars, endOfInput);
+          append();
+        } while (result.isOverflow());
+      }
+
+      private void append() throws IOException {
+        chars.flip();
+        if (chars.hasRemaining()) {
+          out.append(chars);
+        }
+        chars.clear();
+      }
+    };
+  }
+}
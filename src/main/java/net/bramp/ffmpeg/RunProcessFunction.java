@@ -5,6 +5,9 @@ import com.google.common.base.Preconditions;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import net.bramp.ffmpeg.metrics.Counter;
+import net.bramp.ffmpeg.metrics.Histogram;
+import net.bramp.ffmpeg.metrics.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,10 +21,22 @@ public class RunProcessFunction implements ProcessFunction {
 
   static final Logger LOG = LoggerFactory.getLogger(RunProcessFunction.class);
 
+  static final Histogram SPAWN_NANOS = Metrics.histogram("ffmpeg.process.spawn.nanos");
+  static final Counter SPAWN_FAILURES = Metrics.counter("ffmpeg.process.spawn.failures");
+
   File workingDirectory;
 
   @Override
   public Process run(List<String> args) throws IOException {
+    return start(args, true);
+  }
+
+  @Override
+  public Process runWithSeparateErrorStream(List<String> args) throws IOException {
+    return start(args, false);
+  }
+
+  private Process start(List<String> args, boolean redirectErrorStream) throws IOException {
     Preconditions.checkNotNull(args, "Arguments must not be null");
     Preconditions.checkArgument(!args.isEmpty(), "No arguments specified");
 
@@ -33,8 +48,17 @@ public class RunProcessFunction implements ProcessFunction {
     if (workingDirectory != null) {
       builder.directory(workingDirectory);
     }
-    builder.redirectErrorStream(true);
-    return builder.start();
+    builder.redirectErrorStream(redirectErrorStream);
+
+    long start = System.nanoTime();
+    try {
+      Process p = builder.start();
+      SPAWN_NANOS.record(System.nanoTime() - start);
+      return p;
+    } catch (IOException e) {
+      SPAWN_FAILURES.increment();
+      throw e;
+    }
   }
 
   public RunProcessFunction setWorkingDirectory(String workingDirectory) {
@@ -0,0 +1,111 @@
+package net.bramp.ffmpeg;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.Reader;
+import net.bramp.ffmpeg.probe.FFmpegFrame;
+import net.bramp.ffmpeg.probe.FFmpegPacket;
+import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import net.bramp.ffmpeg.probe.ProbeListener;
+
+/**
+ * Parses ffprobe's JSON output incrementally. Each packet and frame is deserialized on its own and
+ * handed to the {@link ProbeListener}, so memory use does not grow with the length of the file.
+ * Everything else (format, streams, chapters, error) is collected into a {@link
+ * FFmpegProbeResult} as normal.
+ */
+class StreamingProbeParser {
+
+  final Gson gson;
+  final ProbeListener listener;
+
+  StreamingProbeParser(Gson gson, ProbeListener listener) {
+    this.gson = checkNotNull(gson);
+    this.listener = checkNotNull(listener);
+  }
+
+  /**
+   * Parses the ffprobe output, returning the result without any packets or frames.
+   *
+   * @param in The ffprobe JSON output.
+   * @return The parsed result, or null if the input was empty.
+   * @throws IOException If the output could not be read or parsed.
+   */
+  FFmpegProbeResult parse(Reader in) throws IOException {
+    JsonReader reader = new JsonReader(in);
+    if (reader.peek() == JsonToken.END_DOCUMENT) {
+      return null;
+    }
+
+    // Everything that isn't a packet or frame, to be turned into the result at the end
+    JsonObject rest = new JsonObject();
+
+    try {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        switch (name) {
+          case "packets":
+            readPackets(reader);
+            break;
+
+          case "frames":
+            readFrames(reader);
+            break;
+
+          case "packets_and_frames":
+            readPacketsAndFrames(reader);
+            break;
+
+          default:
+            rest.add(name, gson.fromJson(reader, JsonElement.class));
+        }
+      }
+      reader.endObject();
+
+    } catch (IllegalStateException e) {
+      throw new JsonParseException(e);
+    }
+
+    return gson.fromJson(rest, FFmpegProbeResult.class);
+  }
+
+  private void readPackets(JsonReader reader) throws IOException {
+    reader.beginArray();
+    while (reader.hasNext()) {
+      listener.packet(gson.<FFmpegPacket>fromJson(reader, FFmpegPacket.class));
+    }
+    reader.endArray();
+  }
+
+  private void readFrames(JsonReader reader) throws IOException {
+    reader.beginArray();
+    while (reader.hasNext()) {
+      listener.frame(gson.<FFmpegFrame>fromJson(reader, FFmpegFrame.class));
+    }
+    reader.endArray();
+  }
+
+  private void readPacketsAndFrames(JsonReader reader) throws IOException {
+    reader.beginArray();
+    while (reader.hasNext()) {
+      // The "type" may come after other fields, so read each element whole before deciding.
+      JsonObject object = gson.fromJson(reader, JsonObject.class);
+      JsonElement type = object.get("type");
+
+      if (type != null && "packet".equals(type.getAsString())) {
+        listener.packet(gson.fromJson(object, FFmpegPacket.class));
+      } else {
+        listener.frame(gson.fromJson(object, FFmpegFrame.class));
+      }
+    }
+    reader.endArray();
+  }
+}
@@ -1,6 +1,9 @@
 package net.bramp.ffmpeg.builder;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import java.util.List;
+import net.bramp.ffmpeg.info.CapabilityIndex;
 import net.bramp.ffmpeg.options.EncodingOptions;
 import net.bramp.ffmpeg.probe.FFmpegProbeResult;
 
@@ -69,6 +72,15 @@ public abstract class AbstractFFmpegInputBuilder<T extends AbstractFFmpegInputBu
         super.addGlobalFlags(parent, args);
     }
 
+    @Override
+    protected void validate(CapabilityIndex index, List<String> errors) {
+        if (!Strings.isNullOrEmpty(format) && !index.canDemux(format)) {
+            errors.add(String.format("unknown demuxer '%s' for '%s'", format, getTarget()));
+        }
+
+        validateCodecs(index, false, errors);
+    }
+
     public int getStreamLoop() {
         return streamLoop;
     }
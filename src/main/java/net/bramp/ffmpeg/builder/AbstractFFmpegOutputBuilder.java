@@ -9,9 +9,12 @@ import com.google.common.collect.ImmutableList;
 import com.google.errorprone.annotations.InlineMe;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
 import javax.annotation.CheckReturnValue;
+import net.bramp.ffmpeg.info.CapabilityIndex;
+import net.bramp.ffmpeg.info.PixelFormat;
 import net.bramp.ffmpeg.options.AudioEncodingOptions;
 import net.bramp.ffmpeg.options.EncodingOptions;
 import net.bramp.ffmpeg.options.MainEncodingOptions;
@@ -75,6 +78,9 @@ public abstract class AbstractFFmpegOutputBuilder<T extends AbstractFFmpegOutput
 
   protected String complexFilter;
 
+  /** Streams selected with -map, in order. Empty to let ffmpeg choose. */
+  protected final List<String> maps = new ArrayList<>();
+
   public AbstractFFmpegOutputBuilder() {
     super();
   }
@@ -220,6 +226,19 @@ public abstract class AbstractFFmpegOutputBuilder<T extends AbstractFFmpegOutput
     return (T) this;
   }
 
+  /**
+   * Selects a stream to include in this output, instead of letting ffmpeg choose.
+   *
+   * <p>Uses `-map`.
+   *
+   * @param specifier An input stream, such as "0:a:0", or a filter graph output, such as "[out]".
+   * @return this
+   */
+  public T addMap(String specifier) {
+    this.maps.add(checkNotEmpty(specifier, "specifier must not be empty"));
+    return (T) this;
+  }
+
   /**
    * Sets Audio Filter
    *
@@ -269,6 +288,33 @@ public abstract class AbstractFFmpegOutputBuilder<T extends AbstractFFmpegOutput
             video_preset));
   }
 
+  @Override
+  protected void validate(CapabilityIndex index, List<String> errors) {
+    if (!Strings.isNullOrEmpty(format) && !index.canMux(format)) {
+      errors.add(String.format("unknown muxer '%s' for '%s'", format, getTarget()));
+    }
+
+    validateCodecs(index, true, errors);
+
+    if (video_enabled && !Strings.isNullOrEmpty(video_pixel_format)) {
+      PixelFormat pixelFormat = index.getPixelFormat(video_pixel_format);
+      if (pixelFormat == null || !pixelFormat.canEncode()) {
+        errors.add(
+            String.format(
+                "unknown pixel format '%s' for '%s'", video_pixel_format, getTarget()));
+      }
+    }
+
+    if (video_enabled) {
+      FilterGraphs.validate(index, video_filter, "video filter for '" + getTarget() + "'", errors);
+    }
+    if (audio_enabled) {
+      FilterGraphs.validate(index, audio_filter, "audio filter for '" + getTarget() + "'", errors);
+    }
+    FilterGraphs.validate(
+        index, complexFilter, "complex filter for '" + getTarget() + "'", errors);
+  }
+
   @CheckReturnValue
   @Override
   protected List<String> build(int pass) {
@@ -350,6 +396,10 @@ public abstract class AbstractFFmpegOutputBuilder<T extends AbstractFFmpegOutput
     if (complexFilter != null) {
       args.add("-filter_complex", complexFilter);
     }
+
+    for (String map : maps) {
+      args.add("-map", map);
+    }
   }
 
   @Override
@@ -491,4 +541,8 @@ public abstract class AbstractFFmpegOutputBuilder<T extends AbstractFFmpegOutput
   public String getComplexFilter() {
     return complexFilter;
   }
+
+  public List<String> getMaps() {
+    return ImmutableList.copyOf(maps);
+  }
 }
@@ -14,6 +14,7 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import net.bramp.ffmpeg.info.CapabilityIndex;
 import net.bramp.ffmpeg.modelmapper.Mapper;
 import net.bramp.ffmpeg.options.AudioEncodingOptions;
 import net.bramp.ffmpeg.options.EncodingOptions;
@@ -535,6 +536,54 @@ public abstract class AbstractFFmpegStreamBuilder<T extends AbstractFFmpegStream
    */
   public abstract EncodingOptions buildOptions();
 
+  /**
+   * Checks this stream against what ffmpeg supports, adding a message to {@code errors} for each
+   * codec, format, etc that is unknown. Subclasses check whatever applies to them.
+   *
+   * @param index The capabilities of ffmpeg.
+   * @param errors The list to add messages to.
+   */
+  protected void validate(CapabilityIndex index, List<String> errors) {}
+
+  /**
+   * Checks the codecs are known, as encoders if encoding, otherwise as decoders.
+   *
+   * @param index The capabilities of ffmpeg.
+   * @param encoding true to check encoders, false to check decoders.
+   * @param errors The list to add messages to.
+   */
+  protected void validateCodecs(CapabilityIndex index, boolean encoding, List<String> errors) {
+    if (video_enabled) {
+      validateCodec(index, encoding, "video", video_codec, errors);
+    }
+    if (audio_enabled) {
+      validateCodec(index, encoding, "audio", audio_codec, errors);
+    }
+    if (subtitle_enabled) {
+      validateCodec(index, encoding, "subtitle", subtitle_codec, errors);
+    }
+  }
+
+  private void validateCodec(
+      CapabilityIndex index, boolean encoding, String type, String codec, List<String> errors) {
+    if (Strings.isNullOrEmpty(codec) || (encoding && "copy".equals(codec))) {
+      return;
+    }
+
+    boolean known = encoding ? index.hasEncoder(codec) : index.hasDecoder(codec);
+    if (!known) {
+      errors.add(
+          String.format(
+              "unknown %s %s '%s' for '%s'",
+              type, encoding ? "encoder" : "decoder", codec, getTarget()));
+    }
+  }
+
+  /** Returns the filename or uri, for use in messages. */
+  protected String getTarget() {
+    return filename != null ? filename : String.valueOf(uri);
+  }
+
   protected List<String> build(int pass) {
     Preconditions.checkState(parent != null, "Can not build without parent being set");
     return build(parent, pass);
@@ -5,9 +5,11 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static net.bramp.ffmpeg.Preconditions.checkNotEmpty;
 
 import com.google.common.base.Ascii;
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
@@ -15,7 +17,10 @@ import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
+import net.bramp.ffmpeg.FFmpeg;
 import net.bramp.ffmpeg.FFmpegUtils;
+import net.bramp.ffmpeg.info.CapabilityIndex;
 import net.bramp.ffmpeg.probe.FFmpegProbeResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,6 +75,8 @@ public class FFmpegBuilder {
   // Output
   final List<AbstractFFmpegOutputBuilder<?>> outputs = new ArrayList<>();
 
+  final List<FFmpegLadderBuilder> ladders = new ArrayList<>();
+
   protected Strict strict = Strict.NORMAL;
 
   // Filters
@@ -182,6 +189,33 @@ public class FFmpegBuilder {
     return this;
   }
 
+  /**
+   * Returns the number of threads ffmpeg has been asked to use, or zero if ffmpeg should choose.
+   *
+   * @return the number of threads
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Returns the inputs, in the order they were added.
+   *
+   * @return the inputs
+   */
+  public List<AbstractFFmpegInputBuilder<?>> getInputs() {
+    return ImmutableList.copyOf(inputs);
+  }
+
+  /**
+   * Returns the outputs, in the order they were added.
+   *
+   * @return the outputs
+   */
+  public List<AbstractFFmpegOutputBuilder<?>> getOutputs() {
+    return ImmutableList.copyOf(outputs);
+  }
+
   /**
    * Sets the format for the first input stream
    * @param format, the format of this input stream, not null
@@ -215,6 +249,52 @@ public class FFmpegBuilder {
     return this;
   }
 
+  /**
+   * Returns true if any output is written to stdout, in which case stdout can't also be used for
+   * progress.
+   *
+   * @return true if an output is stdout
+   */
+  public boolean writesToStdout() {
+    for (AbstractFFmpegOutputBuilder<?> output : outputs) {
+      String name = output.getUri() != null ? output.getUri().toString() : output.getFilename();
+      if (isStdout(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the input read from stdin, if there is one.
+   *
+   * @return the input, or null
+   */
+  @Nullable
+  public AbstractFFmpegInputBuilder<?> getStdinInput() {
+    for (AbstractFFmpegInputBuilder<?> input : inputs) {
+      String name = input.getUri() != null ? input.getUri().toString() : input.getFilename();
+      if (isStdin(name)) {
+        return input;
+      }
+    }
+    return null;
+  }
+
+  static boolean isStdin(@Nullable String name) {
+    return "-".equals(name)
+        || "pipe:".equals(name)
+        || "pipe:0".equals(name)
+        || "/dev/stdin".equals(name);
+  }
+
+  static boolean isStdout(@Nullable String name) {
+    return "-".equals(name)
+        || "pipe:".equals(name)
+        || "pipe:1".equals(name)
+        || "/dev/stdout".equals(name);
+  }
+
   /**
    * Sets the complex filter flag.
    *
@@ -342,6 +422,18 @@ public class FFmpegBuilder {
     return this;
   }
 
+  /**
+   * Adds an encoding ladder, several renditions of one video at different sizes, which share a
+   * single decode of the input. See {@link FFmpegLadderBuilder}.
+   *
+   * @return A new {@link FFmpegLadderBuilder}
+   */
+  public FFmpegLadderBuilder addLadder() {
+    FFmpegLadderBuilder ladder = new FFmpegLadderBuilder(this, ladders.size());
+    ladders.add(ladder);
+    return ladder;
+  }
+
   /**
    * Create new output (to stdout)
    *
@@ -351,8 +443,88 @@ public class FFmpegBuilder {
     return addOutput("-");
   }
 
+  /**
+   * Create new input (from stdin)
+   *
+   * @return A new {@link FFmpegFileInputBuilder}
+   */
+  public FFmpegFileInputBuilder addStdinInput() {
+    return addInput("-");
+  }
+
+  /**
+   * Checks the codecs, formats, pixel formats and filters used are supported by this ffmpeg, so a
+   * typo fails here instead of part way through running ffmpeg. Validation is opt-in, as it needs
+   * ffmpeg's capabilities, but they are cached so validating many jobs is cheap.
+   *
+   * @param ffmpeg The ffmpeg the job will be run with.
+   * @return this
+   * @throws IOException if ffmpeg's capabilities could not be read.
+   * @throws IllegalArgumentException listing everything that is unsupported.
+   */
+  public FFmpegBuilder validate(FFmpeg ffmpeg) throws IOException {
+    return validate(ffmpeg.capabilityIndex());
+  }
+
+  /**
+   * Checks the codecs, formats, pixel formats and filters used are in the index.
+   *
+   * @param index The capabilities of ffmpeg.
+   * @return this
+   * @throws IllegalArgumentException listing everything that is unsupported.
+   */
+  public FFmpegBuilder validate(CapabilityIndex index) {
+    checkNotNull(index);
+
+    List<String> errors = new ArrayList<>();
+
+    if (!Strings.isNullOrEmpty(format) && !index.canDemux(format)) {
+      errors.add(String.format("unknown demuxer '%s'", format));
+    }
+
+    for (AbstractFFmpegInputBuilder<?> input : this.inputs) {
+      input.validate(index, errors);
+    }
+
+    FilterGraphs.validate(index, audioFilter, "audio filter", errors);
+    FilterGraphs.validate(index, videoFilter, "video filter", errors);
+    FilterGraphs.validate(index, complexFilter, "complex filter", errors);
+
+    for (FFmpegLadderBuilder ladder : this.ladders) {
+      FilterGraphs.validate(index, ladder.buildFilterGraph(), "ladder", errors);
+    }
+
+    for (AbstractFFmpegOutputBuilder<?> output : this.outputs) {
+      output.validate(index, errors);
+    }
+
+    checkArgument(errors.isEmpty(), "Unsupported by ffmpeg: %s", Joiner.on("; ").join(errors));
+    return this;
+  }
+
+  /**
+   * Builds the arguments once, into a template whose {@code ${name}} placeholders can be cheaply
+   * filled in for each job. See {@link FFmpegCommandTemplate}.
+   *
+   * @return A new template
+   */
+  @CheckReturnValue
+  public FFmpegCommandTemplate compile() {
+    int[] outputPositions = new int[outputs.size()];
+    List<String> args = build(outputPositions);
+    return new FFmpegCommandTemplate(args, outputPositions, threads);
+  }
+
   @CheckReturnValue
   public List<String> build() {
+    return build(null);
+  }
+
+  /**
+   * Builds the arguments, and if outputPositions is given, records in it where each output's
+   * filename or uri is.
+   */
+  private List<String> build(@Nullable int[] outputPositions) {
     ImmutableList.Builder<String> args = new ImmutableList.Builder<>();
 
     Preconditions.checkArgument(!inputs.isEmpty(), "At least one input must be specified");
@@ -419,12 +591,27 @@ public class FFmpegBuilder {
       args.add("-filter_complex", complexFilter);
     }
 
+    for (FFmpegLadderBuilder ladder : this.ladders) {
+      String graph = ladder.buildFilterGraph();
+      if (graph != null) {
+        args.add("-filter_complex", graph);
+      }
+    }
+
     if (qscale != null) {
       args.add("-qscale:a", qscale.toString());
     }
 
-    for (AbstractFFmpegOutputBuilder<?> output : this.outputs) {
-      args.addAll(output.build(this, pass));
+    int position = outputPositions == null ? 0 : args.build().size();
+    for (int i = 0; i < outputs.size(); i++) {
+      List<String> output = outputs.get(i).build(this, pass);
+      args.addAll(output);
+      position += output.size();
+
+      if (outputPositions != null) {
+        // Each output's filename or uri is the last of its arguments
+        outputPositions[i] = position - 1;
+      }
     }
 
     return args.build();
@@ -0,0 +1,246 @@
+package net.bramp.ffmpeg.builder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * The arguments of a {@link FFmpegBuilder}, built once, with named placeholders that are filled in
+ * for each job. Useful when running many jobs that only differ by a few values, such as the input
+ * and output filenames, as filling in a template is much cheaper than building the arguments again.
+ *
+ * <p>A placeholder is written as {@code ${name}}, and may be any part of any string passed to the
+ * builder, for example:
+ *
+ * <pre>{@code
+ * FFmpegCommandTemplate template = new FFmpegBuilder()
+ *     .addInput("${input}")
+ *     .addExtraArgs("-ss", "${start}")
+ *     .done()
+ *     .addOutput("/videos/${name}.mp4")
+ *     .setVideoCodec("libx264")
+ *     .done()
+ *     .compile();
+ *
+ * List<String> args =
+ *     template.instantiate(ImmutableMap.of("input", "in.mov", "start", "00:00:10", "name", "out"));
+ * }</pre>
+ *
+ * <p>Instances are immutable and thread-safe.
+ */
+public final class FFmpegCommandTemplate {
+
+  static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([A-Za-z0-9_.-]+)}");
+
+  /** The built arguments, including the unfilled placeholders. */
+  private final String[] args;
+
+  /** Index into args, of each argument that contains a placeholder. */
+  private final int[] positions;
+
+  /** How to fill in each argument in positions. */
+  private final Arg[] templated;
+
+  /** Index into args, of each output's filename or uri. */
+  private final int[] outputPositions;
+
+  private final ImmutableList<String> placeholders;
+  private final int threads;
+
+  FFmpegCommandTemplate(List<String> args, int[] outputPositions, int threads) {
+    this.args = args.toArray(new String[0]);
+    this.outputPositions = outputPositions.clone();
+    this.threads = threads;
+
+    List<String> names = new ArrayList<>();
+    List<Integer> positions = new ArrayList<>();
+    List<Arg> templated = new ArrayList<>();
+
+    for (int i = 0; i < this.args.length; i++) {
+      Arg arg = Arg.parse(this.args[i], names);
+      if (arg != null) {
+        positions.add(i);
+        templated.add(arg);
+      }
+    }
+
+    this.positions = new int[positions.size()];
+    for (int i = 0; i < this.positions.length; i++) {
+      this.positions[i] = positions.get(i);
+    }
+    this.templated = templated.toArray(new Arg[0]);
+    this.placeholders = ImmutableList.copyOf(names);
+  }
+
+  /**
+   * Returns the names of the placeholders, in the order they first appear in the arguments. This
+   * is the order their values are given to {@link #instantiate(String...)}.
+   *
+   * @return the placeholder names.
+   */
+  public List<String> getPlaceholders() {
+    return placeholders;
+  }
+
+  /**
+   * Returns the number of threads the builder asked ffmpeg to use, or zero if ffmpeg will decide.
+   *
+   * @return the number of threads
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Fills in the placeholders.
+   *
+   * @param values The value of each placeholder, in the order of {@link #getPlaceholders()}.
+   * @return The arguments to pass to ffmpeg.
+   */
+  public List<String> instantiate(String... values) {
+    checkArgument(
+        values.length == placeholders.size(),
+        "Expected %s values for %s, but got %s",
+        placeholders.size(),
+        placeholders,
+        values.length);
+
+    for (String value : values) {
+      checkNotNull(value, "values must not be null");
+    }
+
+    String[] result = args.clone();
+    for (int i = 0; i < positions.length; i++) {
+      result[positions[i]] = templated[i].fill(values);
+    }
+    return Collections.unmodifiableList(Arrays.asList(result));
+  }
+
+  /**
+   * Fills in the placeholders.
+   *
+   * @param values The value of each placeholder, keyed by name.
+   * @return The arguments to pass to ffmpeg.
+   */
+  public List<String> instantiate(Map<String, String> values) {
+    checkNotNull(values);
+
+    String[] ordered = new String[placeholders.size()];
+    for (int i = 0; i < ordered.length; i++) {
+      String name = placeholders.get(i);
+      ordered[i] = values.get(name);
+      checkArgument(ordered[i] != null, "No value given for placeholder '%s'", name);
+    }
+    return instantiate(ordered);
+  }
+
+  /**
+   * Returns true if any output of the filled in arguments is stdout, in which case stdout can't
+   * also be used for progress.
+   *
+   * @param instance Arguments returned by {@link #instantiate(String...)}.
+   * @return true if an output is stdout
+   */
+  public boolean writesToStdout(List<String> instance) {
+    checkArgument(instance.size() == args.length, "instance was not made by this template");
+
+    for (int position : outputPositions) {
+      if (FFmpegBuilder.isStdout(instance.get(position))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(args);
+  }
+
+  /** A single argument containing one or more placeholders. */
+  private static final class Arg {
+    /** The text around the placeholders, one more than there are placeholders. */
+    final String[] literals;
+
+    /** The index of each placeholder's value. */
+    final int[] slots;
+
+    /** Sum of the literal lengths. */
+    final int length;
+
+    private Arg(String[] literals, int[] slots) {
+      this.literals = literals;
+      this.slots = slots;
+
+      int length = 0;
+      for (String literal : literals) {
+        length += literal.length();
+      }
+      this.length = length;
+    }
+
+    /**
+     * Parses the argument, adding any new placeholder names to names.
+     *
+     * @return the parsed argument, or null if it has no placeholders.
+     */
+    @Nullable
+    static Arg parse(String arg, List<String> names) {
+      Matcher m = PLACEHOLDER.matcher(arg);
+      if (!m.find()) {
+        return null;
+      }
+
+      List<String> literals = new ArrayList<>();
+      List<Integer> slots = new ArrayList<>();
+      int start = 0;
+      do {
+        literals.add(arg.substring(start, m.start()));
+
+        String name = m.group(1);
+        int slot = names.indexOf(name);
+        if (slot < 0) {
+          slot = names.size();
+          names.add(name);
+        }
+        slots.add(slot);
+
+        start = m.end();
+      } while (m.find());
+      literals.add(arg.substring(start));
+
+      int[] slotArray = new int[slots.size()];
+      for (int i = 0; i < slotArray.length; i++) {
+        slotArray[i] = slots.get(i);
+      }
+      return new Arg(literals.toArray(new String[0]), slotArray);
+    }
+
+    String fill(String[] values) {
+      // The common case of the whole argument being one placeholder, such as a filename.
+      if (slots.length == 1 && length == 0) {
+        return values[slots[0]];
+      }
+
+      int size = length;
+      for (int slot : slots) {
+        size += values[slot].length();
+      }
+
+      StringBuilder sb = new StringBuilder(size);
+      for (int i = 0; i < slots.length; i++) {
+        sb.append(literals[i]).append(values[slots[i]]);
+      }
+      return sb.append(literals[slots.length]).toString();
+    }
+  }
+}
@@ -0,0 +1,237 @@
+package net.bramp.ffmpeg.builder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static net.bramp.ffmpeg.Preconditions.checkNotEmpty;
+
+import com.google.common.base.Strings;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
+
+/**
+ * Builds an encoding ladder: several renditions of the same video at different sizes, made by one
+ * ffmpeg, which decodes the input once and splits the decoded frames between the renditions.
+ * Running a separate ffmpeg for each rendition would decode the input once per rendition.
+ *
+ * <p>Each rendition is a normal output, so codecs, bitrates, HLS options etc are set on it as
+ * usual, but its size is set here, and it must not have its own video filter.
+ *
+ * <pre>
+ * <code>FFmpegBuilder builder = new FFmpegBuilder().setInput("input.mp4").done();
+ *
+ * FFmpegLadderBuilder ladder = builder.addLadder();
+ * ladder.addHlsRendition(1920, 1080, "1080p.m3u8").setVideoBitRate(5_000_000);
+ * ladder.addHlsRendition(1280, 720, "720p.m3u8").setVideoBitRate(2_800_000);
+ * ladder.addHlsRendition(640, 360, "360p.m3u8").setVideoBitRate(800_000);
+ *
+ * List&lt;String&gt; args = builder.build();</code>
+ * </pre>
+ */
+public class FFmpegLadderBuilder {
+
+  public static final String DEFAULT_VIDEO_STREAM = "0:v:0";
+
+  /** The first audio stream, if there is one */
+  public static final String DEFAULT_AUDIO_STREAM = "0:a:0?";
+
+  final FFmpegBuilder parent;
+
+  /** Keeps this ladder's filter graph labels apart from any other ladder's */
+  final String prefix;
+
+  String videoStream = DEFAULT_VIDEO_STREAM;
+  String audioStream = DEFAULT_AUDIO_STREAM;
+  String filter;
+  String scaleFlags;
+
+  final List<Rendition> renditions = new ArrayList<>();
+
+  FFmpegLadderBuilder(FFmpegBuilder parent, int index) {
+    this.parent = checkNotNull(parent);
+    this.prefix = "ladder" + index + "_";
+  }
+
+  /**
+   * Sets the video stream to make the renditions from. Defaults to the first video stream of the
+   * first input.
+   *
+   * @param specifier the input stream, such as "1:v:0".
+   * @return this
+   */
+  public FFmpegLadderBuilder setVideoStream(String specifier) {
+    checkState(renditions.isEmpty(), "the video stream must be set before adding renditions");
+    this.videoStream = checkNotEmpty(specifier, "specifier must not be empty");
+    return this;
+  }
+
+  /**
+   * Sets the audio stream included in every rendition. Defaults to the first audio stream of the
+   * first input, if there is one.
+   *
+   * @param specifier the input stream, such as "0:a:1", or null for no audio.
+   * @return this
+   */
+  public FFmpegLadderBuilder setAudioStream(@Nullable String specifier) {
+    checkState(renditions.isEmpty(), "the audio stream must be set before adding renditions");
+    checkArgument(specifier == null || !specifier.isEmpty(), "specifier must not be empty");
+    this.audioStream = specifier;
+    return this;
+  }
+
+  /**
+   * Sets a filter applied once, before the video is split, such as "fps=30,format=yuv420p". Work
+   * common to every rendition is cheaper here than repeated for each.
+   *
+   * @param filter the filter chain.
+   * @return this
+   */
+  public FFmpegLadderBuilder setFilter(String filter) {
+    this.filter = checkNotEmpty(filter, "filter must not be empty");
+    return this;
+  }
+
+  /**
+   * Sets the scaling algorithm, such as "bicubic" or "lanczos".
+   *
+   * @param flags the scale filter's flags.
+   * @return this
+   */
+  public FFmpegLadderBuilder setScaleFlags(String flags) {
+    this.scaleFlags = checkNotEmpty(flags, "flags must not be empty");
+    return this;
+  }
+
+  /**
+   * Adds a rendition.
+   *
+   * @param width the width, or -2 to keep the aspect ratio.
+   * @param height the height, or -2 to keep the aspect ratio.
+   * @param filename the output file path.
+   * @return A new {@link FFmpegOutputBuilder}
+   */
+  public FFmpegOutputBuilder addRendition(int width, int height, String filename) {
+    checkSize(width, height);
+    return addRendition(width, height, parent.addOutput(filename));
+  }
+
+  /**
+   * Adds a rendition.
+   *
+   * @param width the width, or -2 to keep the aspect ratio.
+   * @param height the height, or -2 to keep the aspect ratio.
+   * @param uri the output uri.
+   * @return A new {@link FFmpegOutputBuilder}
+   */
+  public FFmpegOutputBuilder addRendition(int width, int height, URI uri) {
+    checkSize(width, height);
+    return addRendition(width, height, parent.addOutput(uri));
+  }
+
+  /**
+   * Adds a HLS rendition.
+   *
+   * @param width the width, or -2 to keep the aspect ratio.
+   * @param height the height, or -2 to keep the aspect ratio.
+   * @param filename the playlist file path.
+   * @return A new {@link FFmpegHlsOutputBuilder}
+   */
+  public FFmpegHlsOutputBuilder addHlsRendition(int width, int height, String filename) {
+    checkSize(width, height);
+    return addRendition(width, height, parent.addHlsOutput(filename));
+  }
+
+  private <T extends AbstractFFmpegOutputBuilder<T>> T addRendition(
+      int width, int height, T output) {
+    String label = "[" + prefix + "v" + renditions.size() + "]";
+    renditions.add(new Rendition(width, height, label, output));
+
+    output.addMap(label);
+    if (audioStream != null) {
+      output.addMap(audioStream);
+    }
+    return output;
+  }
+
+  private static void checkSize(int width, int height) {
+    checkArgument(width > 0 || width == -2, "width must be positive, or -2");
+    checkArgument(height > 0 || height == -2, "height must be positive, or -2");
+    checkArgument(width > 0 || height > 0, "only one of width and height can be -2");
+  }
+
+  /**
+   * Finished with this ladder
+   *
+   * @return the parent FFmpegBuilder
+   */
+  public FFmpegBuilder done() {
+    return parent;
+  }
+
+  /**
+   * Returns the filter graph which splits and scales the video into each rendition, or null if
+   * there are no renditions.
+   *
+   * @return the filter graph, for -filter_complex.
+   */
+  @CheckReturnValue
+  @Nullable
+  public String buildFilterGraph() {
+    if (renditions.isEmpty()) {
+      return null;
+    }
+
+    StringBuilder graph = new StringBuilder();
+    graph.append('[').append(videoStream).append(']');
+    if (!Strings.isNullOrEmpty(filter)) {
+      graph.append(filter).append(',');
+    }
+
+    if (renditions.size() == 1) {
+      // Nothing to split, so scale in the same chain
+      appendScale(graph, renditions.get(0));
+      return graph.toString();
+    }
+
+    graph.append("split=").append(renditions.size());
+    for (int i = 0; i < renditions.size(); i++) {
+      graph.append('[').append(prefix).append('s').append(i).append(']');
+    }
+
+    for (int i = 0; i < renditions.size(); i++) {
+      graph.append(";[").append(prefix).append('s').append(i).append(']');
+      appendScale(graph, renditions.get(i));
+    }
+
+    return graph.toString();
+  }
+
+  private void appendScale(StringBuilder graph, Rendition rendition) {
+    checkState(
+        Strings.isNullOrEmpty(rendition.output.getVideoFilter()),
+        "a rendition can not have its own video filter, use FFmpegLadderBuilder.setFilter instead");
+
+    graph.append("scale=").append(rendition.width).append(':').append(rendition.height);
+    if (!Strings.isNullOrEmpty(scaleFlags)) {
+      graph.append(":flags=").append(scaleFlags);
+    }
+    graph.append(rendition.label);
+  }
+
+  static final class Rendition {
+    final int width;
+    final int height;
+    final String label;
+    final AbstractFFmpegOutputBuilder<?> output;
+
+    Rendition(int width, int height, String label, AbstractFFmpegOutputBuilder<?> output) {
+      this.width = width;
+      this.height = height;
+      this.label = label;
+      this.output = output;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package net.bramp.ffmpeg.builder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Strings;
+import java.util.ArrayList;
+import java.util.List;
+import net.bramp.ffmpeg.info.CapabilityIndex;
+
+/** Helpers for ffmpeg filtergraph strings, such as "[0:v]scale=640:-1,hflip[out]". */
+final class FilterGraphs {
+
+  /** Graph level option, that can start a filtergraph, but isn't a filter */
+  static final String SWS_FLAGS = "sws_flags";
+
+  private FilterGraphs() {
+    throw new AssertionError("No instances for you!");
+  }
+
+  /**
+   * Returns the name of each filter in the graph, in order.
+   *
+   * @param graph The filtergraph.
+   * @return The filter names.
+   */
+  static List<String> filterNames(String graph) {
+    checkNotNull(graph);
+
+    List<String> names = new ArrayList<>();
+
+    // Filters are separated by ',' and chains by ';', unless quoted, escaped or in a [label].
+    boolean quoted = false;
+    boolean label = false;
+    int start = 0;
+    for (int i = 0; i < graph.length(); i++) {
+      char c = graph.charAt(i);
+      if (c == '\\') {
+        i++; // Skip the escaped character
+      } else if (c == '\'') {
+        quoted = !quoted;
+      } else if (!quoted && c == '[') {
+        label = true;
+      } else if (!quoted && c == ']') {
+        label = false;
+      } else if (!quoted && !label && (c == ',' || c == ';')) {
+        addName(names, graph, start, i);
+        start = i + 1;
+      }
+    }
+    addName(names, graph, start, graph.length());
+
+    return names;
+  }
+
+  /** Adds the name of the filter between start and end, skipping any input labels. */
+  private static void addName(List<String> names, String graph, int start, int end) {
+    int i = start;
+    while (i < end) {
+      char c = graph.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '[') {
+        int close = graph.indexOf(']', i);
+        i = close < 0 ? end : close + 1;
+      } else {
+        break;
+      }
+    }
+
+    int nameStart = i;
+    while (i < end) {
+      char c = graph.charAt(i);
+      if (c == '=' || c == '@' || c == '[' || Character.isWhitespace(c)) {
+        break;
+      }
+      i++;
+    }
+
+    String name = graph.substring(nameStart, i);
+    if (!name.isEmpty() && !(names.isEmpty() && name.equals(SWS_FLAGS))) {
+      names.add(name);
+    }
+  }
+
+  /**
+   * Checks every filter in the graph is known, adding a message to errors for each that isn't.
+   *
+   * @param index The capabilities of ffmpeg.
+   * @param graph The filtergraph, or null.
+   * @param description What the graph is for, used in the messages.
+   * @param errors The list to add messages to.
+   */
+  static void validate(
+      CapabilityIndex index, String graph, String description, List<String> errors) {
+    if (Strings.isNullOrEmpty(graph)) {
+      return;
+    }
+
+    for (String name : filterNames(graph)) {
+      if (!index.hasFilter(name)) {
+        errors.add("unknown filter '" + name + "' in " + description);
+      }
+    }
+  }
+}
@@ -0,0 +1,410 @@
+package net.bramp.ffmpeg.info;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+import net.bramp.ffmpeg.shared.CodecType;
+
+/**
+ * An index over the codecs, formats, filters and pixel formats supported by ffmpeg. Built once,
+ * it answers lookups by name with a hash lookup, and queries by capability flags by combining
+ * precomputed {@link BitSet}s, instead of scanning the lists each time. It is never modified once
+ * built, so may be shared between threads.
+ *
+ * <pre>
+ * <code>CapabilityIndex index = ffmpeg.capabilityIndex();
+ * index.hasEncoder("libx264");
+ * index.getPixelFormats(PixelFormatFlag.OUTPUT, PixelFormatFlag.HARDWARE_ACCELERATED);</code>
+ * </pre>
+ */
+public final class CapabilityIndex {
+
+  /** Flags of a {@link Codec} that can be queried. */
+  public enum CodecFlag {
+    DECODER,
+    ENCODER,
+    VIDEO,
+    AUDIO,
+    SUBTITLE,
+    DATA,
+    ATTACHMENT,
+    INTRA_FRAME_ONLY,
+    LOSSY,
+    LOSSLESS,
+  }
+
+  /** Flags of a {@link Format} that can be queried. */
+  public enum FormatFlag {
+    DEMUXER,
+    MUXER,
+  }
+
+  /** Flags of a {@link Filter} that can be queried. */
+  public enum FilterFlag {
+    TIMELINE,
+    SLICE_THREADING,
+    COMMAND,
+  }
+
+  /** Flags of a {@link PixelFormat} that can be queried. */
+  public enum PixelFormatFlag {
+    INPUT,
+    OUTPUT,
+    HARDWARE_ACCELERATED,
+    PALETTED,
+    BITSTREAM,
+  }
+
+  // Matches the "(encoders: libx264 h264_nvenc )" part of a codec's long name
+  static final Pattern ENCODERS_REGEX = Pattern.compile("\\(encoders: ([^)]*)\\)");
+  static final Pattern DECODERS_REGEX = Pattern.compile("\\(decoders: ([^)]*)\\)");
+
+  private static final Splitter SPACE = Splitter.on(' ').omitEmptyStrings();
+  private static final Splitter COMMA = Splitter.on(',').omitEmptyStrings().trimResults();
+
+  private final ImmutableList<Codec> codecs;
+  private final ImmutableList<Format> formats;
+  private final ImmutableList<Filter> filters;
+  private final ImmutableList<PixelFormat> pixelFormats;
+
+  private final ImmutableMap<String, Codec> codecsByName;
+  private final ImmutableMap<String, Codec> encoders;
+  private final ImmutableMap<String, Codec> decoders;
+  private final ImmutableListMultimap<String, Format> formatsByName;
+  private final ImmutableMap<String, Filter> filtersByName;
+  private final ImmutableMap<String, PixelFormat> pixelFormatsByName;
+
+  // One BitSet per flag, with a bit set for each item with that flag
+  private final EnumMap<CodecFlag, BitSet> codecFlags = new EnumMap<>(CodecFlag.class);
+  private final EnumMap<FormatFlag, BitSet> formatFlags = new EnumMap<>(FormatFlag.class);
+  private final EnumMap<FilterFlag, BitSet> filterFlags = new EnumMap<>(FilterFlag.class);
+  private final EnumMap<PixelFormatFlag, BitSet> pixelFormatFlags =
+      new EnumMap<>(PixelFormatFlag.class);
+
+  // One BitSet per CodecType, with a bit set for each filter taking or producing that type
+  private final EnumMap<CodecType, BitSet> filterInputs = new EnumMap<>(CodecType.class);
+  private final EnumMap<CodecType, BitSet> filterOutputs = new EnumMap<>(CodecType.class);
+  private final BitSet filterSources;
+  private final BitSet filterSinks;
+
+  public CapabilityIndex(
+      List<Codec> codecs,
+      List<Format> formats,
+      List<Filter> filters,
+      List<PixelFormat> pixelFormats) {
+    this.codecs = ImmutableList.copyOf(codecs);
+    this.formats = ImmutableList.copyOf(formats);
+    this.filters = ImmutableList.copyOf(filters);
+    this.pixelFormats = ImmutableList.copyOf(pixelFormats);
+
+    // Codecs
+    Map<String, Codec> byName = new HashMap<>();
+    Map<String, Codec> encoders = new HashMap<>();
+    Map<String, Codec> decoders = new HashMap<>();
+    for (Codec codec : this.codecs) {
+      byName.putIfAbsent(codec.getName(), codec);
+      if (codec.getCanEncode()) {
+        indexImplementations(encoders, codec, ENCODERS_REGEX);
+      }
+      if (codec.getCanDecode()) {
+        indexImplementations(decoders, codec, DECODERS_REGEX);
+      }
+    }
+    this.codecsByName = ImmutableMap.copyOf(byName);
+    this.encoders = ImmutableMap.copyOf(encoders);
+    this.decoders = ImmutableMap.copyOf(decoders);
+
+    set(codecFlags, CodecFlag.DECODER, this.codecs, Codec::getCanDecode);
+    set(codecFlags, CodecFlag.ENCODER, this.codecs, Codec::getCanEncode);
+    set(codecFlags, CodecFlag.VIDEO, this.codecs, c -> c.getType() == CodecType.VIDEO);
+    set(codecFlags, CodecFlag.AUDIO, this.codecs, c -> c.getType() == CodecType.AUDIO);
+    set(codecFlags, CodecFlag.SUBTITLE, this.codecs, c -> c.getType() == CodecType.SUBTITLE);
+    set(codecFlags, CodecFlag.DATA, this.codecs, c -> c.getType() == CodecType.DATA);
+    set(codecFlags, CodecFlag.ATTACHMENT, this.codecs, c -> c.getType() == CodecType.ATTACHMENT);
+    set(codecFlags, CodecFlag.INTRA_FRAME_ONLY, this.codecs, Codec::isIntraFrameOnly);
+    set(codecFlags, CodecFlag.LOSSY, this.codecs, Codec::supportsLossyCompression);
+    set(codecFlags, CodecFlag.LOSSLESS, this.codecs, Codec::supportsLosslessCompression);
+
+    // Formats, which may be listed under several comma separated names, e.g "mov,mp4,m4a"
+    ImmutableListMultimap.Builder<String, Format> formatsBuilder = ImmutableListMultimap.builder();
+    for (Format format : this.formats) {
+      for (String name : COMMA.split(format.getName())) {
+        formatsBuilder.put(name, format);
+      }
+    }
+    this.formatsByName = formatsBuilder.build();
+
+    set(formatFlags, FormatFlag.DEMUXER, this.formats, Format::getCanDemux);
+    set(formatFlags, FormatFlag.MUXER, this.formats, Format::getCanMux);
+
+    // Filters
+    Map<String, Filter> filtersByName = new HashMap<>();
+    for (Filter filter : this.filters) {
+      filtersByName.putIfAbsent(filter.getName(), filter);
+    }
+    this.filtersByName = ImmutableMap.copyOf(filtersByName);
+
+    set(filterFlags, FilterFlag.TIMELINE, this.filters, Filter::isTimelineSupported);
+    set(filterFlags, FilterFlag.SLICE_THREADING, this.filters, Filter::isSliceThreading);
+    set(filterFlags, FilterFlag.COMMAND, this.filters, Filter::isCommandSupport);
+
+    for (CodecType type : CodecType.values()) {
+      set(filterInputs, type, this.filters, f -> f.getInputPattern().getStreams().contains(type));
+      set(filterOutputs, type, this.filters, f -> f.getOutputPattern().getStreams().contains(type));
+    }
+    this.filterSources = bits(this.filters, f -> f.getInputPattern().isSinkOrSource());
+    this.filterSinks = bits(this.filters, f -> f.getOutputPattern().isSinkOrSource());
+
+    // Pixel formats
+    Map<String, PixelFormat> pixelFormatsByName = new HashMap<>();
+    for (PixelFormat pixelFormat : this.pixelFormats) {
+      pixelFormatsByName.putIfAbsent(pixelFormat.getName(), pixelFormat);
+    }
+    this.pixelFormatsByName = ImmutableMap.copyOf(pixelFormatsByName);
+
+    set(pixelFormatFlags, PixelFormatFlag.INPUT, this.pixelFormats, PixelFormat::canDecode);
+    set(pixelFormatFlags, PixelFormatFlag.OUTPUT, this.pixelFormats, PixelFormat::canEncode);
+    set(
+        pixelFormatFlags,
+        PixelFormatFlag.HARDWARE_ACCELERATED,
+        this.pixelFormats,
+        PixelFormat::isHardwareAccelerated);
+    set(
+        pixelFormatFlags,
+        PixelFormatFlag.PALETTED,
+        this.pixelFormats,
+        PixelFormat::isPalettedFormat);
+    set(
+        pixelFormatFlags,
+        PixelFormatFlag.BITSTREAM,
+        this.pixelFormats,
+        PixelFormat::isBitstreamFormat);
+  }
+
+  /**
+   * Indexes the codec under the names of its implementations, listed in its long name, or under
+   * its own name if none are listed (as older versions of ffmpeg do).
+   */
+  private static void indexImplementations(Map<String, Codec> map, Codec codec, Pattern regex) {
+    Matcher m = regex.matcher(codec.getLongName());
+    if (m.find()) {
+      for (String name : SPACE.split(m.group(1))) {
+        map.putIfAbsent(name, codec);
+      }
+    } else {
+      map.putIfAbsent(codec.getName(), codec);
+    }
+  }
+
+  private static <F extends Enum<F>, T> void set(
+      Map<F, BitSet> sets, F flag, List<T> items, Predicate<T> predicate) {
+    sets.put(flag, bits(items, predicate));
+  }
+
+  private static <T> BitSet bits(List<T> items, Predicate<T> predicate) {
+    BitSet bits = new BitSet(items.size());
+    for (int i = 0; i < items.size(); i++) {
+      if (predicate.test(items.get(i))) {
+        bits.set(i);
+      }
+    }
+    return bits;
+  }
+
+  /** Returns the items whose bits are set in all the given sets. */
+  private static <F extends Enum<F>, T> ImmutableList<T> select(
+      List<T> items, Map<F, BitSet> sets, F[] flags) {
+    BitSet bits = new BitSet(items.size());
+    bits.set(0, items.size());
+    for (F flag : flags) {
+      bits.and(sets.get(flag));
+    }
+    return select(items, bits);
+  }
+
+  private static <T> ImmutableList<T> select(List<T> items, BitSet bits) {
+    ImmutableList.Builder<T> builder = ImmutableList.builder();
+    for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+      builder.add(items.get(i));
+    }
+    return builder.build();
+  }
+
+  // Codecs
+
+  @Nullable
+  public Codec getCodec(String name) {
+    return codecsByName.get(checkNotNull(name));
+  }
+
+  /**
+   * Returns the codec implemented by the named encoder, e.g "libx264" returns the "h264" codec.
+   *
+   * @param name The name of the encoder, as passed to {@code -c:v}.
+   * @return The codec, or null if there is no such encoder.
+   */
+  @Nullable
+  public Codec getEncoder(String name) {
+    return encoders.get(checkNotNull(name));
+  }
+
+  /**
+   * Returns the codec implemented by the named decoder.
+   *
+   * @param name The name of the decoder.
+   * @return The codec, or null if there is no such decoder.
+   */
+  @Nullable
+  public Codec getDecoder(String name) {
+    return decoders.get(checkNotNull(name));
+  }
+
+  public boolean hasEncoder(String name) {
+    return getEncoder(name) != null;
+  }
+
+  public boolean hasDecoder(String name) {
+    return getDecoder(name) != null;
+  }
+
+  /**
+   * Returns the codecs with all of the flags.
+   *
+   * @param flags The flags the codecs must have.
+   * @return The codecs, in the order ffmpeg listed them.
+   */
+  public List<Codec> getCodecs(CodecFlag... flags) {
+    return select(codecs, codecFlags, flags);
+  }
+
+  // Formats
+
+  /**
+   * Returns the formats with this name. A name may be listed more than once, for example once as
+   * a demuxer and again as a muxer.
+   *
+   * @param name The name of the format, e.g "mp4".
+   * @return The formats, or an empty list.
+   */
+  public List<Format> getFormats(String name) {
+    return formatsByName.get(checkNotNull(name));
+  }
+
+  public boolean canMux(String format) {
+    for (Format f : getFormats(format)) {
+      if (f.getCanMux()) return true;
+    }
+    return false;
+  }
+
+  public boolean canDemux(String format) {
+    for (Format f : getFormats(format)) {
+      if (f.getCanDemux()) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the formats with all of the flags.
+   *
+   * @param flags The flags the formats must have.
+   * @return The formats, in the order ffmpeg listed them.
+   */
+  public List<Format> getFormats(FormatFlag... flags) {
+    return select(formats, formatFlags, flags);
+  }
+
+  // Filters
+
+  @Nullable
+  public Filter getFilter(String name) {
+    return filtersByName.get(checkNotNull(name));
+  }
+
+  public boolean hasFilter(String name) {
+    return getFilter(name) != null;
+  }
+
+  /**
+   * Returns the filters with all of the flags.
+   *
+   * @param flags The flags the filters must have.
+   * @return The filters, in the order ffmpeg listed them.
+   */
+  public List<Filter> getFilters(FilterFlag... flags) {
+    return select(filters, filterFlags, flags);
+  }
+
+  /**
+   * Returns the filters taking one type of stream and producing another, e.g all video to video
+   * filters. Filters with a variable number of streams are not included.
+   *
+   * @param input The type of stream the filter takes.
+   * @param output The type of stream the filter produces.
+   * @return The filters, in the order ffmpeg listed them.
+   */
+  public List<Filter> getFilters(CodecType input, CodecType output) {
+    BitSet bits = (BitSet) filterInputs.get(checkNotNull(input)).clone();
+    bits.and(filterOutputs.get(checkNotNull(output)));
+    return select(filters, bits);
+  }
+
+  /** Returns the filters that take no input, such as "nullsrc". */
+  public List<Filter> getSourceFilters() {
+    return select(filters, filterSources);
+  }
+
+  /** Returns the filters that produce no output, such as "nullsink". */
+  public List<Filter> getSinkFilters() {
+    return select(filters, filterSinks);
+  }
+
+  // Pixel formats
+
+  @Nullable
+  public PixelFormat getPixelFormat(String name) {
+    return pixelFormatsByName.get(checkNotNull(name));
+  }
+
+  public boolean hasPixelFormat(String name) {
+    return getPixelFormat(name) != null;
+  }
+
+  /**
+   * Returns the pixel formats with all of the flags.
+   *
+   * @param flags The flags the pixel formats must have.
+   * @return The pixel formats, in the order ffmpeg listed them.
+   */
+  public List<PixelFormat> getPixelFormats(PixelFormatFlag... flags) {
+    return select(pixelFormats, pixelFormatFlags, flags);
+  }
+
+  public List<Codec> getCodecs() {
+    return codecs;
+  }
+
+  public List<Format> getFormats() {
+    return formats;
+  }
+
+  public List<Filter> getFilters() {
+    return filters;
+  }
+
+  public List<PixelFormat> getPixelFormats() {
+    return pixelFormats;
+  }
+}
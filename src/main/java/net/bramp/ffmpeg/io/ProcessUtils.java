@@ -1,5 +1,7 @@
 package net.bramp.ffmpeg.io;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -9,6 +11,17 @@ import java.util.concurrent.TimeoutException;
  * @author bramp
  */
 public final class ProcessUtils {
+  /** Process.pid(), which only exists on Java 9+, or null */
+  private static final Method PID = pidMethod();
+
+  private static Method pidMethod() {
+    try {
+      return Process.class.getMethod("pid");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
   private ProcessUtils() {
     throw new AssertionError("No instances for you!");
   }
@@ -38,4 +51,27 @@ public final class ProcessUtils {
 
     return p.exitValue();
   }
+
+  /**
+   * Returns the operating system's id for the process, or -1 if it can't be found. Uses
+   * Process.pid() on Java 9+, otherwise the private pid field of the Unix process implementation.
+   *
+   * @param p process
+   * @return the process id, or -1
+   */
+  public static long pid(Process p) {
+    try {
+      if (PID != null) {
+        return (Long) PID.invoke(p);
+      }
+
+      Field field = p.getClass().getDeclaredField("pid");
+      field.setAccessible(true);
+      return field.getLong(p);
+
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // Not supported, for example a mock process, or a non-Unix process on Java 8.
+      return -1;
+    }
+  }
 }
@@ -0,0 +1,92 @@
+package net.bramp.ffmpeg.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * An Appendable which only remembers the last N characters appended to it. Useful for capturing
+ * the end of a long, verbose, process output (where the errors normally are) with bounded memory.
+ *
+ * @author bramp
+ */
+public class TailAppendable implements Appendable {
+
+  final char[] buffer;
+
+  int next = 0; // Index where the next char will be written
+  long length = 0; // Total number of characters ever appended
+
+  public TailAppendable(int capacity) {
+    checkArgument(capacity > 0, "capacity must be greater than zero");
+    this.buffer = new char[capacity];
+  }
+
+  @Override
+  public synchronized TailAppendable append(CharSequence csq) {
+    if (csq == null) {
+      csq = "null";
+    }
+    return append(csq, 0, csq.length());
+  }
+
+  @Override
+  public synchronized TailAppendable append(CharSequence csq, int start, int end) {
+    if (csq == null) {
+      csq = "null";
+    }
+
+    // Only the last buffer.length characters can survive
+    int from = Math.max(start, end - buffer.length);
+    for (int i = from; i < end; i++) {
+      put(csq.charAt(i));
+    }
+    length += end - start;
+    return this;
+  }
+
+  @Override
+  public synchronized TailAppendable append(char c) {
+    put(c);
+    length++;
+    return this;
+  }
+
+  private void put(char c) {
+    buffer[next] = c;
+    next = (next + 1) % buffer.length;
+  }
+
+  /**
+   * Returns the total number of characters appended, including those no longer remembered.
+   *
+   * @return the number of characters.
+   */
+  public synchronized long getLength() {
+    return length;
+  }
+
+  /**
+   * Returns true if some characters have been discarded.
+   *
+   * @return true if truncated.
+   */
+  public synchronized boolean isTruncated() {
+    return length > buffer.length;
+  }
+
+  /**
+   * Returns the last characters appended, up to the capacity of this buffer.
+   *
+   * @return the tail.
+   */
+  @Override
+  public synchronized String toString() {
+    if (length < buffer.length) {
+      return new String(buffer, 0, next);
+    }
+
+    return new StringBuilder(buffer.length)
+        .append(buffer, next, buffer.length - next)
+        .append(buffer, 0, next)
+        .toString();
+  }
+}
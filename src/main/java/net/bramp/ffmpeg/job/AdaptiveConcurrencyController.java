@@ -0,0 +1,335 @@
+package net.bramp.ffmpeg.job;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+import net.bramp.ffmpeg.progress.Progress;
+import net.bramp.ffmpeg.progress.ProgressListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides how many jobs a {@link FFmpegJobScheduler} runs at once, by watching the progress of the
+ * running jobs, instead of using a fixed limit.
+ *
+ * <p>The limit is adjusted AIMD style (additive increase, multiplicative decrease) to maximise the
+ * total throughput, the sum of every running job's speed (its realtime factor). If any job doesn't
+ * report a speed, the sum of their fps is used instead, so the two are never mixed. Once per
+ * interval:
+ *
+ * <ul>
+ *   <li>If the system load average per CPU is above the load threshold, or the last increase did
+ *       not improve throughput, the limit is multiplied by the decrease factor. An increase is only
+ *       judged if no job finished since, and throughput was measured in the same unit, as otherwise
+ *       the two totals can't be compared.
+ *   <li>Otherwise if every allowed job is running, the limit is increased by one.
+ *   <li>Otherwise the limit is kept, as there is nothing to learn from an idle scheduler.
+ * </ul>
+ *
+ * <pre>
+ * <code>FFmpegJobScheduler scheduler =
+ *     new FFmpegJobScheduler(new AdaptiveConcurrencyController(1, 32));</code>
+ * </pre>
+ *
+ * <p>Jobs need no changes; the scheduler observes their progress. Throughput is only known for
+ * jobs that report progress, which every job run by a scheduler with a controller does.
+ */
+public class AdaptiveConcurrencyController {
+
+  static final Logger LOG = LoggerFactory.getLogger(AdaptiveConcurrencyController.class);
+
+  public static final long DEFAULT_INTERVAL_MILLIS = 10_000;
+  public static final double DEFAULT_DECREASE_FACTOR = 0.75;
+  public static final double DEFAULT_MIN_GAIN = 0.05;
+  public static final double DEFAULT_LOAD_THRESHOLD = 1.0;
+
+  enum Action {
+    HOLD,
+    INCREASE,
+    DECREASE,
+  }
+
+  /** What throughput is measured in. */
+  enum Unit {
+    SPEED,
+    FPS,
+  }
+
+  final int minLimit;
+  final int maxLimit;
+  final long intervalNanos;
+
+  final DoubleSupplier loadAverage;
+  final LongSupplier nanoTime;
+  final int cpus;
+
+  double decreaseFactor = DEFAULT_DECREASE_FACTOR;
+  double minGain = DEFAULT_MIN_GAIN;
+  double loadThreshold = DEFAULT_LOAD_THRESHOLD;
+
+  /** The latest progress of each running job. */
+  final Map<Object, Sample> running = new ConcurrentHashMap<>();
+
+  /** The number of jobs which finished since the last adjustment. */
+  final AtomicInteger finished = new AtomicInteger();
+
+  private volatile int limit;
+
+  @Nullable private volatile Runnable onIncrease = null;
+
+  // Guarded by "this"
+  private long lastAdjustNanos;
+  private double lastThroughput = 0;
+  private Unit lastUnit = Unit.SPEED;
+  private Action lastAction = Action.HOLD;
+
+  /**
+   * Creates a controller starting at {@code minLimit} jobs, and adjusting every ten seconds.
+   *
+   * @param minLimit the fewest jobs to run at once.
+   * @param maxLimit the most jobs to run at once.
+   */
+  public AdaptiveConcurrencyController(int minLimit, int maxLimit) {
+    this(minLimit, minLimit, maxLimit, DEFAULT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates a controller.
+   *
+   * @param minLimit the fewest jobs to run at once.
+   * @param initialLimit the number of jobs to start with.
+   * @param maxLimit the most jobs to run at once.
+   * @param interval how often to adjust the limit. Should be long enough for a newly started job
+   *     to report its speed.
+   * @param unit the unit of the interval.
+   */
+  public AdaptiveConcurrencyController(
+      int minLimit, int initialLimit, int maxLimit, long interval, TimeUnit unit) {
+    this(
+        minLimit,
+        initialLimit,
+        maxLimit,
+        interval,
+        unit,
+        () -> ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage(),
+        System::nanoTime,
+        Runtime.getRuntime().availableProcessors());
+  }
+
+  @VisibleForTesting
+  AdaptiveConcurrencyController(
+      int minLimit,
+      int initialLimit,
+      int maxLimit,
+      long interval,
+      TimeUnit unit,
+      DoubleSupplier loadAverage,
+      LongSupplier nanoTime,
+      int cpus) {
+    checkArgument(minLimit > 0, "minLimit must be greater than zero");
+    checkArgument(maxLimit >= minLimit, "maxLimit must be at least minLimit");
+    checkArgument(
+        initialLimit >= minLimit && initialLimit <= maxLimit,
+        "initialLimit must be between minLimit and maxLimit");
+    checkArgument(interval > 0, "interval must be positive");
+
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.limit = initialLimit;
+    this.intervalNanos = unit.toNanos(interval);
+    this.loadAverage = checkNotNull(loadAverage);
+    this.nanoTime = checkNotNull(nanoTime);
+    this.cpus = cpus;
+    this.lastAdjustNanos = nanoTime.getAsLong();
+  }
+
+  /**
+   * Sets how much the limit is multiplied by when decreasing.
+   *
+   * @param decreaseFactor between zero and one.
+   */
+  public synchronized void setDecreaseFactor(double decreaseFactor) {
+    checkArgument(decreaseFactor > 0 && decreaseFactor < 1, "decreaseFactor must be in (0, 1)");
+    this.decreaseFactor = decreaseFactor;
+  }
+
+  /**
+   * Sets how much throughput must improve by after an increase, for it to be kept.
+   *
+   * @param minGain the fraction, for example 0.05 for five percent.
+   */
+  public synchronized void setMinGain(double minGain) {
+    checkArgument(minGain >= 0, "minGain must not be negative");
+    this.minGain = minGain;
+  }
+
+  /**
+   * Sets the system load average per CPU above which the limit is decreased.
+   *
+   * @param loadThreshold the load per CPU, or zero to ignore the load average.
+   */
+  public synchronized void setLoadThreshold(double loadThreshold) {
+    checkArgument(loadThreshold >= 0, "loadThreshold must not be negative");
+    this.loadThreshold = loadThreshold;
+  }
+
+  /** Sets a callback run after the limit is increased, so more jobs can be started. */
+  void setOnIncrease(@Nullable Runnable onIncrease) {
+    this.onIncrease = onIncrease;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  public int getMinLimit() {
+    return minLimit;
+  }
+
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+
+  /**
+   * Returns the total throughput of the running jobs, as of their latest progress. This is the sum
+   * of their speeds, or of their fps if any doesn't report a speed. Jobs yet to report any progress
+   * are left out.
+   */
+  public double getThroughput() {
+    return getThroughput(getThroughputUnit());
+  }
+
+  /** Returns the unit throughput is measured in, speed unless a job doesn't report one. */
+  Unit getThroughputUnit() {
+    for (Sample sample : running.values()) {
+      if (sample.reported && sample.speed <= 0) {
+        return Unit.FPS;
+      }
+    }
+    return Unit.SPEED;
+  }
+
+  double getThroughput(Unit unit) {
+    double total = 0;
+    for (Sample sample : running.values()) {
+      if (sample.reported) {
+        total += unit == Unit.SPEED ? sample.speed : sample.fps;
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Starts tracking a running job.
+   *
+   * @param key identifies the job.
+   * @return a listener to be told of the job's progress.
+   */
+  ProgressListener track(Object key) {
+    final Sample sample = new Sample();
+    running.put(key, sample);
+    return progress -> {
+      sample.update(progress);
+      maybeAdjust();
+    };
+  }
+
+  /** Stops tracking a job, once it has finished. */
+  void untrack(Object key) {
+    if (running.remove(key) != null) {
+      finished.incrementAndGet();
+    }
+  }
+
+  /** Adjusts the limit, if an interval has passed since the last adjustment. */
+  void maybeAdjust() {
+    boolean increased;
+    synchronized (this) {
+      long now = nanoTime.getAsLong();
+      if (now - lastAdjustNanos < intervalNanos) {
+        return;
+      }
+      lastAdjustNanos = now;
+      increased = adjust() == Action.INCREASE;
+    }
+
+    Runnable onIncrease = this.onIncrease;
+    if (increased && onIncrease != null) {
+      onIncrease.run();
+    }
+  }
+
+  /** Adjusts the limit, based on the current throughput and load. */
+  synchronized Action adjust() {
+    final Unit unit = getThroughputUnit();
+    final double throughput = getThroughput(unit);
+    final int oldLimit = limit;
+
+    // A finished job takes its throughput with it, so only compare totals from the same jobs, plus
+    // any started since, and in the same unit.
+    final boolean comparable = finished.getAndSet(0) == 0 && unit == lastUnit;
+
+    final Action action;
+    if (isOverloaded()) {
+      action = Action.DECREASE;
+    } else if (lastAction == Action.INCREASE && !comparable) {
+      action = Action.HOLD; // Can't tell if the last increase helped, so measure again
+    } else if (lastAction == Action.INCREASE && throughput < lastThroughput * (1 + minGain)) {
+      action = Action.DECREASE; // The last job added didn't help
+    } else if (running.size() >= limit && limit < maxLimit) {
+      action = Action.INCREASE;
+    } else {
+      action = Action.HOLD;
+    }
+
+    if (action == Action.DECREASE) {
+      limit = Math.max(minLimit, Math.min(limit - 1, (int) (limit * decreaseFactor)));
+    } else if (action == Action.INCREASE) {
+      limit = limit + 1;
+    }
+
+    if (limit != oldLimit) {
+      LOG.debug(
+          "Concurrency limit {} -> {} (throughput {}, was {})",
+          oldLimit,
+          limit,
+          throughput,
+          lastThroughput);
+    }
+
+    lastThroughput = throughput;
+    lastUnit = unit;
+    lastAction = limit != oldLimit ? action : Action.HOLD;
+    return lastAction;
+  }
+
+  boolean isOverloaded() {
+    if (loadThreshold <= 0) {
+      return false;
+    }
+    double load = loadAverage.getAsDouble();
+    return load >= 0 && load / cpus > loadThreshold; // Negative if not available
+  }
+
+  /** The latest progress of a running job. */
+  static final class Sample {
+    volatile double speed;
+    volatile double fps;
+    volatile boolean reported = false;
+
+    void update(Progress progress) {
+      speed = Math.max(0, progress.getSpeed());
+      fps = progress.getFps() == null ? 0 : Math.max(0, progress.getFps().doubleValue());
+      reported = true;
+    }
+  }
+}
@@ -2,9 +2,16 @@ package net.bramp.ffmpeg.job;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nullable;
 import net.bramp.ffmpeg.FFmpeg;
+import net.bramp.ffmpeg.metrics.Counter;
+import net.bramp.ffmpeg.metrics.Histogram;
+import net.bramp.ffmpeg.metrics.Metrics;
+import net.bramp.ffmpeg.progress.Progress;
 import net.bramp.ffmpeg.progress.ProgressListener;
+import net.bramp.ffmpeg.progress.ResourceUsage;
+import net.bramp.ffmpeg.progress.ResourceUsageListener;
 
 /**
  * A FFmpegJob is a single job that can be run by FFmpeg. It can be a single pass, or a two pass job.
@@ -20,11 +27,30 @@ public abstract class FFmpegJob implements Runnable {
     FAILED,
   }
 
+  static final Histogram QUEUE_NANOS = Metrics.histogram("ffmpeg.job.queue.nanos");
+  static final Histogram RUN_NANOS = Metrics.histogram("ffmpeg.job.run.nanos");
+  static final Counter JOBS_STARTED = Metrics.counter("ffmpeg.job.started");
+  static final Counter JOBS_FINISHED = Metrics.counter("ffmpeg.job.finished");
+  static final Counter JOBS_FAILED = Metrics.counter("ffmpeg.job.failed");
+
+  static final AtomicInteger running = new AtomicInteger();
+
+  static {
+    Metrics.gauge("ffmpeg.job.running", running::get);
+  }
+
   final FFmpeg ffmpeg;
   final ProgressListener listener;
 
   State state = State.WAITING;
 
+  /** Also told of the job's progress, such as by the scheduler running it, or null */
+  @Nullable volatile ProgressListener observer = null;
+
+  /** When the job was created, and when it started running */
+  final long createdNanos = System.nanoTime();
+  long startedNanos;
+
   public FFmpegJob(FFmpeg ffmpeg) {
     this(ffmpeg, null);
   }
@@ -37,4 +63,95 @@ public abstract class FFmpegJob implements Runnable {
   public State getState() {
     return state;
   }
+
+  /**
+   * Returns the listener to pass to ffmpeg, which tells both the job's listener and any observer,
+   * or null if there are neither.
+   */
+  @Nullable
+  ProgressListener progressListener() {
+    final ProgressListener observer = this.observer;
+    if (observer == null) {
+      return listener;
+    }
+    if (listener == null) {
+      return observer;
+    }
+    if (listener instanceof ResourceUsageListener) {
+      return new ObservedResourceListener(listener, observer);
+    }
+    return progress -> {
+      observer.progress(progress);
+      listener.progress(progress);
+    };
+  }
+
+  /** Forwards progress to both listeners, keeping the job listener's resource usage. */
+  static final class ObservedResourceListener implements ProgressListener, ResourceUsageListener {
+    final ProgressListener listener;
+    final ProgressListener observer;
+
+    ObservedResourceListener(ProgressListener listener, ProgressListener observer) {
+      this.listener = listener;
+      this.observer = observer;
+    }
+
+    @Override
+    public void progress(Progress progress) {
+      observer.progress(progress);
+      listener.progress(progress);
+    }
+
+    @Override
+    public void resourceUsage(ResourceUsage usage) {
+      ((ResourceUsageListener) listener).resourceUsage(usage);
+    }
+
+    @Override
+    public void resourceSummary(ResourceUsage summary) {
+      ((ResourceUsageListener) listener).resourceSummary(summary);
+    }
+  }
+
+  /**
+   * Moves the job to the new state, recording how long it spent in the last. Jobs call this from
+   * {@link #run()}, so custom jobs are counted in the metrics too.
+   *
+   * @param state The new state.
+   */
+  protected void setState(State state) {
+    long now = System.nanoTime();
+    switch (state) {
+      case RUNNING:
+        startedNanos = now;
+        running.incrementAndGet();
+        JOBS_STARTED.increment();
+        QUEUE_NANOS.record(now - createdNanos);
+        break;
+
+      case FINISHED:
+      case FAILED:
+        if (this.state == State.RUNNING) {
+          running.decrementAndGet();
+          RUN_NANOS.record(now - startedNanos);
+        }
+        (state == State.FINISHED ? JOBS_FINISHED : JOBS_FAILED).increment();
+        break;
+
+      default:
+        break;
+    }
+    this.state = state;
+  }
+
+  /**
+   * Returns the number of threads this job asks ffmpeg to use, or zero if ffmpeg will decide.
+   * Used by {@link FFmpegJobScheduler} to weigh jobs against its CPU budget, so custom jobs should
+   * override it if they know.
+   *
+   * @return the number of threads
+   */
+  protected int getThreads() {
+    return 0;
+  }
 }
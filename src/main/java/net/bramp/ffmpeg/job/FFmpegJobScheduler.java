@@ -0,0 +1,290 @@
+package net.bramp.ffmpeg.job;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.Closeable;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Runs {@link FFmpegJob}s while limiting how many ffmpeg processes execute at the same time.
+ *
+ * <p>Jobs beyond the limit are queued, and started in priority order (highest first, then in
+ * submission order) as running jobs finish. Optionally each job can also be weighed by the number
+ * of threads it asks ffmpeg to use (see {@link net.bramp.ffmpeg.builder.FFmpegBuilder#setThreads}),
+ * and jobs are only started while the sum of the running weights fits within a CPU budget.
+ *
+ * <pre>
+ * <code>FFmpegJobScheduler scheduler = new FFmpegJobScheduler(8);
+ * CompletableFuture&lt;FFmpegJob&gt; future = scheduler.submit(executor.createJob(builder));
+ * future.get();</code>
+ * </pre>
+ *
+ * <p>Instead of a fixed limit, an {@link AdaptiveConcurrencyController} can choose how many jobs
+ * run at once, based on the progress of the running jobs.
+ *
+ * @author bramp
+ */
+public class FFmpegJobScheduler implements Closeable {
+
+  public static final int DEFAULT_PRIORITY = 0;
+
+  final int maxConcurrentJobs;
+  final int cpuBudget;
+  final int defaultJobWeight;
+
+  @Nullable final AdaptiveConcurrencyController controller;
+
+  final ExecutorService executor;
+
+  // All fields below are guarded by "this"
+  final PriorityQueue<ScheduledJob> queue = new PriorityQueue<>();
+  long sequence = 0;
+  int running = 0;
+  int runningWeight = 0;
+  boolean closed = false;
+
+  /**
+   * Creates a scheduler which runs at most {@code maxConcurrentJobs} jobs at once.
+   *
+   * @param maxConcurrentJobs the maximum number of concurrent ffmpeg processes.
+   */
+  public FFmpegJobScheduler(int maxConcurrentJobs) {
+    this(maxConcurrentJobs, 0, 1);
+  }
+
+  /**
+   * Creates a scheduler which runs at most {@code maxConcurrentJobs} jobs at once, and whose running
+   * jobs' weights never exceed {@code cpuBudget}. A job's weight is the number of threads set on
+   * its builder, or {@code defaultJobWeight} if it lets ffmpeg decide. A single job heavier than
+   * the whole budget is still run, but only when nothing else is running.
+   *
+   * @param maxConcurrentJobs the maximum number of concurrent ffmpeg processes.
+   * @param cpuBudget the maximum total weight of running jobs, or zero for no limit.
+   * @param defaultJobWeight the weight of jobs that do not set a thread count.
+   */
+  public FFmpegJobScheduler(int maxConcurrentJobs, int cpuBudget, int defaultJobWeight) {
+    this(maxConcurrentJobs, cpuBudget, defaultJobWeight, null);
+  }
+
+  /**
+   * Creates a scheduler which runs as many jobs at once as the controller allows.
+   *
+   * @param controller decides the number of concurrent ffmpeg processes. Must not be shared with
+   *     another scheduler.
+   */
+  public FFmpegJobScheduler(AdaptiveConcurrencyController controller) {
+    this(checkNotNull(controller).getMaxLimit(), 0, 1, controller);
+  }
+
+  private FFmpegJobScheduler(
+      int maxConcurrentJobs,
+      int cpuBudget,
+      int defaultJobWeight,
+      @Nullable AdaptiveConcurrencyController controller) {
+    checkArgument(maxConcurrentJobs > 0, "maxConcurrentJobs must be greater than zero");
+    checkArgument(cpuBudget >= 0, "cpuBudget must be positive");
+    checkArgument(defaultJobWeight > 0, "defaultJobWeight must be greater than zero");
+
+    this.maxConcurrentJobs = maxConcurrentJobs;
+    this.cpuBudget = cpuBudget;
+    this.defaultJobWeight = defaultJobWeight;
+    this.controller = controller;
+    this.executor =
+        Executors.newFixedThreadPool(
+            maxConcurrentJobs,
+            new ThreadFactoryBuilder()
+                .setNameFormat("FFmpegJobScheduler-%d")
+                .setDaemon(true)
+                .build());
+
+    if (controller != null) {
+      controller.setOnIncrease(this::dispatch);
+    }
+  }
+
+  /**
+   * Queues the job with the default priority.
+   *
+   * @param job the job to run.
+   * @return a future completed with the job once it has finished.
+   */
+  public CompletableFuture<FFmpegJob> submit(FFmpegJob job) {
+    return submit(job, DEFAULT_PRIORITY);
+  }
+
+  /**
+   * Queues the job. Jobs with a higher priority are started before jobs with a lower priority.
+   * Cancelling the returned future removes the job from the queue if it has not yet started.
+   *
+   * @param job the job to run.
+   * @param priority the priority of this job.
+   * @return a future completed with the job once it has finished.
+   * @throws RejectedExecutionException if the scheduler has been closed.
+   */
+  public CompletableFuture<FFmpegJob> submit(FFmpegJob job, int priority) {
+    checkNotNull(job);
+
+    final ScheduledJob scheduled;
+    synchronized (this) {
+      if (closed) {
+        throw new RejectedExecutionException("Scheduler has been closed");
+      }
+
+      scheduled = new ScheduledJob(job, priority, sequence++, weigh(job));
+      queue.add(scheduled);
+    }
+
+    // Only needed for its side effect, failures are seen through the returned future
+    CompletableFuture<FFmpegJob> unused =
+        scheduled.future.whenComplete(
+            (result, t) -> {
+              if (t instanceof CancellationException) {
+                dequeue(scheduled);
+              }
+            });
+
+    dispatch();
+    return scheduled.future;
+  }
+
+  int weigh(FFmpegJob job) {
+    int threads = job.getThreads();
+    return threads > 0 ? threads : defaultJobWeight;
+  }
+
+  synchronized void dequeue(ScheduledJob scheduled) {
+    queue.remove(scheduled);
+  }
+
+  /** Starts as many queued jobs as the limits allow. */
+  synchronized void dispatch() {
+    while (!closed && running < getConcurrencyLimit() && !queue.isEmpty()) {
+      ScheduledJob next = queue.peek();
+
+      // Strictly follow priority order, so a heavy job is not starved by lighter ones behind it.
+      if (cpuBudget > 0 && running > 0 && runningWeight + next.weight > cpuBudget) {
+        break;
+      }
+
+      queue.poll();
+      if (next.future.isDone()) {
+        continue; // Cancelled while queued
+      }
+
+      running++;
+      runningWeight += next.weight;
+      if (controller != null) {
+        next.job.observer = controller.track(next);
+      }
+      executor.execute(() -> execute(next));
+    }
+  }
+
+  void execute(ScheduledJob scheduled) {
+    try {
+      scheduled.job.run();
+      scheduled.future.complete(scheduled.job);
+
+    } catch (Throwable t) {
+      scheduled.future.completeExceptionally(t);
+
+    } finally {
+      if (controller != null) {
+        scheduled.job.observer = null;
+        controller.untrack(scheduled);
+      }
+
+      synchronized (this) {
+        running--;
+        runningWeight -= scheduled.weight;
+      }
+      dispatch();
+    }
+  }
+
+  public int getMaxConcurrentJobs() {
+    return maxConcurrentJobs;
+  }
+
+  /**
+   * Returns the number of jobs currently allowed to run at once. This is fixed, unless the
+   * scheduler has an {@link AdaptiveConcurrencyController}.
+   *
+   * @return the concurrency limit.
+   */
+  public int getConcurrencyLimit() {
+    return controller == null ? maxConcurrentJobs : controller.getLimit();
+  }
+
+  public synchronized int getRunningJobs() {
+    return running;
+  }
+
+  public synchronized int getQueuedJobs() {
+    return queue.size();
+  }
+
+  /**
+   * Stops accepting new jobs and cancels all queued jobs. Jobs already running are allowed to
+   * finish.
+   */
+  @Override
+  public void close() {
+    final ScheduledJob[] cancelled;
+    synchronized (this) {
+      closed = true;
+      cancelled = queue.toArray(new ScheduledJob[0]);
+      queue.clear();
+    }
+
+    for (ScheduledJob scheduled : cancelled) {
+      scheduled.future.cancel(false);
+    }
+
+    executor.shutdown();
+  }
+
+  /**
+   * Blocks until all running jobs have finished after a {@link #close()}.
+   *
+   * @param timeout the maximum time to wait.
+   * @param unit the unit of the timeout.
+   * @return true if all jobs finished, false if the timeout elapsed.
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return executor.awaitTermination(timeout, unit);
+  }
+
+  static class ScheduledJob implements Comparable<ScheduledJob> {
+    final FFmpegJob job;
+    final int priority;
+    final long sequence;
+    final int weight;
+    final CompletableFuture<FFmpegJob> future = new CompletableFuture<>();
+
+    ScheduledJob(FFmpegJob job, int priority, long sequence, int weight) {
+      this.job = job;
+      this.priority = priority;
+      this.sequence = sequence;
+      this.weight = weight;
+    }
+
+    @Override
+    public int compareTo(ScheduledJob o) {
+      if (priority != o.priority) {
+        return Integer.compare(o.priority, priority); // Highest priority first
+      }
+      return Long.compare(sequence, o.sequence);
+    }
+  }
+}
@@ -0,0 +1,517 @@
+package net.bramp.ffmpeg.job;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Throwables;
+import com.google.common.primitives.Longs;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import net.bramp.ffmpeg.FFmpeg;
+import net.bramp.ffmpeg.FFprobe;
+import net.bramp.ffmpeg.builder.AbstractFFmpegInputBuilder;
+import net.bramp.ffmpeg.builder.AbstractFFmpegOutputBuilder;
+import net.bramp.ffmpeg.builder.FFmpegBuilder;
+import net.bramp.ffmpeg.builder.FFmpegCommandTemplate;
+import net.bramp.ffmpeg.builder.FFmpegOutputBuilder;
+import net.bramp.ffmpeg.probe.FFmpegFrame;
+import net.bramp.ffmpeg.probe.FFmpegPacket;
+import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import net.bramp.ffmpeg.probe.FFmpegStream;
+import net.bramp.ffmpeg.probe.ProbeListener;
+import net.bramp.ffmpeg.progress.Progress;
+import net.bramp.ffmpeg.progress.ProgressListener;
+import net.bramp.ffmpeg.shared.CodecType;
+
+/**
+ * Transcodes a single input using several ffmpeg processes at once, to cut the time taken for one
+ * long file.
+ *
+ * <p>The input's keyframes are found with ffprobe, streaming just the time and flags of each packet
+ * in the first video stream, so the input's length doesn't affect memory use. The video is split
+ * at keyframes into segments of roughly the requested duration. The segments are transcoded
+ * concurrently into a temporary directory next to the output, while the audio is transcoded once,
+ * as a whole, so there are no gaps or clicks where the segments meet. Finally the segments and
+ * audio are joined into the output with the concat demuxer, without transcoding again.
+ *
+ * <p>The builder must have a single input and a single output file, and should not trim the input
+ * or use a complex filter, as each segment is made by running the builder with a different start
+ * offset and duration.
+ */
+public class SegmentedFFmpegJob extends FFmpegJob {
+
+  public static final long DEFAULT_SEGMENT_MILLIS = 30_000;
+
+  final FFprobe ffprobe;
+  final FFmpegBuilder builder;
+  final int parallelism;
+  final long segmentMillis;
+
+  final AbstractFFmpegInputBuilder<?> input;
+  final AbstractFFmpegOutputBuilder<?> output;
+
+  public SegmentedFFmpegJob(FFmpeg ffmpeg, FFprobe ffprobe, FFmpegBuilder builder) {
+    this(ffmpeg, ffprobe, builder, null);
+  }
+
+  public SegmentedFFmpegJob(
+      FFmpeg ffmpeg, FFprobe ffprobe, FFmpegBuilder builder, @Nullable ProgressListener listener) {
+    this(
+        ffmpeg,
+        ffprobe,
+        builder,
+        Runtime.getRuntime().availableProcessors(),
+        DEFAULT_SEGMENT_MILLIS,
+        TimeUnit.MILLISECONDS,
+        listener);
+  }
+
+  /**
+   * Creates a segmented job.
+   *
+   * @param ffmpeg the ffmpeg to run.
+   * @param ffprobe the ffprobe used to find the input's keyframes.
+   * @param builder describes the transcode of the whole input.
+   * @param parallelism the most segments to transcode at once.
+   * @param segmentDuration the shortest segment. Segments end on the first keyframe after this.
+   * @param unit the unit of the segment duration.
+   * @param listener optional listener, told the combined progress of all segments.
+   */
+  public SegmentedFFmpegJob(
+      FFmpeg ffmpeg,
+      FFprobe ffprobe,
+      FFmpegBuilder builder,
+      int parallelism,
+      long segmentDuration,
+      TimeUnit unit,
+      @Nullable ProgressListener listener) {
+    super(ffmpeg, listener);
+    this.ffprobe = checkNotNull(ffprobe);
+    this.builder = checkNotNull(builder);
+
+    checkArgument(parallelism > 0, "parallelism must be greater than zero");
+    checkArgument(segmentDuration > 0, "segmentDuration must be positive");
+    this.parallelism = parallelism;
+    this.segmentMillis = unit.toMillis(segmentDuration);
+
+    List<AbstractFFmpegInputBuilder<?>> inputs = builder.getInputs();
+    List<AbstractFFmpegOutputBuilder<?>> outputs = builder.getOutputs();
+    checkArgument(inputs.size() == 1, "a segmented job must have exactly one input");
+    checkArgument(outputs.size() == 1, "a segmented job must have exactly one output");
+
+    this.input = inputs.get(0);
+    this.output = outputs.get(0);
+
+    checkArgument(input.getFilename() != null, "the input must be a file");
+    checkArgument(
+        output.getFilename() != null && !builder.writesToStdout(), "the output must be a file");
+    checkArgument(
+        input.startOffset == null && input.duration == null,
+        "the input must not have a start offset or duration");
+    checkArgument(
+        output.startOffset == null && output.duration == null,
+        "the output must not have a start offset or duration");
+    checkArgument(output.getComplexFilter() == null, "the output must not use a complex filter");
+
+    // Build the args now (but throw away the results). This allows the illegal arguments to be
+    // caught early.
+    @SuppressWarnings("unused")
+    List<String> unused = this.builder.build();
+  }
+
+  @Override
+  protected int getThreads() {
+    int threads = builder.getThreads();
+    return threads > 0 ? threads * parallelism : parallelism;
+  }
+
+  @Override
+  public void run() {
+    setState(State.RUNNING);
+
+    try {
+      Path outputPath = Paths.get(output.getFilename()).toAbsolutePath();
+      Path dir = Files.createTempDirectory(outputPath.getParent(), ".segments-");
+      try {
+        transcode(outputPath, dir);
+      } catch (Throwable t) {
+        // The parts have finished or been destroyed, but don't let failing to clean up hide why
+        try {
+          deleteParts(dir);
+        } catch (IOException e) {
+          t.addSuppressed(e);
+        }
+        throw t;
+      }
+      deleteParts(dir);
+      setState(State.FINISHED);
+
+    } catch (Throwable t) {
+      setState(State.FAILED);
+
+      Throwables.throwIfUnchecked(t);
+      throw new RuntimeException(t);
+    }
+  }
+
+  protected void deleteParts(Path dir) throws IOException {
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+      for (Path p : stream) {
+        Files.deleteIfExists(p);
+      }
+    }
+    Files.deleteIfExists(dir);
+  }
+
+  private void transcode(Path outputPath, Path dir) throws IOException, InterruptedException {
+    FFmpegProbeResult probe =
+        ffprobe.probe(ffprobe.builder().setInput(input.getFilename()).setShowChapters(false));
+
+    List<FFmpegStream> streams = probe.getStreams();
+    double startTime = probe.getFormat() == null ? 0 : probe.getFormat().getStartTime();
+    long[] starts = segmentStarts(keyframeTimes(streams, startTime), segmentMillis);
+
+    String extension = extension(outputPath.getFileName().toString());
+    boolean audio = output.audio_enabled && hasAudio(streams);
+
+    // Make every part's arguments up front, as the builder is changed to make them.
+    List<FFmpegCommandTemplate> parts = new ArrayList<>();
+    List<String> segments = new ArrayList<>();
+    Path audioPath = null;
+
+    if (audio) {
+      audioPath = dir.resolve("audio" + extension);
+      parts.add(compilePart(audioPath, null, null, false, true));
+    }
+
+    for (int i = 0; i < starts.length; i++) {
+      String name = String.format("segment-%05d%s", i, extension);
+      Long start = i == 0 ? null : starts[i];
+      Long duration = i == starts.length - 1 ? null : starts[i + 1] - starts[i];
+
+      segments.add("file '" + name + "'");
+      parts.add(compilePart(dir.resolve(name), start, duration, true, false));
+    }
+
+    final ProgressListener listener = progressListener();
+    final CombinedProgress progress =
+        listener == null ? null : new CombinedProgress(starts.length, listener);
+    final int firstSegment = parts.size() - starts.length;
+
+    List<ProgressListener> partListeners = new ArrayList<>();
+    for (int i = 0; i < parts.size(); i++) {
+      // The audio's progress is left out, as it would count the input's duration twice
+      partListeners.add(
+          progress == null || i < firstSegment ? null : progress.part(i - firstSegment));
+    }
+
+    runParts(parts, partListeners);
+
+    Path list = dir.resolve("segments.txt");
+    Files.write(list, segments, StandardCharsets.UTF_8);
+
+    ffmpeg.run(concat(outputPath, list, audioPath));
+
+    if (progress != null) {
+      progress.end();
+    }
+  }
+
+  /**
+   * Runs the parts, at most {@link #parallelism} at once, until every part has finished. As soon as
+   * any fails, or this thread is interrupted, the rest are cancelled, which destroys their ffmpeg
+   * processes, and those not yet started never are.
+   */
+  private void runParts(List<FFmpegCommandTemplate> parts, List<ProgressListener> listeners)
+      throws IOException, InterruptedException {
+    List<CompletableFuture<Void>> running = new ArrayList<>();
+    try {
+      int next = 0;
+      while (next < parts.size() || !running.isEmpty()) {
+        while (next < parts.size() && running.size() < parallelism) {
+          FFmpegCommandTemplate part = parts.get(next);
+          running.add(ffmpeg.runAsync(part, part.instantiate(), listeners.get(next)));
+          next++;
+        }
+
+        // Wait for any part to finish, then check every finished part, so no failure is missed
+        CompletableFuture.anyOf(running.toArray(new CompletableFuture<?>[0])).get();
+        for (Iterator<CompletableFuture<Void>> it = running.iterator(); it.hasNext(); ) {
+          CompletableFuture<Void> future = it.next();
+          if (future.isDone()) {
+            it.remove();
+            future.get();
+          }
+        }
+      }
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IOException(e.getCause());
+    } finally {
+      for (CompletableFuture<Void> future : running) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  /** Compiles the builder's arguments for one part, leaving the builder as it was. */
+  private FFmpegCommandTemplate compilePart(
+      Path path,
+      @Nullable Long startOffset,
+      @Nullable Long duration,
+      boolean video,
+      boolean audio) {
+    final String filename = output.filename;
+    final boolean videoEnabled = output.video_enabled;
+    final boolean audioEnabled = output.audio_enabled;
+    final boolean subtitleEnabled = output.subtitle_enabled;
+    final Long inputStartOffset = input.startOffset;
+    final Long outputDuration = output.duration;
+    final boolean override = builder.getOverrideOutputFiles();
+
+    try {
+      output.filename = path.toString();
+      output.video_enabled = video;
+      output.audio_enabled = audio;
+      output.subtitle_enabled = false;
+      input.startOffset = startOffset;
+      output.duration = duration;
+      builder.overrideOutputFiles(true);
+
+      return builder.compile();
+
+    } finally {
+      output.filename = filename;
+      output.video_enabled = videoEnabled;
+      output.audio_enabled = audioEnabled;
+      output.subtitle_enabled = subtitleEnabled;
+      input.startOffset = inputStartOffset;
+      output.duration = outputDuration;
+      builder.overrideOutputFiles(override);
+    }
+  }
+
+  /** Joins the segments, and audio, into the output, copying the already encoded streams. */
+  private FFmpegBuilder concat(Path outputPath, Path list, @Nullable Path audioPath) {
+    FFmpegBuilder concat =
+        new FFmpegBuilder()
+            .overrideOutputFiles(builder.getOverrideOutputFiles())
+            .addInput(list.toString())
+            .setFormat("concat")
+            .done();
+
+    if (audioPath != null) {
+      concat.addInput(audioPath.toString()).done();
+    }
+
+    FFmpegOutputBuilder out =
+        concat.addOutput(outputPath.toString()).setVideoCodec("copy").disableSubtitle();
+
+    if (output.format != null) {
+      out.setFormat(output.format);
+    }
+
+    if (audioPath != null) {
+      out.setAudioCodec("copy").addExtraArgs("-map", "0:v", "-map", "1:a");
+    } else {
+      out.disableAudio();
+    }
+
+    return concat;
+  }
+
+  /**
+   * Returns the time of each keyframe in the first video stream, in seconds from the start of the
+   * input, in order. Only the stream's packets, and only their time and flags, are asked for, and
+   * they are streamed rather than collected, so memory use grows with the number of keyframes.
+   */
+  private List<Double> keyframeTimes(List<FFmpegStream> streams, double startTime)
+      throws IOException {
+    KeyframeCollector keyframes = new KeyframeCollector(startTime);
+
+    FFmpegStream video = firstVideoStream(streams);
+    if (video != null) {
+      ffprobe.probe(
+          ffprobe
+              .builder()
+              .setInput(input.getFilename())
+              .setShowFormat(false)
+              .setShowStreams(false)
+              .setShowChapters(false)
+              .addExtraArgs(
+                  "-select_streams",
+                  String.valueOf(video.index),
+                  "-show_entries",
+                  "packet=pts_time,flags"),
+          keyframes);
+    }
+
+    return keyframes.getTimes();
+  }
+
+  @Nullable
+  static FFmpegStream firstVideoStream(List<FFmpegStream> streams) {
+    for (FFmpegStream stream : streams) {
+      if (stream.codec_type == CodecType.VIDEO) {
+        return stream;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Chooses where each segment starts, in milliseconds. The first starts at zero, and each of the
+   * rest at the first keyframe at least {@code segmentMillis} after the last.
+   */
+  static long[] segmentStarts(List<Double> keyframes, long segmentMillis) {
+    List<Long> starts = new ArrayList<>();
+    starts.add(0L);
+
+    long last = 0;
+    for (double time : keyframes) {
+      long millis = Math.round(time * 1000);
+      if (millis - last >= segmentMillis) {
+        starts.add(millis);
+        last = millis;
+      }
+    }
+
+    return Longs.toArray(starts);
+  }
+
+  static boolean hasAudio(List<FFmpegStream> streams) {
+    for (FFmpegStream stream : streams) {
+      if (stream.codec_type == CodecType.AUDIO) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Collects the time of each keyframe packet, in seconds from the start of the input. */
+  static final class KeyframeCollector implements ProbeListener {
+    final double startTime;
+    final List<Double> times = new ArrayList<>();
+
+    KeyframeCollector(double startTime) {
+      this.startTime = startTime;
+    }
+
+    @Override
+    public void packet(FFmpegPacket packet) {
+      if (packet.getFlags() != null && packet.getFlags().indexOf('K') >= 0) {
+        times.add(packet.getPtsTime() - startTime);
+      }
+    }
+
+    @Override
+    public void frame(FFmpegFrame frame) {
+      // Only packets are asked for
+    }
+
+    /** Returns the keyframe times, in order. */
+    List<Double> getTimes() {
+      Collections.sort(times);
+      return times;
+    }
+  }
+
+  /** Returns the filename's extension, including the dot, or an empty string. */
+  static String extension(String filename) {
+    int dot = filename.lastIndexOf('.');
+    return dot <= 0 ? "" : filename.substring(dot);
+  }
+
+  /** Sums the progress of every segment, as if they were one ffmpeg process. */
+  static final class CombinedProgress {
+    final ProgressListener listener;
+
+    // All fields below are guarded by "this"
+    final long[] frames;
+    final long[] sizes;
+    final long[] outTimes;
+    final long[] dups;
+    final long[] drops;
+    final double[] fps;
+    final double[] speeds;
+
+    CombinedProgress(int parts, ProgressListener listener) {
+      this.listener = checkNotNull(listener);
+      this.frames = new long[parts];
+      this.sizes = new long[parts];
+      this.outTimes = new long[parts];
+      this.dups = new long[parts];
+      this.drops = new long[parts];
+      this.fps = new double[parts];
+      this.speeds = new double[parts];
+    }
+
+    ProgressListener part(int index) {
+      return progress -> update(index, progress);
+    }
+
+    synchronized void update(int index, Progress progress) {
+      boolean ended = progress.isEnd();
+
+      frames[index] = progress.getFrame();
+      sizes[index] = Math.max(0, progress.getTotalSize());
+      outTimes[index] = Math.max(0, progress.getOutTimeNs());
+      dups[index] = progress.getDupFrames();
+      drops[index] = progress.getDropFrames();
+      fps[index] = ended || progress.getFps() == null ? 0 : progress.getFps().doubleValue();
+      speeds[index] = ended ? 0 : Math.max(0, progress.getSpeed());
+
+      listener.progress(total(Progress.Status.CONTINUE));
+    }
+
+    synchronized void end() {
+      listener.progress(total(Progress.Status.END));
+    }
+
+    private Progress total(Progress.Status status) {
+      long size = sum(sizes);
+      long outTime = sum(outTimes);
+      long bitrate = outTime > 0 ? (long) (size * 8.0 * TimeUnit.SECONDS.toNanos(1) / outTime) : 0;
+
+      return new Progress(
+          sum(frames),
+          (float) sum(fps),
+          bitrate,
+          size,
+          outTime,
+          sum(dups),
+          sum(drops),
+          (float) sum(speeds),
+          status);
+    }
+
+    private static long sum(long[] values) {
+      long sum = 0;
+      for (long value : values) {
+        sum += value;
+      }
+      return sum;
+    }
+
+    private static double sum(double[] values) {
+      double sum = 0;
+      for (double value : values) {
+        sum += value;
+      }
+      return sum;
+    }
+  }
+}
@@ -29,17 +29,22 @@ public class SinglePassFFmpegJob extends FFmpegJob {
     List<String> unused = this.builder.build();
   }
 
+  @Override
+  protected int getThreads() {
+    return builder.getThreads();
+  }
+
   @Override
   public void run() {
 
-    state = State.RUNNING;
+    setState(State.RUNNING);
 
     try {
-      ffmpeg.run(builder, listener);
-      state = State.FINISHED;
+      ffmpeg.run(builder, progressListener());
+      setState(State.FINISHED);
 
     } catch (Throwable t) {
-      state = State.FAILED;
+      setState(State.FAILED);
 
       Throwables.throwIfUnchecked(t);
       throw new RuntimeException(t);
@@ -0,0 +1,53 @@
+package net.bramp.ffmpeg.job;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Throwables;
+import java.util.List;
+import javax.annotation.Nullable;
+import net.bramp.ffmpeg.FFmpeg;
+import net.bramp.ffmpeg.builder.FFmpegCommandTemplate;
+import net.bramp.ffmpeg.progress.ProgressListener;
+
+/** A single pass job, whose arguments were made by a {@link FFmpegCommandTemplate}. */
+public class TemplateFFmpegJob extends FFmpegJob {
+
+  public final FFmpegCommandTemplate template;
+  public final List<String> args;
+
+  public TemplateFFmpegJob(FFmpeg ffmpeg, FFmpegCommandTemplate template, List<String> args) {
+    this(ffmpeg, template, args, null);
+  }
+
+  public TemplateFFmpegJob(
+      FFmpeg ffmpeg,
+      FFmpegCommandTemplate template,
+      List<String> args,
+      @Nullable ProgressListener listener) {
+    super(ffmpeg, listener);
+    this.template = checkNotNull(template);
+    this.args = checkNotNull(args);
+  }
+
+  @Override
+  protected int getThreads() {
+    return template.getThreads();
+  }
+
+  @Override
+  public void run() {
+
+    setState(State.RUNNING);
+
+    try {
+      ffmpeg.run(template, args, progressListener());
+      setState(State.FINISHED);
+
+    } catch (Throwable t) {
+      setState(State.FAILED);
+
+      Throwables.throwIfUnchecked(t);
+      throw new RuntimeException(t);
+    }
+  }
+}
@@ -48,28 +48,35 @@ public class TwoPassFFmpegJob extends FFmpegJob {
     }
   }
 
+  @Override
+  protected int getThreads() {
+    return builder.getThreads();
+  }
+
   @Override
   public void run() {
-    state = State.RUNNING;
+    setState(State.RUNNING);
 
     try {
       try {
         // Two pass
         final boolean override = builder.getOverrideOutputFiles();
 
+        final ProgressListener progressListener = progressListener();
+
         FFmpegBuilder b1 = builder.setPass(1).overrideOutputFiles(true);
-        ffmpeg.run(b1, listener);
+        ffmpeg.run(b1, progressListener);
 
         FFmpegBuilder b2 = builder.setPass(2).overrideOutputFiles(override);
-        ffmpeg.run(b2, listener);
+        ffmpeg.run(b2, progressListener);
 
       } finally {
         deletePassLog();
       }
-      state = State.FINISHED;
+      setState(State.FINISHED);
 
     } catch (Throwable t) {
-      state = State.FAILED;
+      setState(State.FAILED);
 
       Throwables.throwIfUnchecked(t);
       throw new RuntimeException(t);
@@ -0,0 +1,11 @@
+package net.bramp.ffmpeg.metrics;
+
+/** A count that only goes up, such as the number of processes started. */
+public interface Counter {
+
+  void increment(long delta);
+
+  default void increment() {
+    increment(1);
+  }
+}
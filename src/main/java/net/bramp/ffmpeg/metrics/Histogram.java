@@ -0,0 +1,7 @@
+package net.bramp.ffmpeg.metrics;
+
+/** Records a distribution of values, such as how long something took in nanoseconds. */
+public interface Histogram {
+
+  void record(long value);
+}
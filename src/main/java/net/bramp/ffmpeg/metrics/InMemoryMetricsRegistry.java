@@ -0,0 +1,224 @@
+package net.bramp.ffmpeg.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+
+/**
+ * A simple registry keeping everything in memory, to be read back, for example to periodically
+ * export to a monitoring system. Histograms are kept as power of two buckets, so percentiles are
+ * approximate, but recording a value never allocates.
+ */
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+
+  final ConcurrentMap<String, InMemoryCounter> counters = new ConcurrentHashMap<>();
+  final ConcurrentMap<String, InMemoryHistogram> histograms = new ConcurrentHashMap<>();
+  final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+  @Override
+  public Counter counter(String name) {
+    return counters.computeIfAbsent(checkNotNull(name), n -> new InMemoryCounter());
+  }
+
+  @Override
+  public Histogram histogram(String name) {
+    return histograms.computeIfAbsent(checkNotNull(name), n -> new InMemoryHistogram());
+  }
+
+  @Override
+  public void gauge(String name, LongSupplier value) {
+    gauges.put(checkNotNull(name), checkNotNull(value));
+  }
+
+  /**
+   * Returns the value of the counter, or zero if nothing has been counted.
+   *
+   * @param name The name of the counter.
+   * @return The count.
+   */
+  public long getCount(String name) {
+    InMemoryCounter counter = counters.get(name);
+    return counter == null ? 0 : counter.sum.sum();
+  }
+
+  /**
+   * Returns a snapshot of the histogram, or null if it doesn't exist.
+   *
+   * @param name The name of the histogram.
+   * @return The snapshot.
+   */
+  @Nullable
+  public HistogramSnapshot getHistogram(String name) {
+    InMemoryHistogram histogram = histograms.get(name);
+    return histogram == null ? null : histogram.snapshot();
+  }
+
+  /**
+   * Returns the current value of the gauge, or null if it doesn't exist.
+   *
+   * @param name The name of the gauge.
+   * @return The value.
+   */
+  @Nullable
+  public Long getGauge(String name) {
+    LongSupplier gauge = gauges.get(name);
+    return gauge == null ? null : gauge.getAsLong();
+  }
+
+  /** Returns the value of every counter, sorted by name. */
+  public Map<String, Long> getCounts() {
+    Map<String, Long> result = new TreeMap<>();
+    for (Map.Entry<String, InMemoryCounter> entry : counters.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().sum.sum());
+    }
+    return result;
+  }
+
+  /** Returns a snapshot of every histogram, sorted by name. */
+  public Map<String, HistogramSnapshot> getHistograms() {
+    Map<String, HistogramSnapshot> result = new TreeMap<>();
+    for (Map.Entry<String, InMemoryHistogram> entry : histograms.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().snapshot());
+    }
+    return result;
+  }
+
+  /** Returns the current value of every gauge, sorted by name. */
+  public Map<String, Long> getGauges() {
+    Map<String, Long> result = new TreeMap<>();
+    for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().getAsLong());
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("counts", getCounts())
+        .add("histograms", getHistograms())
+        .add("gauges", getGauges())
+        .toString();
+  }
+
+  static final class InMemoryCounter implements Counter {
+    final LongAdder sum = new LongAdder();
+
+    @Override
+    public void increment(long delta) {
+      sum.add(delta);
+    }
+  }
+
+  static final class InMemoryHistogram implements Histogram {
+    final LongAdder count = new LongAdder();
+    final LongAdder sum = new LongAdder();
+    final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    /** Bucket i counts the values in [2^(i-1), 2^i), with bucket 0 counting values below one. */
+    final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE + 1);
+
+    static int bucket(long value) {
+      return value <= 0 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(value);
+    }
+
+    @Override
+    public void record(long value) {
+      count.increment();
+      sum.add(value);
+      min.accumulate(value);
+      max.accumulate(value);
+      buckets.incrementAndGet(bucket(value));
+    }
+
+    HistogramSnapshot snapshot() {
+      long[] counts = new long[buckets.length()];
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] = buckets.get(i);
+      }
+      return new HistogramSnapshot(count.sum(), sum.sum(), min.get(), max.get(), counts);
+    }
+  }
+
+  /** The values recorded to a histogram, at one point in time. */
+  public static final class HistogramSnapshot {
+    final long count;
+    final long sum;
+    final long min;
+    final long max;
+    final long[] buckets;
+
+    HistogramSnapshot(long count, long sum, long min, long max, long[] buckets) {
+      this.count = count;
+      this.sum = sum;
+      this.min = count == 0 ? 0 : min;
+      this.max = count == 0 ? 0 : max;
+      this.buckets = buckets;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getSum() {
+      return sum;
+    }
+
+    public long getMin() {
+      return min;
+    }
+
+    public long getMax() {
+      return max;
+    }
+
+    public double getMean() {
+      return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns an upper bound of the value at this percentile, accurate to within a factor of two.
+     *
+     * @param percentile Between 0 and 100.
+     * @return The value.
+     */
+    public long getPercentile(double percentile) {
+      checkArgument(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+      if (count == 0) {
+        return 0;
+      }
+
+      long rank = (long) Math.ceil(percentile / 100 * count);
+      long seen = 0;
+      for (int i = 0; i < buckets.length; i++) {
+        seen += buckets[i];
+        if (seen >= Math.max(rank, 1)) {
+          long upper = i == 0 ? 0 : (i >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << i) - 1);
+          return Math.max(min, Math.min(upper, max));
+        }
+      }
+      return max;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("count", count)
+          .add("mean", getMean())
+          .add("min", min)
+          .add("max", max)
+          .toString();
+    }
+  }
+}
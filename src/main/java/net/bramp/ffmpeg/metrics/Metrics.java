@@ -0,0 +1,169 @@
+package net.bramp.ffmpeg.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Where the library records its metrics. By default they are discarded, unless a {@link
+ * MetricsRegistry} is found by the {@link ServiceLoader}, or one is set with {@link
+ * #setRegistry(MetricsRegistry)}, such as an {@link InMemoryMetricsRegistry}.
+ *
+ * <p>The instruments returned here are created once, and kept in static fields by the code that
+ * records to them. They forward to the current registry's instruments, and are rebound when the
+ * registry is replaced, so recording costs one volatile read and the registry's own work.
+ *
+ * <p>The metrics recorded are:
+ *
+ * <ul>
+ *   <li>{@code ffmpeg.process.spawn.nanos} - Time taken to start each process.
+ *   <li>{@code ffmpeg.process.spawn.failures} - Processes that failed to start.
+ *   <li>{@code ffmpeg.process.run.nanos} - Time from starting each process, until it exited.
+ *   <li>{@code ffmpeg.process.failures} - Processes that exited with a non-zero status, or timed
+ *       out.
+ *   <li>{@code ffprobe.parse.nanos} - Time taken to read and parse ffprobe's JSON output.
+ *   <li>{@code ffmpeg.progress.bytes}, {@code ffmpeg.progress.lines}, {@code
+ *       ffmpeg.progress.records} - Progress output parsed.
+ *   <li>{@code ffmpeg.job.queue.nanos} - Time each job waited, from creation until it ran.
+ *   <li>{@code ffmpeg.job.run.nanos} - Time each job ran for.
+ *   <li>{@code ffmpeg.job.started}, {@code ffmpeg.job.finished}, {@code ffmpeg.job.failed} - Job
+ *       state transitions.
+ *   <li>{@code ffmpeg.job.running} - Gauge of the jobs currently running.
+ * </ul>
+ */
+public final class Metrics {
+
+  static final Logger LOG = LoggerFactory.getLogger(Metrics.class);
+
+  private static final Map<String, BoundCounter> counters = new LinkedHashMap<>();
+  private static final Map<String, BoundHistogram> histograms = new LinkedHashMap<>();
+  private static final Map<String, LongSupplier> gauges = new LinkedHashMap<>();
+
+  private static MetricsRegistry registry = loadRegistry();
+
+  private Metrics() {
+    throw new AssertionError("No instances for you!");
+  }
+
+  /** Returns the first registry found by the ServiceLoader, or one that discards everything. */
+  static MetricsRegistry loadRegistry() {
+    try {
+      Iterator<MetricsRegistry> it = ServiceLoader.load(MetricsRegistry.class).iterator();
+      if (it.hasNext()) {
+        return it.next();
+      }
+    } catch (ServiceConfigurationError e) {
+      LOG.warn("Failed to load MetricsRegistry, metrics will be discarded", e);
+    }
+    return NoopMetricsRegistry.INSTANCE;
+  }
+
+  public static synchronized MetricsRegistry getRegistry() {
+    return registry;
+  }
+
+  /**
+   * Replaces the registry, moving all existing instruments and gauges to it. Values recorded to the
+   * old registry stay there.
+   *
+   * @param registry The new registry.
+   */
+  public static synchronized void setRegistry(MetricsRegistry registry) {
+    Metrics.registry = checkNotNull(registry);
+
+    for (BoundCounter counter : counters.values()) {
+      counter.bind(registry);
+    }
+    for (BoundHistogram histogram : histograms.values()) {
+      histogram.bind(registry);
+    }
+    for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+      registry.gauge(gauge.getKey(), gauge.getValue());
+    }
+  }
+
+  /** Stops recording metrics. */
+  public static void disable() {
+    setRegistry(NoopMetricsRegistry.INSTANCE);
+  }
+
+  /**
+   * Returns the counter with this name, creating it if needed.
+   *
+   * @param name The name of the counter.
+   * @return The counter, which stays valid if the registry is replaced.
+   */
+  public static synchronized Counter counter(String name) {
+    checkNotNull(name);
+    return counters.computeIfAbsent(name, n -> new BoundCounter(n).bind(registry));
+  }
+
+  /**
+   * Returns the histogram with this name, creating it if needed.
+   *
+   * @param name The name of the histogram.
+   * @return The histogram, which stays valid if the registry is replaced.
+   */
+  public static synchronized Histogram histogram(String name) {
+    checkNotNull(name);
+    return histograms.computeIfAbsent(name, n -> new BoundHistogram(n).bind(registry));
+  }
+
+  /**
+   * Registers a gauge, with this and any later registry.
+   *
+   * @param name The name of the gauge.
+   * @param value Supplies the current value.
+   */
+  public static synchronized void gauge(String name, LongSupplier value) {
+    checkNotNull(name);
+    checkNotNull(value);
+    gauges.put(name, value);
+    registry.gauge(name, value);
+  }
+
+  static final class BoundCounter implements Counter {
+    final String name;
+    volatile Counter delegate = NoopMetricsRegistry.COUNTER;
+
+    BoundCounter(String name) {
+      this.name = name;
+    }
+
+    BoundCounter bind(MetricsRegistry registry) {
+      delegate = checkNotNull(registry.counter(name));
+      return this;
+    }
+
+    @Override
+    public void increment(long delta) {
+      delegate.increment(delta);
+    }
+  }
+
+  static final class BoundHistogram implements Histogram {
+    final String name;
+    volatile Histogram delegate = NoopMetricsRegistry.HISTOGRAM;
+
+    BoundHistogram(String name) {
+      this.name = name;
+    }
+
+    BoundHistogram bind(MetricsRegistry registry) {
+      delegate = checkNotNull(registry.histogram(name));
+      return this;
+    }
+
+    @Override
+    public void record(long value) {
+      delegate.record(value);
+    }
+  }
+}
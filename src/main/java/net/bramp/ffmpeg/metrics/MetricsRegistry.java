@@ -0,0 +1,28 @@
+package net.bramp.ffmpeg.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Creates the counters, histograms and gauges the library records to. Implement this to export
+ * the metrics to a monitoring system, and install it with {@link Metrics#setRegistry}, or list it
+ * in {@code META-INF/services/net.bramp.ffmpeg.metrics.MetricsRegistry} to have it found with
+ * {@link java.util.ServiceLoader}.
+ *
+ * <p>Each method is called once per metric name (and again if the registry is replaced), never on
+ * the hot path, so implementations do not need to cache. The returned instruments however must be
+ * thread-safe and cheap.
+ */
+public interface MetricsRegistry {
+
+  Counter counter(String name);
+
+  Histogram histogram(String name);
+
+  /**
+   * Registers a gauge, whose value is read by calling the supplier.
+   *
+   * @param name The name of the gauge.
+   * @param value Supplies the current value.
+   */
+  void gauge(String name, LongSupplier value);
+}
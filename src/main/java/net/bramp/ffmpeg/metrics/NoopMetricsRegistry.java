@@ -0,0 +1,24 @@
+package net.bramp.ffmpeg.metrics;
+
+import java.util.function.LongSupplier;
+
+/** Discards everything. Used when no other registry is installed. */
+enum NoopMetricsRegistry implements MetricsRegistry {
+  INSTANCE;
+
+  static final Counter COUNTER = delta -> {};
+  static final Histogram HISTOGRAM = value -> {};
+
+  @Override
+  public Counter counter(String name) {
+    return COUNTER;
+  }
+
+  @Override
+  public Histogram histogram(String name) {
+    return HISTOGRAM;
+  }
+
+  @Override
+  public void gauge(String name, LongSupplier value) {}
+}
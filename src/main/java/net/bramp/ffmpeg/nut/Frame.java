@@ -4,9 +4,11 @@ import com.google.common.base.MoreObjects;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.TreeMap;
+import javax.annotation.Nullable;
 import org.apache.commons.lang3.math.Fraction;
 
 /** A video or audio frame */
@@ -28,11 +30,52 @@ public class Frame {
   Stream stream;
   long flags;
   long pts;
-  byte[] data;
+  ByteBuffer data;
+
+  /** The pool data was acquired from, or null if it doesn't need releasing */
+  @Nullable FrameBufferPool pool;
 
   Map<String, Object> sideData;
   Map<String, Object> metaData;
 
+  public Stream getStream() {
+    return stream;
+  }
+
+  /** Returns the presentation timestamp, in the stream's time base. */
+  public long getPts() {
+    return pts;
+  }
+
+  public boolean isKeyFrame() {
+    return (flags & FLAG_KEY) == FLAG_KEY;
+  }
+
+  /**
+   * Returns the frame's data, from position zero to its limit.
+   *
+   * <p>If the {@link NutReader} has a {@link FrameBufferPool}, the data is only valid until {@link
+   * #release()} is called. If it hands out frame views, the data is read-only, and only valid
+   * until {@link NutReaderListener#frame(Frame)} returns.
+   *
+   * @return The frame's data
+   */
+  public ByteBuffer getData() {
+    return data;
+  }
+
+  /**
+   * Returns the frame's buffer to the pool it came from, if any. The frame's data must not be used
+   * afterwards. Releasing a frame more than once has no effect.
+   */
+  public void release() {
+    FrameBufferPool pool = this.pool;
+    if (pool != null) {
+      this.pool = null;
+      pool.release(data);
+    }
+  }
+
   protected Map<String, Object> readMetaData(NutDataInputStream in) throws IOException {
     Map<String, Object> data = new TreeMap<String, Object>();
     long count = in.readVarLong();
@@ -177,12 +220,76 @@ public class Frame {
       metaData = null;
     }
 
-    // TODO Use some kind of byte pool
-    data = new byte[size];
-
     byte[] elision = nut.header.elision.get(header_idx);
-    System.arraycopy(elision, 0, data, 0, elision.length);
-    in.readFully(data, elision.length, size - elision.length);
+    readData(nut, in, elision, size);
+  }
+
+  private void readData(NutReader nut, NutDataInputStream in, byte[] elision, int size)
+      throws IOException {
+    release(); // In case this Frame is being reused
+
+    if (nut.frameViews && elision.length == 0 && size <= in.sliceCapacity()) {
+      data = in.readSlice(size);
+      return;
+    }
+
+    FrameBufferPool pool = nut.framePool;
+    ByteBuffer buffer = pool == null ? ByteBuffer.allocate(size) : pool.acquire(size);
+    try {
+      buffer.limit(buffer.position() + size);
+      buffer.put(elision);
+      in.readFully(buffer);
+    } catch (IOException | RuntimeException e) {
+      if (pool != null) {
+        pool.release(buffer);
+      }
+      throw e;
+    }
+    buffer.flip();
+
+    this.data = buffer;
+    this.pool = pool;
+  }
+
+  /**
+   * Writes the frame's header, then its data.
+   *
+   * @param nut The writer, whose headers have been written
+   * @param out The stream to write to
+   * @throws IOException If a I/O error occurs
+   */
+  public void write(NutWriter nut, NutDataOutputStream out) throws IOException {
+    int size = data.remaining();
+    int shift = stream.header.msbPtsShift;
+    long distance = Math.abs(pts - stream.last_pts);
+
+    // Only code the lsb well within the window, in case the demuxer rounds last_pts differently
+    long mask = (1L << shift) - 1;
+    long delta = stream.last_pts - mask / 2;
+    long lsb = pts & mask;
+    boolean codeLsb = ((lsb - delta) & mask) + delta == pts && distance < mask / 2;
+
+    flags = NutWriter.FRAME_FLAGS | (flags & FLAG_KEY);
+    if (size > 2 * nut.header.maxDistance || distance >= stream.header.maxPtsDistance) {
+      flags |= FLAG_CHECKSUM;
+    }
+
+    NutDataOutputStream header = nut.frameHeader;
+    header.reset();
+    header.write(nut.frameCode(flags));
+    header.writeVarInt(stream.header.id);
+    header.writeVarLong(codeLsb ? lsb : pts + (1L << shift));
+    header.writeVarInt(size); // The frame codes have a size_mul of 1, and no size_lsb
+
+    if ((flags & FLAG_CHECKSUM) == FLAG_CHECKSUM) {
+      NutChecksum crc = new NutChecksum();
+      crc.update(header.toByteBuffer());
+      header.writeInt((int) crc.getValue());
+    }
+
+    out.write(header.toByteBuffer());
+    out.write(data.duplicate());
+    stream.last_pts = pts;
   }
 
   @Override
@@ -190,7 +297,7 @@ public class Frame {
     return MoreObjects.toStringHelper(this)
         .add("id", stream.header.id)
         .add("pts", pts)
-        .add("data", String.format("(%d bytes)", data.length))
+        .add("data", String.format("(%d bytes)", data.remaining()))
         .toString();
   }
 }
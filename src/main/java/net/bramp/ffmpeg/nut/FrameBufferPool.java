@@ -0,0 +1,28 @@
+package net.bramp.ffmpeg.nut;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Supplies the buffers frames are read into, so they can be reused instead of allocating a new
+ * array for every frame.
+ *
+ * @see NutReader#setFrameBufferPool(FrameBufferPool)
+ * @see SimpleFrameBufferPool
+ */
+public interface FrameBufferPool {
+
+  /**
+   * Returns a buffer to read a frame into.
+   *
+   * @param size The frame's size in bytes
+   * @return A buffer at position zero, with at least size bytes remaining
+   */
+  ByteBuffer acquire(int size);
+
+  /**
+   * Returns a buffer, previously acquired, to the pool. Called when its frame is released.
+   *
+   * @param buffer The buffer
+   */
+  void release(ByteBuffer buffer);
+}
@@ -13,6 +13,24 @@ public class FrameCode {
   long matchTimeDelta;
   int headerIdx;
 
+  /**
+   * Returns true if this code is the same as the previous one, but one byte larger, so both can be
+   * written in a single entry of the main header.
+   *
+   * @param previous The frame code before this one
+   * @return true if this code follows on from previous
+   */
+  boolean follows(FrameCode previous) {
+    return flags == previous.flags
+        && streamId == previous.streamId
+        && dataSizeMul == previous.dataSizeMul
+        && dataSizeLsb == previous.dataSizeLsb + 1
+        && ptsDelta == previous.ptsDelta
+        && reservedCount == previous.reservedCount
+        && matchTimeDelta == previous.matchTimeDelta
+        && headerIdx == previous.headerIdx;
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this)
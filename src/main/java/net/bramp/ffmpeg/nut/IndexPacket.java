@@ -1,4 +1,62 @@
 package net.bramp.ffmpeg.nut;
 
-// TODO
-public class IndexPacket {}
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
+import java.io.IOException;
+import org.apache.commons.lang3.math.Fraction;
+
+/**
+ * The index, found at the end of a seekable Nut file, which lists where each syncpoint is.
+ *
+ * <p>The per stream keyframe tables which follow the syncpoints are not read yet.
+ */
+public class IndexPacket extends Packet {
+
+  final MainHeaderPacket main;
+
+  long maxPts;
+  Fraction maxPtsTimeBase;
+
+  /** The approximate offset of each syncpoint, rounded down to 16 bytes */
+  long[] syncPoints;
+
+  public IndexPacket(MainHeaderPacket main) {
+    this.main = checkNotNull(main);
+  }
+
+  @Override
+  protected void readBody(NutDataInputStream in) throws IOException {
+    long tmp = in.readVarLong();
+    int count = main.timeBase.length;
+    maxPtsTimeBase = main.timeBase[(int) (tmp % count)];
+    maxPts = tmp / count;
+
+    long syncPointCount = in.readVarLong();
+    if (syncPointCount <= 0 || syncPointCount >= Integer.MAX_VALUE / 8) {
+      throw new IOException("Invalid syncpoint count " + syncPointCount);
+    }
+
+    syncPoints = new long[(int) syncPointCount];
+    long pos = 0;
+    for (int i = 0; i < syncPoints.length; i++) {
+      long delta = in.readVarLong();
+      if (delta <= 0) {
+        throw new IOException("Invalid syncpoint position delta " + delta + " must be > 0");
+      }
+      pos += delta;
+      syncPoints[i] = pos * 16;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("header", header)
+        .add("maxPts", maxPts)
+        .add("maxPtsTimeBase", maxPtsTimeBase)
+        .add("syncPoints", syncPoints == null ? 0 : syncPoints.length)
+        .add("footer", footer)
+        .toString();
+  }
+}
@@ -1,5 +1,7 @@
 package net.bramp.ffmpeg.nut;
 
+import static com.google.common.base.Preconditions.checkState;
+
 import com.google.common.base.MoreObjects;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -10,6 +12,9 @@ public class MainHeaderPacket extends Packet {
 
   public static final int BROADCAST_MODE = 0;
 
+  /** The match_time_delta a frame code has until one is given */
+  static final long DEFAULT_MATCH_TIME_DELTA = 1L - (1L << 62);
+
   long version;
   long minorVersion;
   int streamCount;
@@ -54,7 +59,7 @@ public class MainHeaderPacket extends Packet {
     int stream_id = 0;
     int header_idx = 0;
 
-    long match = 1L - (1L << 62);
+    long match = DEFAULT_MATCH_TIME_DELTA;
     int size;
     int reserved;
     long count;
@@ -145,14 +150,18 @@ public class MainHeaderPacket extends Packet {
     }
 
     int remain = 1024;
-    if (in.offset() < (header.end - 4)) {
-      int header_count = in.readVarInt();
-      if (header_count >= 128) {
-        throw new IOException("Invalid header_count value " + header_count + " must be < 128");
+    elision.clear();
+    elision.add(new byte[0]); // First elision is always empty
+
+    // header.end is already before the footer, so anything left is the optional fields
+    if (in.offset() < header.end) {
+      int header_count_minus1 = in.readVarInt();
+      if (header_count_minus1 >= 128) {
+        throw new IOException(
+            "Invalid header_count_minus1 value " + header_count_minus1 + " must be < 128");
       }
 
-      elision.clear();
-      elision.add(new byte[0]); // First elision is always empty
+      int header_count = header_count_minus1 + 1;
       for (int i = 1; i < header_count; i++) {
         byte[] e = in.readVarArray();
         if (e.length == 0 || e.length >= 256) {
@@ -167,11 +176,85 @@ public class MainHeaderPacket extends Packet {
       }
     }
 
-    if (version > 3 && (in.offset() < (header.end - 4))) {
+    if (version > 3 && in.offset() < header.end) {
       flags = in.readVarLong();
     }
   }
 
+  @Override
+  protected void writeBody(NutDataOutputStream out) throws IOException {
+    checkState(frameCodes.size() == 256, "there must be a frame code for each of the 256 values");
+    checkState(!elision.isEmpty(), "the first elision header must be the empty one");
+
+    out.writeVarLong(version);
+    if (version > 3) {
+      out.writeVarLong(minorVersion);
+    }
+
+    out.writeVarInt(streamCount);
+    out.writeVarLong(maxDistance);
+
+    out.writeVarInt(timeBase.length);
+    for (Fraction f : timeBase) {
+      out.writeVarLong(f.getNumerator());
+      out.writeVarLong(f.getDenominator());
+    }
+
+    // Fields not written carry over from the previous entry
+    long match = DEFAULT_MATCH_TIME_DELTA;
+    int header_idx = 0;
+
+    for (int i = 0; i < 256; ) {
+      if (i == 'N') {
+        i++;
+        continue;
+      }
+
+      // Consecutive codes that only differ by an increasing size are written as one entry
+      FrameCode fc = frameCodes.get(i);
+      int count = 1;
+      int last = i;
+      for (int next = i + 1; next < 256; next++) {
+        if (next == 'N') {
+          continue;
+        }
+        if (!frameCodes.get(next).follows(frameCodes.get(last))) {
+          break;
+        }
+        count++;
+        last = next;
+      }
+
+      boolean extended = fc.matchTimeDelta != match || fc.headerIdx != header_idx;
+
+      out.writeVarLong(fc.flags);
+      out.writeVarLong(extended ? 8 : 6);
+      out.writeSignedVarInt(fc.ptsDelta);
+      out.writeVarInt(fc.dataSizeMul);
+      out.writeVarInt(fc.streamId);
+      out.writeVarInt(fc.dataSizeLsb);
+      out.writeVarInt(fc.reservedCount);
+      out.writeVarLong(count);
+      if (extended) {
+        out.writeSignedVarInt(fc.matchTimeDelta);
+        out.writeVarInt(fc.headerIdx);
+        match = fc.matchTimeDelta;
+        header_idx = fc.headerIdx;
+      }
+
+      i = last + 1;
+    }
+
+    out.writeVarInt(elision.size() - 1);
+    for (int i = 1; i < elision.size(); i++) {
+      out.writeVarArray(elision.get(i));
+    }
+
+    if (version > 3) {
+      out.writeVarLong(flags);
+    }
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this)
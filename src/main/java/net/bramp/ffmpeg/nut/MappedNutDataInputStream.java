@@ -0,0 +1,106 @@
+package net.bramp.ffmpeg.nut;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A NutDataInputStream over a memory mapped file. Files larger than a single mapping are mapped a
+ * window at a time, with the window moving forward as the file is read, or jumping on a seek.
+ */
+class MappedNutDataInputStream extends NutDataInputStream {
+
+  /** The largest window, limited by the largest ByteBuffer */
+  static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+  final FileChannel file;
+  final long size;
+  final int windowSize;
+
+  MappedNutDataInputStream(FileChannel file, int windowSize) throws IOException {
+    super(map(file, 0, windowSize));
+    checkArgument(windowSize >= MIN_BUFFER_SIZE, "windowSize must be at least %s", MIN_BUFFER_SIZE);
+
+    this.file = file;
+    this.size = file.size();
+    this.windowSize = windowSize;
+  }
+
+  private static ByteBuffer map(FileChannel file, long offset, int windowSize) throws IOException {
+    checkNotNull(file);
+    long len = Math.min(file.size() - offset, windowSize);
+    return file.map(FileChannel.MapMode.READ_ONLY, offset, len);
+  }
+
+  /** Returns the size of the file in bytes. */
+  public long size() {
+    return size;
+  }
+
+  @Override
+  boolean refill(int n) throws IOException {
+    long offset = offset();
+    if (offset + buffer.remaining() < size) {
+      remap(offset);
+    }
+    return buffer.remaining() >= n;
+  }
+
+  private void remap(long offset) throws IOException {
+    buffer = map(file, offset, windowSize);
+    bufferOffset = offset;
+    crcMark = 0;
+  }
+
+  /**
+   * Moves to the given offset in the file, and resets the CRC.
+   *
+   * @param offset The offset
+   * @throws IOException If a I/O error occurs
+   */
+  public void seek(long offset) throws IOException {
+    if (offset < 0 || offset > size) {
+      throw new EOFException("offset " + offset + " is outside the file's " + size + " bytes");
+    }
+
+    long position = offset - bufferOffset;
+    if (position >= 0 && position <= buffer.limit()) {
+      buffer.position((int) position);
+    } else {
+      remap(offset);
+    }
+    resetCRC();
+  }
+
+  /**
+   * Searches forward for a startcode.
+   *
+   * @param startcode The startcode
+   * @param from The offset to start searching from
+   * @param to The offset to stop searching at
+   * @return The offset of the startcode, or -1 if not found
+   * @throws IOException If a I/O error occurs
+   */
+  public long find(long startcode, long from, long to) throws IOException {
+    to = Math.min(to, size);
+    if (from >= to) {
+      return -1;
+    }
+
+    seek(from);
+
+    // Shift each byte into a rolling 64 bit window, the same way ffmpeg does
+    long state = 0;
+    for (long offset = from; offset < to; offset++) {
+      state = (state << 8) | readUnsignedByte();
+      if (state == startcode && offset - from >= 7) {
+        return offset - 7;
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,78 @@
+package net.bramp.ffmpeg.nut;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * The CRC used by Nut's checksums, with the generator polynomial 0x104C11DB7, processed MSB first,
+ * with a starting value of zero and no final xor. This differs from {@link java.util.zip.CRC32},
+ * which uses the same polynomial but is bit reversed and pre and post conditioned.
+ */
+final class NutChecksum implements Checksum {
+
+  static final int[] TABLE = new int[256];
+
+  static {
+    for (int i = 0; i < 256; i++) {
+      int crc = i << 24;
+      for (int j = 0; j < 8; j++) {
+        crc = (crc << 1) ^ ((crc & 0x80000000) != 0 ? 0x04C11DB7 : 0);
+      }
+      TABLE[i] = crc;
+    }
+  }
+
+  int crc;
+
+  @Override
+  public void update(int b) {
+    crc = (crc << 8) ^ TABLE[((crc >>> 24) ^ b) & 0xFF];
+  }
+
+  @Override
+  public void update(byte[] b, int off, int len) {
+    int crc = this.crc;
+    for (int i = off; i < off + len; i++) {
+      crc = (crc << 8) ^ TABLE[((crc >>> 24) ^ b[i]) & 0xFF];
+    }
+    this.crc = crc;
+  }
+
+  /**
+   * Updates the checksum with the buffer's remaining bytes, leaving its position at its limit.
+   *
+   * @param buffer The bytes
+   */
+  public void update(ByteBuffer buffer) {
+    if (buffer.hasArray()) {
+      update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      buffer.position(buffer.limit());
+      return;
+    }
+
+    while (buffer.hasRemaining()) {
+      update(buffer.get());
+    }
+  }
+
+  /**
+   * Updates the checksum with a big endian long, such as a startcode.
+   *
+   * @param value The value
+   */
+  public void updateLong(long value) {
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      update((int) (value >>> shift));
+    }
+  }
+
+  @Override
+  public long getValue() {
+    return crc & 0xFFFFFFFFL;
+  }
+
+  @Override
+  public void reset() {
+    crc = 0;
+  }
+}
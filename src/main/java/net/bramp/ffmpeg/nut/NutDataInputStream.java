@@ -1,70 +1,214 @@
 package net.bramp.ffmpeg.nut;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import com.google.common.io.CountingInputStream;
 import java.io.DataInput;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import net.bramp.ffmpeg.io.CRC32InputStream;
-
-/** A DataInputStream that implements a couple of custom FFmpeg Nut datatypes. */
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import javax.annotation.Nullable;
+
+/**
+ * A DataInput that implements a couple of custom FFmpeg Nut datatypes.
+ *
+ * <p>Reads through a single reusable {@link ByteBuffer}, refilled from a {@link
+ * ReadableByteChannel}, or from a fixed buffer holding the whole input. Varints and startcodes are
+ * decoded directly from the buffer, and the CRC is only updated when needed, over the whole range
+ * of bytes read since it was last updated.
+ */
 public class NutDataInputStream implements DataInput {
 
-  final DataInputStream in;
-  final CRC32InputStream crc;
-  final CountingInputStream count;
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  /** Reads larger than this skip the buffer, and go straight to the caller's buffer */
+  static final int DIRECT_READ_THRESHOLD = 8 * 1024;
+
+  // Big enough for the largest fixed size read, a 64 bit startcode
+  static final int MIN_BUFFER_SIZE = 8;
+
+  /** The channel to refill the buffer from, or null if the buffer holds the whole input */
+  @Nullable final ReadableByteChannel in;
+
+  /** Always in read mode, that is, position is the next byte to read and limit the last. */
+  ByteBuffer buffer;
 
-  // These are for debugging, remove later
-  long startCrcRange;
-  long endCrcRange;
+  final NutChecksum crc = new NutChecksum();
+
+  /** Scratch space to update the CRC from a direct buffer */
+  byte[] crcScratch;
+
+  /** Position in the buffer of the first byte not yet added to the CRC */
+  int crcMark;
+
+  /** Stream offset of the buffer's first byte */
+  long bufferOffset;
 
   public NutDataInputStream(InputStream in) {
-    checkNotNull(in);
-    this.count = new CountingInputStream(in);
-    this.crc = new CRC32InputStream(count);
-    this.in = new DataInputStream(crc);
+    this(Channels.newChannel(checkNotNull(in)));
+  }
+
+  public NutDataInputStream(ReadableByteChannel in) {
+    this(in, ByteBuffer.allocate(DEFAULT_BUFFER_SIZE));
+  }
+
+  /**
+   * Reads from the channel, through the given buffer, which may be direct or heap. The buffer's
+   * contents are discarded, and it must not be used elsewhere while this stream is in use.
+   *
+   * @param in The channel to read from
+   * @param buffer The buffer to read through, at least 8 bytes
+   */
+  public NutDataInputStream(ReadableByteChannel in, ByteBuffer buffer) {
+    this.in = checkNotNull(in);
+    this.buffer = checkNotNull(buffer);
+    checkArgument(
+        buffer.capacity() >= MIN_BUFFER_SIZE, "buffer must be at least %s bytes", MIN_BUFFER_SIZE);
+    checkArgument(!buffer.isReadOnly(), "buffer must be writable");
+
+    buffer.clear().limit(0);
+    buffer.order(ByteOrder.BIG_ENDIAN);
+  }
+
+  /**
+   * Reads from the remaining bytes of the buffer, which holds the whole input, so is never
+   * refilled. Offsets are positions in the buffer.
+   *
+   * @param buffer The input
+   */
+  public NutDataInputStream(ByteBuffer buffer) {
+    this.in = null;
+    this.buffer = checkNotNull(buffer).duplicate().order(ByteOrder.BIG_ENDIAN);
+    this.crcMark = buffer.position();
   }
 
   public void resetCRC() {
-    startCrcRange = count.getCount();
-    crc.resetCrc();
+    crc.reset();
+    crcMark = buffer.position();
+  }
+
+  /**
+   * Resets the CRC to cover a packet, which started with the given, already read, startcode.
+   *
+   * @param startcode The packet's startcode
+   */
+  public void resetCRC(long startcode) {
+    resetCRC();
+    crc.updateLong(startcode);
   }
 
   public long getCRC() {
-    endCrcRange = count.getCount();
+    updateCRC();
     return crc.getValue();
   }
 
-  // Read a simple var int up to 32 bits
-  public int readVarInt() throws IOException {
-    boolean more;
-    int result = 0;
-    do {
-      int b = in.readUnsignedByte();
-      more = (b & 0x80) == 0x80;
-      result = 128 * result + (b & 0x7F);
+  /** Adds the bytes read since the last update to the CRC. */
+  void updateCRC() {
+    int end = buffer.position();
+    if (end > crcMark) {
+      ByteBuffer range = buffer.duplicate();
+      range.limit(end).position(crcMark);
+      updateCRC(range);
+    }
+    crcMark = end;
+  }
 
-      // TODO Check for int overflow
-    } while (more);
+  /** Adds the remaining bytes of the range to the CRC, consuming them. */
+  private void updateCRC(ByteBuffer range) {
+    if (range.hasArray()) {
+      crc.update(range.array(), range.arrayOffset() + range.position(), range.remaining());
+      range.position(range.limit());
+      return;
+    }
 
-    return result;
+    if (crcScratch == null) {
+      crcScratch = new byte[DIRECT_READ_THRESHOLD];
+    }
+    while (range.hasRemaining()) {
+      int n = Math.min(range.remaining(), crcScratch.length);
+      range.get(crcScratch, 0, n);
+      crc.update(crcScratch, 0, n);
+    }
+  }
+
+  /**
+   * Ensures at least n bytes are buffered, refilling the buffer from the channel if needed.
+   *
+   * @param n The number of bytes needed, no larger than the buffer
+   * @return false if the end of stream was reached first
+   * @throws IOException If a I/O error occurs
+   */
+  private boolean fill(int n) throws IOException {
+    if (buffer.remaining() >= n) {
+      return true;
+    }
+
+    // Account for everything before the position, as it may be about to be discarded
+    updateCRC();
+    return refill(n);
+  }
+
+  /**
+   * Refills the buffer, so it starts at the current offset, with at least n bytes if possible. The
+   * CRC has already been updated up to the current position.
+   *
+   * @param n The number of bytes needed, no larger than the buffer
+   * @return false if the end of stream was reached first
+   * @throws IOException If a I/O error occurs
+   */
+  boolean refill(int n) throws IOException {
+    if (in == null) {
+      return buffer.remaining() >= n;
+    }
+
+    bufferOffset += buffer.position();
+    crcMark = 0;
+
+    buffer.compact();
+    try {
+      while (buffer.position() < n) {
+        if (in.read(buffer) < 0) {
+          break;
+        }
+      }
+    } finally {
+      buffer.flip();
+    }
+    return buffer.remaining() >= n;
+  }
+
+  private void require(int n) throws IOException {
+    if (!fill(n)) {
+      throw new EOFException();
+    }
+  }
+
+  // Read a simple var int up to 32 bits
+  public int readVarInt() throws IOException {
+    return (int) readVarLong();
   }
 
   // Read a simple var int up to 64 bits
   public long readVarLong() throws IOException {
-    boolean more;
     long result = 0;
-    do {
-      int b = in.readUnsignedByte();
-      more = (b & 0x80) == 0x80;
-      result = 128 * result + (b & 0x7F);
+    while (true) {
+      if (!buffer.hasRemaining()) {
+        require(1);
+      }
 
-      // TODO Check for long overflow
-    } while (more);
+      byte b = buffer.get();
+      result = (result << 7) | (b & 0x7F);
+      if (b >= 0) { // Top bit clear, so this is the last byte
+        return result;
+      }
 
-    return result;
+      // TODO Check for long overflow
+    }
   }
 
   // Read a signed var int
@@ -80,108 +224,215 @@ public class NutDataInputStream implements DataInput {
   public byte[] readVarArray() throws IOException {
     int len = (int) readVarLong();
     byte[] result = new byte[len];
-    in.read(result);
+    readFully(result);
     return result;
   }
 
   // Returns the start code, OR frame_code if the code doesn't start with 'N'
   public long readStartCode() throws IOException {
-    byte frameCode = in.readByte();
+    require(1);
+    byte frameCode = buffer.get(buffer.position());
     if (frameCode != 'N') {
+      buffer.get();
       return (long) (frameCode & 0xff);
     }
 
     // Otherwise read the remaining 64bit startCode
-    byte[] buffer = new byte[8];
-    buffer[0] = frameCode;
-    readFully(buffer, 1, 7);
-    return (((long) buffer[0] << 56)
-        + ((long) (buffer[1] & 255) << 48)
-        + ((long) (buffer[2] & 255) << 40)
-        + ((long) (buffer[3] & 255) << 32)
-        + ((long) (buffer[4] & 255) << 24)
-        + ((buffer[5] & 255) << 16)
-        + ((buffer[6] & 255) << 8)
-        + ((buffer[7] & 255) << 0));
+    require(8);
+    return buffer.getLong();
   }
 
   public long offset() {
-    return count.getCount();
+    return bufferOffset + buffer.position();
   }
 
   @Override
   public void readFully(byte[] b) throws IOException {
-    in.readFully(b);
+    readFully(b, 0, b.length);
   }
 
   @Override
   public void readFully(byte[] b, int off, int len) throws IOException {
-    in.readFully(b, off, len);
+    checkNotNull(b);
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+    readFully(ByteBuffer.wrap(b, off, len));
+  }
+
+  /**
+   * Reads bytes until the destination has no space remaining.
+   *
+   * @param dst The buffer to read into
+   * @throws EOFException If the end of stream is reached first
+   * @throws IOException If a I/O error occurs
+   */
+  public void readFully(ByteBuffer dst) throws IOException {
+    transfer(dst);
+
+    if (in != null && dst.remaining() >= DIRECT_READ_THRESHOLD) {
+      // The buffer is empty, so read the rest straight into the destination, and CRC it there
+      readDirect(dst);
+      return;
+    }
+
+    while (dst.hasRemaining()) {
+      require(1);
+      transfer(dst);
+    }
+  }
+
+  /** Copies as much of the buffer as fits into the destination. */
+  private void transfer(ByteBuffer dst) {
+    int n = Math.min(buffer.remaining(), dst.remaining());
+    int end = buffer.position() + n;
+
+    ByteBuffer src = buffer.duplicate();
+    src.limit(end);
+    dst.put(src);
+    buffer.position(end);
+  }
+
+  private void readDirect(ByteBuffer dst) throws IOException {
+    checkNotNull(in);
+    updateCRC();
+    bufferOffset += buffer.position();
+    buffer.clear().limit(0);
+    crcMark = 0;
+
+    int start = dst.position();
+    while (dst.hasRemaining()) {
+      if (in.read(dst) < 0) {
+        throw new EOFException();
+      }
+    }
+
+    ByteBuffer range = dst.duplicate();
+    range.flip().position(start);
+    updateCRC(range);
+    bufferOffset += dst.position() - start;
+  }
+
+  /**
+   * Returns a read-only view of the next len bytes, without copying them. The view is only valid
+   * until the next read, which may overwrite the buffer it shares.
+   *
+   * @param len The number of bytes, no larger than the buffer's capacity
+   * @return A view of the bytes
+   * @throws EOFException If the end of stream is reached first
+   * @throws IOException If a I/O error occurs
+   */
+  public ByteBuffer readSlice(int len) throws IOException {
+    checkArgument(len >= 0 && len <= buffer.capacity(), "len must be within the buffer's capacity");
+    require(len);
+
+    int end = buffer.position() + len;
+    ByteBuffer slice = buffer.duplicate();
+    slice.limit(end);
+    buffer.position(end);
+    return slice.slice().asReadOnlyBuffer();
+  }
+
+  /** Returns the largest number of bytes {@link #readSlice(int)} can return. */
+  public int sliceCapacity() {
+    return buffer.capacity();
   }
 
   @Override
   public int skipBytes(int n) throws IOException {
-    return in.skipBytes(n);
+    // The skipped bytes stay in the buffer, so they are still part of the CRC
+    int skipped = 0;
+    while (skipped < n && fill(1)) {
+      int len = Math.min(buffer.remaining(), n - skipped);
+      buffer.position(buffer.position() + len);
+      skipped += len;
+    }
+    return skipped;
   }
 
   @Override
   public boolean readBoolean() throws IOException {
-    return in.readBoolean();
+    return readUnsignedByte() != 0;
   }
 
   @Override
   public byte readByte() throws IOException {
-    return in.readByte();
+    require(1);
+    return buffer.get();
   }
 
   @Override
   public int readUnsignedByte() throws IOException {
-    return in.readUnsignedByte();
+    return readByte() & 0xff;
   }
 
   @Override
   public short readShort() throws IOException {
-    return in.readShort();
+    require(2);
+    return buffer.getShort();
   }
 
   @Override
   public int readUnsignedShort() throws IOException {
-    return in.readUnsignedShort();
+    return readShort() & 0xffff;
   }
 
   @Override
   public char readChar() throws IOException {
-    return in.readChar();
+    require(2);
+    return buffer.getChar();
   }
 
   @Override
   public int readInt() throws IOException {
-    return in.readInt();
+    require(4);
+    return buffer.getInt();
   }
 
   @Override
   public long readLong() throws IOException {
-    return in.readLong();
+    require(8);
+    return buffer.getLong();
   }
 
   @Override
   public float readFloat() throws IOException {
-    return in.readFloat();
+    require(4);
+    return buffer.getFloat();
   }
 
   @Override
   public double readDouble() throws IOException {
-    return in.readDouble();
+    require(8);
+    return buffer.getDouble();
   }
 
   @Override
   @Deprecated
   public String readLine() throws IOException {
-    return in.readLine();
+    if (!fill(1)) {
+      return null;
+    }
+
+    StringBuilder line = new StringBuilder();
+    while (fill(1)) {
+      int c = buffer.get() & 0xff;
+      if (c == '\n') {
+        break;
+      }
+      if (c == '\r') {
+        if (fill(1) && buffer.get(buffer.position()) == '\n') {
+          buffer.get();
+        }
+        break;
+      }
+      line.append((char) c);
+    }
+    return line.toString();
   }
 
   @Override
   public String readUTF() throws IOException {
-    return in.readUTF();
+    return DataInputStream.readUTF(this);
   }
 }
@@ -0,0 +1,327 @@
+package net.bramp.ffmpeg.nut;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import javax.annotation.Nullable;
+
+/**
+ * A DataOutput that implements a couple of custom FFmpeg Nut datatypes. The counterpart of {@link
+ * NutDataInputStream}.
+ *
+ * <p>Writes through a single reusable {@link ByteBuffer}, drained to a {@link WritableByteChannel}
+ * when full, or into a growing buffer held in memory, which is how packet bodies are built before
+ * their size and checksum are known.
+ */
+public class NutDataOutputStream implements DataOutput, Flushable, Closeable {
+
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  /** Writes larger than this skip the buffer, and go straight to the channel */
+  static final int DIRECT_WRITE_THRESHOLD = 8 * 1024;
+
+  // Big enough for the largest fixed size write, a 64 bit startcode
+  static final int MIN_BUFFER_SIZE = 8;
+
+  static final int INITIAL_MEMORY_SIZE = 256;
+
+  /** The channel to drain the buffer to, or null if the buffer holds everything written */
+  @Nullable final WritableByteChannel out;
+
+  /** The stream under the channel, flushed by {@link #flush()}, if there is one */
+  @Nullable final OutputStream stream;
+
+  /** Always in write mode, that is, position is where the next byte is written. */
+  ByteBuffer buffer;
+
+  /** Stream offset of the buffer's first byte */
+  long bufferOffset;
+
+  public NutDataOutputStream(OutputStream out) {
+    this.stream = checkNotNull(out);
+    this.out = Channels.newChannel(out);
+    this.buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+  }
+
+  public NutDataOutputStream(WritableByteChannel out) {
+    this(out, ByteBuffer.allocate(DEFAULT_BUFFER_SIZE));
+  }
+
+  /**
+   * Writes to the channel, through the given buffer, which may be direct or heap. The buffer's
+   * contents are discarded, and it must not be used elsewhere while this stream is in use.
+   *
+   * @param out The channel to write to
+   * @param buffer The buffer to write through, at least 8 bytes
+   */
+  public NutDataOutputStream(WritableByteChannel out, ByteBuffer buffer) {
+    this.out = checkNotNull(out);
+    this.stream = null;
+    this.buffer = checkNotNull(buffer);
+    checkArgument(
+        buffer.capacity() >= MIN_BUFFER_SIZE, "buffer must be at least %s bytes", MIN_BUFFER_SIZE);
+    checkArgument(!buffer.isReadOnly(), "buffer must be writable");
+
+    buffer.clear();
+    buffer.order(ByteOrder.BIG_ENDIAN);
+  }
+
+  /** Writes into memory, see {@link #toByteBuffer()}. */
+  public NutDataOutputStream() {
+    this.out = null;
+    this.stream = null;
+    this.buffer = ByteBuffer.allocate(INITIAL_MEMORY_SIZE);
+  }
+
+  /**
+   * Ensures there is space for n more bytes, draining or growing the buffer if needed.
+   *
+   * @param n The number of bytes needed, no larger than the buffer if it is drained
+   * @throws IOException If a I/O error occurs
+   */
+  private void ensure(int n) throws IOException {
+    if (buffer.remaining() >= n) {
+      return;
+    }
+
+    if (out == null) {
+      int capacity = Math.max(buffer.capacity() * 2, buffer.position() + n);
+      ByteBuffer grown = ByteBuffer.allocate(capacity);
+      buffer.flip();
+      grown.put(buffer);
+      buffer = grown;
+    } else {
+      drain();
+    }
+  }
+
+  /** Writes the buffered bytes to the channel. */
+  private void drain() throws IOException {
+    checkNotNull(out);
+    buffer.flip();
+    try {
+      while (buffer.hasRemaining()) {
+        bufferOffset += out.write(buffer);
+      }
+    } finally {
+      buffer.compact();
+    }
+  }
+
+  public long offset() {
+    return bufferOffset + buffer.position();
+  }
+
+  /**
+   * Returns what has been written, when writing into memory.
+   *
+   * @return A view from the first byte written to the last
+   */
+  public ByteBuffer toByteBuffer() {
+    checkState(out == null, "only available when writing into memory");
+    ByteBuffer result = buffer.duplicate();
+    result.flip();
+    return result;
+  }
+
+  /** Discards what has been written, when writing into memory. */
+  public void reset() {
+    checkState(out == null, "only available when writing into memory");
+    buffer.clear();
+  }
+
+  // Write a simple var int up to 32 bits
+  public void writeVarInt(int value) throws IOException {
+    writeVarLong(value);
+  }
+
+  // Write a simple var int up to 64 bits
+  public void writeVarLong(long value) throws IOException {
+    checkArgument(value >= 0, "value must not be negative");
+
+    int length = varLength(value);
+    ensure(length);
+    for (int shift = (length - 1) * 7; shift > 0; shift -= 7) {
+      buffer.put((byte) (0x80 | (value >>> shift)));
+    }
+    buffer.put((byte) (value & 0x7F));
+  }
+
+  /** Returns the number of bytes value takes as a varint. */
+  static int varLength(long value) {
+    int length = 1;
+    while ((value >>>= 7) != 0) {
+      length++;
+    }
+    return length;
+  }
+
+  // Write a signed var int
+  public void writeSignedVarInt(long value) throws IOException {
+    writeVarLong(value > 0 ? 2 * value - 1 : -2 * value);
+  }
+
+  // Write a array with a varint prefixed length
+  public void writeVarArray(byte[] b) throws IOException {
+    writeVarLong(b.length);
+    write(b);
+  }
+
+  public void writeStartCode(long startcode) throws IOException {
+    writeLong(startcode);
+  }
+
+  /**
+   * Writes the source's remaining bytes.
+   *
+   * @param src The bytes to write
+   * @throws IOException If a I/O error occurs
+   */
+  public void write(ByteBuffer src) throws IOException {
+    if (out != null && src.remaining() >= DIRECT_WRITE_THRESHOLD) {
+      // Drain what is buffered, then write straight from the source
+      drain();
+      while (src.hasRemaining()) {
+        bufferOffset += out.write(src);
+      }
+      return;
+    }
+
+    if (out == null) {
+      ensure(src.remaining());
+    }
+    while (src.hasRemaining()) {
+      ensure(1);
+      int n = Math.min(buffer.remaining(), src.remaining());
+      ByteBuffer part = src.duplicate();
+      part.limit(part.position() + n);
+      buffer.put(part);
+      src.position(src.position() + n);
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensure(1);
+    buffer.put((byte) b);
+  }
+
+  @Override
+  public void write(byte[] b) throws IOException {
+    write(b, 0, b.length);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    write(ByteBuffer.wrap(b, off, len));
+  }
+
+  @Override
+  public void writeBoolean(boolean v) throws IOException {
+    write(v ? 1 : 0);
+  }
+
+  @Override
+  public void writeByte(int v) throws IOException {
+    write(v);
+  }
+
+  @Override
+  public void writeShort(int v) throws IOException {
+    ensure(2);
+    buffer.putShort((short) v);
+  }
+
+  @Override
+  public void writeChar(int v) throws IOException {
+    ensure(2);
+    buffer.putChar((char) v);
+  }
+
+  @Override
+  public void writeInt(int v) throws IOException {
+    ensure(4);
+    buffer.putInt(v);
+  }
+
+  @Override
+  public void writeLong(long v) throws IOException {
+    ensure(8);
+    buffer.putLong(v);
+  }
+
+  @Override
+  public void writeFloat(float v) throws IOException {
+    ensure(4);
+    buffer.putFloat(v);
+  }
+
+  @Override
+  public void writeDouble(double v) throws IOException {
+    ensure(8);
+    buffer.putDouble(v);
+  }
+
+  @Override
+  public void writeBytes(String s) throws IOException {
+    for (int i = 0; i < s.length(); i++) {
+      write(s.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeChars(String s) throws IOException {
+    for (int i = 0; i < s.length(); i++) {
+      writeChar(s.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeUTF(String s) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(s.length() + 2);
+    new DataOutputStream(bytes).writeUTF(s);
+    write(bytes.toByteArray());
+  }
+
+  /**
+   * Writes everything buffered to the channel, and flushes the stream under it, if any.
+   *
+   * @throws IOException If a I/O error occurs
+   */
+  @Override
+  public void flush() throws IOException {
+    if (out == null) {
+      return;
+    }
+
+    drain();
+    if (stream != null) {
+      stream.flush();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (out == null) {
+      return;
+    }
+
+    try {
+      flush();
+    } finally {
+      out.close();
+    }
+  }
+}
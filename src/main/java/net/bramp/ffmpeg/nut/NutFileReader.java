@@ -0,0 +1,304 @@
+package net.bramp.ffmpeg.nut;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static net.bramp.ffmpeg.nut.Packet.Startcode;
+
+import com.google.common.collect.ImmutableList;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.math.Fraction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Random access reader for Nut files on disk. The file is memory mapped, and its syncpoints are
+ * read into a seek table, so {@link #seek(int, long)} can jump close to a timestamp without reading
+ * everything before it.
+ *
+ * <p>The seek table comes from the index at the end of the file, which ffmpeg writes whenever its
+ * output is seekable. Files without an index, such as those captured from a pipe, are scanned for
+ * syncpoints once, when opened.
+ *
+ * <pre>
+ * <code>try (NutFileReader nut = new NutFileReader(Paths.get("video.nut"))) {
+ *   nut.seek(10, TimeUnit.SECONDS);
+ *
+ *   Frame frame;
+ *   while ((frame = nut.readFrame()) != null) {
+ *     ...
+ *   }
+ * }</code>
+ * </pre>
+ *
+ * <p>Alternatively, given a {@link NutReaderListener}, it's told of each stream when the file is
+ * opened, and of each frame by {@link #read()}.
+ */
+public class NutFileReader extends NutReader implements Closeable {
+
+  static final Logger LOG = LoggerFactory.getLogger(NutFileReader.class);
+
+  static final NutReaderListener NO_LISTENER =
+      new NutReaderListener() {
+        @Override
+        public void stream(Stream stream) {}
+
+        @Override
+        public void frame(Frame frame) {}
+      };
+
+  // index_ptr and the footer checksum
+  static final int INDEX_PTR_FROM_END = 12;
+
+  final FileChannel channel;
+  final MappedNutDataInputStream mapped;
+
+  /** Offset of the first packet after the headers */
+  long dataStart;
+
+  /** Offset where the frames end, that is the start of the index, or the end of the file */
+  long dataEnd;
+
+  List<SyncPointPacket> syncPoints;
+
+  public NutFileReader(Path path) throws IOException {
+    this(path, NO_LISTENER);
+  }
+
+  public NutFileReader(Path path, NutReaderListener listener) throws IOException {
+    this(
+        FileChannel.open(path, StandardOpenOption.READ),
+        MappedNutDataInputStream.MAX_WINDOW_SIZE,
+        listener);
+  }
+
+  NutFileReader(FileChannel channel, int windowSize) throws IOException {
+    this(channel, windowSize, NO_LISTENER);
+  }
+
+  NutFileReader(FileChannel channel, int windowSize, NutReaderListener listener)
+      throws IOException {
+    this(channel, new MappedNutDataInputStream(channel, windowSize), listener);
+  }
+
+  private NutFileReader(
+      FileChannel channel, MappedNutDataInputStream mapped, NutReaderListener listener)
+      throws IOException {
+    super(mapped, listener);
+    this.channel = channel;
+    this.mapped = mapped;
+
+    try {
+      open();
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private void open() throws IOException {
+    readFileId();
+
+    long startcode = readHeaders(in.readStartCode());
+    dataStart = in.offset() - (startcode > 0xFF ? 8 : 1);
+    dataEnd = mapped.size();
+
+    syncPoints = readIndex();
+    if (syncPoints == null) {
+      syncPoints = scanSyncPoints();
+    }
+
+    LOG.debug("{} syncpoints between {} and {}", syncPoints.size(), dataStart, dataEnd);
+    mapped.seek(dataStart);
+  }
+
+  /**
+   * Reads the syncpoints listed in the index, or returns null if there is no index.
+   *
+   * @return The syncpoints, in file order
+   * @throws IOException If a I/O error occurs
+   */
+  @Nullable
+  private List<SyncPointPacket> readIndex() throws IOException {
+    long size = mapped.size();
+    if (size - INDEX_PTR_FROM_END < dataStart) {
+      return null;
+    }
+
+    mapped.seek(size - INDEX_PTR_FROM_END);
+    long indexPtr = in.readLong();
+    if (indexPtr <= INDEX_PTR_FROM_END || indexPtr > size - dataStart) {
+      return null;
+    }
+
+    long indexStart = size - indexPtr;
+    mapped.seek(indexStart);
+    long startcode = in.readStartCode();
+    if (!Startcode.INDEX.equalsCode(startcode)) {
+      return null;
+    }
+
+    IndexPacket index = new IndexPacket(header);
+    index.read(in, startcode);
+    dataEnd = indexStart;
+
+    // The index only has each position rounded down, so search forward for the exact one
+    List<SyncPointPacket> result = new ArrayList<>(index.syncPoints.length);
+    long previousEnd = dataStart;
+    for (int i = 0; i < index.syncPoints.length; i++) {
+      long from = Math.max(index.syncPoints[i], previousEnd);
+
+      long position = mapped.find(Startcode.SYNCPOINT.value(), from, dataEnd);
+      if (position < 0) {
+        throw new IOException("syncpoint " + i + " not found after the index's offset " + from);
+      }
+      result.add(readSyncPointAt(position));
+      previousEnd = in.offset();
+    }
+    return result;
+  }
+
+  /**
+   * Finds every syncpoint by searching the whole file, for when there is no index.
+   *
+   * @return The syncpoints, in file order
+   * @throws IOException If a I/O error occurs
+   */
+  private List<SyncPointPacket> scanSyncPoints() throws IOException {
+    List<SyncPointPacket> result = new ArrayList<>();
+
+    long position = mapped.find(Startcode.SYNCPOINT.value(), dataStart, dataEnd);
+    while (position >= 0) {
+      SyncPointPacket syncPoint = readSyncPointAt(position);
+      result.add(syncPoint);
+
+      position = mapped.find(Startcode.SYNCPOINT.value(), in.offset(), dataEnd);
+    }
+    return result;
+  }
+
+  private SyncPointPacket readSyncPointAt(long position) throws IOException {
+    mapped.seek(position);
+    long startcode = in.readStartCode();
+
+    SyncPointPacket syncPoint = new SyncPointPacket(header);
+    syncPoint.position = position;
+    syncPoint.read(in, startcode);
+    return syncPoint;
+  }
+
+  /** Returns the syncpoints, in file order. */
+  public List<SyncPointPacket> getSyncPoints() {
+    return ImmutableList.copyOf(syncPoints);
+  }
+
+  /**
+   * Seeks to the last syncpoint at or before the timestamp. The frames read next may start before
+   * the timestamp, so the caller should decode, and discard, those it doesn't need.
+   *
+   * @param streamId The stream whose time base the timestamp is in
+   * @param pts The timestamp
+   * @throws IOException If a I/O error occurs
+   */
+  public void seek(int streamId, long pts) throws IOException {
+    checkElementIndex(streamId, streams.size(), "streamId");
+    seek(pts, streams.get(streamId).timeBase);
+  }
+
+  /**
+   * Seeks to the last syncpoint at or before the time.
+   *
+   * @param time The time
+   * @param unit The time's unit
+   * @throws IOException If a I/O error occurs
+   * @see #seek(int, long)
+   */
+  public void seek(long time, TimeUnit unit) throws IOException {
+    seek(unit.toNanos(time), Fraction.getFraction(1, (int) TimeUnit.SECONDS.toNanos(1)));
+  }
+
+  private void seek(long pts, Fraction timeBase) throws IOException {
+    // Binary search for the last syncpoint at or before pts
+    int low = 0;
+    int high = syncPoints.size() - 1;
+    int found = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (syncPoints.get(mid).getGlobalKeyPts(timeBase) <= pts) {
+        found = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+
+    mapped.seek(found < 0 ? dataStart : syncPoints.get(found).position);
+    for (Stream stream : streams) {
+      stream.last_pts = 0;
+    }
+  }
+
+  /**
+   * Seeks to the first frame.
+   *
+   * @throws IOException If a I/O error occurs
+   */
+  public void rewind() throws IOException {
+    seek(Long.MIN_VALUE, Fraction.ONE);
+  }
+
+  /**
+   * Reads the next frame.
+   *
+   * <p>With {@link #setFrameViews(boolean)}, the frame's data is a read-only view of the mapped
+   * file, which copies nothing, and stays valid until this reader is closed.
+   *
+   * @return The frame, or null at the end of the file
+   * @throws IOException If a I/O error occurs
+   */
+  @Nullable
+  public Frame readFrame() throws IOException {
+    while (in.offset() < dataEnd) {
+      long startcode = in.readStartCode();
+
+      if (startcode <= 0xFF) {
+        Frame frame = new Frame();
+        frame.read(this, in, (int) startcode);
+        return frame;
+      }
+
+      if (Startcode.SYNCPOINT.equalsCode(startcode)) {
+        readSyncPoint(startcode);
+      } else {
+        // Repeated headers, info, or unknown packets
+        new Packet().read(in, startcode);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reads every frame from the current position to the end of the file, passing each to the
+   * listener. The streams were already passed to it, when the file was opened.
+   *
+   * @throws IOException If a I/O error occurs
+   */
+  @Override
+  public void read() throws IOException {
+    Frame frame;
+    while ((frame = readFrame()) != null) {
+      listener.frame(frame);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -6,9 +6,13 @@ import static net.bramp.ffmpeg.nut.Packet.Startcode;
 import com.google.common.base.Charsets;
 import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.math.Fraction;
 
 /**
  * Demuxer for the FFmpeg Nut file format.
@@ -34,11 +38,48 @@ public class NutReader {
   final NutDataInputStream in;
   final NutReaderListener listener;
 
+  @Nullable FrameBufferPool framePool;
+  boolean frameViews;
+
   public NutReader(InputStream in, NutReaderListener listener) {
-    this.in = new NutDataInputStream(in);
+    this(new NutDataInputStream(in), listener);
+  }
+
+  public NutReader(ReadableByteChannel in, NutReaderListener listener) {
+    this(new NutDataInputStream(in), listener);
+  }
+
+  public NutReader(NutDataInputStream in, NutReaderListener listener) {
+    this.in = checkNotNull(in);
     this.listener = checkNotNull(listener);
   }
 
+  /**
+   * Reads each frame into a buffer from the pool, instead of a newly allocated array. The listener
+   * must call {@link Frame#release()} when it's finished with each frame.
+   *
+   * @param pool The pool, or null to allocate a new array for every frame
+   * @return this
+   */
+  public NutReader setFrameBufferPool(@Nullable FrameBufferPool pool) {
+    this.framePool = pool;
+    return this;
+  }
+
+  /**
+   * Hands out each frame's data as a read-only view of the reader's own buffer, copying nothing.
+   * The data is only valid until {@link NutReaderListener#frame(Frame)} returns, so the listener
+   * must process the frame synchronously. Frames larger than the buffer are still copied, into the
+   * {@link FrameBufferPool} if there is one.
+   *
+   * @param frameViews true to hand out views
+   * @return this
+   */
+  public NutReader setFrameViews(boolean frameViews) {
+    this.frameViews = frameViews;
+    return this;
+  }
+
   public static boolean isKnownStartcode(long startcode) {
     return Startcode.of(startcode) != null;
   }
@@ -75,58 +116,111 @@ public class NutReader {
   }
 
   /**
-   * Demux the inputstream
+   * Read the main header, and the stream headers and info packets that follow it.
    *
+   * @param startcode The main header's startcode, already read
+   * @return The next startcode
    * @throws IOException If a I/O error occurs
    */
-  public void read() throws IOException {
-    readFileId();
-    in.resetCRC();
+  protected long readHeaders(long startcode) throws IOException {
+    // Start parsing main and stream information
+    header = new MainHeaderPacket();
 
-    long startcode = in.readStartCode();
+    if (!Startcode.MAIN.equalsCode(startcode)) {
+      throw new IOException(String.format("expected main header found: 0x%X", startcode));
+    }
 
-    while (true) {
-      // Start parsing main and stream information
-      header = new MainHeaderPacket();
+    header.read(in, startcode);
+    startcode = readReservedHeaders();
 
-      if (!Startcode.MAIN.equalsCode(startcode)) {
-        throw new IOException(String.format("expected main header found: 0x%X", startcode));
+    streams.clear();
+    for (int i = 0; i < header.streamCount; i++) {
+      if (!Startcode.STREAM.equalsCode(startcode)) {
+        throw new IOException(String.format("expected stream header found: 0x%X", startcode));
       }
 
-      header.read(in, startcode);
+      StreamHeaderPacket streamHeader = new StreamHeaderPacket();
+      streamHeader.read(in, startcode);
+
+      Stream stream = new Stream(header, streamHeader);
+      streams.add(stream);
+      listener.stream(stream);
+
       startcode = readReservedHeaders();
+    }
 
-      streams.clear();
-      for (int i = 0; i < header.streamCount; i++) {
-        if (!Startcode.STREAM.equalsCode(startcode)) {
-          throw new IOException(String.format("expected stream header found: 0x%X", startcode));
-        }
+    while (Startcode.INFO.equalsCode(startcode)) {
+      new Packet().read(in, startcode); // Discard for the moment
+      startcode = readReservedHeaders();
+    }
+
+    if (Startcode.INDEX.equalsCode(startcode)) {
+      new Packet().read(in, startcode); // Discard for the moment
+      startcode = in.readStartCode();
+    }
 
-        StreamHeaderPacket streamHeader = new StreamHeaderPacket();
-        streamHeader.read(in, startcode);
+    return startcode;
+  }
 
-        Stream stream = new Stream(header, streamHeader);
-        streams.add(stream);
-        listener.stream(stream);
+  /**
+   * Read a syncpoint, and reset every stream's last timestamp to it, as the following frames'
+   * timestamps are coded relative to it.
+   *
+   * @param startcode The syncpoint's startcode, already read
+   * @return The syncpoint
+   * @throws IOException If a I/O error occurs
+   */
+  protected SyncPointPacket readSyncPoint(long startcode) throws IOException {
+    SyncPointPacket syncPoint = new SyncPointPacket(header);
+    syncPoint.position = in.offset() - 8;
+    syncPoint.read(in, startcode);
 
-        startcode = readReservedHeaders();
-      }
+    for (Stream stream : streams) {
+      stream.last_pts = syncPoint.getGlobalKeyPts(stream.timeBase);
+    }
+    return syncPoint;
+  }
 
-      while (Startcode.INFO.equalsCode(startcode)) {
-        new Packet().read(in, startcode); // Discard for the moment
-        startcode = readReservedHeaders();
-      }
+  /**
+   * Converts a timestamp between time bases, rounding down.
+   *
+   * @param value The timestamp
+   * @param from The timestamp's time base
+   * @param to The time base to convert to
+   * @return The converted timestamp
+   */
+  static long rescale(long value, Fraction from, Fraction to) {
+    BigInteger numerator =
+        BigInteger.valueOf(value)
+            .multiply(BigInteger.valueOf((long) from.getNumerator() * to.getDenominator()));
+    BigInteger denominator = BigInteger.valueOf((long) from.getDenominator() * to.getNumerator());
+
+    BigInteger[] result = numerator.divideAndRemainder(denominator);
+    if (result[1].signum() != 0 && result[1].signum() != denominator.signum()) {
+      return result[0].longValue() - 1;
+    }
+    return result[0].longValue();
+  }
 
-      if (Startcode.INDEX.equalsCode(startcode)) {
-        new Packet().read(in, startcode); // Discard for the moment
-        startcode = in.readStartCode();
-      }
+  /**
+   * Demux the inputstream
+   *
+   * @throws IOException If a I/O error occurs
+   */
+  public void read() throws IOException {
+    readFileId();
+    in.resetCRC();
+
+    long startcode = in.readStartCode();
+
+    while (true) {
+      startcode = readHeaders(startcode);
 
       // Now main frame parsing loop
       while (!Startcode.MAIN.equalsCode(startcode)) {
 
         if (Startcode.SYNCPOINT.equalsCode(startcode)) {
-          new Packet().read(in, startcode); // Discard for the moment
+          readSyncPoint(startcode);
           startcode = in.readStartCode();
         }
 
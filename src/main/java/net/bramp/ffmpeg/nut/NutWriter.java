@@ -0,0 +1,339 @@
+package net.bramp.ffmpeg.nut;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static net.bramp.ffmpeg.nut.Packet.Startcode;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.lang3.math.Fraction;
+
+/**
+ * Muxer for the FFmpeg Nut file format, the counterpart of {@link NutReader}. Nut is simple enough
+ * to write raw frames with almost no overhead, and ffmpeg can read it from a pipe, so it is a good
+ * way to feed video generated in Java to ffmpeg.
+ *
+ * <p>Streams are added first, then frames are written in the order they should be demuxed, with
+ * increasing timestamps in each stream. The headers are written before the first frame. Syncpoints
+ * are written before each keyframe that starts a new group of pictures, and whenever the last one
+ * is too far back. No index is written.
+ *
+ * <pre>
+ * <code>try (NutWriter nut = new NutWriter(out)) {
+ *   int video = nut.addVideoStream("RGBA", 640, 480, Fraction.getFraction(1, 25));
+ *   for (int i = 0; i &lt; frames; i++) {
+ *     nut.writeFrame(video, i, render(i), true);
+ *   }
+ * }</code>
+ * </pre>
+ *
+ * @see <a
+ *     href="https://www.ffmpeg.org/~michael/nut.txt">https://www.ffmpeg.org/~michael/nut.txt</a>
+ */
+public class NutWriter implements Flushable, Closeable {
+
+  /** Largest allowed distance between syncpoints, in bytes */
+  public static final int DEFAULT_MAX_DISTANCE = 32768;
+
+  static final int VERSION = 3;
+  static final int MSB_PTS_SHIFT = 7;
+
+  // Every frame codes its stream, full or partial timestamp, and size
+  static final long FRAME_FLAGS =
+      Frame.FLAG_STREAM_ID | Frame.FLAG_CODED_PTS | Frame.FLAG_SIZE_MSB;
+
+  /** The frame codes used, the rest are invalid */
+  static final long[] FRAME_CODES = {
+    FRAME_FLAGS | Frame.FLAG_KEY,
+    FRAME_FLAGS,
+    FRAME_FLAGS | Frame.FLAG_KEY | Frame.FLAG_CHECKSUM,
+    FRAME_FLAGS | Frame.FLAG_CHECKSUM,
+  };
+
+  public MainHeaderPacket header;
+  public final List<Stream> streams = new ArrayList<>();
+
+  final NutDataOutputStream out;
+
+  final List<StreamHeaderPacket> streamHeaders = new ArrayList<>();
+  final List<Fraction> timeBases = new ArrayList<>();
+
+  int maxDistance = DEFAULT_MAX_DISTANCE;
+
+  /** Reused to build each frame's header, as it may need a checksum */
+  final NutDataOutputStream frameHeader = new NutDataOutputStream();
+
+  /** Offset of the last syncpoint, or -1 if none has been written */
+  long lastSyncPoint = -1;
+
+  /** For each stream, the offset of the syncpoint before its last keyframe, or -1 if none */
+  long[] keySyncPoints;
+
+  /** For each stream, if the last frame was a keyframe */
+  boolean[] lastKey;
+
+  public NutWriter(OutputStream out) {
+    this(new NutDataOutputStream(out));
+  }
+
+  public NutWriter(WritableByteChannel out) {
+    this(new NutDataOutputStream(out));
+  }
+
+  public NutWriter(NutDataOutputStream out) {
+    this.out = checkNotNull(out);
+  }
+
+  /**
+   * Sets the largest distance between syncpoints. Larger values write fewer syncpoints, but make
+   * it slower for a reader to resynchronise after an error.
+   *
+   * @param maxDistance The distance in bytes, at most 65536
+   * @return this
+   */
+  public NutWriter setMaxDistance(int maxDistance) {
+    checkArgument(maxDistance > 0 && maxDistance <= 65536, "maxDistance must be in (0, 65536]");
+    checkState(header == null, "the headers have already been written");
+    this.maxDistance = maxDistance;
+    return this;
+  }
+
+  /**
+   * Adds a raw video stream.
+   *
+   * @param fourcc The pixel format's fourcc as ffmpeg's Nut muxer names it, e.g "RGBA"
+   * @param width The width in pixels
+   * @param height The height in pixels
+   * @param timeBase The unit of the frames' timestamps, e.g. 1/25 for 25 frames per second
+   * @return The stream's id
+   */
+  public int addVideoStream(String fourcc, int width, int height, Fraction timeBase) {
+    checkArgument(width > 0 && height > 0, "invalid video dimensions %sx%s", width, height);
+
+    StreamHeaderPacket stream = newStreamHeader(StreamHeaderPacket.VIDEO, fourcc, timeBase);
+    stream.width = width;
+    stream.height = height;
+    return addStream(stream);
+  }
+
+  /**
+   * Adds a raw audio stream.
+   *
+   * @param fourcc The sample format's fourcc as ffmpeg's Nut muxer names it, e.g "PSD" followed by
+   *     (char) 16 for signed 16 bit little endian, see {@link RawHandler#streamToAudioFormat}
+   * @param sampleRate The number of samples per second
+   * @param channels The number of channels, interleaved
+   * @param timeBase The unit of the frames' timestamps, usually 1/sampleRate
+   * @return The stream's id
+   */
+  public int addAudioStream(String fourcc, int sampleRate, int channels, Fraction timeBase) {
+    checkArgument(sampleRate > 0, "sampleRate must be positive");
+    checkArgument(channels > 0, "channels must be positive");
+
+    StreamHeaderPacket stream = newStreamHeader(StreamHeaderPacket.AUDIO, fourcc, timeBase);
+    stream.sampleRate = Fraction.getFraction(sampleRate, 1);
+    stream.channels = channels;
+    return addStream(stream);
+  }
+
+  private StreamHeaderPacket newStreamHeader(int type, String fourcc, Fraction timeBase) {
+    checkState(header == null, "streams must be added before the headers are written");
+    checkNotNull(fourcc);
+    checkArgument(
+        fourcc.length() == 2 || fourcc.length() == 4, "fourcc must be 2 or 4 characters long");
+    checkArgument(timeBase.getNumerator() > 0, "timeBase must be positive");
+
+    timeBase = timeBase.reduce();
+    int timeBaseId = timeBases.indexOf(timeBase);
+    if (timeBaseId < 0) {
+      timeBaseId = timeBases.size();
+      timeBases.add(timeBase);
+    }
+
+    StreamHeaderPacket stream = new StreamHeaderPacket();
+    stream.id = streamHeaders.size();
+    stream.type = type;
+    stream.fourcc = fourcc.getBytes(StandardCharsets.ISO_8859_1);
+    stream.timeBaseId = timeBaseId;
+    stream.msbPtsShift = MSB_PTS_SHIFT;
+    // About a second, as ffmpeg does
+    stream.maxPtsDistance =
+        Math.max(timeBase.getNumerator(), timeBase.getDenominator()) / timeBase.getNumerator();
+    stream.codecSpecificData = new byte[0];
+    return stream;
+  }
+
+  private int addStream(StreamHeaderPacket stream) {
+    checkState(streamHeaders.size() < 250, "too many streams");
+    streamHeaders.add(stream);
+    return stream.id;
+  }
+
+  /** Builds the frame codes, those in FRAME_CODES, followed by invalid ones. */
+  static List<FrameCode> newFrameCodes() {
+    List<FrameCode> codes = new ArrayList<>(256);
+    int invalid = 0;
+    for (int i = 0; i < 256; i++) {
+      FrameCode fc = new FrameCode();
+      fc.dataSizeMul = 1;
+      fc.matchTimeDelta = MainHeaderPacket.DEFAULT_MATCH_TIME_DELTA;
+
+      if (i < FRAME_CODES.length) {
+        fc.flags = FRAME_CODES[i];
+      } else {
+        fc.flags = Frame.FLAG_INVALID;
+        if (i != 'N') {
+          // Increasing sizes, so the invalid codes are written in a single entry
+          fc.dataSizeLsb = invalid++;
+        }
+      }
+      codes.add(fc);
+    }
+    return codes;
+  }
+
+  /**
+   * Writes the file id, the main header, and a header for each stream. Called by the first {@link
+   * #writeFrame}, if not before.
+   *
+   * @throws IOException If a I/O error occurs
+   */
+  public void writeHeader() throws IOException {
+    checkState(header == null, "the headers have already been written");
+    checkState(!streamHeaders.isEmpty(), "at least one stream must be added");
+
+    MainHeaderPacket main = new MainHeaderPacket();
+    main.version = VERSION;
+    main.streamCount = streamHeaders.size();
+    main.maxDistance = maxDistance;
+    main.timeBase = timeBases.toArray(new Fraction[0]);
+    main.frameCodes.addAll(newFrameCodes());
+    main.elision.add(new byte[0]);
+
+    out.write(NutReader.HEADER);
+    main.write(out, Startcode.MAIN.value());
+
+    streams.clear();
+    for (StreamHeaderPacket streamHeader : streamHeaders) {
+      streamHeader.write(out, Startcode.STREAM.value());
+      streams.add(new Stream(main, streamHeader));
+    }
+
+    keySyncPoints = new long[streams.size()];
+    Arrays.fill(keySyncPoints, -1);
+    lastKey = new boolean[streams.size()];
+
+    header = main;
+  }
+
+  /**
+   * Writes a frame.
+   *
+   * @param streamId The stream the frame is in
+   * @param pts The frame's timestamp, in the stream's time base, which must not be negative
+   * @param data The frame's data, from its position to its limit, which is left unchanged
+   * @param keyFrame If the frame can be decoded without earlier frames, as all raw frames can
+   * @throws IOException If a I/O error occurs
+   */
+  public void writeFrame(int streamId, long pts, ByteBuffer data, boolean keyFrame)
+      throws IOException {
+    checkNotNull(data);
+    checkArgument(pts >= 0, "pts must not be negative");
+    if (header == null) {
+      writeHeader();
+    }
+    checkElementIndex(streamId, streams.size(), "streamId");
+
+    Stream stream = streams.get(streamId);
+
+    // Demuxers give up on frames too far from the last syncpoint
+    long offset = out.offset();
+    if (lastSyncPoint < 0
+        || offset - lastSyncPoint > header.maxDistance
+        || (keyFrame && !lastKey[streamId])) {
+      writeSyncPoint(stream, pts);
+    }
+
+    if (keyFrame) {
+      keySyncPoints[streamId] = lastSyncPoint;
+    }
+    lastKey[streamId] = keyFrame;
+
+    Frame frame = new Frame();
+    frame.stream = stream;
+    frame.pts = pts;
+    frame.flags = keyFrame ? Frame.FLAG_KEY : 0;
+    frame.data = data.duplicate();
+    frame.write(this, out);
+  }
+
+  /**
+   * Writes a key frame.
+   *
+   * @param streamId The stream the frame is in
+   * @param pts The frame's timestamp, in the stream's time base
+   * @param data The frame's data
+   * @throws IOException If a I/O error occurs
+   */
+  public void writeFrame(int streamId, long pts, byte[] data) throws IOException {
+    writeFrame(streamId, pts, ByteBuffer.wrap(data), true);
+  }
+
+  private void writeSyncPoint(Stream stream, long pts) throws IOException {
+    SyncPointPacket syncPoint = new SyncPointPacket(header);
+    syncPoint.position = out.offset();
+    syncPoint.globalKeyPts = pts;
+    syncPoint.timeBase = stream.timeBase;
+
+    // Back to the earliest syncpoint still needed to decode every stream from a keyframe
+    long target = syncPoint.position;
+    for (long keySyncPoint : keySyncPoints) {
+      if (keySyncPoint >= 0) {
+        target = Math.min(target, keySyncPoint);
+      }
+    }
+    syncPoint.backPtr = syncPoint.position - target;
+
+    syncPoint.write(out, Startcode.SYNCPOINT.value());
+    lastSyncPoint = syncPoint.position;
+
+    for (Stream s : streams) {
+      s.last_pts = syncPoint.getGlobalKeyPts(s.timeBase);
+    }
+  }
+
+  /**
+   * Returns the frame code with exactly these flags.
+   *
+   * @param flags The frame's flags
+   * @return The frame code
+   */
+  int frameCode(long flags) {
+    for (int i = 0; i < FRAME_CODES.length; i++) {
+      if (FRAME_CODES[i] == flags) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("no frame code for flags " + flags);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+}
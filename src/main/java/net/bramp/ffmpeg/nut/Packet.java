@@ -2,6 +2,7 @@ package net.bramp.ffmpeg.nut;
 
 import com.google.common.base.MoreObjects;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -72,6 +73,29 @@ public class Packet {
     footer.read(in);
   }
 
+  protected void writeBody(NutDataOutputStream out) throws IOException {
+    // Default implementation does nothing
+  }
+
+  /**
+   * Writes the packet, with its startcode, forward pointer and checksums.
+   *
+   * @param out The stream to write to
+   * @param startcode The packet's startcode
+   * @throws IOException If a I/O error occurs
+   */
+  public void write(NutDataOutputStream out, long startcode) throws IOException {
+    // The body is built first, as the header holds its size
+    NutDataOutputStream body = new NutDataOutputStream();
+    writeBody(body);
+    ByteBuffer bytes = body.toByteBuffer();
+
+    header.write(out, startcode, bytes.remaining() + 4);
+    footer.checksum(bytes.duplicate());
+    out.write(bytes);
+    footer.write(out);
+  }
+
   public void seekToPacketFooter(NutDataInputStream in) throws IOException {
     long current = in.offset();
     if (current > header.end) {
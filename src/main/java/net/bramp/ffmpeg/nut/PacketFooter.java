@@ -2,6 +2,7 @@ package net.bramp.ffmpeg.nut;
 
 import com.google.common.base.MoreObjects;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class PacketFooter {
   int checksum;
@@ -9,7 +10,7 @@ public class PacketFooter {
   public void read(NutDataInputStream in) throws IOException {
     long expected = in.getCRC();
     checksum = in.readInt();
-    if (checksum != expected) {
+    if ((checksum & 0xFFFFFFFFL) != expected) {
       // throw new IOException(String.format("invalid packet checksum %X want %X", expected,
       // checksum));
       Packet.LOG.debug("invalid packet checksum {} want {}", expected, checksum);
@@ -17,6 +18,21 @@ public class PacketFooter {
     in.resetCRC();
   }
 
+  /**
+   * Sets the checksum to that of the packet's body.
+   *
+   * @param body The body, which is consumed
+   */
+  void checksum(ByteBuffer body) {
+    NutChecksum crc = new NutChecksum();
+    crc.update(body);
+    checksum = (int) crc.getValue();
+  }
+
+  public void write(NutDataOutputStream out) throws IOException {
+    out.writeInt(checksum);
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this).add("checksum", checksum).toString();
@@ -13,12 +13,14 @@ public class PacketHeader {
 
   public void read(NutDataInputStream in, long startcode) throws IOException {
     this.startcode = startcode;
+
+    // The header checksum covers the startcode and forward pointer
+    in.resetCRC(startcode);
     forwardPtr = in.readVarLong();
     if (forwardPtr > 4096) {
       long expected = in.getCRC();
       checksum = in.readInt();
-      if (checksum != expected) {
-        // TODO This code path has never been tested.
+      if ((checksum & 0xFFFFFFFFL) != expected) {
         throw new IOException(
             String.format("invalid header checksum %X want %X", expected, checksum));
       }
@@ -28,6 +30,34 @@ public class PacketHeader {
     end = in.offset() + forwardPtr - 4; // 4 bytes for footer CRC
   }
 
+  /**
+   * Writes the header of a packet, whose body and footer follow.
+   *
+   * @param out The stream to write to
+   * @param startcode The packet's startcode
+   * @param forwardPtr The size of the packet's body and footer
+   * @throws IOException If a I/O error occurs
+   */
+  public void write(NutDataOutputStream out, long startcode, long forwardPtr) throws IOException {
+    this.startcode = startcode;
+    this.forwardPtr = forwardPtr;
+
+    out.writeStartCode(startcode);
+    out.writeVarLong(forwardPtr);
+    if (forwardPtr > 4096) {
+      NutChecksum crc = new NutChecksum();
+      crc.updateLong(startcode);
+      NutDataOutputStream ptr = new NutDataOutputStream();
+      ptr.writeVarLong(forwardPtr);
+      crc.update(ptr.toByteBuffer());
+
+      checksum = (int) crc.getValue();
+      out.writeInt(checksum);
+    }
+
+    end = out.offset() + forwardPtr - 4; // 4 bytes for footer CRC
+  }
+
   @Override
   public String toString() {
     MoreObjects.ToStringHelper helper =
@@ -16,8 +16,8 @@ import javax.sound.sampled.AudioInputStream;
 
 public class RawHandler {
 
-  private static int[] bytesToInts(byte[] bytes) {
-    IntBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+  private static int[] bytesToInts(ByteBuffer bytes) {
+    IntBuffer buf = bytes.duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
 
     int[] data = new int[buf.capacity()];
     buf.get(data);
@@ -138,8 +138,21 @@ public class RawHandler {
     checkArgument(header.type == StreamHeaderPacket.AUDIO);
 
     AudioFormat format = streamToAudioFormat(header);
-    InputStream stream = new ByteArrayInputStream(frame.data);
+    InputStream stream = toInputStream(frame);
 
-    return new AudioInputStream(stream, format, frame.data.length / format.getFrameSize());
+    return new AudioInputStream(stream, format, frame.data.remaining() / format.getFrameSize());
+  }
+
+  private static InputStream toInputStream(Frame frame) {
+    ByteBuffer data = frame.data;
+    if (data.hasArray() && frame.pool == null) {
+      return new ByteArrayInputStream(
+          data.array(), data.arrayOffset() + data.position(), data.remaining());
+    }
+
+    // Copy, as the frame's buffer may be reused once it's released
+    byte[] bytes = new byte[data.remaining()];
+    data.duplicate().get(bytes);
+    return new ByteArrayInputStream(bytes);
   }
 }
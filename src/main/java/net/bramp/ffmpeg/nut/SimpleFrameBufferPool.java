@@ -0,0 +1,66 @@
+package net.bramp.ffmpeg.nut;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * A thread safe {@link FrameBufferPool}, which keeps up to a fixed number of released buffers, and
+ * hands them out again for any frame that fits. Buffers released when the pool is full are left to
+ * the garbage collector.
+ */
+public class SimpleFrameBufferPool implements FrameBufferPool {
+
+  final int maxBuffers;
+  final boolean direct;
+
+  // Guarded by this
+  final Deque<ByteBuffer> free = new ArrayDeque<>();
+
+  /**
+   * @param maxBuffers The most released buffers to keep
+   * @param direct Allocate direct buffers, instead of heap buffers
+   */
+  public SimpleFrameBufferPool(int maxBuffers, boolean direct) {
+    checkArgument(maxBuffers > 0, "maxBuffers must be positive");
+    this.maxBuffers = maxBuffers;
+    this.direct = direct;
+  }
+
+  @Override
+  public ByteBuffer acquire(int size) {
+    checkArgument(size >= 0, "size must not be negative");
+
+    synchronized (this) {
+      // Most recently released first, as it's most likely to be in the cache
+      Iterator<ByteBuffer> it = free.iterator();
+      while (it.hasNext()) {
+        ByteBuffer buffer = it.next();
+        if (buffer.capacity() >= size) {
+          it.remove();
+          buffer.clear();
+          return buffer;
+        }
+      }
+    }
+
+    return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+  }
+
+  @Override
+  public synchronized void release(ByteBuffer buffer) {
+    checkNotNull(buffer);
+    if (free.size() < maxBuffers) {
+      free.push(buffer);
+    }
+  }
+
+  /** Returns the number of buffers waiting to be reused. */
+  public synchronized int size() {
+    return free.size();
+  }
+}
@@ -17,4 +17,27 @@ public class Stream {
     }
     this.timeBase = header.timeBase[streamHeader.timeBaseId];
   }
+
+  public int getId() {
+    return header.id;
+  }
+
+  /** Returns one of {@link StreamHeaderPacket#VIDEO}, AUDIO, SUBTITLE or USER_DATA. */
+  public long getType() {
+    return header.type;
+  }
+
+  /** Returns the width of a video stream, in pixels. */
+  public int getWidth() {
+    return header.width;
+  }
+
+  /** Returns the height of a video stream, in pixels. */
+  public int getHeight() {
+    return header.height;
+  }
+
+  public Fraction getTimeBase() {
+    return timeBase;
+  }
 }
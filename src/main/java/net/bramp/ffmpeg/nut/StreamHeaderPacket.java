@@ -87,6 +87,32 @@ public class StreamHeaderPacket extends Packet {
     }
   }
 
+  @Override
+  protected void writeBody(NutDataOutputStream out) throws IOException {
+    out.writeVarInt(id);
+    out.writeVarLong(type);
+    out.writeVarArray(fourcc);
+    out.writeVarInt(timeBaseId);
+    out.writeVarInt(msbPtsShift);
+    out.writeVarInt(maxPtsDistance);
+    out.writeVarLong(decodeDelay);
+    out.writeVarLong(flags);
+    out.writeVarArray(codecSpecificData);
+
+    if (type == VIDEO) {
+      out.writeVarInt(width);
+      out.writeVarInt(height);
+      out.writeVarInt(sampleWidth);
+      out.writeVarInt(sampleHeight);
+      out.writeVarLong(colorspaceType);
+
+    } else if (type == AUDIO) {
+      out.writeVarInt(sampleRate.getNumerator());
+      out.writeVarInt(sampleRate.getDenominator());
+      out.writeVarInt(channels);
+    }
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this)
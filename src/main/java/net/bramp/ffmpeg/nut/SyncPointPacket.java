@@ -1,4 +1,69 @@
 package net.bramp.ffmpeg.nut;
 
-// TODO
-public class SyncPointPacket {}
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.base.MoreObjects;
+import java.io.IOException;
+import java.util.Arrays;
+import org.apache.commons.lang3.math.Fraction;
+
+/**
+ * A syncpoint, after which every stream's timestamps can be decoded without any earlier frames.
+ * Seeking starts from one of these.
+ */
+public class SyncPointPacket extends Packet {
+
+  final MainHeaderPacket main;
+
+  long position; // Offset of the startcode, if known
+  long globalKeyPts;
+  Fraction timeBase;
+  long backPtr; // Distance back to the previous syncpoint, rounded down to 16 bytes
+
+  public SyncPointPacket(MainHeaderPacket main) {
+    this.main = checkNotNull(main);
+  }
+
+  @Override
+  protected void readBody(NutDataInputStream in) throws IOException {
+    long tmp = in.readVarLong();
+    int count = main.timeBase.length;
+    timeBase = main.timeBase[(int) (tmp % count)];
+    globalKeyPts = tmp / count;
+
+    backPtr = in.readVarLong() * 16;
+  }
+
+  @Override
+  protected void writeBody(NutDataOutputStream out) throws IOException {
+    int id = Arrays.asList(main.timeBase).indexOf(timeBase);
+    checkState(id >= 0, "time base %s is not in the main header", timeBase);
+
+    out.writeVarLong(globalKeyPts * main.timeBase.length + id);
+    out.writeVarLong(backPtr / 16);
+  }
+
+  /**
+   * Returns the timestamp of the frames following this syncpoint, converted to the given time base,
+   * rounded down.
+   *
+   * @param timeBase The time base to convert to
+   * @return The timestamp
+   */
+  public long getGlobalKeyPts(Fraction timeBase) {
+    return NutReader.rescale(globalKeyPts, this.timeBase, timeBase);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("header", header)
+        .add("position", position)
+        .add("globalKeyPts", globalKeyPts)
+        .add("timeBase", timeBase)
+        .add("backPtr", backPtr)
+        .add("footer", footer)
+        .toString();
+  }
+}
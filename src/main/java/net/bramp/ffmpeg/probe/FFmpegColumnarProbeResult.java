@@ -0,0 +1,116 @@
+package net.bramp.ffmpeg.probe;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Collects packets and frames, grouped by stream, into compact {@link FFmpegPacketColumns} and
+ * {@link FFmpegFrameColumns}. Use as the {@link ProbeListener} of a streaming probe, or via {@link
+ * net.bramp.ffmpeg.FFprobe#probeColumnar(net.bramp.ffmpeg.builder.FFprobeBuilder)}.
+ */
+public class FFmpegColumnarProbeResult implements ProbeListener {
+
+  // Indexed by stream index, null for streams with no packets or frames.
+  final List<FFmpegPacketColumns> packets = new ArrayList<>();
+  final List<FFmpegFrameColumns> frames = new ArrayList<>();
+
+  FFmpegProbeResult result;
+
+  @Override
+  public void packet(FFmpegPacket packet) {
+    int index = packet.stream_index;
+    ensureSize(packets, index);
+
+    FFmpegPacketColumns columns = packets.get(index);
+    if (columns == null) {
+      columns = new FFmpegPacketColumns(index);
+      packets.set(index, columns);
+    }
+    columns.add(packet);
+  }
+
+  @Override
+  public void frame(FFmpegFrame frame) {
+    int index = frame.stream_index;
+    ensureSize(frames, index);
+
+    FFmpegFrameColumns columns = frames.get(index);
+    if (columns == null) {
+      columns = new FFmpegFrameColumns(index);
+      frames.set(index, columns);
+    }
+    columns.add(frame);
+  }
+
+  private static <T> void ensureSize(List<T> list, int index) {
+    while (list.size() <= index) {
+      list.add(null);
+    }
+  }
+
+  /** Releases unused capacity in all the columns, once probing has finished. */
+  public void trimToSize() {
+    for (FFmpegPacketColumns columns : packets) {
+      if (columns != null) columns.trimToSize();
+    }
+    for (FFmpegFrameColumns columns : frames) {
+      if (columns != null) columns.trimToSize();
+    }
+  }
+
+  /**
+   * Returns the packets of a stream.
+   *
+   * @param streamIndex The index of the stream.
+   * @return The packets, or null if the stream had none.
+   */
+  @Nullable
+  public FFmpegPacketColumns getPackets(int streamIndex) {
+    return streamIndex < packets.size() ? packets.get(streamIndex) : null;
+  }
+
+  /**
+   * Returns the frames of a stream.
+   *
+   * @param streamIndex The index of the stream.
+   * @return The frames, or null if the stream had none.
+   */
+  @Nullable
+  public FFmpegFrameColumns getFrames(int streamIndex) {
+    return streamIndex < frames.size() ? frames.get(streamIndex) : null;
+  }
+
+  /** Returns the packets of all streams that had any. */
+  public List<FFmpegPacketColumns> getAllPackets() {
+    ImmutableList.Builder<FFmpegPacketColumns> builder = ImmutableList.builder();
+    for (FFmpegPacketColumns columns : packets) {
+      if (columns != null) builder.add(columns);
+    }
+    return builder.build();
+  }
+
+  /** Returns the frames of all streams that had any. */
+  public List<FFmpegFrameColumns> getAllFrames() {
+    ImmutableList.Builder<FFmpegFrameColumns> builder = ImmutableList.builder();
+    for (FFmpegFrameColumns columns : frames) {
+      if (columns != null) builder.add(columns);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the rest of the probe result (format, streams, etc), without packets or frames.
+   *
+   * @return The result, or null if not yet set.
+   */
+  @Nullable
+  public FFmpegProbeResult getResult() {
+    return result;
+  }
+
+  public void setResult(FFmpegProbeResult result) {
+    this.result = result;
+  }
+}
@@ -0,0 +1,167 @@
+package net.bramp.ffmpeg.probe;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import java.util.Arrays;
+
+/**
+ * The frames of a single stream, stored column by column in primitive arrays. This uses a small
+ * fraction of the memory of a list of {@link FFmpegFrame}s.
+ */
+public class FFmpegFrameColumns {
+
+  static final int INITIAL_CAPACITY = 256;
+
+  final int streamIndex;
+
+  int size = 0;
+  long[] pktPts = new long[INITIAL_CAPACITY];
+  long[] pktDts = new long[INITIAL_CAPACITY];
+  long[] bestEffortTimestamp = new long[INITIAL_CAPACITY];
+  long[] pktDuration = new long[INITIAL_CAPACITY];
+  long[] pktPos = new long[INITIAL_CAPACITY];
+  int[] pktSize = new int[INITIAL_CAPACITY];
+  int[] nbSamples = new int[INITIAL_CAPACITY];
+  boolean[] keyFrame = new boolean[INITIAL_CAPACITY];
+
+  public FFmpegFrameColumns(int streamIndex) {
+    this.streamIndex = streamIndex;
+  }
+
+  /**
+   * Appends a frame. Only the numeric fields are kept.
+   *
+   * @param frame The frame to add.
+   */
+  public void add(FFmpegFrame frame) {
+    if (size == pktPts.length) {
+      grow();
+    }
+
+    pktPts[size] = frame.pkt_pts;
+    pktDts[size] = frame.pkt_dts;
+    bestEffortTimestamp[size] = frame.best_effort_timestamp;
+    pktDuration[size] = frame.pkt_duration;
+    pktPos[size] = frame.pkt_pos;
+    pktSize[size] = (int) frame.pkt_size;
+    nbSamples[size] = frame.nb_samples;
+    keyFrame[size] = frame.key_frame != 0;
+    size++;
+  }
+
+  private void grow() {
+    resize(Math.max(INITIAL_CAPACITY, pktPts.length * 2));
+  }
+
+  private void resize(int capacity) {
+    pktPts = Arrays.copyOf(pktPts, capacity);
+    pktDts = Arrays.copyOf(pktDts, capacity);
+    bestEffortTimestamp = Arrays.copyOf(bestEffortTimestamp, capacity);
+    pktDuration = Arrays.copyOf(pktDuration, capacity);
+    pktPos = Arrays.copyOf(pktPos, capacity);
+    pktSize = Arrays.copyOf(pktSize, capacity);
+    nbSamples = Arrays.copyOf(nbSamples, capacity);
+    keyFrame = Arrays.copyOf(keyFrame, capacity);
+  }
+
+  /** Releases any unused capacity, once all frames have been added. */
+  public void trimToSize() {
+    resize(size);
+  }
+
+  public int getStreamIndex() {
+    return streamIndex;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long getPktPts(int i) {
+    return pktPts[checkElementIndex(i, size)];
+  }
+
+  public long getPktDts(int i) {
+    return pktDts[checkElementIndex(i, size)];
+  }
+
+  public long getBestEffortTimestamp(int i) {
+    return bestEffortTimestamp[checkElementIndex(i, size)];
+  }
+
+  public long getPktDuration(int i) {
+    return pktDuration[checkElementIndex(i, size)];
+  }
+
+  public long getPktPos(int i) {
+    return pktPos[checkElementIndex(i, size)];
+  }
+
+  public int getPktSize(int i) {
+    return pktSize[checkElementIndex(i, size)];
+  }
+
+  public int getNbSamples(int i) {
+    return nbSamples[checkElementIndex(i, size)];
+  }
+
+  public boolean isKeyFrame(int i) {
+    return keyFrame[checkElementIndex(i, size)];
+  }
+
+  /**
+   * Returns a reusable view of a single frame. Move it with {@link Cursor#moveTo(int)}; no objects
+   * are allocated per frame.
+   *
+   * @return A new cursor positioned at the first frame.
+   */
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  /** A flyweight view of one frame in the columns. */
+  public class Cursor {
+    int i = 0;
+
+    public Cursor moveTo(int index) {
+      this.i = checkElementIndex(index, size);
+      return this;
+    }
+
+    public int getIndex() {
+      return i;
+    }
+
+    public long getPktPts() {
+      return pktPts[i];
+    }
+
+    public long getPktDts() {
+      return pktDts[i];
+    }
+
+    public long getBestEffortTimestamp() {
+      return bestEffortTimestamp[i];
+    }
+
+    public long getPktDuration() {
+      return pktDuration[i];
+    }
+
+    public long getPktPos() {
+      return pktPos[i];
+    }
+
+    public int getPktSize() {
+      return pktSize[i];
+    }
+
+    public int getNbSamples() {
+      return nbSamples[i];
+    }
+
+    public boolean isKeyFrame() {
+      return keyFrame[i];
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package net.bramp.ffmpeg.probe;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import com.google.common.primitives.Longs;
+import java.util.Arrays;
+
+/**
+ * The packets of a single stream, stored column by column in primitive arrays. This uses a small
+ * fraction of the memory of a list of {@link FFmpegPacket}s, making it practical to hold every
+ * packet of a long file for GOP or bitrate analysis.
+ *
+ * <p>A size or pos that ffprobe reported as "N/A" is stored as -1. The pts, dts and duration are
+ * copied from the {@link FFmpegPacket} as they are, so one ffprobe left out is 0.
+ */
+public class FFmpegPacketColumns {
+
+  static final int INITIAL_CAPACITY = 256;
+
+  final int streamIndex;
+
+  int size = 0;
+  long[] pts = new long[INITIAL_CAPACITY];
+  long[] dts = new long[INITIAL_CAPACITY];
+  long[] duration = new long[INITIAL_CAPACITY];
+  long[] pos = new long[INITIAL_CAPACITY];
+  int[] packetSize = new int[INITIAL_CAPACITY];
+  boolean[] keyframe = new boolean[INITIAL_CAPACITY];
+
+  public FFmpegPacketColumns(int streamIndex) {
+    this.streamIndex = streamIndex;
+  }
+
+  /**
+   * Appends a packet. Only the numeric fields are kept.
+   *
+   * @param packet The packet to add.
+   */
+  public void add(FFmpegPacket packet) {
+    if (size == pts.length) {
+      grow();
+    }
+
+    pts[size] = packet.pts;
+    dts[size] = packet.dts;
+    duration[size] = packet.duration;
+    pos[size] = parseLong(packet.pos);
+    packetSize[size] = (int) parseLong(packet.size);
+    keyframe[size] = packet.flags != null && packet.flags.indexOf('K') >= 0;
+    size++;
+  }
+
+  private void grow() {
+    resize(Math.max(INITIAL_CAPACITY, pts.length * 2));
+  }
+
+  private void resize(int capacity) {
+    pts = Arrays.copyOf(pts, capacity);
+    dts = Arrays.copyOf(dts, capacity);
+    duration = Arrays.copyOf(duration, capacity);
+    pos = Arrays.copyOf(pos, capacity);
+    packetSize = Arrays.copyOf(packetSize, capacity);
+    keyframe = Arrays.copyOf(keyframe, capacity);
+  }
+
+  static long parseLong(String value) {
+    if (value == null) {
+      return -1;
+    }
+    Long l = Longs.tryParse(value);
+    return l == null ? -1 : l;
+  }
+
+  /** Releases any unused capacity, once all packets have been added. */
+  public void trimToSize() {
+    resize(size);
+  }
+
+  public int getStreamIndex() {
+    return streamIndex;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long getPts(int i) {
+    return pts[checkElementIndex(i, size)];
+  }
+
+  public long getDts(int i) {
+    return dts[checkElementIndex(i, size)];
+  }
+
+  public long getDuration(int i) {
+    return duration[checkElementIndex(i, size)];
+  }
+
+  public long getPos(int i) {
+    return pos[checkElementIndex(i, size)];
+  }
+
+  public int getSize(int i) {
+    return packetSize[checkElementIndex(i, size)];
+  }
+
+  public boolean isKeyframe(int i) {
+    return keyframe[checkElementIndex(i, size)];
+  }
+
+  /**
+   * Returns a reusable view of a single packet. Move it with {@link Cursor#moveTo(int)}; no
+   * objects are allocated per packet.
+   *
+   * @return A new cursor positioned at the first packet.
+   */
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  /** A flyweight view of one packet in the columns. */
+  public class Cursor {
+    int i = 0;
+
+    public Cursor moveTo(int index) {
+      this.i = checkElementIndex(index, size);
+      return this;
+    }
+
+    public int getIndex() {
+      return i;
+    }
+
+    public long getPts() {
+      return pts[i];
+    }
+
+    public long getDts() {
+      return dts[i];
+    }
+
+    public long getDuration() {
+      return duration[i];
+    }
+
+    public long getPos() {
+      return pos[i];
+    }
+
+    public int getSize() {
+      return packetSize[i];
+    }
+
+    public boolean isKeyframe() {
+      return keyframe[i];
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package net.bramp.ffmpeg.probe;
+
+/**
+ * Receives packets and frames from ffprobe one at a time, as they are parsed. Used with {@link
+ * net.bramp.ffmpeg.FFprobe#probe(net.bramp.ffmpeg.builder.FFprobeBuilder, ProbeListener)} to
+ * process large files without holding every packet and frame in memory.
+ */
+public interface ProbeListener {
+
+  /**
+   * Executes when a packet is parsed.
+   *
+   * @param packet A single packet
+   */
+  void packet(FFmpegPacket packet);
+
+  /**
+   * Executes when a frame is parsed.
+   *
+   * @param frame A single frame
+   */
+  void frame(FFmpegFrame frame);
+}
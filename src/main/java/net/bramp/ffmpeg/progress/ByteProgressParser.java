@@ -0,0 +1,428 @@
+package net.bramp.ffmpeg.progress;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import net.bramp.ffmpeg.metrics.Counter;
+import net.bramp.ffmpeg.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parses ffmpeg's progress output directly from bytes. Lines are split, keys matched, and numbers
+ * parsed in place, without creating Strings, regexes or a new {@link Progress} per record. The
+ * fields are written into a single reused {@link ProgressRecord}.
+ *
+ * <p>Produces the same values as {@link Progress#parseLine(String)}. Not thread safe; use one
+ * parser per stream.
+ */
+public class ByteProgressParser {
+
+  static final Logger LOG = LoggerFactory.getLogger(ByteProgressParser.class);
+
+  static final int BUFFER_SIZE = 4096;
+
+  static final Counter BYTES = Metrics.counter("ffmpeg.progress.bytes");
+  static final Counter LINES = Metrics.counter("ffmpeg.progress.lines");
+  static final Counter RECORDS = Metrics.counter("ffmpeg.progress.records");
+
+  static final byte[] FRAME = ascii("frame");
+  static final byte[] FPS = ascii("fps");
+  static final byte[] BITRATE = ascii("bitrate");
+  static final byte[] TOTAL_SIZE = ascii("total_size");
+  static final byte[] OUT_TIME_MS = ascii("out_time_ms");
+  static final byte[] OUT_TIME_US = ascii("out_time_us");
+  static final byte[] OUT_TIME = ascii("out_time");
+  static final byte[] DUP_FRAMES = ascii("dup_frames");
+  static final byte[] DROP_FRAMES = ascii("drop_frames");
+  static final byte[] SPEED = ascii("speed");
+  static final byte[] PROGRESS = ascii("progress");
+  static final byte[] STREAM_PREFIX = ascii("stream_");
+  static final byte[] CONTINUE = ascii("continue");
+  static final byte[] END = ascii("end");
+
+  // Exact powers of ten, as doubles
+  static final double[] POW10 = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+    1e17, 1e18
+  };
+
+  // Larger longs can't all be held exactly in a double
+  static final long MAX_EXACT = 1L << 53;
+
+  final ProgressRecordListener listener;
+  final ProgressRecord record = new ProgressRecord();
+
+  // Holds a line split across two reads
+  byte[] partial = new byte[128];
+  int partialLength = 0;
+
+  byte[] buffer; // Lazily created read buffer
+
+  private ByteProgressParser(ProgressRecordListener listener) {
+    this.listener = checkNotNull(listener);
+  }
+
+  /**
+   * Creates a parser which passes the reused {@link ProgressRecord} to the listener. A factory,
+   * rather than a constructor, so a lambda can't be taken for either kind of listener.
+   *
+   * @param listener the listener
+   * @return the parser
+   */
+  public static ByteProgressParser forRecords(ProgressRecordListener listener) {
+    return new ByteProgressParser(listener);
+  }
+
+  /**
+   * Creates a parser for a classic {@link ProgressListener}. A {@link Progress} is created for
+   * each completed record, but nothing is allocated while parsing the lines.
+   *
+   * @param listener the listener
+   */
+  public ByteProgressParser(final ProgressListener listener) {
+    this(toRecordListener(listener));
+  }
+
+  static ProgressRecordListener toRecordListener(final ProgressListener listener) {
+    checkNotNull(listener);
+    return record -> listener.progress(record.toProgress());
+  }
+
+  private static byte[] ascii(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /** Discards any partially parsed record, ready to parse a new stream. */
+  public void reset() {
+    record.reset();
+    partialLength = 0;
+  }
+
+  /**
+   * Reads the stream until it ends, parsing all the records in it.
+   *
+   * @param in the stream
+   * @throws IOException if the stream can not be read
+   */
+  public void processStream(InputStream in) throws IOException {
+    checkNotNull(in);
+    if (buffer == null) {
+      buffer = new byte[BUFFER_SIZE];
+    }
+
+    reset();
+
+    int len;
+    while ((len = in.read(buffer)) != -1) {
+      process(buffer, 0, len);
+    }
+    finish();
+  }
+
+  /**
+   * Parses the bytes, which may end part way through a line. The rest of the line is expected in
+   * the next call.
+   *
+   * @param b the bytes
+   * @param off the offset of the first byte
+   * @param len the number of bytes
+   */
+  public void process(byte[] b, int off, int len) {
+    final int end = off + len;
+    int start = off;
+    int lines = 0;
+
+    for (int i = off; i < end; i++) {
+      if (b[i] != '\n') {
+        continue;
+      }
+      lines++;
+
+      if (partialLength == 0) {
+        // Fast path, the whole line is in this buffer
+        parseLine(b, start, i);
+      } else {
+        appendPartial(b, start, i);
+        parseLine(partial, 0, partialLength);
+        partialLength = 0;
+      }
+      start = i + 1;
+    }
+
+    if (start < end) {
+      appendPartial(b, start, end);
+    }
+
+    // Counted once per call, instead of per line
+    BYTES.increment(len);
+    LINES.increment(lines);
+  }
+
+  /**
+   * Parses the remaining bytes in the buffer, as {@link #process(byte[], int, int)}.
+   *
+   * @param buf the buffer, whose position is advanced to its limit
+   */
+  public void process(ByteBuffer buf) {
+    if (buf.hasArray()) {
+      process(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+      buf.position(buf.limit());
+      return;
+    }
+
+    if (buffer == null) {
+      buffer = new byte[BUFFER_SIZE];
+    }
+    while (buf.hasRemaining()) {
+      int len = Math.min(buffer.length, buf.remaining());
+      buf.get(buffer, 0, len);
+      process(buffer, 0, len);
+    }
+  }
+
+  /** Parses any final line which was not terminated by a new line. */
+  public void finish() {
+    if (partialLength > 0) {
+      LINES.increment();
+      parseLine(partial, 0, partialLength);
+      partialLength = 0;
+    }
+  }
+
+  private void appendPartial(byte[] b, int start, int end) {
+    int len = end - start;
+    if (partialLength + len > partial.length) {
+      partial = Arrays.copyOf(partial, Math.max(partial.length * 2, partialLength + len));
+    }
+    System.arraycopy(b, start, partial, partialLength, len);
+    partialLength += len;
+  }
+
+  /**
+   * Parses a single line, between start (inclusive) and end (exclusive).
+   *
+   * @return true if the record is finished
+   */
+  boolean parseLine(byte[] b, int start, int end) {
+    // Trim
+    while (start < end && b[start] <= ' ') start++;
+    while (end > start && b[end - 1] <= ' ') end--;
+
+    if (start == end) {
+      return false; // Skip empty lines
+    }
+
+    int eq = indexOf(b, start, end, (byte) '=');
+    if (eq < 0) {
+      return false; // invalid argument, so skip
+    }
+
+    final int vs = eq + 1; // value start
+
+    if (equals(b, start, eq, FRAME)) {
+      record.frame = parseLong(b, vs, end);
+
+    } else if (equals(b, start, eq, FPS)) {
+      record.fps = parseDecimal(b, vs, end);
+
+    } else if (equals(b, start, eq, BITRATE)) {
+      if (isNotAvailable(b, vs, end)) {
+        record.bitrate = -1;
+      } else {
+        record.bitrate = (long) ((float) parseDecimal(b, vs, end) * 1000);
+      }
+
+    } else if (equals(b, start, eq, TOTAL_SIZE)) {
+      record.total_size = isNotAvailable(b, vs, end) ? -1 : parseLong(b, vs, end);
+
+    } else if (equals(b, start, eq, OUT_TIME_MS) || equals(b, start, eq, OUT_TIME_US)) {
+      // Duplicates of "out_time", so ignored, see Progress.parseLine
+
+    } else if (equals(b, start, eq, OUT_TIME)) {
+      record.out_time_ns = isNotAvailable(b, vs, end) ? -1 : parseTimecode(b, vs, end);
+
+    } else if (equals(b, start, eq, DUP_FRAMES)) {
+      record.dup_frames = parseLong(b, vs, end);
+
+    } else if (equals(b, start, eq, DROP_FRAMES)) {
+      record.drop_frames = parseLong(b, vs, end);
+
+    } else if (equals(b, start, eq, SPEED)) {
+      record.speed = isNotAvailable(b, vs, end) ? -1 : (float) parseDecimal(b, vs, end);
+
+    } else if (equals(b, start, eq, PROGRESS)) {
+      if (equalsIgnoreCase(b, vs, end, CONTINUE)) {
+        record.status = Progress.Status.CONTINUE;
+      } else if (equalsIgnoreCase(b, vs, end, END)) {
+        record.status = Progress.Status.END;
+      } else {
+        throw new IllegalArgumentException(
+            "invalid progress status '" + string(b, vs, end) + "'");
+      }
+
+      // The status field is always last in the record
+      RECORDS.increment();
+      listener.progress(record);
+      record.reset();
+      return true;
+
+    } else if (!startsWith(b, start, eq, STREAM_PREFIX)) {
+      if (LOG.isWarnEnabled()) {
+        LOG.warn("skipping unhandled key: {} = {}", string(b, start, eq), string(b, vs, end));
+      }
+    }
+
+    return false;
+  }
+
+  private static String string(byte[] b, int start, int end) {
+    return new String(b, start, end - start, StandardCharsets.UTF_8);
+  }
+
+  static int indexOf(byte[] b, int start, int end, byte c) {
+    for (int i = start; i < end; i++) {
+      if (b[i] == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  static boolean equals(byte[] b, int start, int end, byte[] key) {
+    return end - start == key.length && startsWith(b, start, end, key);
+  }
+
+  static boolean startsWith(byte[] b, int start, int end, byte[] prefix) {
+    if (end - start < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (b[start + i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static boolean equalsIgnoreCase(byte[] b, int start, int end, byte[] key) {
+    if (end - start != key.length) {
+      return false;
+    }
+    for (int i = 0; i < key.length; i++) {
+      if ((b[start + i] | 0x20) != key[i]) { // keys are lower case letters
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static boolean isNotAvailable(byte[] b, int start, int end) {
+    while (start < end && b[start] == ' ') start++;
+    return end - start >= 3 && b[start] == 'N' && b[start + 1] == '/' && b[start + 2] == 'A';
+  }
+
+  /**
+   * Parses a (optionally signed) integer, ignoring leading spaces.
+   *
+   * @throws NumberFormatException if there are no digits, or trailing characters.
+   */
+  static long parseLong(byte[] b, int start, int end) {
+    int i = start;
+    while (i < end && b[i] == ' ') i++;
+
+    boolean negative = false;
+    if (i < end && (b[i] == '-' || b[i] == '+')) {
+      negative = b[i] == '-';
+      i++;
+    }
+
+    if (i == end) {
+      throw new NumberFormatException("For input string: \"" + string(b, start, end) + "\"");
+    }
+
+    long value = 0;
+    for (; i < end; i++) {
+      int digit = b[i] - '0';
+      if (digit < 0 || digit > 9) {
+        throw new NumberFormatException("For input string: \"" + string(b, start, end) + "\"");
+      }
+      value = value * 10 + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Parses a decimal number such as "23.4", ignoring leading spaces and any trailing unit (such as
+   * "kbits/s" or "x").
+   *
+   * @throws NumberFormatException if there are no digits.
+   */
+  static double parseDecimal(byte[] b, int start, int end) {
+    int i = start;
+    while (i < end && b[i] == ' ') i++;
+
+    boolean negative = false;
+    if (i < end && (b[i] == '-' || b[i] == '+')) {
+      negative = b[i] == '-';
+      i++;
+    }
+
+    final int numberStart = i;
+    long mantissa = 0;
+    int digits = 0;
+    int fractionDigits = 0;
+    boolean point = false;
+
+    for (; i < end; i++) {
+      byte c = b[i];
+      if (c == '.' && !point) {
+        point = true;
+      } else if (c >= '0' && c <= '9') {
+        mantissa = mantissa * 10 + (c - '0');
+        digits++;
+        if (point) fractionDigits++;
+      } else {
+        break;
+      }
+    }
+
+    if (digits == 0) {
+      throw new NumberFormatException("For input string: \"" + string(b, start, end) + "\"");
+    }
+
+    double value;
+    if (digits < POW10.length && mantissa <= MAX_EXACT) {
+      // Both are exact, so the division is correctly rounded, same as Double.parseDouble
+      value = mantissa / POW10[fractionDigits];
+    } else {
+      value = Double.parseDouble(string(b, numberStart, i)); // Too many digits to be exact
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Parses a "hours:minutes:seconds" timecode, where seconds can be decimal, the same as {@link
+   * net.bramp.ffmpeg.FFmpegUtils#fromTimecode(String)}.
+   */
+  static long parseTimecode(byte[] b, int start, int end) {
+    int c1 = indexOf(b, start, end, (byte) ':');
+    int c2 = c1 < 0 ? -1 : indexOf(b, c1 + 1, end, (byte) ':');
+    if (c2 < 0) {
+      throw new IllegalArgumentException("invalid time '" + string(b, start, end) + "'");
+    }
+
+    long hours = parseLong(b, start, c1);
+    long mins = parseLong(b, c1 + 1, c2);
+    double secs = parseDecimal(b, c2 + 1, end);
+
+    return HOURS.toNanos(hours) + MINUTES.toNanos(mins) + (long) (SECONDS.toNanos(1) * secs);
+  }
+}
@@ -0,0 +1,158 @@
+package net.bramp.ffmpeg.progress;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Receives progress through a named pipe (FIFO), which ffmpeg writes to as if it were a file,
+ * using a {@code file:/path/to/pipe} URL. Like {@link UnixSocketProgressParser} this uses no ports,
+ * but works on any Java version. The pipe is created with the {@code mkfifo} command, so this is
+ * only available on Unix-like systems. Check {@link #isSupported()} first.
+ */
+public class NamedPipeProgressParser extends AbstractSocketProgressParser {
+
+  static final Logger LOG = LoggerFactory.getLogger(NamedPipeProgressParser.class);
+
+  static final String MKFIFO = "mkfifo";
+
+  /** How long stop() waits for the reading thread to open the pipe, and then to finish. */
+  static final long STOP_TIMEOUT_MILLIS = 1000;
+
+  /** Cached, as checking runs mkfifo */
+  private static volatile Boolean supported = null;
+
+  final Path directory;
+  final Path path;
+  final URI address;
+
+  /** Counted down once the reading thread has opened the pipe, or failed to. */
+  final CountDownLatch opened = new CountDownLatch(1);
+
+  boolean stopped = false;
+
+  public NamedPipeProgressParser(ProgressListener listener) throws IOException, URISyntaxException {
+    super(listener);
+
+    this.directory = Files.createTempDirectory("ffmpeg-progress");
+    this.path = directory.resolve("progress.fifo");
+    this.address = new URI("file", null, path.toString(), null);
+
+    try {
+      mkfifo(path);
+    } catch (IOException e) {
+      Files.deleteIfExists(directory);
+      throw e;
+    }
+  }
+
+  /**
+   * Returns true if named pipes can be created on this OS. The first call tries to create one, and
+   * the answer is remembered.
+   *
+   * @return true if supported.
+   */
+  public static boolean isSupported() {
+    Boolean result = supported;
+    if (result == null) {
+      result = checkSupported();
+      supported = result;
+    }
+    return result;
+  }
+
+  private static boolean checkSupported() {
+    if (!Paths.get("/").getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      return false; // e.g Windows
+    }
+
+    try {
+      Path dir = Files.createTempDirectory("ffmpeg-progress");
+      try {
+        Path fifo = dir.resolve("check.fifo");
+        mkfifo(fifo);
+        Files.delete(fifo);
+        return true;
+      } finally {
+        Files.deleteIfExists(dir);
+      }
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  static void mkfifo(Path path) throws IOException {
+    Process p = new ProcessBuilder(MKFIFO, path.toString()).redirectErrorStream(true).start();
+    try {
+      int exitCode = p.waitFor();
+      if (exitCode != 0) {
+        throw new IOException(MKFIFO + " returned non-zero exit status " + exitCode);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(MKFIFO + " was interrupted", e);
+    } finally {
+      p.destroy();
+    }
+  }
+
+  @Override
+  public synchronized void stop() throws IOException {
+    if (stopped) {
+      // Allow double stop, and ignore
+      return;
+    }
+    stopped = true;
+
+    if (thread != null) {
+      try {
+        // If ffmpeg never opened the pipe, the thread is blocked opening it, or soon will be.
+        // Opening it for read and write never blocks, and gives the thread a writer, so its open
+        // returns. The handle is held until then, as the thread would block again if it opened the
+        // pipe after the handle was closed. Once it is closed the thread reads to the end, as
+        // ffmpeg has exited. The thread isn't interrupted, as that could lose the final progress.
+        RandomAccessFile writer = new RandomAccessFile(path.toFile(), "rw");
+        try {
+          if (!opened.await(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            LOG.warn("Progress thread didn't open {}", path);
+          }
+        } finally {
+          writer.close();
+        }
+
+        thread.join(STOP_TIMEOUT_MILLIS);
+        if (thread.isAlive()) {
+          LOG.warn("Progress thread didn't finish reading {}", path);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    Files.deleteIfExists(path);
+    Files.deleteIfExists(directory);
+  }
+
+  @Override
+  protected String getThreadName() {
+    return "NamedPipeProgressParser";
+  }
+
+  @Override
+  protected Runnable getRunnable(CountDownLatch startSignal) {
+    return new NamedPipeProgressParserRunnable(parser, path, startSignal, opened);
+  }
+
+  @Override
+  public URI getUri() {
+    return address;
+  }
+}
@@ -0,0 +1,54 @@
+package net.bramp.ffmpeg.progress;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+class NamedPipeProgressParserRunnable implements Runnable {
+
+  static final Logger LOG = LoggerFactory.getLogger(NamedPipeProgressParserRunnable.class);
+
+  final StreamProgressParser parser;
+  final Path path;
+  final CountDownLatch startSignal;
+  final CountDownLatch opened;
+
+  public NamedPipeProgressParserRunnable(
+      StreamProgressParser parser, Path path, CountDownLatch startSignal, CountDownLatch opened) {
+    this.parser = checkNotNull(parser);
+    this.path = checkNotNull(path);
+    this.startSignal = checkNotNull(startSignal);
+    this.opened = checkNotNull(opened);
+  }
+
+  @Override
+  public void run() {
+    startSignal.countDown();
+
+    // Blocks until ffmpeg (or stop()) opens the other end of the pipe. ffmpeg opens the pipe once,
+    // so there is no need to loop like the socket based parsers.
+    InputStream stream;
+    try {
+      stream = new FileInputStream(path.toFile());
+    } catch (IOException e) {
+      LOG.warn("Failed to open progress pipe {}", path, e);
+      return;
+    } finally {
+      opened.countDown();
+    }
+
+    try (InputStream in = stream) {
+      parser.processStream(in);
+
+    } catch (IOException e) {
+      // The progress so far was passed on, so this only loses the rest of it
+      LOG.warn("Failed to read progress from {}", path, e);
+    }
+  }
+}
@@ -0,0 +1,538 @@
+package net.bramp.ffmpeg.progress;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Ascii;
+import com.google.common.base.Splitter;
+import com.google.common.net.InetAddresses;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single progress server shared by many ffmpeg jobs. It listens on one port, with one thread,
+ * no matter how many jobs are running, instead of the socket and thread per job used by {@link
+ * TcpProgressParser}.
+ *
+ * <p>Each job is given a URL such as {@code http://127.0.0.1:1234/<token>}. ffmpeg sends its
+ * progress to this URL as a (chunked) HTTP POST, and the token in the path tells the hub which
+ * job's listener to call. Listeners are called on the hub's thread. A connection which sends
+ * nothing for the {@link #setIdleTimeout(long, TimeUnit) idle timeout} is closed.
+ *
+ * <pre>
+ * <code>ProgressHub hub = new ProgressHub();
+ * ffmpeg.setProgressHub(hub);
+ * ffmpeg.run(builder, listener);
+ * ...
+ * hub.close();</code>
+ * </pre>
+ */
+public class ProgressHub implements Closeable {
+
+  static final Logger LOG = LoggerFactory.getLogger(ProgressHub.class);
+
+  static final int BUFFER_SIZE = 8192;
+
+  /** How long stop() waits for ffmpeg's connection to end, so its final progress isn't lost. */
+  static final long STOP_TIMEOUT_MILLIS = 1000;
+
+  /**
+   * Passes over the ready connections after which one made earlier has been accepted, and what was
+   * sent on it read. The pass running when asked may have missed it, the next accepts it, and the
+   * one after reads it.
+   */
+  static final int CATCH_UP_PASSES = 3;
+
+  /** How long a connection may send nothing before it is closed, by default. */
+  static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30_000;
+
+  /** The most often idle connections are looked for. */
+  static final long IDLE_CHECK_MILLIS = 1000;
+
+  static final Splitter SPACE = Splitter.on(' ');
+
+  final Selector selector;
+  final ServerSocketChannel server;
+  final InetSocketAddress address;
+  final Thread thread;
+
+  final ConcurrentMap<String, Registration> registrations = new ConcurrentHashMap<>();
+
+  /** Run by the hub's thread at the end of its next pass over the ready connections. */
+  final Queue<Runnable> afterPass = new ConcurrentLinkedQueue<>();
+
+  volatile long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_IDLE_TIMEOUT_MILLIS);
+
+  public ProgressHub() throws IOException {
+    this(InetAddress.getLoopbackAddress());
+  }
+
+  public ProgressHub(InetAddress addr) throws IOException {
+    checkNotNull(addr);
+
+    this.selector = Selector.open();
+    this.server = ServerSocketChannel.open();
+    try {
+      server.bind(new InetSocketAddress(addr, 0));
+      server.configureBlocking(false);
+      server.register(selector, SelectionKey.OP_ACCEPT);
+    } catch (IOException e) {
+      server.close();
+      selector.close();
+      throw e;
+    }
+
+    this.address = (InetSocketAddress) server.getLocalAddress();
+    this.thread = new Thread(this::run, "ProgressHub(" + address + ")");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Creates a parser for a single job, which receives its progress through this hub.
+   *
+   * @param listener The listener for this job's progress.
+   * @return A new parser, which must be started before ffmpeg runs, and closed afterwards.
+   * @throws IOException if the job's URL could not be created.
+   */
+  public ProgressParser newParser(ProgressListener listener) throws IOException {
+    String token = UUID.randomUUID().toString();
+    try {
+      URI uri =
+          new URI(
+              "http",
+              null /* userInfo */,
+              InetAddresses.toUriString(address.getAddress()),
+              address.getPort(),
+              "/" + token,
+              null /* query */,
+              null /* fragment */);
+      return new HubProgressParser(this, token, uri, checkNotNull(listener));
+
+    } catch (URISyntaxException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /** Number of jobs currently registered. */
+  public int getRegisteredCount() {
+    return registrations.size();
+  }
+
+  public InetSocketAddress getAddress() {
+    return address;
+  }
+
+  /**
+   * Sets how long a connection may send nothing before it is closed, such as one from an ffmpeg
+   * which has hung, or from something other than ffmpeg. ffmpeg sends progress about twice a
+   * second, so the default of 30 seconds is only reached if something is wrong.
+   *
+   * @param timeout The timeout.
+   * @param unit The unit of the timeout.
+   */
+  public void setIdleTimeout(long timeout, TimeUnit unit) {
+    checkArgument(timeout > 0, "timeout must be positive");
+    this.idleTimeoutNanos = unit.toNanos(timeout);
+  }
+
+  public long getIdleTimeout(TimeUnit unit) {
+    return unit.convert(idleTimeoutNanos, TimeUnit.NANOSECONDS);
+  }
+
+  void register(String token, Registration registration) {
+    registrations.put(token, registration);
+  }
+
+  void unregister(String token) {
+    registrations.remove(token);
+  }
+
+  /**
+   * Waits until the hub has caught up with every connection made, and everything sent on them,
+   * before this was called.
+   *
+   * @param timeout The longest to wait.
+   * @param unit The unit of the timeout.
+   * @return true if the hub caught up, or false if it timed out, such as because it was closed.
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  boolean catchUp(long timeout, TimeUnit unit) throws InterruptedException {
+    final CountDownLatch caughtUp = new CountDownLatch(1);
+    runAfterPass(
+        new Runnable() {
+          int remaining = CATCH_UP_PASSES;
+
+          @Override
+          public void run() {
+            if (--remaining == 0) {
+              caughtUp.countDown();
+            } else {
+              runAfterPass(this);
+            }
+          }
+        });
+    return caughtUp.await(timeout, unit);
+  }
+
+  private void runAfterPass(Runnable task) {
+    afterPass.add(task);
+    selector.wakeup();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!selector.isOpen()) {
+      return; // Allow double close
+    }
+
+    selector.close(); // This unblocks select()
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    server.close();
+  }
+
+  void run() {
+    final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    long nextIdleCheck = System.nanoTime();
+
+    try {
+      while (selector.isOpen()) {
+        long idleTimeout = idleTimeoutNanos;
+        long checkInterval =
+            Math.min(idleTimeout, TimeUnit.MILLISECONDS.toNanos(IDLE_CHECK_MILLIS));
+        selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(checkInterval)));
+
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+          SelectionKey key = it.next();
+          it.remove();
+
+          if (!key.isValid()) {
+            continue;
+          }
+
+          if (key.isAcceptable()) {
+            accept();
+          } else if (key.isReadable()) {
+            read(key, buffer);
+          }
+        }
+
+        // Only those queued before now, so a task queued by one runs after the next pass
+        for (int n = afterPass.size(); n > 0; n--) {
+          afterPass.remove().run();
+        }
+
+        long now = System.nanoTime();
+        if (now - nextIdleCheck >= 0) {
+          closeIdle(now, idleTimeout);
+          nextIdleCheck = now + checkInterval;
+        }
+      }
+    } catch (ClosedSelectorException e) {
+      // We've been closed
+    } catch (IOException e) {
+      LOG.warn("ProgressHub failed", e);
+    } finally {
+      for (SelectionKey key : keysOrEmpty()) {
+        closeConnection(key);
+      }
+    }
+  }
+
+  private Iterable<SelectionKey> keysOrEmpty() {
+    try {
+      return selector.keys();
+    } catch (ClosedSelectorException e) {
+      return Collections.emptySet();
+    }
+  }
+
+  /** Closes the connections which have sent nothing for longer than the timeout. */
+  private void closeIdle(long now, long idleTimeout) {
+    for (SelectionKey key : selector.keys()) {
+      Object attachment = key.attachment();
+      if (!(attachment instanceof Connection)) {
+        continue; // The server's key
+      }
+      if (now - ((Connection) attachment).lastRead > idleTimeout) {
+        LOG.warn("Closing progress connection, idle for over {}ms", idleTimeout / 1_000_000);
+        closeConnection(key);
+      }
+    }
+  }
+
+  private void accept() throws IOException {
+    SocketChannel channel;
+    while ((channel = server.accept()) != null) {
+      channel.configureBlocking(false);
+      channel.register(selector, SelectionKey.OP_READ, new Connection(this));
+    }
+  }
+
+  private void read(SelectionKey key, ByteBuffer buffer) {
+    SocketChannel channel = (SocketChannel) key.channel();
+    Connection connection = (Connection) key.attachment();
+
+    try {
+      buffer.clear();
+      int n = channel.read(buffer);
+      if (n < 0) {
+        closeConnection(key);
+        return;
+      }
+      connection.lastRead = System.nanoTime();
+      connection.feed(buffer.array(), buffer.arrayOffset(), n);
+
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Failed to read progress", e);
+      closeConnection(key);
+    }
+  }
+
+  private static void closeConnection(SelectionKey key) {
+    Object attachment = key.attachment();
+    if (attachment instanceof Connection) {
+      ((Connection) attachment).finish();
+    }
+
+    key.cancel();
+    try {
+      key.channel().close();
+    } catch (IOException e) {
+      // Nothing we can do
+    }
+  }
+
+  /** A job registered with the hub. */
+  static class Registration {
+    final ByteProgressParser parser;
+    final CountDownLatch finished = new CountDownLatch(1);
+
+    /** If ffmpeg's connection has been matched to this job */
+    volatile boolean connected = false;
+
+    Registration(ProgressListener listener) {
+      this.parser = new ByteProgressParser(listener);
+    }
+  }
+
+  /** Decodes a single HTTP POST from ffmpeg, passing the body to the job's parser. */
+  static class Connection {
+    enum State {
+      HEADERS,
+      CHUNK_SIZE,
+      CHUNK_DATA,
+      CHUNK_END,
+      BODY,
+      DISCARD,
+    }
+
+    final ProgressHub hub;
+
+    State state = State.HEADERS;
+    final StringBuilder line = new StringBuilder();
+    String requestLine = null;
+    boolean chunked = false;
+    long remaining = 0;
+    Registration registration = null;
+
+    /** When something was last read, from {@link System#nanoTime()} */
+    long lastRead = System.nanoTime();
+
+    Connection(ProgressHub hub) {
+      this.hub = hub;
+    }
+
+    void feed(byte[] b, int off, int len) {
+      int i = off;
+      final int end = off + len;
+
+      while (i < end) {
+        switch (state) {
+          case HEADERS:
+          case CHUNK_SIZE:
+            byte c = b[i++];
+            if (c == '\n') {
+              String l = line.toString();
+              line.setLength(0);
+              if (state == State.HEADERS) {
+                header(l);
+              } else {
+                chunkSize(l);
+              }
+            } else if (c != '\r') {
+              line.append((char) (c & 0xff));
+            }
+            break;
+
+          case CHUNK_DATA:
+            int n = (int) Math.min(remaining, end - i);
+            registration.parser.process(b, i, n);
+            i += n;
+            remaining -= n;
+            if (remaining == 0) {
+              state = State.CHUNK_END;
+            }
+            break;
+
+          case CHUNK_END:
+            if (b[i++] == '\n') {
+              state = State.CHUNK_SIZE;
+            }
+            break;
+
+          case BODY:
+            registration.parser.process(b, i, end - i);
+            i = end;
+            break;
+
+          case DISCARD:
+          default:
+            i = end;
+            break;
+        }
+      }
+    }
+
+    private void header(String l) {
+      if (requestLine == null) {
+        requestLine = l;
+        return;
+      }
+
+      if (!l.isEmpty()) {
+        int colon = l.indexOf(':');
+        if (colon > 0
+            && Ascii.equalsIgnoreCase(l.substring(0, colon).trim(), "Transfer-Encoding")
+            && Ascii.toLowerCase(l.substring(colon + 1)).contains("chunked")) {
+          chunked = true;
+        }
+        return;
+      }
+
+      // End of the headers, so find which job this is
+      List<String> parts = SPACE.splitToList(requestLine);
+      String token = parts.size() >= 2 ? parts.get(1).replaceFirst("^/", "") : "";
+      registration = hub.registrations.get(token);
+
+      if (registration == null) {
+        LOG.warn("Progress received for unknown job '{}'", requestLine);
+        state = State.DISCARD;
+        return;
+      }
+
+      registration.connected = true;
+      registration.parser.reset();
+      state = chunked ? State.CHUNK_SIZE : State.BODY;
+    }
+
+    private void chunkSize(String l) {
+      int semi = l.indexOf(';'); // Ignore chunk extensions
+      String hex = (semi >= 0 ? l.substring(0, semi) : l).trim();
+      if (hex.isEmpty()) {
+        return;
+      }
+
+      remaining = Long.parseLong(hex, 16);
+      state = remaining == 0 ? State.DISCARD : State.CHUNK_DATA;
+    }
+
+    void finish() {
+      if (registration != null) {
+        registration.parser.finish();
+        registration.finished.countDown();
+        registration = null;
+      }
+      state = State.DISCARD;
+    }
+  }
+
+  /** The per-job ProgressParser handed out by {@link #newParser(ProgressListener)}. */
+  static class HubProgressParser implements ProgressParser {
+    final ProgressHub hub;
+    final String token;
+    final URI uri;
+    final Registration registration;
+
+    boolean started = false;
+    boolean stopped = false;
+
+    HubProgressParser(ProgressHub hub, String token, URI uri, ProgressListener listener) {
+      this.hub = hub;
+      this.token = token;
+      this.uri = uri;
+      this.registration = new Registration(listener);
+    }
+
+    @Override
+    public synchronized void start() {
+      if (started) {
+        throw new IllegalThreadStateException("Parser already started");
+      }
+      started = true;
+      hub.register(token, registration);
+    }
+
+    @Override
+    public synchronized void stop() throws IOException {
+      if (!started || stopped) {
+        return; // Allow double stop, and stop without start
+      }
+      stopped = true;
+
+      // ffmpeg has exited by now, but its connection may not have been accepted yet, or its last
+      // progress may still be in flight. Once the hub has caught up, it's known if ffmpeg ever
+      // connected. If it did, wait for the connection to end, instead of dropping what is left as
+      // progress for an unknown job. If not, ffmpeg failed early, and there is nothing to wait for.
+      try {
+        boolean caughtUp = hub.catchUp(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        if (caughtUp
+            && registration.connected
+            && !registration.finished.await(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+          LOG.debug("ffmpeg's progress connection didn't end within {}ms", STOP_TIMEOUT_MILLIS);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+
+      hub.unregister(token);
+    }
+
+    @Override
+    public void close() throws IOException {
+      stop();
+    }
+
+    @Override
+    public URI getUri() {
+      return uri;
+    }
+  }
+}
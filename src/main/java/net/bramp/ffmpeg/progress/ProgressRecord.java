@@ -0,0 +1,117 @@
+package net.bramp.ffmpeg.progress;
+
+import com.google.common.base.MoreObjects;
+import org.apache.commons.lang3.math.Fraction;
+
+/**
+ * A mutable, reusable, progress record filled in by {@link ByteProgressParser}. Unlike {@link
+ * Progress} it holds only primitives, so parsing into it allocates nothing. The same instance is
+ * reused for every record, so call {@link #toProgress()} to keep a copy.
+ */
+public class ProgressRecord {
+
+  long frame = 0;
+  double fps = 0;
+  long bitrate = 0;
+  long total_size = 0;
+  long out_time_ns = 0;
+  long dup_frames = 0;
+  long drop_frames = 0;
+  float speed = 0;
+  Progress.Status status = null;
+
+  /** Resets all the fields, ready for the next record. */
+  public void reset() {
+    frame = 0;
+    fps = 0;
+    bitrate = 0;
+    total_size = 0;
+    out_time_ns = 0;
+    dup_frames = 0;
+    drop_frames = 0;
+    speed = 0;
+    status = null;
+  }
+
+  /**
+   * Returns an independent {@link Progress} holding the same values as this record.
+   *
+   * @return a new Progress.
+   */
+  public Progress toProgress() {
+    Progress p = new Progress();
+    p.frame = frame;
+    p.fps = toFraction(fps);
+    p.bitrate = bitrate;
+    p.total_size = total_size;
+    p.out_time_ns = out_time_ns;
+    p.dup_frames = dup_frames;
+    p.drop_frames = drop_frames;
+    p.speed = speed;
+    p.status = status;
+    return p;
+  }
+
+  /** Converts the same way as {@link Fraction#getFraction(String)} would for ffmpeg's fps. */
+  static Fraction toFraction(double value) {
+    if (value == Math.rint(value) && Math.abs(value) <= Integer.MAX_VALUE) {
+      return Fraction.getFraction((int) value, 1);
+    }
+    return Fraction.getFraction(value);
+  }
+
+  public long getFrame() {
+    return frame;
+  }
+
+  public double getFps() {
+    return fps;
+  }
+
+  public long getBitrate() {
+    return bitrate;
+  }
+
+  public long getTotalSize() {
+    return total_size;
+  }
+
+  public long getOutTimeNs() {
+    return out_time_ns;
+  }
+
+  public long getDupFrames() {
+    return dup_frames;
+  }
+
+  public long getDropFrames() {
+    return drop_frames;
+  }
+
+  public float getSpeed() {
+    return speed;
+  }
+
+  public Progress.Status getStatus() {
+    return status;
+  }
+
+  public boolean isEnd() {
+    return status == Progress.Status.END;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("frame", frame)
+        .add("fps", fps)
+        .add("bitrate", bitrate)
+        .add("total_size", total_size)
+        .add("out_time_ns", out_time_ns)
+        .add("dup_frames", dup_frames)
+        .add("drop_frames", drop_frames)
+        .add("speed", speed)
+        .add("status", status)
+        .toString();
+  }
+}
@@ -0,0 +1,10 @@
+package net.bramp.ffmpeg.progress;
+
+/**
+ * Receives progress from a {@link ByteProgressParser} without any allocation per record. The
+ * record is reused, and is only valid for the duration of the call; use {@link
+ * ProgressRecord#toProgress()} to keep a copy.
+ */
+public interface ProgressRecordListener {
+  void progress(ProgressRecord record);
+}
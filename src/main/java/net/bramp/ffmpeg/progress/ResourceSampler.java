@@ -0,0 +1,259 @@
+package net.bramp.ffmpeg.progress;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.google.common.io.CharStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import net.bramp.ffmpeg.io.ProcessUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples the CPU time, memory and I/O of a process from {@code /proc/<pid>/stat}, {@code status}
+ * and {@code io}, at a fixed interval, sending each sample to a {@link ResourceUsageListener}. Only
+ * supported on Linux; elsewhere nothing is sampled.
+ *
+ * <p>All samplers share a single daemon thread.
+ */
+public class ResourceSampler {
+
+  static final Logger LOG = LoggerFactory.getLogger(ResourceSampler.class);
+
+  static final Path PROC = Paths.get("/proc");
+
+  static final long DEFAULT_CLOCK_TICKS = 100;
+
+  static final CharMatcher NOT_DIGIT = CharMatcher.inRange('0', '9').negate();
+
+  private static final ScheduledExecutorService EXECUTOR =
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("ResourceSampler").setDaemon(true).build());
+
+  private static volatile long clockTicks = 0;
+
+  final ResourceUsageListener listener;
+  final long intervalMillis;
+
+  private long pid = -1;
+  private long startNanos;
+  private Path dir;
+  private long peakRssBytes = 0;
+  private ScheduledFuture<?> future;
+  private boolean started = false;
+  private boolean stopped = false;
+
+  @Nullable private volatile ResourceUsage last = null;
+
+  public ResourceSampler(ResourceUsageListener listener, long interval, TimeUnit unit) {
+    checkArgument(interval > 0, "interval must be positive");
+    this.listener = checkNotNull(listener);
+    this.intervalMillis = Math.max(1, unit.toMillis(interval));
+  }
+
+  /** Returns true if /proc can be read, so processes can be sampled. */
+  public static boolean isSupported() {
+    return Files.isReadable(PROC.resolve("self").resolve("stat"));
+  }
+
+  /**
+   * Starts sampling the process. Does nothing if the process can't be sampled.
+   *
+   * @param p the process to sample.
+   */
+  public synchronized void start(Process p) {
+    checkNotNull(p);
+    checkState(!started, "sampler already started");
+    started = true;
+    startNanos = System.nanoTime();
+
+    if (!isSupported()) {
+      return;
+    }
+
+    pid = ProcessUtils.pid(p);
+    if (pid < 0) {
+      LOG.debug("Unable to find the pid of {}, so not sampling it", p);
+      return;
+    }
+
+    dir = PROC.resolve(Long.toString(pid));
+    future =
+        EXECUTOR.scheduleAtFixedRate(
+            this::sampleAndPublish, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized void sampleAndPublish() {
+    if (stopped) {
+      return;
+    }
+
+    ResourceUsage usage = sample();
+    if (usage != null) {
+      last = usage;
+      try {
+        listener.resourceUsage(usage);
+      } catch (RuntimeException e) {
+        LOG.warn("ResourceUsageListener failed", e);
+      }
+    }
+  }
+
+  /**
+   * Stops sampling, trying one last sample, and sends the summary to the listener. If the process
+   * has already exited, and been reaped, the last sample can't be taken, so the summary is the most
+   * recent periodic sample, up to one interval old. Safe to call more than once.
+   */
+  public synchronized void stop() {
+    if (stopped) {
+      return;
+    }
+    stopped = true;
+
+    if (future == null) {
+      return; // Never sampled
+    }
+    future.cancel(false);
+
+    ResourceUsage usage = sample();
+    if (usage != null) {
+      last = usage;
+    }
+
+    if (last != null) {
+      try {
+        listener.resourceSummary(last.withElapsedNanos(System.nanoTime() - startNanos));
+      } catch (RuntimeException e) {
+        LOG.warn("ResourceUsageListener failed", e);
+      }
+    }
+  }
+
+  /** Returns the most recent sample, or null if none has been taken. */
+  @Nullable
+  public ResourceUsage getLast() {
+    return last;
+  }
+
+  /** Reads the process's usage, or returns null if it has exited. */
+  @Nullable
+  ResourceUsage sample() {
+    final long elapsed = System.nanoTime() - startNanos;
+
+    final String stat;
+    final List<String> status;
+    try {
+      stat = new String(Files.readAllBytes(dir.resolve("stat")), StandardCharsets.US_ASCII);
+      status = Files.readAllLines(dir.resolve("status"), StandardCharsets.US_ASCII);
+    } catch (IOException e) {
+      return null; // The process has gone
+    }
+
+    List<String> io;
+    try {
+      io = Files.readAllLines(dir.resolve("io"), StandardCharsets.US_ASCII);
+    } catch (IOException e) {
+      io = null; // Some kernels, or containers, do not allow this
+    }
+
+    long[] times = parseStat(stat);
+    long nanosPerTick = TimeUnit.SECONDS.toNanos(1) / clockTicks();
+
+    long rss = parseField(status, "VmRSS") * 1024;
+    peakRssBytes = Math.max(peakRssBytes, Math.max(rss, parseField(status, "VmHWM") * 1024));
+
+    return new ResourceUsage(
+        pid,
+        elapsed,
+        times[0] * nanosPerTick,
+        times[1] * nanosPerTick,
+        rss,
+        peakRssBytes,
+        (int) times[2],
+        io == null ? 0 : parseField(io, "read_bytes"),
+        io == null ? 0 : parseField(io, "write_bytes"));
+  }
+
+  /**
+   * Parses the user time, system time (both in clock ticks), and number of threads from the
+   * contents of /proc/[pid]/stat.
+   */
+  static long[] parseStat(String stat) {
+    // The command name is in brackets, and may contain spaces, so skip past it
+    int close = stat.lastIndexOf(')');
+    List<String> fields =
+        Splitter.on(' ').omitEmptyStrings().splitToList(stat.substring(close + 1).trim());
+
+    // The fields after the name start at field 3, see proc(5)
+    return new long[] {
+      parseLong(fields, 14 - 3), parseLong(fields, 15 - 3), parseLong(fields, 20 - 3)
+    };
+  }
+
+  private static long parseLong(List<String> fields, int index) {
+    if (index >= fields.size()) {
+      return 0;
+    }
+    try {
+      return Long.parseLong(fields.get(index));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Returns the number in the "key: value" line, as found in /proc/[pid]/status and io, or zero
+   * if it isn't found. Units, such as "kB", are ignored.
+   */
+  static long parseField(List<String> lines, String key) {
+    String prefix = key + ":";
+    for (String line : lines) {
+      if (line.startsWith(prefix)) {
+        String value = NOT_DIGIT.trimFrom(line.substring(prefix.length()));
+        try {
+          return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 0;
+  }
+
+  /** Returns the kernel's clock ticks per second, the unit of the times in /proc/[pid]/stat. */
+  static long clockTicks() {
+    long ticks = clockTicks;
+    if (ticks == 0) {
+      ticks = DEFAULT_CLOCK_TICKS;
+      try {
+        Process p = new ProcessBuilder("getconf", "CLK_TCK").redirectErrorStream(true).start();
+        String output =
+            CharStreams.toString(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8));
+        if (p.waitFor() == 0 && Long.parseLong(output.trim()) > 0) {
+          ticks = Long.parseLong(output.trim());
+        }
+      } catch (IOException | NumberFormatException e) {
+        LOG.debug("Unable to find CLK_TCK, assuming {}", DEFAULT_CLOCK_TICKS, e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      clockTicks = ticks;
+    }
+    return ticks;
+  }
+}
@@ -0,0 +1,125 @@
+package net.bramp.ffmpeg.progress;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * The resources used by a running ffmpeg process, as sampled from /proc. Values that could not be
+ * read are zero.
+ */
+public class ResourceUsage {
+
+  final long pid;
+  final long elapsedNanos;
+  final long userCpuNanos;
+  final long systemCpuNanos;
+  final long rssBytes;
+  final long peakRssBytes;
+  final int threads;
+  final long readBytes;
+  final long writeBytes;
+
+  public ResourceUsage(
+      long pid,
+      long elapsedNanos,
+      long userCpuNanos,
+      long systemCpuNanos,
+      long rssBytes,
+      long peakRssBytes,
+      int threads,
+      long readBytes,
+      long writeBytes) {
+    this.pid = pid;
+    this.elapsedNanos = elapsedNanos;
+    this.userCpuNanos = userCpuNanos;
+    this.systemCpuNanos = systemCpuNanos;
+    this.rssBytes = rssBytes;
+    this.peakRssBytes = peakRssBytes;
+    this.threads = threads;
+    this.readBytes = readBytes;
+    this.writeBytes = writeBytes;
+  }
+
+  /** Returns a copy, with a different elapsed time. */
+  ResourceUsage withElapsedNanos(long elapsedNanos) {
+    return new ResourceUsage(
+        pid,
+        elapsedNanos,
+        userCpuNanos,
+        systemCpuNanos,
+        rssBytes,
+        peakRssBytes,
+        threads,
+        readBytes,
+        writeBytes);
+  }
+
+  public long getPid() {
+    return pid;
+  }
+
+  /** Wall clock time since the process was started. */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /** CPU time spent in user mode, across all threads. */
+  public long getUserCpuNanos() {
+    return userCpuNanos;
+  }
+
+  /** CPU time spent in the kernel, across all threads. */
+  public long getSystemCpuNanos() {
+    return systemCpuNanos;
+  }
+
+  public long getCpuNanos() {
+    return userCpuNanos + systemCpuNanos;
+  }
+
+  /**
+   * Average number of CPUs used since the process started, for example 3.5 if it kept three and a
+   * half cores busy.
+   */
+  public double getAverageCpus() {
+    return elapsedNanos == 0 ? 0 : (double) getCpuNanos() / elapsedNanos;
+  }
+
+  /** Resident set size, the physical memory used. */
+  public long getRssBytes() {
+    return rssBytes;
+  }
+
+  /** The largest resident set size so far. */
+  public long getPeakRssBytes() {
+    return peakRssBytes;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  /** Bytes read from storage. */
+  public long getReadBytes() {
+    return readBytes;
+  }
+
+  /** Bytes written to storage. */
+  public long getWriteBytes() {
+    return writeBytes;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("pid", pid)
+        .add("elapsedNanos", elapsedNanos)
+        .add("userCpuNanos", userCpuNanos)
+        .add("systemCpuNanos", systemCpuNanos)
+        .add("rssBytes", rssBytes)
+        .add("peakRssBytes", peakRssBytes)
+        .add("threads", threads)
+        .add("readBytes", readBytes)
+        .add("writeBytes", writeBytes)
+        .toString();
+  }
+}
@@ -0,0 +1,25 @@
+package net.bramp.ffmpeg.progress;
+
+/**
+ * Receives the resources used by ffmpeg while it runs. A {@link ProgressListener} that also
+ * implements this interface is sent samples alongside the progress, when sampling is enabled with
+ * {@link net.bramp.ffmpeg.FFmpeg#setResourceSampleInterval}.
+ */
+public interface ResourceUsageListener {
+
+  /**
+   * Called at the sample interval while the process runs.
+   *
+   * @param usage The resources used so far.
+   */
+  void resourceUsage(ResourceUsage usage);
+
+  /**
+   * Called once, after the process exits, with the last sample taken. The process is often gone
+   * by then, so this may be up to one sample interval out of date, missing the very end of the
+   * run. It is not called if no sample was taken at all.
+   *
+   * @param summary The resources used.
+   */
+  default void resourceSummary(ResourceUsage summary) {}
+}
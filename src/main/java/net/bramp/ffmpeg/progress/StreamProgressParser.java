@@ -2,19 +2,19 @@ package net.bramp.ffmpeg.progress;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import com.google.common.base.Charsets;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
 
 public class StreamProgressParser {
 
   final ProgressListener listener;
+  final ByteProgressParser byteParser;
 
   public StreamProgressParser(ProgressListener listener) {
     this.listener = checkNotNull(listener);
+    this.byteParser = new ByteProgressParser(listener);
   }
 
   private static BufferedReader wrapInBufferedReader(Reader reader) {
@@ -27,9 +27,16 @@ public class StreamProgressParser {
     return new BufferedReader(reader);
   }
 
+  /**
+   * Parses the stream until it ends. The bytes are parsed directly by a {@link
+   * ByteProgressParser}, avoiding the per line allocations of {@link #processReader(Reader)}.
+   *
+   * @param stream the stream to parse
+   * @throws IOException if the stream can not be read
+   */
   public void processStream(InputStream stream) throws IOException {
     checkNotNull(stream);
-    processReader(new InputStreamReader(stream, Charsets.UTF_8));
+    byteParser.processStream(stream);
   }
 
   public void processReader(Reader reader) throws IOException {
@@ -38,7 +45,9 @@ public class StreamProgressParser {
     String line;
     Progress p = new Progress();
     while ((line = in.readLine()) != null) {
+      ByteProgressParser.LINES.increment();
       if (p.parseLine(line)) {
+        ByteProgressParser.RECORDS.increment();
         listener.progress(p);
         p = new Progress();
       }
@@ -0,0 +1,151 @@
+package net.bramp.ffmpeg.progress;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import javax.annotation.Nullable;
+
+/**
+ * Receives progress over a Unix domain socket, which unlike TCP uses no ports, and skips the
+ * kernel's network stack. ffmpeg is given a {@code unix:/path/to/socket} URL.
+ *
+ * <p>Unix domain socket channels were added in Java 16, so this is only available when running on
+ * Java 16 or later. Check {@link #isSupported()} first.
+ */
+public class UnixSocketProgressParser extends AbstractSocketProgressParser {
+
+  // Looked up by reflection, as this library targets Java 8.
+  @Nullable static final Method OPEN = findOpen();
+  @Nullable static final Method ADDRESS_OF = findAddressOf();
+  @Nullable static final ProtocolFamily UNIX = findUnixFamily();
+
+  final Path directory;
+  final Path path;
+  final ServerSocketChannel server;
+  final URI address;
+
+  public UnixSocketProgressParser(ProgressListener listener)
+      throws IOException, URISyntaxException {
+    super(listener);
+
+    if (!isSupported()) {
+      throw new IOException("Unix domain sockets require Java 16 or later");
+    }
+
+    this.directory = Files.createTempDirectory("ffmpeg-progress");
+    this.path = directory.resolve("progress.sock");
+    this.address = new URI("unix", null, path.toString(), null);
+
+    try {
+      this.server = open(path);
+    } catch (IOException e) {
+      Files.deleteIfExists(directory);
+      throw e;
+    }
+  }
+
+  /**
+   * Returns true if Unix domain sockets can be used on this JVM and OS.
+   *
+   * @return true if supported.
+   */
+  public static boolean isSupported() {
+    return OPEN != null && ADDRESS_OF != null && UNIX != null;
+  }
+
+  @Nullable
+  private static Method findOpen() {
+    try {
+      return ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  @Nullable
+  private static Method findAddressOf() {
+    try {
+      return Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", Path.class);
+    } catch (ClassNotFoundException | NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  @Nullable
+  private static ProtocolFamily findUnixFamily() {
+    try {
+      return StandardProtocolFamily.valueOf("UNIX");
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  static ServerSocketChannel open(Path path) throws IOException {
+    final ServerSocketChannel channel;
+    final SocketAddress address;
+    try {
+      channel = (ServerSocketChannel) OPEN.invoke(null, UNIX);
+      address = (SocketAddress) ADDRESS_OF.invoke(null, path);
+    } catch (IllegalAccessException e) {
+      throw new IOException(e);
+    } catch (InvocationTargetException e) {
+      // e.g UnsupportedOperationException on platforms without Unix domain sockets
+      throw new IOException(e.getCause());
+    }
+
+    try {
+      channel.bind(address);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    return channel;
+  }
+
+  @Override
+  public synchronized void stop() throws IOException {
+    if (!server.isOpen()) {
+      // Allow double stop, and ignore
+      return;
+    }
+
+    server.close(); // This unblocks server.accept();
+
+    // Unlike AbstractSocketProgressParser.stop() don't interrupt the thread, as that would close
+    // the channel mid read, losing the final progress. ffmpeg has exited, so the read will end.
+    if (thread != null) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    Files.deleteIfExists(path);
+    Files.deleteIfExists(directory);
+  }
+
+  @Override
+  protected String getThreadName() {
+    return "UnixSocketProgressParser";
+  }
+
+  @Override
+  protected Runnable getRunnable(CountDownLatch startSignal) {
+    return new UnixSocketProgressParserRunnable(parser, server, startSignal);
+  }
+
+  @Override
+  public URI getUri() {
+    return address;
+  }
+}
@@ -0,0 +1,51 @@
+package net.bramp.ffmpeg.progress;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+class UnixSocketProgressParserRunnable implements Runnable {
+
+  static final Logger LOG = LoggerFactory.getLogger(UnixSocketProgressParserRunnable.class);
+
+  final StreamProgressParser parser;
+  final ServerSocketChannel server;
+  final CountDownLatch startSignal;
+
+  public UnixSocketProgressParserRunnable(
+      StreamProgressParser parser, ServerSocketChannel server, CountDownLatch startSignal) {
+    this.parser = checkNotNull(parser);
+    this.server = checkNotNull(server);
+    this.startSignal = checkNotNull(startSignal);
+  }
+
+  @Override
+  public void run() {
+    while (server.isOpen() && !Thread.currentThread().isInterrupted()) {
+      try {
+        startSignal.countDown();
+
+        try (SocketChannel socket = server.accept()) {
+          try (InputStream stream = Channels.newInputStream(socket)) {
+            parser.processStream(stream);
+          }
+        }
+
+      } catch (ClosedChannelException e) {
+        // The server was closed by stop(), which we can safely ignore
+
+      } catch (IOException e) {
+        // The progress so far was passed on, so this only loses the rest of it
+        LOG.warn("Failed to read progress from {}", server, e);
+      }
+    }
+  }
+}
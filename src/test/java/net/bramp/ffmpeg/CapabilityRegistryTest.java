@@ -0,0 +1,120 @@
+package net.bramp.ffmpeg;
+
+import static net.bramp.ffmpeg.FFmpegTest.argThatHasItem;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import net.bramp.ffmpeg.fixtures.Codecs;
+import net.bramp.ffmpeg.lang.NewProcessAnswer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CapabilityRegistryTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Mock ProcessFunction runFunc;
+
+  String binary;
+
+  @Before
+  public void before() throws IOException {
+    when(runFunc.run(argThatHasItem("-version")))
+        .thenAnswer(new NewProcessAnswer("ffmpeg-version"));
+    when(runFunc.run(argThatHasItem("-codecs"))).thenAnswer(new NewProcessAnswer("ffmpeg-codecs"));
+
+    // The binary is never run, but must exist to be keyed by its size and modification time
+    File file = folder.newFile("ffmpeg");
+    binary = file.getAbsolutePath();
+  }
+
+  @Test
+  public void testSharedBetweenInstances() throws IOException {
+    CapabilityRegistry registry = new CapabilityRegistry();
+
+    FFmpeg first = new FFmpeg(binary, runFunc, registry);
+    FFmpeg second = new FFmpeg(binary, runFunc, registry);
+
+    assertEquals(first.version(), second.version());
+    assertEquals(Codecs.CODECS, first.codecs());
+    assertEquals(Codecs.CODECS, second.codecs());
+
+    verify(runFunc, times(1)).run(argThatHasItem("-version"));
+    verify(runFunc, times(1)).run(argThatHasItem("-codecs"));
+    assertEquals(1, registry.size());
+  }
+
+  @Test
+  public void testCacheFile() throws IOException {
+    Path cacheFile = folder.getRoot().toPath().resolve("cache/capabilities.json");
+
+    FFmpeg ffmpeg = new FFmpeg(binary, runFunc, new CapabilityRegistry(cacheFile));
+    ffmpeg.codecs();
+    assertTrue(Files.exists(cacheFile));
+
+    // A new registry, as if in a new process, starts no processes at all
+    ProcessFunction unused = mock(ProcessFunction.class);
+    FFmpeg warm = new FFmpeg(binary, unused, new CapabilityRegistry(cacheFile));
+
+    assertEquals(ffmpeg.version(), warm.version());
+    assertEquals(Codecs.CODECS, warm.codecs());
+    verifyNoInteractions(unused);
+  }
+
+  @Test
+  public void testBinaryChanged() throws IOException {
+    CapabilityRegistry registry = new CapabilityRegistry();
+    new FFmpeg(binary, runFunc, registry);
+
+    Files.write(new File(binary).toPath(), new byte[] {1, 2, 3});
+    new FFmpeg(binary, runFunc, registry);
+
+    verify(runFunc, times(2)).run(argThatHasItem("-version"));
+  }
+
+  @Test
+  public void testKeyResolvedOncePerInstance() throws IOException {
+    CapabilityRegistry registry = new CapabilityRegistry();
+    FFmpeg ffmpeg = new FFmpeg(binary, runFunc, registry);
+
+    // The instance keeps the key it started with, rather than checking the binary every time
+    Files.write(new File(binary).toPath(), new byte[] {1, 2, 3});
+    ffmpeg.codecs();
+    assertEquals(1, registry.size());
+  }
+
+  @Test
+  public void testPreloadSavesOnce() throws IOException {
+    when(runFunc.run(argThatHasItem("-formats")))
+        .thenAnswer(new NewProcessAnswer("ffmpeg-formats"));
+    when(runFunc.run(argThatHasItem("-filters")))
+        .thenAnswer(new NewProcessAnswer("ffmpeg-filters"));
+    when(runFunc.run(argThatHasItem("-pix_fmts")))
+        .thenAnswer(new NewProcessAnswer("ffmpeg-pix_fmts"));
+    when(runFunc.run(argThatHasItem("-layouts")))
+        .thenAnswer(new NewProcessAnswer("ffmpeg-layouts"));
+
+    Path cacheFile = folder.getRoot().toPath().resolve("capabilities.json");
+    CapabilityRegistry registry = spy(new CapabilityRegistry(cacheFile));
+    registry.preload(binary, runFunc);
+
+    verify(registry, times(1)).saveCacheFile();
+    assertTrue(Files.exists(cacheFile));
+  }
+}
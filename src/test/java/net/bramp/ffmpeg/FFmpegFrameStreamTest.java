@@ -0,0 +1,199 @@
+package net.bramp.ffmpeg;
+
+import static net.bramp.ffmpeg.FFmpegTest.argThatHasItem;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.bramp.ffmpeg.builder.FFmpegBuilder;
+import net.bramp.ffmpeg.lang.MockProcess;
+import net.bramp.ffmpeg.lang.NewProcessAnswer;
+import net.bramp.ffmpeg.nut.Frame;
+import net.bramp.ffmpeg.nut.NutReaderListener;
+import net.bramp.ffmpeg.nut.NutTestFile;
+import net.bramp.ffmpeg.nut.SimpleFrameBufferPool;
+import net.bramp.ffmpeg.nut.Stream;
+import net.bramp.ffmpeg.nut.StreamHeaderPacket;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FFmpegFrameStreamTest {
+
+  static final int FRAMES = 20;
+
+  @Mock ProcessFunction runFunc;
+
+  FFmpeg ffmpeg;
+
+  final byte[] nut = new NutTestFile(FRAMES, 5, false).toByteArray();
+
+  @Before
+  public void before() throws IOException {
+    when(runFunc.run(argThatHasItem("-version")))
+        .thenAnswer(new NewProcessAnswer("ffmpeg-version"));
+
+    ffmpeg = new FFmpeg(runFunc);
+  }
+
+  private void stdout(byte[] data, int exitValue) throws IOException {
+    when(runFunc.runWithSeparateErrorStream(anyList()))
+        .thenAnswer(
+            invocation ->
+                new MockProcess(null, new ByteArrayInputStream(data), null) {
+                  @Override
+                  public int exitValue() {
+                    return exitValue;
+                  }
+                });
+  }
+
+  private static FFmpegBuilder builder() {
+    return new FFmpegBuilder().setInput("input.mp4").done();
+  }
+
+  @Test
+  public void testReadFrame() throws IOException {
+    stdout(nut, 0);
+
+    FFmpegBuilder builder = builder();
+    try (FFmpegFrameStream frames = ffmpeg.frames(builder)) {
+      for (int i = 0; i < FRAMES; i++) {
+        Frame frame = frames.readFrame();
+        assertEquals(NutTestFile.FIRST_PTS + i, frame.getPts());
+        assertEquals(NutTestFile.FRAME_SIZE, frame.getData().remaining());
+        assertEquals(i, frame.getData().get(0));
+      }
+      assertNull(frames.readFrame());
+      assertNull(frames.readFrame());
+
+      List<Stream> streams = frames.getStreams();
+      assertEquals(1, streams.size());
+      assertEquals(StreamHeaderPacket.VIDEO, streams.get(0).getType());
+      assertEquals(2, streams.get(0).getWidth());
+    }
+
+    verify(runFunc)
+        .runWithSeparateErrorStream(
+            Arrays.asList(
+                "ffmpeg", "-y", "-v", "error",
+                "-i", "input.mp4",
+                "-f", "nut",
+                "-vcodec", "rawvideo",
+                "-acodec", "pcm_s16le",
+                "-"));
+
+    // The output was added to the builder
+    assertEquals(1, builder.getOutputs().size());
+  }
+
+  @Test
+  public void testReadFrames() throws IOException {
+    stdout(nut, 0);
+
+    List<Stream> streams = new ArrayList<>();
+    List<Long> pts = new ArrayList<>();
+    ffmpeg.readFrames(
+        builder(),
+        new NutReaderListener() {
+          @Override
+          public void stream(Stream stream) {
+            assertTrue("streams come before frames", pts.isEmpty());
+            streams.add(stream);
+          }
+
+          @Override
+          public void frame(Frame frame) {
+            pts.add(frame.getPts());
+          }
+        });
+
+    assertEquals(1, streams.size());
+    assertEquals(FRAMES, pts.size());
+    assertEquals(NutTestFile.FIRST_PTS + FRAMES - 1, (long) pts.get(FRAMES - 1));
+  }
+
+  @Test
+  public void testPooledFrames() throws IOException {
+    stdout(nut, 0);
+
+    SimpleFrameBufferPool pool = new SimpleFrameBufferPool(4, false);
+    try (FFmpegFrameStream frames = ffmpeg.frames(builder(), 1, pool)) {
+      Frame frame;
+      int count = 0;
+      while ((frame = frames.readFrame()) != null) {
+        frame.release();
+        count++;
+      }
+      assertEquals(FRAMES, count);
+    }
+    assertTrue("buffers returned to the pool", pool.size() > 0);
+  }
+
+  @Test
+  public void testCloseEarly() throws IOException {
+    stdout(nut, 0);
+
+    try (FFmpegFrameStream frames = ffmpeg.frames(builder(), 1, null)) {
+      assertEquals(NutTestFile.FIRST_PTS, frames.readFrame().getPts());
+    }
+  }
+
+  @Test
+  public void testTruncated() throws IOException {
+    // Cut part way through the last frame
+    stdout(Arrays.copyOf(nut, nut.length - 1), 0);
+
+    try (FFmpegFrameStream frames = ffmpeg.frames(builder())) {
+      while (frames.readFrame() != null) {
+        // Read until it fails
+      }
+      fail("expected IOException");
+    } catch (IOException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testFFmpegFailed() throws IOException {
+    stdout(new byte[0], 1);
+
+    try (FFmpegFrameStream frames = ffmpeg.frames(builder())) {
+      frames.readFrame();
+      fail("expected IOException");
+    } catch (IOException e) {
+      assertThat(e.getMessage(), containsString("non-zero exit status"));
+      assertEquals(1, e.getSuppressed().length);
+    }
+  }
+
+  @Test
+  public void testNutOutput() throws IOException {
+    stdout(nut, 0);
+
+    FFmpegBuilder builder =
+        builder().addStdoutOutput().setFormat("nut").setVideoPixelFormat("rgba").done();
+    try (FFmpegFrameStream frames = ffmpeg.frames(builder)) {
+      assertEquals(NutTestFile.FIRST_PTS, frames.readFrame().getPts());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFileOutput() throws IOException {
+    ffmpeg.frames(builder().addOutput("output.mp4").done());
+  }
+}
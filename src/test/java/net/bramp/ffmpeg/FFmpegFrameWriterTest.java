@@ -0,0 +1,155 @@
+package net.bramp.ffmpeg;
+
+import static net.bramp.ffmpeg.FFmpegTest.argThatHasItem;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.bramp.ffmpeg.builder.FFmpegBuilder;
+import net.bramp.ffmpeg.lang.MockProcess;
+import net.bramp.ffmpeg.lang.NewProcessAnswer;
+import net.bramp.ffmpeg.nut.Frame;
+import net.bramp.ffmpeg.nut.NutReader;
+import net.bramp.ffmpeg.nut.NutReaderListener;
+import net.bramp.ffmpeg.nut.Stream;
+import org.apache.commons.lang3.math.Fraction;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FFmpegFrameWriterTest {
+
+  static final int FRAMES = 20;
+
+  @Mock ProcessFunction runFunc;
+
+  FFmpeg ffmpeg;
+
+  final ByteArrayOutputStream stdin = new ByteArrayOutputStream();
+
+  @Before
+  public void before() throws IOException {
+    when(runFunc.run(argThatHasItem("-version")))
+        .thenAnswer(new NewProcessAnswer("ffmpeg-version"));
+
+    ffmpeg = new FFmpeg(runFunc);
+  }
+
+  private void stdin(OutputStream stdin, int exitValue) throws IOException {
+    when(runFunc.runWithSeparateErrorStream(anyList()))
+        .thenAnswer(
+            invocation ->
+                new MockProcess(stdin, new ByteArrayInputStream(new byte[0]), null) {
+                  @Override
+                  public int exitValue() {
+                    return exitValue;
+                  }
+                });
+  }
+
+  private static FFmpegBuilder builder() {
+    return new FFmpegBuilder().addOutput("output.mp4").done();
+  }
+
+  @Test
+  public void testWriteFrames() throws IOException {
+    stdin(stdin, 0);
+
+    try (FFmpegFrameWriter writer = ffmpeg.frameWriter(builder())) {
+      int video = writer.addVideoStream("RGBA", 2, 2, Fraction.getFraction(1, 25));
+      for (int i = 0; i < FRAMES; i++) {
+        byte[] data = new byte[2 * 2 * 4];
+        data[0] = (byte) i;
+        writer.writeFrame(video, i, data);
+      }
+    }
+
+    verify(runFunc)
+        .runWithSeparateErrorStream(
+            Arrays.asList(
+                "ffmpeg", "-y", "-v", "error",
+                "-f", "nut",
+                "-i", "-",
+                "output.mp4"));
+
+    // Read back what ffmpeg was sent
+    List<Stream> streams = new ArrayList<>();
+    List<Frame> frames = new ArrayList<>();
+    new NutReader(
+            new ByteArrayInputStream(stdin.toByteArray()),
+            new NutReaderListener() {
+              @Override
+              public void stream(Stream stream) {
+                streams.add(stream);
+              }
+
+              @Override
+              public void frame(Frame frame) {
+                frames.add(frame);
+              }
+            })
+        .read();
+
+    assertEquals(1, streams.size());
+    assertEquals(2, streams.get(0).getWidth());
+    assertEquals(Fraction.getFraction(1, 25), streams.get(0).getTimeBase());
+
+    assertEquals(FRAMES, frames.size());
+    for (int i = 0; i < FRAMES; i++) {
+      assertEquals(i, frames.get(i).getPts());
+      assertEquals(i, frames.get(i).getData().get(0));
+    }
+  }
+
+  @Test
+  public void testNutInput() throws IOException {
+    stdin(stdin, 0);
+
+    FFmpegBuilder builder = builder().addStdinInput().setFormat("nut").done();
+    try (FFmpegFrameWriter writer = ffmpeg.frameWriter(builder)) {
+      int audio = writer.addAudioStream("PSD\u0010", 48_000, 2, Fraction.getFraction(1, 48_000));
+      writer.writeFrame(audio, 0, new byte[1024]);
+    }
+    assertEquals(1, builder.getInputs().size());
+  }
+
+  @Test
+  public void testFFmpegFailed() throws IOException {
+    OutputStream broken =
+        new OutputStream() {
+          @Override
+          public void write(int b) throws IOException {
+            throw new IOException("Broken pipe");
+          }
+        };
+    stdin(broken, 1);
+
+    try (FFmpegFrameWriter writer = ffmpeg.frameWriter(builder())) {
+      int video = writer.addVideoStream("RGBA", 64, 64, Fraction.getFraction(1, 25));
+      writer.writeFrame(video, 0, new byte[64 * 64 * 4]);
+      fail("expected IOException");
+    } catch (IOException e) {
+      assertThat(e.getMessage(), containsString("non-zero exit status"));
+      assertThat(e.getSuppressed()[0].getMessage(), containsString("Broken pipe"));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRawInput() throws IOException {
+    ffmpeg.frameWriter(builder().addStdinInput().setFormat("rawvideo").done());
+  }
+}
@@ -1,25 +1,49 @@
 package net.bramp.ffmpeg;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 import static org.mockito.Mockito.*;
 import static org.mockito.hamcrest.MockitoHamcrest.argThat;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.Lists;
 import net.bramp.ffmpeg.builder.FFmpegBuilder;
+import net.bramp.ffmpeg.builder.FFmpegCommandTemplate;
 import net.bramp.ffmpeg.fixtures.Codecs;
 import net.bramp.ffmpeg.fixtures.Filters;
 import net.bramp.ffmpeg.fixtures.Formats;
 import net.bramp.ffmpeg.fixtures.ChannelLayouts;
 import net.bramp.ffmpeg.fixtures.PixelFormats;
+import net.bramp.ffmpeg.fixtures.Progresses;
 import net.bramp.ffmpeg.fixtures.Samples;
 import net.bramp.ffmpeg.info.Filter;
+import net.bramp.ffmpeg.lang.MockProcess;
 import net.bramp.ffmpeg.lang.NewProcessAnswer;
+import net.bramp.ffmpeg.progress.NamedPipeProgressParser;
+import net.bramp.ffmpeg.progress.Progress;
+import net.bramp.ffmpeg.progress.ProgressParser;
+import net.bramp.ffmpeg.progress.TcpProgressParser;
+import net.bramp.ffmpeg.progress.UnixSocketProgressParser;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -124,6 +148,181 @@ public class FFmpegTest {
     verify(processErrStream, times(1)).append(any(CharSequence.class));
   }
 
+  @Test
+  public void testDrainsStdoutAndStderrConcurrently() throws IOException {
+    CountDownLatch stderrEnded = new CountDownLatch(1);
+    InputStream stderr =
+        new ByteArrayInputStream("error\n".getBytes(StandardCharsets.UTF_8)) {
+          @Override
+          public synchronized int read(byte[] b, int off, int len) {
+            int n = super.read(b, off, len);
+            if (n == -1) {
+              stderrEnded.countDown();
+            }
+            return n;
+          }
+        };
+
+    // Like a real process blocked on a full stderr pipe, stdout only ends once stderr is read
+    InputStream stdout =
+        new InputStream() {
+          @Override
+          public int read() throws IOException {
+            try {
+              if (!stderrEnded.await(5, TimeUnit.SECONDS)) {
+                throw new IOException("stderr was not read while stdout was");
+              }
+            } catch (InterruptedException e) {
+              throw new InterruptedIOException();
+            }
+            return -1;
+          }
+        };
+
+    when(runFunc.run(argThatHasItem("both.mp4")))
+        .thenAnswer(invocation -> new MockProcess(null, stdout, stderr));
+
+    ffmpeg.run(Lists.newArrayList("-i", "both.mp4"));
+  }
+
+  @Test
+  public void testErrorTailInMessage() throws IOException {
+    when(runFunc.run(argThatHasItem("failed.mp4")))
+        .thenAnswer(
+            invocation ->
+                // stdout is empty, as it would race stderr to the end of the tail
+                new MockProcess(
+                    null,
+                    new ByteArrayInputStream(new byte[0]),
+                    Helper.loadResource("ffmpeg-no-such-file")) {
+                  @Override
+                  public int exitValue() {
+                    return 1;
+                  }
+                });
+
+    ffmpeg.setErrorTailSize(1024);
+    IOException e =
+        assertThrows(
+            IOException.class, () -> ffmpeg.run(Lists.newArrayList("-i", "failed.mp4")));
+    assertThat(e.getMessage(), containsString("toto.mp4: No such file or directory"));
+  }
+
+  @Test
+  public void testProgressOnStdout() throws IOException {
+    when(runFunc.runWithSeparateErrorStream(argThatHasItem("pipe:1")))
+        .thenAnswer(new NewProcessAnswer("ffmpeg-progress-0"));
+
+    List<Progress> progresses = new ArrayList<>();
+    ffmpeg.setProgressOnStdout(true);
+    ffmpeg.run(
+        ffmpeg.builder().addInput(Samples.big_buck_bunny_720p_1mb).done()
+            .addOutput(Samples.output_mp4).done(),
+        progresses::add);
+
+    verify(runFunc, times(1)).runWithSeparateErrorStream(argThatHasItem("-nostats"));
+    assertEquals(Progresses.allProgresses.subList(0, 1), progresses);
+  }
+
+  @Test
+  public void testRunAsync() throws Exception {
+    Appendable processErrStream = mock(Appendable.class);
+    ffmpeg.setProcessErrorStream(processErrStream);
+
+    ffmpeg.runAsync(Lists.newArrayList("-i", "toto.mp4")).get(1, TimeUnit.SECONDS);
+
+    verify(processErrStream, atLeastOnce()).append(any(CharSequence.class));
+  }
+
+  @Test
+  public void testRunAsyncFailed() throws Exception {
+    when(runFunc.run(argThatHasItem("failed.mp4")))
+        .thenAnswer(
+            invocation ->
+                new MockProcess(null, Helper.loadResource("ffmpeg-version"), null) {
+                  @Override
+                  public int exitValue() {
+                    return 1;
+                  }
+                });
+
+    ExecutionException e =
+        assertThrows(
+            ExecutionException.class,
+            () ->
+                ffmpeg
+                    .runAsync(Lists.newArrayList("-i", "failed.mp4"))
+                    .get(1, TimeUnit.SECONDS));
+    assertThat(e.getCause(), instanceOf(IOException.class));
+  }
+
+  @Test
+  public void testRunAsyncCancelDestroys() throws Exception {
+    ProcessMonitorTest.RunningProcess running =
+        new ProcessMonitorTest.RunningProcess(Helper.loadResource("ffmpeg-version"), null);
+    when(runFunc.run(argThatHasItem("forever.mp4"))).thenReturn(running);
+
+    CompletableFuture<Void> future = ffmpeg.runAsync(Lists.newArrayList("-i", "forever.mp4"));
+    assertFalse(future.isDone());
+
+    assertTrue(future.cancel(true));
+    assertTrue("ffmpeg was not destroyed", running.destroyed.await(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testRunAsyncProgressOnStdout() throws Exception {
+    when(runFunc.runWithSeparateErrorStream(argThatHasItem("pipe:1")))
+        .thenAnswer(new NewProcessAnswer("ffmpeg-progress-0"));
+
+    List<Progress> progresses = new ArrayList<>();
+    ffmpeg.setProgressOnStdout(true);
+    ffmpeg
+        .runAsync(
+            ffmpeg.builder().addInput(Samples.big_buck_bunny_720p_1mb).done()
+                .addOutput(Samples.output_mp4).done(),
+            progresses::add)
+        .get(1, TimeUnit.SECONDS);
+
+    verify(runFunc, times(1)).runWithSeparateErrorStream(argThatHasItem("-nostats"));
+    assertEquals(Progresses.allProgresses.subList(0, 1), progresses);
+  }
+
+  @Test
+  public void testRunAsyncTemplateProgressOnStdout() throws Exception {
+    when(runFunc.runWithSeparateErrorStream(argThatHasItem("pipe:1")))
+        .thenAnswer(new NewProcessAnswer("ffmpeg-progress-0"));
+
+    FFmpegCommandTemplate template =
+        ffmpeg.builder().addInput("${input}").done().addOutput(Samples.output_mp4).done().compile();
+
+    List<Progress> progresses = new ArrayList<>();
+    ffmpeg.setProgressOnStdout(true);
+    ffmpeg
+        .runAsync(template, template.instantiate(Samples.big_buck_bunny_720p_1mb), progresses::add)
+        .get(1, TimeUnit.SECONDS);
+
+    verify(runFunc, times(1)).runWithSeparateErrorStream(argThatHasItem("-nostats"));
+    verify(runFunc, times(1))
+        .runWithSeparateErrorStream(argThatHasItem(Samples.big_buck_bunny_720p_1mb));
+    assertEquals(Progresses.allProgresses.subList(0, 1), progresses);
+  }
+
+  @Test
+  public void testLocalProgressIsOptIn() throws IOException {
+    try (ProgressParser parser = ffmpeg.createProgressParser(progress -> {})) {
+      assertThat(parser, instanceOf(TcpProgressParser.class));
+    }
+
+    assumeTrue(
+        "Neither Unix domain sockets or named pipes are supported",
+        UnixSocketProgressParser.isSupported() || NamedPipeProgressParser.isSupported());
+
+    ffmpeg.setLocalProgress(true);
+    try (ProgressParser parser = ffmpeg.createProgressParser(progress -> {})) {
+      assertThat(parser, not(instanceOf(TcpProgressParser.class)));
+    }
+  }
+
   @Test
   public void testPixelFormat() throws IOException {
     // Run twice, the second should be cached
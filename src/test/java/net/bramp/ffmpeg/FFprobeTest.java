@@ -18,13 +18,16 @@ import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import static net.bramp.ffmpeg.FFmpegTest.argThatHasItem;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.startsWith;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -108,6 +111,24 @@ public class FFprobeTest {
     // System.out.println(FFmpegUtils.getGson().toJson(info));
   }
 
+  @Test
+  public void testProbeAsync() throws Exception {
+    FFmpegProbeResult info = ffprobe.probeAsync(Samples.big_buck_bunny_720p_1mb).get();
+    assertFalse(info.hasError());
+    assertThat(info.getStreams(), hasSize(2));
+  }
+
+  @Test
+  public void testProbeAsyncFailed() throws IOException {
+    when(runFunc.run(argThatHasItem("doesnotexist.mp4"))).thenReturn(mockProcess);
+    Mockito.doReturn(1).when(mockProcess).exitValue();
+
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> ffprobe.probeAsync("doesnotexist.mp4").get());
+    assertThat(e.getCause(), instanceOf(FFmpegException.class));
+    verify(mockProcess).destroy();
+  }
+
   @Test
   public void testProbeBookWithChapters() throws IOException {
     FFmpegProbeResult info = ffprobe.probe(Samples.book_with_chapters);
@@ -234,6 +255,72 @@ public class FFprobeTest {
     assertLastFrame(lastFrame);
   }
 
+  @Test
+  public void testProbeStreamingPacketsAndFrames() throws IOException {
+    final List<FFmpegPacket> packets = new ArrayList<>();
+    final List<FFmpegFrame> frames = new ArrayList<>();
+
+    FFmpegProbeResult info =
+        ffprobe.probe(
+            ffprobe
+                .builder()
+                .setInput(Samples.big_buck_bunny_720p_1mb_with_packets_and_frames)
+                .setShowPackets(true)
+                .setShowFrames(true),
+            new ProbeListener() {
+              @Override
+              public void packet(FFmpegPacket packet) {
+                packets.add(packet);
+              }
+
+              @Override
+              public void frame(FFmpegFrame frame) {
+                frames.add(frame);
+              }
+            });
+
+    assertThat(info.hasError(), is(false));
+    assertThat(info.getPackets(), hasSize(0));
+    assertThat(info.getFrames(), hasSize(0));
+
+    assertThat(packets, hasSize(381));
+    assertThat(frames, hasSize(381));
+
+    assertThat(packets.get(1).codec_type, is(CodecType.VIDEO));
+    assertThat(packets.get(1).size, is("105222"));
+    assertThat(frames.get(0).pkt_size, is(967L));
+  }
+
+  @Test
+  public void testProbeColumnar() throws IOException {
+    FFmpegColumnarProbeResult info =
+        ffprobe.probeColumnar(
+            ffprobe
+                .builder()
+                .setInput(Samples.big_buck_bunny_720p_1mb_with_packets_and_frames)
+                .setShowPackets(true)
+                .setShowFrames(true));
+
+    assertThat(info.getResult().hasError(), is(false));
+    assertThat(info.getAllPackets(), hasSize(2));
+    assertThat(info.getAllFrames(), hasSize(2));
+
+    FFmpegPacketColumns video = info.getPackets(0);
+    assertThat(video.size(), is(132));
+    assertThat(video.getPts(0), is(0L));
+    assertThat(video.getSize(0), is(105222));
+    assertThat(video.isKeyframe(0), is(true));
+    assertThat(video.isKeyframe(1), is(false));
+
+    FFmpegPacketColumns.Cursor cursor = video.cursor().moveTo(video.size() - 1);
+    assertThat(cursor.getPos(), is(1048039L));
+
+    assertThat(info.getPackets(1).size(), is(249));
+    assertThat(info.getFrames(0).size(), is(132));
+    assertThat(info.getFrames(1).size(), is(249));
+    assertThat(info.getFrames(1).getPktSize(0), is(967));
+  }
+
   @Test
   public void testProbeWithPacketsAndFrames() throws IOException {
     FFmpegProbeResult info = ffprobe.probe(
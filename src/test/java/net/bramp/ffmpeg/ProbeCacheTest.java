@@ -0,0 +1,116 @@
+package net.bramp.ffmpeg;
+
+import static net.bramp.ffmpeg.FFmpegTest.argThatHasItem;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import net.bramp.ffmpeg.fixtures.Samples;
+import net.bramp.ffmpeg.lang.NewProcessAnswer;
+import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProbeCacheTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Mock ProcessFunction runFunc;
+
+  FFprobe ffprobe;
+
+  @Before
+  public void before() throws IOException {
+    when(runFunc.run(argThatHasItem("-version")))
+        .thenAnswer(new NewProcessAnswer("ffprobe-version"));
+
+    when(runFunc.run(argThatHasItem(Samples.big_buck_bunny_720p_1mb)))
+        .thenAnswer(new NewProcessAnswer("ffprobe-big_buck_bunny_720p_1mb.mp4"));
+
+    when(runFunc.run(argThatHasItem(Samples.always_on_my_mind)))
+        .thenAnswer(new NewProcessAnswer("ffprobe-Always On My Mind [Program Only] - Adelen.mp4"));
+
+    ffprobe = new FFprobe(runFunc);
+  }
+
+  @Test
+  public void testMemoryHit() throws IOException {
+    ProbeCache cache = new ProbeCache(ffprobe);
+
+    FFmpegProbeResult first = cache.probe(Samples.big_buck_bunny_720p_1mb);
+    FFmpegProbeResult second = cache.probe(Samples.big_buck_bunny_720p_1mb);
+
+    assertSame(first, second);
+    assertEquals(1, cache.size());
+    verify(runFunc, times(1)).run(argThatHasItem(Samples.big_buck_bunny_720p_1mb));
+  }
+
+  @Test
+  public void testMissingFileNotCached() throws IOException {
+    ProbeCache cache = new ProbeCache(ffprobe);
+
+    cache.probe(Samples.always_on_my_mind);
+    cache.probe(Samples.always_on_my_mind);
+
+    assertEquals(0, cache.size());
+    verify(runFunc, times(2)).run(argThatHasItem(Samples.always_on_my_mind));
+  }
+
+  @Test
+  public void testCacheUrls() throws IOException {
+    ProbeCache cache = new ProbeCache(ffprobe).setCacheUrls(true);
+
+    cache.probe(Samples.always_on_my_mind);
+    cache.probe(Samples.always_on_my_mind);
+
+    assertEquals(1, cache.size());
+    verify(runFunc, times(1)).run(argThatHasItem(Samples.always_on_my_mind));
+  }
+
+  @Test
+  public void testDiskHit() throws IOException {
+    Path directory = folder.getRoot().toPath();
+
+    new ProbeCache(ffprobe, ProbeCache.DEFAULT_MAXIMUM_SIZE, directory)
+        .probe(Samples.big_buck_bunny_720p_1mb);
+
+    // A new cache (as if after a restart) should read the result from disk
+    FFmpegProbeResult result =
+        new ProbeCache(ffprobe, ProbeCache.DEFAULT_MAXIMUM_SIZE, directory)
+            .probe(Samples.big_buck_bunny_720p_1mb);
+
+    assertThat(result.getStreams(), hasSize(2));
+    assertEquals(48_000, result.getStreams().get(1).sample_rate);
+    verify(runFunc, times(1)).run(argThatHasItem(Samples.big_buck_bunny_720p_1mb));
+  }
+
+  @Test
+  public void testWeigh() throws IOException {
+    when(runFunc.run(argThatHasItem(Samples.big_buck_bunny_720p_1mb_with_packets_and_frames)))
+        .thenAnswer(
+            new NewProcessAnswer("ffprobe-big_buck_bunny_720p_1mb_packets_and_frames.mp4"));
+
+    FFmpegProbeResult result =
+        ffprobe.probe(Samples.big_buck_bunny_720p_1mb_with_packets_and_frames);
+
+    // An estimate, but it should be in the right ballpark
+    int json = ProbeCache.gson.toJson(result).length();
+    assertThat(ProbeCache.weigh(result), is(both(greaterThan(json / 2)).and(lessThan(json * 2))));
+  }
+}
@@ -0,0 +1,160 @@
+package net.bramp.ffmpeg;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import net.bramp.ffmpeg.lang.MockProcess;
+import org.junit.After;
+import org.junit.Test;
+
+public class ProcessMonitorTest {
+
+  final ProcessMonitor monitor = new ProcessMonitor(1, 1, TimeUnit.MILLISECONDS);
+
+  /** A process which runs until it is told to exit, or is destroyed. */
+  static class RunningProcess extends MockProcess {
+    final CountDownLatch exited = new CountDownLatch(1);
+    final CountDownLatch destroyed = new CountDownLatch(1);
+
+    RunningProcess(InputStream stdout, InputStream stderr) {
+      super(null, stdout, stderr);
+    }
+
+    void exit() {
+      exited.countDown();
+    }
+
+    @Override
+    public boolean isAlive() {
+      return exited.getCount() > 0 && destroyed.getCount() > 0;
+    }
+
+    @Override
+    public int exitValue() {
+      if (isAlive()) {
+        throw new IllegalThreadStateException("process hasn't exited");
+      }
+      return 0;
+    }
+
+    @Override
+    public void destroy() {
+      destroyed.countDown();
+    }
+  }
+
+  @After
+  public void after() {
+    monitor.scheduler.shutdownNow();
+  }
+
+  private static InputStream empty() {
+    return new ByteArrayInputStream(new byte[0]);
+  }
+
+  @Test
+  public void testReadsOutputWhileRunning() throws Exception {
+    PipedOutputStream stdout = new PipedOutputStream();
+    RunningProcess p = new RunningProcess(new PipedInputStream(stdout), empty());
+
+    StringBuilder out = new StringBuilder();
+    CountDownLatch read = new CountDownLatch(1);
+    CompletableFuture<String> future =
+        monitor.watch(
+            p,
+            (b, off, len) -> {
+              out.append(new String(b, off, len, UTF_8));
+              read.countDown();
+            },
+            ProcessMonitor.DISCARD,
+            process -> "done",
+            Runnable::run);
+
+    stdout.write("frame=1\n".getBytes(UTF_8));
+    assertTrue("output was not read while running", read.await(1, TimeUnit.SECONDS));
+    assertFalse(future.isDone());
+
+    stdout.write("frame=2\n".getBytes(UTF_8));
+    stdout.close();
+    p.exit();
+
+    assertEquals("done", future.get(1, TimeUnit.SECONDS));
+    assertEquals("frame=1\nframe=2\n", out.toString());
+    assertTrue(p.destroyed.await(0, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testExitHandlerFails() throws Exception {
+    RunningProcess p = new RunningProcess(empty(), empty());
+    p.exit();
+
+    CompletableFuture<Void> future =
+        monitor.watch(
+            p,
+            ProcessMonitor.DISCARD,
+            ProcessMonitor.DISCARD,
+            process -> {
+              throw new IOException("failed");
+            },
+            Runnable::run);
+
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+    assertThat(e.getCause(), instanceOf(IOException.class));
+    assertTrue(p.destroyed.await(0, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testCancelDestroys() throws Exception {
+    RunningProcess p = new RunningProcess(empty(), empty());
+
+    CompletableFuture<Void> future =
+        monitor.watch(
+            p, ProcessMonitor.DISCARD, ProcessMonitor.DISCARD, process -> null, Runnable::run);
+
+    assertTrue(future.cancel(true));
+    assertTrue("process was not destroyed", p.destroyed.await(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testDecodeSplitCharacters() throws IOException {
+    byte[] bytes = "a\u00e9b\u20ac\uD83C\uDFA5".getBytes(UTF_8);
+
+    StringBuilder out = new StringBuilder();
+    ProcessMonitor.Sink sink = ProcessMonitor.decodeTo(out, UTF_8);
+
+    // One byte at a time, so every multi byte character is split
+    for (int i = 0; i < bytes.length; i++) {
+      sink.write(bytes, i, 1);
+    }
+    sink.finish();
+
+    assertEquals("a\u00e9b\u20ac\uD83C\uDFA5", out.toString());
+  }
+
+  @Test
+  public void testDecodeTruncatedCharacter() throws IOException {
+    byte[] bytes = "a\u20ac".getBytes(UTF_8);
+
+    StringBuilder out = new StringBuilder();
+    ProcessMonitor.Sink sink = ProcessMonitor.decodeTo(out, UTF_8);
+    sink.write(bytes, 0, bytes.length - 1);
+    sink.finish();
+
+    assertEquals("a\uFFFD", out.toString());
+  }
+}
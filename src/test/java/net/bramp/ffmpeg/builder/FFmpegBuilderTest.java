@@ -9,7 +9,11 @@ import static net.bramp.ffmpeg.builder.StreamSpecifier.tag;
 import static net.bramp.ffmpeg.builder.StreamSpecifier.usable;
 import static net.bramp.ffmpeg.builder.StreamSpecifierType.*;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.google.common.collect.ImmutableList;
 import java.net.URI;
@@ -17,6 +21,11 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import net.bramp.ffmpeg.builder.FFmpegBuilder.Verbosity;
+import net.bramp.ffmpeg.fixtures.Codecs;
+import net.bramp.ffmpeg.fixtures.Filters;
+import net.bramp.ffmpeg.fixtures.Formats;
+import net.bramp.ffmpeg.fixtures.PixelFormats;
+import net.bramp.ffmpeg.info.CapabilityIndex;
 import net.bramp.ffmpeg.options.AudioEncodingOptions;
 import net.bramp.ffmpeg.options.EncodingOptions;
 import net.bramp.ffmpeg.options.MainEncodingOptions;
@@ -666,4 +675,67 @@ public class FFmpegBuilderTest {
             "-y",  "-v", "error", "-f", "webm_dash_manifest", "-i", "video_160x90_250k.webm", "-f", "webm_dash_manifest", "-i", "video_320x180_500k.webm", "-f", "webm_dash_manifest", "-i", "video_640x360_750k.webm", "-f", "webm_dash_manifest", "-i", "video_640x360_1000k.webm", "-f", "webm_dash_manifest", "-i", "video_1280x720_600k.webm", "-f", "webm_dash_manifest", "-i", "audio_128k.webm", "-f", "webm_dash_manifest", "-vcodec", "copy", "-acodec", "copy", "-map", "0", "-map", "1", "-map", "2", "-map", "3", "-map", "4", "-map", "5", "-adaptation_sets", "id=0,streams=0,1,2,3,4 id=1,streams=5", "manifest.mp4"
     ), args);
   }
+
+  @Test
+  public void testWritesToStdout() {
+    FFmpegBuilder file = new FFmpegBuilder().addInput("input").done().addOutput("output").done();
+    assertFalse(file.writesToStdout());
+
+    FFmpegBuilder stdout =
+        new FFmpegBuilder().addInput("input").done().addStdoutOutput().setFormat("mp4").done();
+    assertTrue(stdout.writesToStdout());
+
+    FFmpegBuilder pipe =
+        new FFmpegBuilder().addInput("input").done().addOutput("pipe:1").done();
+    assertTrue(pipe.writesToStdout());
+  }
+
+  static final CapabilityIndex INDEX =
+      new CapabilityIndex(
+          Codecs.CODECS, Formats.FORMATS, Filters.FILTERS, PixelFormats.PIXEL_FORMATS);
+
+  @Test
+  public void testValidate() {
+    new FFmpegBuilder()
+        .addInput("input.mp4")
+        .setFormat("mp4")
+        .done()
+        .addOutput("output.mp4")
+        .setFormat("mp4")
+        .setVideoCodec("libx264")
+        .setVideoPixelFormat("yuv420p")
+        .setVideoFilter("scale=640:-1,hflip")
+        .setAudioCodec("aac")
+        .setAudioFilter("volume=2")
+        .done()
+        .validate(INDEX);
+  }
+
+  @Test
+  public void testValidateFailsWithEveryError() {
+    FFmpegBuilder builder =
+        new FFmpegBuilder()
+            .addInput("input.mp4")
+            .setFormat("not-a-demuxer")
+            .done()
+            .addOutput("output.mp4")
+            .setFormat("not-a-muxer")
+            .setVideoCodec("not-an-encoder")
+            .setVideoPixelFormat("cuda") // Can't be encoded
+            .setVideoFilter("scale=640:-1,not-a-filter")
+            .setAudioCodec("copy")
+            .done();
+
+    try {
+      builder.validate(INDEX);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage(), containsString("unknown demuxer 'not-a-demuxer'"));
+      assertThat(e.getMessage(), containsString("unknown muxer 'not-a-muxer'"));
+      assertThat(e.getMessage(), containsString("unknown video encoder 'not-an-encoder'"));
+      assertThat(e.getMessage(), containsString("unknown pixel format 'cuda'"));
+      assertThat(e.getMessage(), containsString("unknown filter 'not-a-filter'"));
+      assertFalse(e.getMessage().contains("copy"));
+    }
+  }
 }
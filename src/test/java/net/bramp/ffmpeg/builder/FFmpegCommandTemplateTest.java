@@ -0,0 +1,80 @@
+package net.bramp.ffmpeg.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class FFmpegCommandTemplateTest {
+
+  static FFmpegBuilder builder(String input, String start, String output) {
+    return new FFmpegBuilder()
+        .setThreads(2)
+        .addInput(input)
+        .addExtraArgs("-ss", start)
+        .done()
+        .addOutput("/videos/" + output + ".mp4")
+        .setVideoCodec("libx264")
+        .done()
+        .addOutput(output)
+        .setFormat("mp4")
+        .done();
+  }
+
+  final FFmpegCommandTemplate template = builder("${input}", "${start}", "${output}").compile();
+
+  @Test
+  public void testInstantiate() {
+    assertEquals(ImmutableList.of("start", "input", "output"), template.getPlaceholders());
+    assertEquals(2, template.getThreads());
+
+    List<String> args = template.instantiate("00:00:10", "input.mov", "output");
+    assertEquals(builder("input.mov", "00:00:10", "output").build(), args);
+    assertFalse(template.writesToStdout(args));
+  }
+
+  @Test
+  public void testInstantiateWithMap() {
+    List<String> args =
+        template.instantiate(ImmutableMap.of("input", "input.mov", "start", "5", "output", "-"));
+
+    assertEquals(builder("input.mov", "5", "-").build(), args);
+    assertTrue(template.writesToStdout(args));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingValue() {
+    template.instantiate(ImmutableMap.of("input", "input.mov"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongNumberOfValues() {
+    template.instantiate("input.mov");
+  }
+
+  @Test
+  public void testCompileBuildsEachOutputOnce() {
+    AtomicInteger builds = new AtomicInteger();
+    FFmpegOutputBuilder output =
+        new FFmpegOutputBuilder() {
+          @Override
+          protected List<String> build(FFmpegBuilder parent, int pass) {
+            builds.incrementAndGet();
+            return super.build(parent, pass);
+          }
+        }.setFilename("${output}");
+
+    FFmpegCommandTemplate template =
+        new FFmpegBuilder().addInput("${input}").done().addOutput(output).compile();
+
+    assertEquals(1, builds.get());
+    assertEquals(
+        ImmutableList.of("-y", "-v", "error", "-i", "input.mov", "output.mp4"),
+        template.instantiate("input.mov", "output.mp4"));
+  }
+}
@@ -0,0 +1,130 @@
+package net.bramp.ffmpeg.builder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.bramp.ffmpeg.fixtures.Codecs;
+import net.bramp.ffmpeg.fixtures.Filters;
+import net.bramp.ffmpeg.fixtures.Formats;
+import net.bramp.ffmpeg.fixtures.PixelFormats;
+import net.bramp.ffmpeg.info.CapabilityIndex;
+import org.junit.Test;
+
+public class FFmpegLadderBuilderTest {
+
+  @Test
+  public void testLadder() {
+    FFmpegBuilder builder = new FFmpegBuilder().setInput("input.mp4").done();
+
+    FFmpegLadderBuilder ladder = builder.addLadder();
+    ladder
+        .addHlsRendition(1920, 1080, "1080p.m3u8")
+        .setVideoCodec("libx264")
+        .setVideoBitRate(5_000_000)
+        .setHlsTime(4, TimeUnit.SECONDS);
+    ladder.addRendition(-2, 360, "360p.mp4").setVideoCodec("libx264").setVideoBitRate(800_000);
+
+    List<String> args = builder.build();
+
+    assertEquals(
+        ImmutableList.of(
+            "-y", "-v", "error",
+            "-i", "input.mp4",
+            "-filter_complex",
+            "[0:v:0]split=2[ladder0_s0][ladder0_s1];"
+                + "[ladder0_s0]scale=1920:1080[ladder0_v0];"
+                + "[ladder0_s1]scale=-2:360[ladder0_v1]",
+            "-f", "hls",
+            "-map", "[ladder0_v0]", "-map", "0:a:0?",
+            "-vcodec", "libx264", "-b:v", "5000000",
+            "-hls_time", "00:00:04",
+            "1080p.m3u8",
+            "-map", "[ladder0_v1]", "-map", "0:a:0?",
+            "-vcodec", "libx264", "-b:v", "800000",
+            "360p.mp4"),
+        args);
+  }
+
+  @Test
+  public void testSingleRendition() {
+    FFmpegBuilder builder = new FFmpegBuilder().setInput("input.mp4").done();
+
+    builder
+        .addLadder()
+        .setAudioStream(null)
+        .setFilter("fps=30")
+        .setScaleFlags("lanczos")
+        .addRendition(1280, 720, "720p.mp4");
+
+    assertEquals(
+        ImmutableList.of(
+            "-y", "-v", "error",
+            "-i", "input.mp4",
+            "-filter_complex", "[0:v:0]fps=30,scale=1280:720:flags=lanczos[ladder0_v0]",
+            "-map", "[ladder0_v0]",
+            "720p.mp4"),
+        builder.build());
+  }
+
+  @Test
+  public void testNoRenditions() {
+    FFmpegBuilder builder = new FFmpegBuilder().setInput("input.mp4").done();
+    FFmpegLadderBuilder ladder = builder.addLadder();
+
+    assertNull(ladder.buildFilterGraph());
+  }
+
+  @Test
+  public void testMultipleLadders() {
+    FFmpegBuilder builder =
+        new FFmpegBuilder().addInput("a.mp4").done().addInput("b.mp4").done();
+
+    builder.addLadder().addRendition(640, 360, "a.mp4");
+    builder.addLadder().setVideoStream("1:v:0").addRendition(640, 360, "b.mp4");
+
+    List<String> args = builder.build();
+    int first = args.indexOf("-filter_complex");
+    int last = args.lastIndexOf("-filter_complex");
+    assertEquals("[0:v:0]scale=640:360[ladder0_v0]", args.get(first + 1));
+    assertEquals("[1:v:0]scale=640:360[ladder1_v0]", args.get(last + 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSize() {
+    new FFmpegBuilder().setInput("input.mp4").done().addLadder().addRendition(-2, -2, "out.mp4");
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRenditionWithVideoFilter() {
+    FFmpegBuilder builder = new FFmpegBuilder().setInput("input.mp4").done();
+    builder.addLadder().addRendition(640, 360, "out.mp4").setVideoFilter("hflip");
+
+    @SuppressWarnings("unused")
+    List<String> unused = builder.build();
+  }
+
+  @Test
+  public void testValidate() {
+    CapabilityIndex index =
+        new CapabilityIndex(
+            Codecs.CODECS, Formats.FORMATS, Filters.FILTERS, PixelFormats.PIXEL_FORMATS);
+
+    FFmpegBuilder builder = new FFmpegBuilder().setInput("input.mp4").done();
+    FFmpegLadderBuilder ladder = builder.addLadder().setFilter("not-a-filter");
+    ladder.addRendition(1280, 720, "720p.mp4");
+    ladder.addRendition(640, 360, "360p.mp4");
+
+    try {
+      builder.validate(index);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage(), containsString("unknown filter 'not-a-filter' in ladder"));
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package net.bramp.ffmpeg.builder;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+public class FilterGraphsTest {
+
+  @Test
+  public void testFilterNames() {
+    assertEquals(ImmutableList.of("scale", "hflip"),
+        FilterGraphs.filterNames("[0:v]scale=640:-1,hflip[out]"));
+    assertEquals(ImmutableList.of("split", "drawtext", "volume"),
+        FilterGraphs.filterNames(
+            "sws_flags=bicubic;[in]split[a][b];[a]drawtext=text='a,b;c':x=1 [o1]; [b] volume@my=0.5"));
+  }
+
+  @Test
+  public void testEscapedSeparator() {
+    assertEquals(ImmutableList.of("drawtext", "null"),
+        FilterGraphs.filterNames("drawtext=text=a\\,b,null"));
+  }
+}
@@ -0,0 +1,107 @@
+package net.bramp.ffmpeg.info;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import net.bramp.ffmpeg.fixtures.Codecs;
+import net.bramp.ffmpeg.fixtures.Filters;
+import net.bramp.ffmpeg.fixtures.Formats;
+import net.bramp.ffmpeg.fixtures.PixelFormats;
+import net.bramp.ffmpeg.info.CapabilityIndex.CodecFlag;
+import net.bramp.ffmpeg.info.CapabilityIndex.FilterFlag;
+import net.bramp.ffmpeg.info.CapabilityIndex.FormatFlag;
+import net.bramp.ffmpeg.info.CapabilityIndex.PixelFormatFlag;
+import net.bramp.ffmpeg.shared.CodecType;
+import org.junit.Test;
+
+public class CapabilityIndexTest {
+
+  final CapabilityIndex index =
+      new CapabilityIndex(
+          Codecs.CODECS, Formats.FORMATS, Filters.FILTERS, PixelFormats.PIXEL_FORMATS);
+
+  @Test
+  public void testCodecs() {
+    assertEquals("h264", index.getCodec("h264").getName());
+    assertNull(index.getCodec("not-a-codec"));
+
+    // Encoders are found by the names listed in the codec's description
+    assertEquals(index.getCodec("h264"), index.getEncoder("libx264"));
+    assertEquals(index.getCodec("mp3"), index.getEncoder("libmp3lame"));
+    assertEquals(index.getCodec("mp3"), index.getDecoder("mp3float"));
+    assertFalse(index.hasEncoder("mp3float"));
+
+    // or by the codec's own name when none are listed
+    assertTrue(index.hasEncoder("aac"));
+  }
+
+  @Test
+  public void testCodecFlags() {
+    List<Codec> lossless = index.getCodecs(CodecFlag.ENCODER, CodecFlag.VIDEO, CodecFlag.LOSSLESS);
+
+    assertThat(lossless, hasItem(index.getCodec("h264")));
+    for (Codec codec : lossless) {
+      assertTrue(codec.getCanEncode());
+      assertEquals(CodecType.VIDEO, codec.getType());
+      assertTrue(codec.supportsLosslessCompression());
+    }
+
+    assertEquals(Codecs.CODECS, index.getCodecs(new CodecFlag[0]));
+  }
+
+  @Test
+  public void testFormats() {
+    // "mp4" is listed as both a muxer, and as part of the "mov,mp4,m4a,3gp,3g2,mj2" demuxer
+    assertEquals(2, index.getFormats("mp4").size());
+    assertTrue(index.canMux("mp4"));
+    assertTrue(index.canDemux("mp4"));
+
+    assertTrue(index.getFormats("not-a-format").isEmpty());
+    assertFalse(index.canMux("not-a-format"));
+
+    for (Format format : index.getFormats(FormatFlag.MUXER, FormatFlag.DEMUXER)) {
+      assertTrue(format.getCanMux() && format.getCanDemux());
+    }
+  }
+
+  @Test
+  public void testFilters() {
+    assertTrue(index.hasFilter("scale"));
+    assertFalse(index.hasFilter("not-a-filter"));
+
+    assertThat(index.getFilters(FilterFlag.TIMELINE, FilterFlag.SLICE_THREADING),
+        hasItem(index.getFilter("hflip")));
+    assertThat(index.getFilters(FilterFlag.TIMELINE, FilterFlag.SLICE_THREADING),
+        not(hasItem(index.getFilter("scale"))));
+  }
+
+  @Test
+  public void testFilterPatterns() {
+    List<Filter> videoToVideo = index.getFilters(CodecType.VIDEO, CodecType.VIDEO);
+    assertThat(videoToVideo, hasItem(index.getFilter("scale")));
+    assertThat(videoToVideo, not(hasItem(index.getFilter("volume"))));
+
+    assertThat(index.getFilters(CodecType.AUDIO, CodecType.VIDEO),
+        hasItem(index.getFilter("showvolume")));
+
+    assertThat(index.getSourceFilters(), hasItem(index.getFilter("nullsrc")));
+    assertThat(index.getSinkFilters(), hasItem(index.getFilter("nullsink")));
+  }
+
+  @Test
+  public void testPixelFormats() {
+    assertEquals(12, index.getPixelFormat("yuv420p").getBitsPerPixel());
+
+    List<PixelFormat> hardware = index.getPixelFormats(PixelFormatFlag.HARDWARE_ACCELERATED);
+    assertThat(hardware, hasItem(index.getPixelFormat("cuda")));
+    for (PixelFormat pixelFormat : hardware) {
+      assertTrue(pixelFormat.isHardwareAccelerated());
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package net.bramp.ffmpeg.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TailAppendableTest {
+
+  @Test
+  public void testShorterThanCapacity() {
+    TailAppendable tail = new TailAppendable(10);
+    tail.append("abc").append('d');
+
+    assertEquals("abcd", tail.toString());
+    assertEquals(4, tail.getLength());
+    assertFalse(tail.isTruncated());
+  }
+
+  @Test
+  public void testExactlyCapacity() {
+    TailAppendable tail = new TailAppendable(4);
+    tail.append("abcd");
+
+    assertEquals("abcd", tail.toString());
+    assertFalse(tail.isTruncated());
+  }
+
+  @Test
+  public void testWrapsAround() {
+    TailAppendable tail = new TailAppendable(4);
+    tail.append("abc").append("def").append('g');
+
+    assertEquals("defg", tail.toString());
+    assertEquals(7, tail.getLength());
+    assertTrue(tail.isTruncated());
+  }
+
+  @Test
+  public void testAppendLongerThanCapacity() {
+    TailAppendable tail = new TailAppendable(3);
+    tail.append("0123456789", 2, 9);
+
+    assertEquals("678", tail.toString());
+    assertEquals(7, tail.getLength());
+  }
+}
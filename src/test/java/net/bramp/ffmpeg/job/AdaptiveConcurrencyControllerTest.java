@@ -0,0 +1,183 @@
+package net.bramp.ffmpeg.job;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import net.bramp.ffmpeg.job.AdaptiveConcurrencyController.Action;
+import net.bramp.ffmpeg.progress.Progress;
+import net.bramp.ffmpeg.progress.ProgressListener;
+import org.junit.Test;
+
+public class AdaptiveConcurrencyControllerTest {
+
+  static final long INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+  final AtomicLong clock = new AtomicLong();
+  double load = 0;
+
+  AdaptiveConcurrencyController newController(int min, int initial, int max) {
+    return new AdaptiveConcurrencyController(
+        min, initial, max, INTERVAL, TimeUnit.NANOSECONDS, () -> load, clock::get, 2);
+  }
+
+  static Progress progress(float fps, float speed) {
+    return new Progress(100, fps, 1000, 1000, 0, 0, 0, speed, Progress.Status.CONTINUE);
+  }
+
+  @Test
+  public void testIncreasesWhileSaturatedAndImproving() {
+    AdaptiveConcurrencyController controller = newController(1, 1, 4);
+
+    controller.track("a").progress(progress(30, 1.0f));
+    assertEquals(Action.INCREASE, controller.adjust());
+    assertEquals(2, controller.getLimit());
+
+    controller.track("b").progress(progress(30, 1.0f));
+    assertEquals(Action.INCREASE, controller.adjust());
+    assertEquals(3, controller.getLimit());
+  }
+
+  @Test
+  public void testDecreasesWhenIncreaseDoesNotHelp() {
+    AdaptiveConcurrencyController controller = newController(1, 4, 8);
+
+    ProgressListener a = controller.track("a");
+    ProgressListener b = controller.track("b");
+    ProgressListener c = controller.track("c");
+    ProgressListener d = controller.track("d");
+    for (ProgressListener listener : new ProgressListener[] {a, b, c, d}) {
+      listener.progress(progress(30, 1.0f));
+    }
+    assertEquals(Action.INCREASE, controller.adjust());
+    assertEquals(5, controller.getLimit());
+
+    // A fifth job just slows the others down
+    controller.track("e").progress(progress(24, 0.8f));
+    for (ProgressListener listener : new ProgressListener[] {a, b, c, d}) {
+      listener.progress(progress(24, 0.8f));
+    }
+    assertEquals(Action.DECREASE, controller.adjust());
+    assertEquals(3, controller.getLimit());
+  }
+
+  @Test
+  public void testJobFinishingIsNotADecrease() {
+    AdaptiveConcurrencyController controller = newController(1, 2, 8);
+
+    controller.track("a").progress(progress(30, 1.0f));
+    controller.track("b").progress(progress(30, 1.0f));
+    assertEquals(Action.INCREASE, controller.adjust());
+    assertEquals(3, controller.getLimit());
+
+    // The third job helps, but the first finishes, so the total drops
+    controller.track("c").progress(progress(30, 1.0f));
+    controller.untrack("a");
+    assertEquals(1.0 + 1.0, controller.getThroughput(), 0.001);
+    assertEquals(Action.HOLD, controller.adjust());
+    assertEquals(3, controller.getLimit());
+  }
+
+  @Test
+  public void testSpeedAndFpsAreNotCompared() {
+    AdaptiveConcurrencyController controller = newController(1, 2, 8);
+
+    controller.track("a").progress(progress(30, 1.0f));
+    controller.track("b").progress(progress(30, 1.0f));
+    assertEquals(Action.INCREASE, controller.adjust());
+
+    // The new job reports no speed, so throughput is now in fps, which can't be compared to 2x
+    controller.track("c").progress(progress(30, -1));
+    assertEquals(Action.HOLD, controller.adjust());
+    assertEquals(3, controller.getLimit());
+  }
+
+  @Test
+  public void testDecreasesWhenOverloaded() {
+    AdaptiveConcurrencyController controller = newController(2, 4, 8);
+    controller.track("a").progress(progress(30, 1.0f));
+
+    load = 4.0; // Two per CPU
+    assertEquals(Action.DECREASE, controller.adjust());
+    assertEquals(3, controller.getLimit());
+    assertEquals(Action.DECREASE, controller.adjust());
+    assertEquals(2, controller.getLimit());
+
+    // Never below the minimum
+    assertEquals(Action.HOLD, controller.adjust());
+    assertEquals(2, controller.getLimit());
+
+    // Unless the load is ignored
+    controller.setLoadThreshold(0);
+    controller.track("b").progress(progress(30, 1.0f));
+    assertEquals(Action.INCREASE, controller.adjust());
+  }
+
+  @Test
+  public void testHoldsWhenNotSaturated() {
+    AdaptiveConcurrencyController controller = newController(1, 2, 8);
+    controller.track("a").progress(progress(30, 1.0f));
+
+    assertEquals(Action.HOLD, controller.adjust());
+    assertEquals(2, controller.getLimit());
+  }
+
+  @Test
+  public void testNeverAboveMax() {
+    AdaptiveConcurrencyController controller = newController(1, 2, 2);
+    controller.track("a").progress(progress(30, 1.0f));
+    controller.track("b").progress(progress(30, 1.0f));
+
+    assertEquals(Action.HOLD, controller.adjust());
+    assertEquals(2, controller.getLimit());
+  }
+
+  @Test
+  public void testAdjustsOncePerInterval() {
+    AdaptiveConcurrencyController controller = newController(1, 1, 8);
+    AtomicInteger increases = new AtomicInteger();
+    controller.setOnIncrease(increases::incrementAndGet);
+
+    ProgressListener a = controller.track("a");
+    a.progress(progress(30, 1.0f));
+    assertEquals(1, controller.getLimit());
+
+    clock.addAndGet(INTERVAL);
+    a.progress(progress(30, 1.0f));
+    assertEquals(2, controller.getLimit());
+    assertEquals(1, increases.get());
+
+    a.progress(progress(30, 1.0f));
+    assertEquals(2, controller.getLimit());
+    assertEquals(1, increases.get());
+  }
+
+  @Test
+  public void testThroughput() {
+    AdaptiveConcurrencyController controller = newController(1, 1, 8);
+    controller.track("a").progress(progress(30, 1.5f));
+    controller.track("b").progress(progress(25, 0.5f));
+    assertEquals(2.0, controller.getThroughput(), 0.001);
+
+    controller.untrack("b");
+    assertEquals(1.5, controller.getThroughput(), 0.001);
+
+    // Falls back to fps when the speed isn't known
+    controller.track("a").progress(progress(30, -1));
+    assertEquals(30.0, controller.getThroughput(), 0.001);
+
+    // For every job, so the units aren't mixed
+    controller.track("b").progress(progress(25, 0.5f));
+    assertEquals(30.0 + 25.0, controller.getThroughput(), 0.001);
+
+    // Jobs yet to report are left out
+    controller.track("c");
+    assertEquals(30.0 + 25.0, controller.getThroughput(), 0.001);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInitialOutsideLimits() {
+    newController(2, 1, 4);
+  }
+}
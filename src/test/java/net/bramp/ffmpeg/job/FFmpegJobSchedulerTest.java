@@ -0,0 +1,219 @@
+package net.bramp.ffmpeg.job;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import net.bramp.ffmpeg.FFmpeg;
+import net.bramp.ffmpeg.progress.Progress;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+public class FFmpegJobSchedulerTest {
+
+  @Rule public Timeout timeout = new Timeout(10, TimeUnit.SECONDS);
+
+  final FFmpeg mockFFmpeg = mock(FFmpeg.class);
+  final List<String> started = new CopyOnWriteArrayList<>();
+
+  FFmpegJobScheduler scheduler;
+
+  /** Job which records when it starts, and then blocks until released. */
+  class BlockingJob extends FFmpegJob {
+    final String name;
+    final int threads;
+    final CountDownLatch running = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    BlockingJob(String name, int threads) {
+      super(mockFFmpeg);
+      this.name = name;
+      this.threads = threads;
+    }
+
+    @Override
+    protected int getThreads() {
+      return threads;
+    }
+
+    @Override
+    public void run() {
+      state = State.RUNNING;
+      started.add(name);
+      running.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      state = State.FINISHED;
+    }
+  }
+
+  @After
+  public void closeScheduler() {
+    if (scheduler != null) {
+      scheduler.close();
+    }
+  }
+
+  @Test
+  public void testLimitsConcurrentJobs() throws Exception {
+    scheduler = new FFmpegJobScheduler(2);
+
+    BlockingJob a = new BlockingJob("a", 0);
+    BlockingJob b = new BlockingJob("b", 0);
+    BlockingJob c = new BlockingJob("c", 0);
+
+    CompletableFuture<FFmpegJob> fa = scheduler.submit(a);
+    CompletableFuture<FFmpegJob> fb = scheduler.submit(b);
+    CompletableFuture<FFmpegJob> fc = scheduler.submit(c);
+
+    a.running.await();
+    b.running.await();
+    assertEquals(2, scheduler.getRunningJobs());
+    assertEquals(1, scheduler.getQueuedJobs());
+
+    a.release.countDown();
+    c.running.await();
+    b.release.countDown();
+    c.release.countDown();
+
+    assertSame(a, fa.get());
+    assertSame(b, fb.get());
+    assertSame(c, fc.get());
+    assertEquals(FFmpegJob.State.FINISHED, c.getState());
+  }
+
+  @Test
+  public void testPriorityOrder() throws Exception {
+    scheduler = new FFmpegJobScheduler(1);
+
+    BlockingJob first = new BlockingJob("first", 0);
+    BlockingJob low = new BlockingJob("low", 0);
+    BlockingJob high = new BlockingJob("high", 0);
+
+    CompletableFuture<FFmpegJob> ff = scheduler.submit(first);
+    first.running.await();
+
+    CompletableFuture<FFmpegJob> fl = scheduler.submit(low, -1);
+    CompletableFuture<FFmpegJob> fh = scheduler.submit(high, 10);
+
+    first.release.countDown();
+    high.release.countDown();
+    low.release.countDown();
+    ff.get();
+    fh.get();
+    fl.get();
+
+    assertThat(started, contains("first", "high", "low"));
+  }
+
+  @Test
+  public void testCpuBudget() throws Exception {
+    scheduler = new FFmpegJobScheduler(4, 8, 1);
+
+    BlockingJob a = new BlockingJob("a", 6);
+    BlockingJob b = new BlockingJob("b", 4);
+    BlockingJob c = new BlockingJob("c", 16); // Bigger than the whole budget
+
+    CompletableFuture<FFmpegJob> fa = scheduler.submit(a);
+    CompletableFuture<FFmpegJob> fb = scheduler.submit(b);
+    CompletableFuture<FFmpegJob> fc = scheduler.submit(c);
+
+    a.running.await();
+    assertEquals(1, scheduler.getRunningJobs());
+
+    a.release.countDown();
+    fa.get();
+    b.running.await();
+    b.release.countDown();
+    fb.get();
+
+    c.running.await();
+    c.release.countDown();
+    fc.get();
+
+    assertThat(started, contains("a", "b", "c"));
+  }
+
+  @Test
+  public void testCancelQueuedJob() throws Exception {
+    scheduler = new FFmpegJobScheduler(1);
+
+    BlockingJob a = new BlockingJob("a", 0);
+    BlockingJob b = new BlockingJob("b", 0);
+
+    CompletableFuture<FFmpegJob> fa = scheduler.submit(a);
+    CompletableFuture<FFmpegJob> fb = scheduler.submit(b);
+    a.running.await();
+
+    assertTrue(fb.cancel(false));
+    assertEquals(0, scheduler.getQueuedJobs());
+
+    a.release.countDown();
+    fa.get();
+
+    assertThat(started, contains("a"));
+  }
+
+  @Test(expected = ExecutionException.class)
+  public void testFailedJob() throws Exception {
+    scheduler = new FFmpegJobScheduler(1);
+
+    FFmpegJob job =
+        new FFmpegJob(mockFFmpeg) {
+          @Override
+          public void run() {
+            state = State.FAILED;
+            throw new IllegalStateException("boom");
+          }
+        };
+
+    scheduler.submit(job).get();
+  }
+
+  @Test
+  public void testAdaptiveConcurrency() throws Exception {
+    AtomicLong clock = new AtomicLong();
+    AdaptiveConcurrencyController controller =
+        new AdaptiveConcurrencyController(1, 1, 2, 1, TimeUnit.SECONDS, () -> 0, clock::get, 1);
+    scheduler = new FFmpegJobScheduler(controller);
+
+    BlockingJob a = new BlockingJob("a", 0);
+    BlockingJob b = new BlockingJob("b", 0);
+
+    CompletableFuture<FFmpegJob> fa = scheduler.submit(a);
+    CompletableFuture<FFmpegJob> fb = scheduler.submit(b);
+    a.running.await();
+    assertEquals(1, scheduler.getRunningJobs());
+
+    // Once an interval has passed, the running job's progress allows another to start
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    a.progressListener()
+        .progress(new Progress(1, 30, 1000, 1000, 0, 0, 0, 1.0f, Progress.Status.CONTINUE));
+    b.running.await();
+    assertEquals(2, scheduler.getConcurrencyLimit());
+
+    a.release.countDown();
+    b.release.countDown();
+    fa.get();
+    fb.get();
+
+    assertNull(a.observer);
+    assertEquals(0.0, controller.getThroughput(), 0.0);
+  }
+}
@@ -0,0 +1,345 @@
+package net.bramp.ffmpeg.job;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import net.bramp.ffmpeg.FFmpeg;
+import net.bramp.ffmpeg.FFprobe;
+import net.bramp.ffmpeg.builder.FFmpegBuilder;
+import net.bramp.ffmpeg.builder.FFmpegCommandTemplate;
+import net.bramp.ffmpeg.builder.FFprobeBuilder;
+import net.bramp.ffmpeg.probe.FFmpegFormat;
+import net.bramp.ffmpeg.probe.FFmpegPacket;
+import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import net.bramp.ffmpeg.probe.FFmpegStream;
+import net.bramp.ffmpeg.probe.ProbeListener;
+import net.bramp.ffmpeg.progress.Progress;
+import net.bramp.ffmpeg.shared.CodecType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+public class SegmentedFFmpegJobTest {
+
+  final FFmpeg ffmpeg = mock(FFmpeg.class);
+  final FFprobe ffprobe = mock(FFprobe.class);
+
+  static FFmpegPacket packet(double time, String flags) {
+    FFmpegPacket packet = new FFmpegPacket();
+    packet.pts_time = time;
+    packet.flags = flags;
+    return packet;
+  }
+
+  static FFmpegStream stream(int index, CodecType type) {
+    FFmpegStream stream = new FFmpegStream();
+    stream.index = index;
+    stream.codec_type = type;
+    return stream;
+  }
+
+  static void assertContainsSequence(List<String> args, String... sequence) {
+    assertTrue(
+        args + " does not contain " + Arrays.toString(sequence),
+        Collections.indexOfSubList(args, Arrays.asList(sequence)) >= 0);
+  }
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testKeyframeTimes() {
+    SegmentedFFmpegJob.KeyframeCollector keyframes = new SegmentedFFmpegJob.KeyframeCollector(1.0);
+    keyframes.packet(packet(1.0, "K_"));
+    keyframes.packet(packet(1.5, "__"));
+    keyframes.packet(packet(3.0, "K__"));
+    keyframes.packet(packet(2.0, "K_"));
+    keyframes.packet(packet(2.5, null));
+
+    assertThat(keyframes.getTimes(), contains(0.0, 1.0, 2.0));
+  }
+
+  @Test
+  public void testStreams() {
+    List<FFmpegStream> streams =
+        ImmutableList.of(
+            stream(0, CodecType.AUDIO), stream(1, CodecType.VIDEO), stream(2, CodecType.VIDEO));
+
+    assertTrue(SegmentedFFmpegJob.hasAudio(streams));
+    assertFalse(SegmentedFFmpegJob.hasAudio(streams.subList(1, streams.size())));
+    assertEquals(1, SegmentedFFmpegJob.firstVideoStream(streams).index);
+    assertNull(SegmentedFFmpegJob.firstVideoStream(streams.subList(0, 1)));
+  }
+
+  /** Has ffprobe find an audio and video stream, with keyframes at 0, 2 and 4 seconds. */
+  void probeKeyframes() throws IOException {
+    FFmpegProbeResult probe = new FFmpegProbeResult();
+    probe.streams = ImmutableList.of(stream(0, CodecType.AUDIO), stream(1, CodecType.VIDEO));
+    probe.format = new FFmpegFormat();
+    probe.format.start_time = 1.0;
+
+    when(ffprobe.builder()).thenAnswer(invocation -> new FFprobeBuilder());
+    when(ffprobe.probe(any(FFprobeBuilder.class))).thenReturn(probe);
+    when(ffprobe.probe(any(FFprobeBuilder.class), any(ProbeListener.class)))
+        .thenAnswer(
+            invocation -> {
+              ProbeListener listener = invocation.getArgument(1);
+              listener.packet(packet(1.0, "K_"));
+              listener.packet(packet(2.0, "__"));
+              listener.packet(packet(3.0, "K_"));
+              listener.packet(packet(5.0, "K_"));
+              return new FFmpegProbeResult();
+            });
+  }
+
+  FFmpegBuilder builder(String output) {
+    return new FFmpegBuilder()
+        .addInput("input.mp4")
+        .done()
+        .addOutput(output)
+        .setVideoCodec("libx264")
+        .done();
+  }
+
+  @Test
+  public void testRun() throws IOException {
+    String output = folder.getRoot().toPath().resolve("output.mp4").toString();
+
+    probeKeyframes();
+    when(ffmpeg.runAsync(any(FFmpegCommandTemplate.class), any(), any()))
+        .thenAnswer(invocation -> CompletableFuture.completedFuture(null));
+
+    // One part at a time, so they're run in order
+    SegmentedFFmpegJob job =
+        new SegmentedFFmpegJob(ffmpeg, ffprobe, builder(output), 1, 2, TimeUnit.SECONDS, null);
+    job.run();
+
+    // Only the first video stream's packet times and flags are probed
+    ArgumentCaptor<FFprobeBuilder> packets = ArgumentCaptor.forClass(FFprobeBuilder.class);
+    verify(ffprobe).probe(packets.capture(), any(ProbeListener.class));
+    List<String> probeArgs = packets.getValue().build();
+    assertContainsSequence(probeArgs, "-select_streams", "1");
+    assertContainsSequence(probeArgs, "-show_entries", "packet=pts_time,flags");
+    assertThat(probeArgs, not(hasItem("-show_packets")));
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<String>> parts = ArgumentCaptor.forClass(List.class);
+    verify(ffmpeg, times(4))
+        .runAsync(any(FFmpegCommandTemplate.class), parts.capture(), isNull());
+
+    // The audio, as a whole
+    List<String> audio = parts.getAllValues().get(0);
+    assertThat(audio, hasItem("-vn"));
+    assertThat(audio, not(hasItem("-an")));
+    assertThat(audio, not(hasItem("-ss")));
+    assertThat(audio, not(hasItem("-t")));
+    assertThat(audio.get(audio.size() - 1), endsWith("audio.mp4"));
+
+    // The video, split at the keyframes at least two seconds apart
+    List<String> segment0 = parts.getAllValues().get(1);
+    assertThat(segment0, not(hasItem("-ss")));
+    assertContainsSequence(segment0, "-t", "00:00:02");
+    assertThat(segment0, hasItems("-an", "-vcodec", "libx264"));
+    assertThat(segment0.get(segment0.size() - 1), endsWith("segment-00000.mp4"));
+
+    List<String> segment1 = parts.getAllValues().get(2);
+    assertContainsSequence(segment1, "-ss", "00:00:02", "-i", "input.mp4");
+    assertContainsSequence(segment1, "-t", "00:00:02");
+    assertThat(segment1.get(segment1.size() - 1), endsWith("segment-00001.mp4"));
+
+    List<String> segment2 = parts.getAllValues().get(3);
+    assertContainsSequence(segment2, "-ss", "00:00:04", "-i", "input.mp4");
+    assertThat(segment2, not(hasItem("-t")));
+    assertThat(segment2.get(segment2.size() - 1), endsWith("segment-00002.mp4"));
+
+    // Then joined, copying the video and audio
+    ArgumentCaptor<FFmpegBuilder> concat = ArgumentCaptor.forClass(FFmpegBuilder.class);
+    verify(ffmpeg).run(concat.capture());
+    List<String> concatArgs = concat.getValue().build();
+    assertContainsSequence(concatArgs, "-f", "concat", "-i");
+    assertThat(concatArgs, hasItems("-vcodec", "copy", "-acodec", "copy", "-map", "0:v", "1:a"));
+    assertThat(concatArgs.get(concatArgs.size() - 1), is(output));
+
+    assertEquals(FFmpegJob.State.FINISHED, job.getState());
+  }
+
+  @Test
+  public void testRunStopsOtherPartsWhenOneFails() throws IOException {
+    String output = folder.getRoot().toPath().resolve("output.mp4").toString();
+    IOException failure = new IOException("segment failed");
+    List<CompletableFuture<Void>> others = new ArrayList<>();
+
+    probeKeyframes();
+    when(ffmpeg.runAsync(any(FFmpegCommandTemplate.class), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              List<String> args = invocation.getArgument(1);
+              if (args.get(args.size() - 1).endsWith("segment-00001.mp4")) {
+                CompletableFuture<Void> failed = new CompletableFuture<>();
+                failed.completeExceptionally(failure);
+                return failed;
+              }
+              CompletableFuture<Void> running = new CompletableFuture<>();
+              others.add(running);
+              return running;
+            });
+
+    // Enough parallelism to start every part at once
+    SegmentedFFmpegJob job =
+        new SegmentedFFmpegJob(ffmpeg, ffprobe, builder(output), 4, 2, TimeUnit.SECONDS, null);
+
+    try {
+      job.run();
+      fail("expected the job to fail");
+    } catch (RuntimeException e) {
+      assertSame(failure, e.getCause());
+    }
+
+    // The audio and the other two segments are cancelled, and so destroyed, and never joined
+    assertEquals(3, others.size());
+    for (CompletableFuture<Void> other : others) {
+      assertTrue(other.isCancelled());
+    }
+    verify(ffmpeg, never()).run(any(FFmpegBuilder.class));
+
+    assertEquals(FFmpegJob.State.FAILED, job.getState());
+    assertThat(folder.getRoot().list(), emptyArray());
+  }
+
+  @Test
+  public void testDeletePartsFailureIsSuppressed() throws IOException {
+    String output = folder.getRoot().toPath().resolve("output.mp4").toString();
+    IOException failure = new IOException("part failed");
+    IOException deleteFailure = new IOException("delete failed");
+
+    probeKeyframes();
+    CompletableFuture<Void> failed = new CompletableFuture<>();
+    failed.completeExceptionally(failure);
+    when(ffmpeg.runAsync(any(FFmpegCommandTemplate.class), any(), any())).thenReturn(failed);
+
+    SegmentedFFmpegJob job =
+        new SegmentedFFmpegJob(ffmpeg, ffprobe, builder(output), 1, 2, TimeUnit.SECONDS, null) {
+          @Override
+          protected void deleteParts(Path dir) throws IOException {
+            super.deleteParts(dir);
+            throw deleteFailure;
+          }
+        };
+
+    try {
+      job.run();
+      fail("expected the job to fail");
+    } catch (RuntimeException e) {
+      assertSame(failure, e.getCause());
+      assertThat(failure.getSuppressed(), arrayContaining(deleteFailure));
+    }
+  }
+
+  @Test
+  public void testSegmentStarts() {
+    List<Double> keyframes = ImmutableList.of(0.0, 2.0, 4.0, 6.0, 8.0, 10.0);
+
+    assertArrayEquals(
+        new long[] {0, 4000, 8000}, SegmentedFFmpegJob.segmentStarts(keyframes, 3000));
+    assertArrayEquals(
+        new long[] {0, 2000, 4000, 6000, 8000, 10000},
+        SegmentedFFmpegJob.segmentStarts(keyframes, 1000));
+    assertArrayEquals(new long[] {0}, SegmentedFFmpegJob.segmentStarts(keyframes, 60000));
+    assertArrayEquals(new long[] {0}, SegmentedFFmpegJob.segmentStarts(ImmutableList.of(), 1000));
+  }
+
+  @Test
+  public void testExtension() {
+    assertEquals(".mp4", SegmentedFFmpegJob.extension("out.mp4"));
+    assertEquals(".mkv", SegmentedFFmpegJob.extension("out.final.mkv"));
+    assertEquals("", SegmentedFFmpegJob.extension("out"));
+    assertEquals("", SegmentedFFmpegJob.extension(".hidden"));
+  }
+
+  @Test
+  public void testCombinedProgress() {
+    List<Progress> received = new ArrayList<>();
+    SegmentedFFmpegJob.CombinedProgress progress =
+        new SegmentedFFmpegJob.CombinedProgress(2, received::add);
+
+    progress.part(0).progress(new Progress(100, 25, 0, 1000, 4_000_000_000L, 1, 0, 2.0f,
+        Progress.Status.CONTINUE));
+    progress.part(1).progress(new Progress(50, 25, 0, 500, 2_000_000_000L, 0, 1, 1.0f,
+        Progress.Status.CONTINUE));
+
+    Progress total = received.get(1);
+    assertEquals(150, total.getFrame());
+    assertEquals(1500, total.getTotalSize());
+    assertEquals(6_000_000_000L, total.getOutTimeNs());
+    assertEquals(1, total.getDupFrames());
+    assertEquals(1, total.getDropFrames());
+    assertEquals(3.0f, total.getSpeed(), 0.001);
+    assertEquals(2000, total.getBitrate()); // 1500 bytes over 6 seconds
+    assertEquals(Progress.Status.CONTINUE, total.getStatus());
+
+    // A finished segment no longer adds to the speed
+    progress.part(0).progress(new Progress(100, 25, 0, 1000, 4_000_000_000L, 1, 0, 2.0f,
+        Progress.Status.END));
+    assertEquals(1.0f, received.get(2).getSpeed(), 0.001);
+
+    progress.end();
+    assertEquals(Progress.Status.END, received.get(3).getStatus());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsMultipleOutputs() {
+    FFmpegBuilder builder =
+        new FFmpegBuilder()
+            .addInput("input.mp4")
+            .done()
+            .addOutput("output1.mp4")
+            .done()
+            .addOutput("output2.mp4")
+            .done();
+
+    new SegmentedFFmpegJob(ffmpeg, ffprobe, builder);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsTrimmedInput() {
+    FFmpegBuilder builder =
+        new FFmpegBuilder()
+            .addInput("input.mp4")
+            .setStartOffset(10, TimeUnit.SECONDS)
+            .done()
+            .addOutput("output.mp4")
+            .done();
+
+    new SegmentedFFmpegJob(ffmpeg, ffprobe, builder);
+  }
+}
@@ -0,0 +1,57 @@
+package net.bramp.ffmpeg.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import net.bramp.ffmpeg.metrics.InMemoryMetricsRegistry.HistogramSnapshot;
+import org.junit.Test;
+
+public class InMemoryMetricsRegistryTest {
+
+  final InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+
+  @Test
+  public void testCounter() {
+    assertEquals(0, registry.getCount("counter"));
+
+    Counter counter = registry.counter("counter");
+    counter.increment();
+    counter.increment(10);
+
+    assertEquals(11, registry.getCount("counter"));
+    assertEquals(counter, registry.counter("counter"));
+  }
+
+  @Test
+  public void testHistogram() {
+    assertNull(registry.getHistogram("histogram"));
+
+    Histogram histogram = registry.histogram("histogram");
+    for (long value : new long[] {1, 2, 3, 100, 1000}) {
+      histogram.record(value);
+    }
+
+    HistogramSnapshot snapshot = registry.getHistogram("histogram");
+    assertEquals(5, snapshot.getCount());
+    assertEquals(1106, snapshot.getSum());
+    assertEquals(1, snapshot.getMin());
+    assertEquals(1000, snapshot.getMax());
+    assertEquals(221.2, snapshot.getMean(), 0.001);
+
+    // Percentiles are the upper bound of a power of two bucket, clamped to the min and max
+    assertEquals(1, snapshot.getPercentile(0));
+    assertEquals(3, snapshot.getPercentile(50));
+    assertEquals(1000, snapshot.getPercentile(100));
+  }
+
+  @Test
+  public void testGauge() {
+    AtomicLong value = new AtomicLong(1);
+    registry.gauge("gauge", value::get);
+    value.set(2);
+
+    assertEquals(Long.valueOf(2), registry.getGauge("gauge"));
+    assertNull(registry.getGauge("unknown"));
+  }
+}
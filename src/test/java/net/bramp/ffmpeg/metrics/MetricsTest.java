@@ -0,0 +1,63 @@
+package net.bramp.ffmpeg.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import net.bramp.ffmpeg.progress.StreamProgressParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsTest {
+
+  InMemoryMetricsRegistry registry;
+
+  @Before
+  public void installRegistry() {
+    registry = new InMemoryMetricsRegistry();
+    Metrics.setRegistry(registry);
+  }
+
+  @After
+  public void disable() {
+    Metrics.disable();
+  }
+
+  @Test
+  public void testRebind() {
+    Counter counter = Metrics.counter("metrics.test");
+    counter.increment();
+
+    InMemoryMetricsRegistry other = new InMemoryMetricsRegistry();
+    Metrics.setRegistry(other);
+    counter.increment();
+
+    assertEquals(1, registry.getCount("metrics.test"));
+    assertEquals(1, other.getCount("metrics.test"));
+  }
+
+  @Test
+  public void testGaugeMovesToNewRegistry() {
+    Metrics.gauge("metrics.test.gauge", () -> 42);
+
+    InMemoryMetricsRegistry other = new InMemoryMetricsRegistry();
+    Metrics.setRegistry(other);
+
+    assertEquals(Long.valueOf(42), other.getGauge("metrics.test.gauge"));
+  }
+
+  @Test
+  public void testProgressParsing() throws IOException {
+    byte[] progress =
+        "frame=5\nfps=0.0\nprogress=continue\nframe=10\nprogress=end\n"
+            .getBytes(StandardCharsets.UTF_8);
+
+    new StreamProgressParser(p -> {}).processStream(new ByteArrayInputStream(progress));
+
+    assertEquals(progress.length, registry.getCount("ffmpeg.progress.bytes"));
+    assertEquals(5, registry.getCount("ffmpeg.progress.lines"));
+    assertEquals(2, registry.getCount("ffmpeg.progress.records"));
+  }
+}
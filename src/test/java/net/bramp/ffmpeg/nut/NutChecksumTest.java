@@ -0,0 +1,39 @@
+package net.bramp.ffmpeg.nut;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class NutChecksumTest {
+
+  @Test
+  public void testChecksum() {
+    byte[] data = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+    // CRC-32/POSIX's check value 0x765E7680, without its final xor
+    NutChecksum crc = new NutChecksum();
+    crc.update(data, 0, data.length);
+    assertEquals(0x89A1897FL, crc.getValue());
+
+    crc.reset();
+    for (byte b : data) {
+      crc.update(b);
+    }
+    assertEquals(0x89A1897FL, crc.getValue());
+
+    crc.reset();
+    assertEquals(0, crc.getValue());
+  }
+
+  @Test
+  public void testUpdateLong() {
+    NutChecksum a = new NutChecksum();
+    a.updateLong(0x0102030405060708L);
+
+    NutChecksum b = new NutChecksum();
+    b.update(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}, 0, 8);
+
+    assertEquals(b.getValue(), a.getValue());
+  }
+}
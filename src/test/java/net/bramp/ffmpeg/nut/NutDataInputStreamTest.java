@@ -0,0 +1,142 @@
+package net.bramp.ffmpeg.nut;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class NutDataInputStreamTest {
+
+  // A varint (300), a signed varint (-3), a frame code, a startcode, then a int
+  static final byte[] DATA = {
+    (byte) 0x82, 0x2C,
+    0x06,
+    0x00,
+    0x4E, 0x4D, 0x7A, 0x56, 0x1F, 0x5F, 0x04, (byte) 0xAD,
+    0x12, 0x34, 0x56, 0x78,
+  };
+
+  static NutDataInputStream stream(byte[] data, ByteBuffer buffer) {
+    return new NutDataInputStream(Channels.newChannel(new ByteArrayInputStream(data)), buffer);
+  }
+
+  static long crc(byte[] data, int off, int len) {
+    NutChecksum crc = new NutChecksum();
+    crc.update(data, off, len);
+    return crc.getValue();
+  }
+
+  private static void assertReads(NutDataInputStream in) throws IOException {
+    assertEquals(300, in.readVarInt());
+    assertEquals(-3, in.readSignedVarInt());
+    assertEquals(0x00, in.readStartCode());
+    assertEquals(Packet.Startcode.MAIN.value(), in.readStartCode());
+    assertEquals(12, in.offset());
+    assertEquals(0x12345678, in.readInt());
+    assertEquals(DATA.length, in.offset());
+  }
+
+  @Test
+  public void testRead() throws IOException {
+    assertReads(new NutDataInputStream(new ByteArrayInputStream(DATA)));
+  }
+
+  @Test
+  public void testSmallBuffer() throws IOException {
+    // Refills on almost every read, and the startcode straddles a refill
+    assertReads(stream(DATA, ByteBuffer.allocate(8)));
+    assertReads(stream(DATA, ByteBuffer.allocateDirect(8)));
+  }
+
+  @Test(expected = EOFException.class)
+  public void testEOF() throws IOException {
+    NutDataInputStream in = stream(DATA, ByteBuffer.allocate(8));
+    in.skipBytes(DATA.length - 2);
+    in.readInt();
+  }
+
+  @Test
+  public void testCRC() throws IOException {
+    byte[] data = new byte[100_000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i * 31);
+    }
+
+    for (ByteBuffer buffer :
+        Arrays.asList(ByteBuffer.allocate(16), ByteBuffer.allocateDirect(16))) {
+      NutDataInputStream in = stream(data, buffer);
+
+      in.skipBytes(5);
+      in.resetCRC();
+      in.skipBytes(50);
+      assertEquals(crc(data, 5, 50), in.getCRC());
+
+      // Crosses many refills, then reads directly into the array
+      byte[] b = new byte[50_000];
+      in.readFully(b);
+      assertArrayEquals(Arrays.copyOfRange(data, 55, 50_055), b);
+      assertEquals(crc(data, 5, 50_050), in.getCRC());
+
+      in.resetCRC();
+      in.readFully(b, 0, 10);
+      in.readLong();
+      assertEquals(crc(data, 50_055, 18), in.getCRC());
+      assertEquals(50_073, in.offset());
+
+      assertEquals(data.length - 50_073, in.skipBytes(Integer.MAX_VALUE));
+      assertEquals(data.length, in.offset());
+    }
+  }
+
+  @Test
+  public void testReadSlice() throws IOException {
+    NutDataInputStream in = stream(DATA, ByteBuffer.allocate(8));
+    in.skipBytes(4);
+
+    ByteBuffer slice = in.readSlice(8);
+    assertTrue(slice.isReadOnly());
+    assertEquals(Packet.Startcode.MAIN.value(), slice.getLong(0));
+    assertEquals(12, in.offset());
+    assertEquals(0x12345678, in.readInt());
+  }
+
+  @Test
+  public void testReadFullyByteBuffer() throws IOException {
+    byte[] data = new byte[20_000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+
+    NutDataInputStream in = stream(data, ByteBuffer.allocate(16));
+    in.resetCRC();
+
+    ByteBuffer dst = ByteBuffer.allocateDirect(data.length);
+    dst.put((byte) 42);
+    in.readFully(dst);
+    assertEquals(data.length - 1, in.offset());
+    assertEquals(crc(data, 0, data.length - 1), in.getCRC());
+
+    dst.flip();
+    assertEquals(42, dst.get());
+    for (int i = 0; i < data.length - 1; i++) {
+      assertEquals(data[i], dst.get());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testReadSliceTooLarge() throws IOException {
+    stream(DATA, ByteBuffer.allocate(8)).readSlice(9);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBufferTooSmall() {
+    stream(DATA, ByteBuffer.allocate(4));
+  }
+}
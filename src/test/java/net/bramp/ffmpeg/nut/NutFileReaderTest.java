@@ -0,0 +1,143 @@
+package net.bramp.ffmpeg.nut;
+
+import static net.bramp.ffmpeg.nut.NutTestFile.FIRST_PTS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NutFileReaderTest {
+
+  static final int FRAMES = 40;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path write(NutTestFile nut) throws IOException {
+    File file = folder.newFile();
+    Files.write(file.toPath(), nut.toByteArray());
+    return file.toPath();
+  }
+
+  private static void assertFrame(int expected, Frame frame) {
+    assertEquals(FIRST_PTS + expected, frame.pts);
+    assertEquals(NutTestFile.FRAME_SIZE, frame.getData().remaining());
+    assertEquals(expected, frame.getData().get(0));
+  }
+
+  private static void assertReadsFrom(int first, NutFileReader reader) throws IOException {
+    for (int i = first; i < FRAMES; i++) {
+      assertFrame(i, reader.readFrame());
+    }
+    assertNull(reader.readFrame());
+  }
+
+  private void testSeek(boolean index, int windowSize) throws IOException {
+    NutTestFile nut = new NutTestFile(FRAMES, 4, index);
+    Path path = write(nut);
+
+    try (NutFileReader reader =
+        new NutFileReader(FileChannel.open(path, StandardOpenOption.READ), windowSize)) {
+      List<SyncPointPacket> syncPoints = reader.getSyncPoints();
+      assertEquals(FRAMES / 4, syncPoints.size());
+      for (int i = 0; i < syncPoints.size(); i++) {
+        assertEquals((long) nut.syncPoints.get(i), syncPoints.get(i).position);
+      }
+
+      assertReadsFrom(0, reader);
+
+      // Between syncpoints, so starts from the one before
+      reader.seek(0, FIRST_PTS + 22);
+      assertReadsFrom(20, reader);
+
+      reader.seek(0, FIRST_PTS + 8);
+      assertReadsFrom(8, reader);
+
+      // 1/25 time base, so one second is frame 25, after the syncpoint at 24
+      reader.seek(FIRST_PTS / 25 + 1, TimeUnit.SECONDS);
+      assertReadsFrom(24, reader);
+
+      reader.seek(0, 0);
+      assertReadsFrom(0, reader);
+
+      reader.seek(0, Long.MAX_VALUE);
+      assertReadsFrom(36, reader);
+
+      reader.rewind();
+      assertReadsFrom(0, reader);
+    }
+  }
+
+  @Test
+  public void testSeekWithIndex() throws IOException {
+    testSeek(true, MappedNutDataInputStream.MAX_WINDOW_SIZE);
+  }
+
+  @Test
+  public void testSeekWithoutIndex() throws IOException {
+    testSeek(false, MappedNutDataInputStream.MAX_WINDOW_SIZE);
+  }
+
+  @Test
+  public void testSmallWindow() throws IOException {
+    // Remaps every few bytes, and frames and packets straddle the windows
+    testSeek(true, 16);
+  }
+
+  @Test
+  public void testRead() throws IOException {
+    List<Stream> streams = new ArrayList<>();
+    List<Frame> frames = new ArrayList<>();
+    NutReaderListener listener =
+        new NutReaderListener() {
+          @Override
+          public void stream(Stream stream) {
+            streams.add(stream);
+          }
+
+          @Override
+          public void frame(Frame frame) {
+            frames.add(frame);
+          }
+        };
+
+    try (NutFileReader reader =
+        new NutFileReader(write(new NutTestFile(FRAMES, 4, true)), listener)) {
+      assertEquals(1, streams.size());
+
+      reader.seek(0, FIRST_PTS + 36);
+      reader.read();
+    }
+
+    assertEquals(FRAMES - 36, frames.size());
+    for (int i = 0; i < frames.size(); i++) {
+      assertFrame(36 + i, frames.get(i));
+    }
+  }
+
+  @Test
+  public void testFrameViews() throws IOException {
+    try (NutFileReader reader = new NutFileReader(write(new NutTestFile(FRAMES, 4, true)))) {
+      reader.setFrameViews(true);
+
+      Frame first = reader.readFrame();
+      Frame second = reader.readFrame();
+      assertTrue(first.getData().isReadOnly());
+
+      // Views of the mapped file, so still valid after reading on
+      assertFrame(0, first);
+      assertFrame(1, second);
+    }
+  }
+}
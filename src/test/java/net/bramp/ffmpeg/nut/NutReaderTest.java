@@ -4,8 +4,10 @@ import static org.junit.Assert.assertEquals;
 
 import com.google.common.collect.ImmutableList;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -23,7 +25,6 @@ import org.junit.rules.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-// TODO fix "invalid packet checksum" when running test
 public class NutReaderTest {
 
   static final Logger LOG = LoggerFactory.getLogger(NutReaderTest.class);
@@ -33,6 +34,31 @@ public class NutReaderTest {
 
   @Rule public Timeout timeout = new Timeout(30, TimeUnit.SECONDS);
 
+  @Test
+  public void testSyncPoints() throws IOException {
+    // Frames only code the least significant bits of their pts, relative to each syncpoint
+    byte[] nut = new NutTestFile(20, 4, false).toByteArray();
+    List<Frame> frames = new ArrayList<>();
+
+    new NutReader(
+            new ByteArrayInputStream(nut),
+            new NutReaderListener() {
+              @Override
+              public void stream(Stream stream) {}
+
+              @Override
+              public void frame(Frame frame) {
+                frames.add(frame);
+              }
+            })
+        .read();
+
+    assertEquals(20, frames.size());
+    for (int i = 0; i < frames.size(); i++) {
+      assertEquals(NutTestFile.FIRST_PTS + i, frames.get(i).pts);
+    }
+  }
+
   @Test
   public void testNutReader()
       throws InterruptedException, ExecutionException, IOException, LineUnavailableException {
@@ -112,7 +138,9 @@ public class NutReaderTest {
 
                 } else if (header.type == StreamHeaderPacket.AUDIO) {
                   if (line != null) {
-                    line.write(frame.data, 0, frame.data.length);
+                    byte[] data = new byte[frame.data.remaining()];
+                    frame.data.duplicate().get(data);
+                    line.write(data, 0, data.length);
                   }
                 }
               }
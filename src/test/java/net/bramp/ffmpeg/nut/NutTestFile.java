@@ -0,0 +1,166 @@
+package net.bramp.ffmpeg.nut;
+
+import static net.bramp.ffmpeg.nut.Packet.Startcode;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes small Nut files for the tests: one 2x1 RGBA video stream in a 1/25 time base, with a
+ * syncpoint every few frames, and optionally an index. Each frame's pts is FIRST_PTS plus its
+ * number, and its data is 8 bytes of the frame number.
+ */
+public class NutTestFile {
+
+  public static final long FIRST_PTS = 1000;
+  public static final int FRAME_SIZE = 8;
+  static final int MSB_PTS_SHIFT = 7;
+
+  final List<Long> syncPoints = new ArrayList<>();
+  final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+  public NutTestFile(int frames, int framesPerSyncPoint, boolean index) {
+    out.write(NutReader.HEADER, 0, NutReader.HEADER.length);
+    packet(Startcode.MAIN.value(), mainHeader());
+    packet(Startcode.STREAM.value(), streamHeader());
+
+    for (int i = 0; i < frames; i++) {
+      long pts = FIRST_PTS + i;
+      if (i % framesPerSyncPoint == 0) {
+        syncPoints.add((long) out.size());
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        v(body, pts); // Global key pts, in the only time base
+        v(body, 0); // back_ptr_div16
+        packet(Startcode.SYNCPOINT.value(), body.toByteArray());
+      }
+
+      out.write(0x00); // Frame code 0, see mainHeader()
+      v(out, pts & ((1 << MSB_PTS_SHIFT) - 1)); // Only the lsb, so last_pts must be right
+      v(out, FRAME_SIZE);
+      byte[] data = new byte[FRAME_SIZE];
+      Arrays.fill(data, (byte) i);
+      out.write(data, 0, data.length);
+    }
+
+    if (index) {
+      writeIndex(FIRST_PTS + frames - 1);
+    }
+  }
+
+  public byte[] toByteArray() {
+    return out.toByteArray();
+  }
+
+  private void writeIndex(long maxPts) {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    v(body, maxPts);
+    v(body, syncPoints.size());
+    long last = 0;
+    for (long position : syncPoints) {
+      v(body, (position >> 4) - last);
+      last = position >> 4;
+    }
+    // The per stream keyframe tables would go here
+
+    // index_ptr, the distance from the index's startcode to the end of the file
+    int bodySize = body.size() + 8;
+    long indexPtr = 8L + varLength(bodySize + 4) + bodySize + 4;
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      body.write((int) (indexPtr >>> shift));
+    }
+
+    packet(Startcode.INDEX.value(), body.toByteArray());
+  }
+
+  private static byte[] mainHeader() {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    v(body, 3); // version
+    v(body, 1); // stream_count
+    v(body, 65536); // max_distance
+    v(body, 1); // time_base_count
+    v(body, 1); // time_base_num
+    v(body, 25); // time_base_denom
+
+    // One entry for every frame code: a key frame, with coded pts and size
+    v(body, Frame.FLAG_KEY | Frame.FLAG_CODED_PTS | Frame.FLAG_SIZE_MSB);
+    v(body, 6); // fields
+    v(body, 0); // pts delta (signed)
+    v(body, 1); // mul
+    v(body, 0); // stream_id
+    v(body, 0); // size
+    v(body, 0); // reserved
+    v(body, 255); // count, every frame code except 'N'
+
+    // As nutenc writes it, the count less one, so only the empty elision header
+    v(body, 0); // header_count_minus1
+    return body.toByteArray();
+  }
+
+  private static byte[] streamHeader() {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    v(body, 0); // id
+    v(body, StreamHeaderPacket.VIDEO);
+    v(body, 4);
+    body.write(new byte[] {'R', 'G', 'B', 'A'}, 0, 4);
+    v(body, 0); // time_base_id
+    v(body, MSB_PTS_SHIFT);
+    v(body, 0); // max_pts_distance
+    v(body, 0); // decode_delay
+    v(body, 0); // flags
+    v(body, 0); // codec_specific_data
+    v(body, 2); // width
+    v(body, 1); // height
+    v(body, 0); // sample_width
+    v(body, 0); // sample_height
+    v(body, 0); // colorspace_type
+    return body.toByteArray();
+  }
+
+  private void packet(long startcode, byte[] body) {
+    NutChecksum crc = new NutChecksum();
+    crc.updateLong(startcode);
+    writeLong(out, startcode);
+
+    ByteArrayOutputStream forwardPtr = new ByteArrayOutputStream();
+    v(forwardPtr, body.length + 4);
+    crc.update(forwardPtr.toByteArray(), 0, forwardPtr.size());
+    out.write(forwardPtr.toByteArray(), 0, forwardPtr.size());
+    if (body.length + 4 > 4096) {
+      writeInt(out, crc.getValue());
+    }
+
+    crc.reset();
+    crc.update(body, 0, body.length);
+    out.write(body, 0, body.length);
+    writeInt(out, crc.getValue());
+  }
+
+  static void v(ByteArrayOutputStream out, long value) {
+    for (int shift = (varLength(value) - 1) * 7; shift > 0; shift -= 7) {
+      out.write((int) (0x80 | ((value >>> shift) & 0x7F)));
+    }
+    out.write((int) (value & 0x7F));
+  }
+
+  static int varLength(long value) {
+    int length = 1;
+    while ((value >>>= 7) != 0) {
+      length++;
+    }
+    return length;
+  }
+
+  static void writeInt(ByteArrayOutputStream out, long value) {
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      out.write((int) (value >>> shift));
+    }
+  }
+
+  static void writeLong(ByteArrayOutputStream out, long value) {
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      out.write((int) (value >>> shift));
+    }
+  }
+}
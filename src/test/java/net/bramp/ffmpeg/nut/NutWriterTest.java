@@ -0,0 +1,173 @@
+package net.bramp.ffmpeg.nut;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.lang3.math.Fraction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NutWriterTest {
+
+  static final Fraction FPS_25 = Fraction.getFraction(1, 25);
+  static final Fraction HZ_48000 = Fraction.getFraction(1, 48000);
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  static byte[] data(int size, int seed) {
+    byte[] data = new byte[size];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (seed + i);
+    }
+    return data;
+  }
+
+  static List<Frame> read(byte[] nut, List<Stream> streams) throws IOException {
+    List<Frame> frames = new ArrayList<>();
+    new NutReader(
+            new ByteArrayInputStream(nut),
+            new NutReaderListener() {
+              @Override
+              public void stream(Stream stream) {
+                streams.add(stream);
+              }
+
+              @Override
+              public void frame(Frame frame) {
+                frames.add(frame);
+              }
+            })
+        .read();
+    return frames;
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    // Small, so more syncpoints are needed
+    NutWriter writer = new NutWriter(out).setMaxDistance(1024);
+
+    int video = writer.addVideoStream("RGBA", 2, 1, FPS_25);
+    int audio = writer.addAudioStream("PSD\u0010", 48000, 2, HZ_48000);
+
+    // Small steps code only the lsb of the pts, and large ones need the whole pts
+    long[] pts = {0, 1, 2, 3, 100, 101, 5000, 5001, 5002, 1_000_000};
+    for (int i = 0; i < pts.length; i++) {
+      writer.writeFrame(video, pts[i], ByteBuffer.wrap(data(8, i)), i % 3 == 0);
+      writer.writeFrame(audio, pts[i] * 1920, data(400, -i));
+    }
+    writer.close();
+
+    List<Stream> streams = new ArrayList<>();
+    List<Frame> frames = read(out.toByteArray(), streams);
+
+    assertEquals(2, streams.size());
+    assertEquals(StreamHeaderPacket.VIDEO, streams.get(0).getType());
+    assertEquals(2, streams.get(0).getWidth());
+    assertEquals(FPS_25, streams.get(0).getTimeBase());
+    assertEquals("PSD\u0010", StreamHeaderPacket.fourccToString(streams.get(1).header.fourcc));
+    assertEquals(2, streams.get(1).header.channels);
+    assertEquals(Fraction.getFraction(48000, 1), streams.get(1).header.sampleRate);
+
+    assertEquals(2L * pts.length, frames.size());
+    for (int i = 0; i < pts.length; i++) {
+      Frame v = frames.get(i * 2);
+      assertEquals(video, v.getStream().getId());
+      assertEquals(pts[i], v.getPts());
+      assertEquals(i % 3 == 0, v.isKeyFrame());
+      assertEquals(ByteBuffer.wrap(data(8, i)), v.getData());
+
+      Frame a = frames.get(i * 2 + 1);
+      assertEquals(audio, a.getStream().getId());
+      assertEquals(pts[i] * 1920, a.getPts());
+      assertTrue(a.isKeyFrame());
+      assertEquals(ByteBuffer.wrap(data(400, -i)), a.getData());
+    }
+  }
+
+  @Test
+  public void testLargeFrames() throws IOException {
+    File file = folder.newFile();
+    int frames = 10;
+    int size = 100_000; // Larger than twice max_distance, so the frame headers need a checksum
+
+    try (NutWriter writer = new NutWriter(Files.newOutputStream(file.toPath()))) {
+      int video = writer.addVideoStream("RGBA", 250, 100, FPS_25);
+      for (int i = 0; i < frames; i++) {
+        writer.writeFrame(video, i, data(size, i));
+      }
+    }
+
+    // A syncpoint before every frame, as each is too far from the last
+    try (NutFileReader reader = new NutFileReader(file.toPath())) {
+      assertEquals(frames, reader.getSyncPoints().size());
+
+      reader.seek(0, 7);
+      for (int i = 7; i < frames; i++) {
+        Frame frame = reader.readFrame();
+        assertEquals(i, frame.getPts());
+        assertEquals(ByteBuffer.wrap(data(size, i)), frame.getData());
+      }
+    }
+  }
+
+  @Test
+  public void testMainHeader() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (NutWriter writer = new NutWriter(out)) {
+      writer.addVideoStream("RGBA", 2, 1, FPS_25);
+      writer.addVideoStream("RGBA", 2, 1, Fraction.getFraction(2, 50));
+      writer.writeFrame(0, 0, new byte[8]);
+    }
+
+    NutReader reader =
+        new NutReader(
+            new ByteArrayInputStream(out.toByteArray()),
+            new NutReaderListener() {
+              @Override
+              public void stream(Stream stream) {}
+
+              @Override
+              public void frame(Frame frame) {}
+            });
+    reader.read();
+
+    MainHeaderPacket header = reader.header;
+    assertEquals(2, header.streamCount);
+    assertArrayEquals(new Fraction[] {FPS_25}, header.timeBase);
+    assertEquals(NutWriter.DEFAULT_MAX_DISTANCE, header.maxDistance);
+    assertEquals(1, header.elision.size());
+
+    assertEquals(256, header.frameCodes.size());
+    for (int i = 0; i < 256; i++) {
+      long expected =
+          i < NutWriter.FRAME_CODES.length ? NutWriter.FRAME_CODES[i] : Frame.FLAG_INVALID;
+      assertEquals("frame code " + i, expected, header.frameCodes.get(i).flags);
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testAddStreamAfterHeader() throws IOException {
+    NutWriter writer = new NutWriter(new ByteArrayOutputStream());
+    writer.addVideoStream("RGBA", 2, 1, FPS_25);
+    writer.writeFrame(0, 0, new byte[8]);
+    writer.addVideoStream("RGBA", 2, 1, FPS_25);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativePts() throws IOException {
+    NutWriter writer = new NutWriter(new ByteArrayOutputStream());
+    writer.addVideoStream("RGBA", 2, 1, FPS_25);
+    writer.writeFrame(0, -1, new byte[8]);
+  }
+}
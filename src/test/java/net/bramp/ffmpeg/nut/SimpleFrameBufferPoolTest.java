@@ -0,0 +1,55 @@
+package net.bramp.ffmpeg.nut;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+public class SimpleFrameBufferPoolTest {
+
+  @Test
+  public void testReuse() {
+    SimpleFrameBufferPool pool = new SimpleFrameBufferPool(2, false);
+
+    ByteBuffer a = pool.acquire(100);
+    assertEquals(100, a.remaining());
+    a.put((byte) 1);
+
+    pool.release(a);
+    assertEquals(1, pool.size());
+
+    // Reused for anything that fits, and cleared
+    ByteBuffer b = pool.acquire(50);
+    assertSame(a, b);
+    assertEquals(0, b.position());
+    assertEquals(100, b.remaining());
+    assertEquals(0, pool.size());
+
+    // Too small to reuse
+    pool.release(b);
+    assertNotSame(a, pool.acquire(200));
+    assertEquals(1, pool.size());
+  }
+
+  @Test
+  public void testMaxBuffers() {
+    SimpleFrameBufferPool pool = new SimpleFrameBufferPool(1, true);
+
+    ByteBuffer a = pool.acquire(10);
+    ByteBuffer b = pool.acquire(10);
+    assertTrue(a.isDirect());
+
+    pool.release(a);
+    pool.release(b);
+    assertEquals(1, pool.size());
+    assertSame(a, pool.acquire(10));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMaxBuffers() {
+    new SimpleFrameBufferPool(0, false);
+  }
+}
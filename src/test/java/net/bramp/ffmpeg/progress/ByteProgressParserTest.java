@@ -0,0 +1,107 @@
+package net.bramp.ffmpeg.progress;
+
+import static net.bramp.ffmpeg.Helper.combineResource;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import net.bramp.ffmpeg.fixtures.Progresses;
+import org.junit.Test;
+
+public class ByteProgressParserTest {
+
+  RecordingProgressListener listener = new RecordingProgressListener();
+
+  @Test
+  public void testNormal() throws IOException {
+    ByteProgressParser parser = new ByteProgressParser(listener);
+    parser.processStream(combineResource(Progresses.allFiles));
+
+    assertThat(listener.progesses, equalTo(Progresses.allProgresses));
+  }
+
+  @Test
+  public void testNaProgressPackets() throws IOException {
+    ByteProgressParser parser = new ByteProgressParser(listener);
+    parser.processStream(combineResource(Progresses.naProgressFile));
+
+    assertThat(listener.progesses, equalTo(Progresses.naProgresses));
+  }
+
+  @Test
+  public void testSplitAcrossChunks() throws IOException {
+    byte[] bytes = ByteStreams.toByteArray(combineResource(Progresses.allFiles));
+
+    ByteProgressParser parser = new ByteProgressParser(listener);
+    for (int i = 0; i < bytes.length; i += 7) {
+      parser.process(bytes, i, Math.min(7, bytes.length - i));
+    }
+    parser.finish();
+
+    assertThat(listener.progesses, equalTo(Progresses.allProgresses));
+  }
+
+  @Test
+  public void testPaddedValues() {
+    final List<ProgressRecord> records = new ArrayList<>();
+    final List<Progress> snapshots = new ArrayList<>();
+
+    ByteProgressParser parser =
+        ByteProgressParser.forRecords(
+            record -> {
+              records.add(record);
+              snapshots.add(record.toProgress());
+            });
+
+    byte[] bytes =
+        ("frame=7\r\n"
+                + "fps=29.97\r\n"
+                + "bitrate=  85.2kbits/s\r\n"
+                + "total_size=123\r\n"
+                + "out_time=01:02:03.5\r\n"
+                + "speed=1.5x\r\n"
+                + "progress=end\r\n")
+            .getBytes(StandardCharsets.UTF_8);
+    parser.process(bytes, 0, bytes.length);
+
+    assertEquals(1, snapshots.size());
+
+    Progress p = snapshots.get(0);
+    assertEquals(7, p.frame);
+    assertEquals(85200, p.bitrate);
+    assertEquals(123, p.total_size);
+    assertEquals(3723_500_000_000L, p.out_time_ns);
+    assertEquals(1.5f, p.speed, 0);
+    assertEquals(Progress.Status.END, p.status);
+
+    // The record itself is reused, and reset after each callback
+    assertSame(parser.record, records.get(0));
+    assertEquals(0, parser.record.getFrame());
+  }
+
+  @Test
+  public void testParseDecimal() {
+    byte[] b = " 23.4kbits/s".getBytes(StandardCharsets.US_ASCII);
+    assertEquals(23.4, ByteProgressParser.parseDecimal(b, 0, b.length), 0);
+  }
+
+  @Test
+  public void testParseDecimalLongMantissa() {
+    // Above 2^53 the mantissa isn't exact, so dividing it would round twice
+    String s = "1341567960475688.3";
+    byte[] b = s.getBytes(StandardCharsets.US_ASCII);
+    assertEquals(Double.parseDouble(s), ByteProgressParser.parseDecimal(b, 0, b.length), 0);
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testParseLongInvalid() {
+    byte[] b = "12a".getBytes(StandardCharsets.US_ASCII);
+    ByteProgressParser.parseLong(b, 0, b.length);
+  }
+}
@@ -0,0 +1,68 @@
+package net.bramp.ffmpeg.progress;
+
+import static net.bramp.ffmpeg.Helper.combineResource;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.common.io.ByteStreams;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import net.bramp.ffmpeg.fixtures.Progresses;
+import org.junit.Test;
+
+public class NamedPipeProgressParserTest extends AbstractProgressParserTest {
+
+  @Override
+  public ProgressParser newParser(ProgressListener listener)
+      throws IOException, URISyntaxException {
+    assumeTrue("Named pipes are not supported", NamedPipeProgressParser.isSupported());
+    return new NamedPipeProgressParser(listener);
+  }
+
+  @Test
+  public void testNormal() throws IOException {
+    parser.start();
+
+    // Written the same way ffmpeg writes to a file: URL
+    try (OutputStream outputStream = new FileOutputStream(Paths.get(uri).toFile())) {
+      InputStream inputStream = combineResource(Progresses.allFiles);
+      ByteStreams.copy(inputStream, outputStream);
+    }
+
+    parser.stop();
+
+    assertThat(progesses, equalTo(Progresses.allProgresses));
+  }
+
+  @Test
+  public void testNaProgressPackets() throws IOException {
+    parser.start();
+
+    try (OutputStream outputStream = new FileOutputStream(Paths.get(uri).toFile())) {
+      InputStream inputStream = combineResource(Progresses.naProgressFile);
+      ByteStreams.copy(inputStream, outputStream);
+    }
+
+    parser.stop();
+
+    assertThat(progesses, equalTo(Progresses.naProgresses));
+  }
+
+  @Test
+  public void testPipeDeleted() throws IOException {
+    assertTrue(Files.exists(Paths.get(uri)));
+
+    parser.start();
+    parser.stop();
+
+    assertFalse(Files.exists(Paths.get(uri)));
+  }
+}
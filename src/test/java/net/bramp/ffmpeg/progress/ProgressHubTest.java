@@ -0,0 +1,183 @@
+package net.bramp.ffmpeg.progress;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static net.bramp.ffmpeg.Helper.combineResource;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.bramp.ffmpeg.fixtures.Progresses;
+import org.junit.After;
+import org.junit.Test;
+
+public class ProgressHubTest extends AbstractProgressParserTest {
+
+  ProgressHub hub;
+
+  @Override
+  public ProgressParser newParser(ProgressListener listener) throws IOException {
+    if (hub == null) {
+      hub = new ProgressHub();
+    }
+    return hub.newParser(listener);
+  }
+
+  @After
+  public void closeHub() throws IOException {
+    hub.close();
+  }
+
+  /** Posts the body the way ffmpeg does, with chunked transfer encoding. */
+  static void post(URI uri, byte[] body, int chunkSize) throws IOException {
+    try (Socket client = new Socket(uri.getHost(), uri.getPort())) {
+      OutputStream out = client.getOutputStream();
+      out.write(
+          ("POST " + uri.getPath() + " HTTP/1.1\r\n"
+                  + "Transfer-Encoding: chunked\r\n"
+                  + "Host: "
+                  + uri.getHost()
+                  + "\r\n\r\n")
+              .getBytes(US_ASCII));
+
+      for (int i = 0; i < body.length; i += chunkSize) {
+        int n = Math.min(chunkSize, body.length - i);
+        out.write((Integer.toHexString(n) + "\r\n").getBytes(US_ASCII));
+        out.write(body, i, n);
+        out.write("\r\n".getBytes(US_ASCII));
+      }
+      out.write("0\r\n\r\n".getBytes(US_ASCII));
+      out.flush();
+    }
+  }
+
+  @Test
+  public void testNormal() throws IOException, InterruptedException {
+    parser.start();
+
+    post(uri, ByteStreams.toByteArray(combineResource(Progresses.allFiles)), 100);
+    parser.stop();
+
+    assertThat(progesses, equalTo(Progresses.allProgresses));
+  }
+
+  @Test
+  public void testNaProgressPackets() throws IOException, InterruptedException {
+    parser.start();
+
+    post(uri, ByteStreams.toByteArray(combineResource(Progresses.naProgressFile)), 7);
+    parser.stop();
+
+    assertThat(progesses, equalTo(Progresses.naProgresses));
+  }
+
+  @Test
+  public void testMultipleJobs() throws IOException, InterruptedException {
+    final List<Progress> other = Collections.synchronizedList(new ArrayList<Progress>());
+    ProgressParser otherParser = hub.newParser(other::add);
+
+    parser.start();
+    otherParser.start();
+    assertEquals(2, hub.getRegisteredCount());
+
+    byte[] body = ByteStreams.toByteArray(combineResource(Progresses.allFiles));
+    post(otherParser.getUri(), body, 64);
+    post(uri, body, 64);
+
+    parser.stop();
+    otherParser.stop();
+    assertEquals(0, hub.getRegisteredCount());
+
+    assertThat(progesses, equalTo(Progresses.allProgresses));
+    assertThat(other, equalTo(Progresses.allProgresses));
+  }
+
+  @Test
+  public void testStopWaitsForConnection() throws Exception {
+    parser.start();
+
+    // ffmpeg has exited, but the rest of its progress is still in flight
+    byte[] body = ByteStreams.toByteArray(combineResource(Progresses.allFiles));
+    try (Socket client = new Socket(uri.getHost(), uri.getPort())) {
+      OutputStream out = client.getOutputStream();
+      out.write(
+          ("POST " + uri.getPath() + " HTTP/1.1\r\n"
+                  + "Content-Length: "
+                  + body.length
+                  + "\r\n\r\n")
+              .getBytes(US_ASCII));
+      out.write(body, 0, body.length / 2);
+      out.flush();
+
+      Thread late =
+          new Thread(
+              () -> {
+                try {
+                  Thread.sleep(200);
+                  out.write(body, body.length / 2, body.length - body.length / 2);
+                  client.shutdownOutput();
+                } catch (IOException | InterruptedException e) {
+                  throw new AssertionError(e);
+                }
+              });
+      late.start();
+
+      parser.stop();
+      late.join();
+    }
+
+    assertThat(progesses, equalTo(Progresses.allProgresses));
+  }
+
+  @Test
+  public void testStopWithoutConnection() throws IOException {
+    parser.start();
+
+    // As if ffmpeg failed before connecting, which shouldn't wait for the connection
+    long start = System.nanoTime();
+    parser.stop();
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertThat(millis, lessThan(ProgressHub.STOP_TIMEOUT_MILLIS / 2));
+    assertTrue(progesses.isEmpty());
+  }
+
+  @Test
+  public void testIdleConnectionClosed() throws IOException {
+    hub.setIdleTimeout(100, TimeUnit.MILLISECONDS);
+    parser.start();
+
+    try (Socket client = new Socket(uri.getHost(), uri.getPort())) {
+      client.setSoTimeout(5000);
+
+      // Connect, but never send anything, until the hub gives up
+      assertEquals(-1, client.getInputStream().read());
+    }
+    parser.stop();
+
+    assertTrue(progesses.isEmpty());
+  }
+
+  @Test
+  public void testUnknownJob() throws IOException, InterruptedException {
+    parser.start();
+
+    post(
+        uri.resolve("/unknown"),
+        ByteStreams.toByteArray(combineResource(Progresses.allFiles)),
+        100);
+    parser.stop();
+
+    assertTrue(progesses.isEmpty());
+  }
+}
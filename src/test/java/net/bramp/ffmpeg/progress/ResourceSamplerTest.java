@@ -0,0 +1,80 @@
+package net.bramp.ffmpeg.progress;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import net.bramp.ffmpeg.io.ProcessUtils;
+import org.junit.Test;
+
+public class ResourceSamplerTest {
+
+  @Test
+  public void testParseStat() {
+    // The command name may contain spaces and brackets
+    String stat = "1234 (ff (mpeg)) S 1 2 3 4 5 6 7 8 9 10 250 30 0 0 20 0 7 0 100 200 300";
+    assertArrayEquals(new long[] {250, 30, 7}, ResourceSampler.parseStat(stat));
+  }
+
+  @Test
+  public void testParseField() {
+    List<String> status =
+        ImmutableList.of("Name:\tffmpeg", "VmHWM:\t    2048 kB", "VmRSS:\t 1024 kB");
+    assertEquals(1024, ResourceSampler.parseField(status, "VmRSS"));
+    assertEquals(2048, ResourceSampler.parseField(status, "VmHWM"));
+    assertEquals(0, ResourceSampler.parseField(status, "Vm"));
+
+    List<String> io = ImmutableList.of("rchar: 100", "read_bytes: 4096", "write_bytes: 8192");
+    assertEquals(4096, ResourceSampler.parseField(io, "read_bytes"));
+    assertEquals(8192, ResourceSampler.parseField(io, "write_bytes"));
+  }
+
+  @Test
+  public void testSampleProcess() throws Exception {
+    assumeTrue("/proc is not available", ResourceSampler.isSupported());
+
+    final List<ResourceUsage> samples = new CopyOnWriteArrayList<>();
+    final List<ResourceUsage> summaries = new CopyOnWriteArrayList<>();
+    ResourceSampler sampler =
+        new ResourceSampler(
+            new ResourceUsageListener() {
+              @Override
+              public void resourceUsage(ResourceUsage usage) {
+                samples.add(usage);
+              }
+
+              @Override
+              public void resourceSummary(ResourceUsage summary) {
+                summaries.add(summary);
+              }
+            },
+            50,
+            TimeUnit.MILLISECONDS);
+
+    // Keep a CPU busy for a while
+    Process p =
+        new ProcessBuilder("sh", "-c", "i=0; while [ $i -lt 200000 ]; do i=$((i+1)); done")
+            .start();
+    assertTrue(ProcessUtils.pid(p) > 0);
+
+    sampler.start(p);
+    p.waitFor();
+    sampler.stop();
+    sampler.stop(); // Stopping twice is fine
+
+    assertTrue("expected samples", !samples.isEmpty());
+    assertEquals(1, summaries.size());
+
+    ResourceUsage summary = summaries.get(0);
+    assertEquals(ProcessUtils.pid(p), summary.getPid());
+    assertTrue(summary.getCpuNanos() > 0);
+    assertTrue(summary.getPeakRssBytes() > 0);
+    assertNotNull(sampler.getLast());
+  }
+}
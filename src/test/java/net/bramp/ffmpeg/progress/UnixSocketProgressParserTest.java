@@ -0,0 +1,73 @@
+package net.bramp.ffmpeg.progress;
+
+import static net.bramp.ffmpeg.Helper.combineResource;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import net.bramp.ffmpeg.fixtures.Progresses;
+import org.junit.Test;
+
+public class UnixSocketProgressParserTest extends AbstractProgressParserTest {
+
+  @Override
+  public ProgressParser newParser(ProgressListener listener)
+      throws IOException, URISyntaxException {
+    assumeTrue("Unix domain sockets are not supported", UnixSocketProgressParser.isSupported());
+    return new UnixSocketProgressParser(listener);
+  }
+
+  SocketChannel connect() throws Exception {
+    SocketAddress address =
+        (SocketAddress) UnixSocketProgressParser.ADDRESS_OF.invoke(null, Paths.get(uri.getPath()));
+    return SocketChannel.open(address);
+  }
+
+  @Test
+  public void testNormal() throws Exception {
+    parser.start();
+
+    try (SocketChannel client = connect()) {
+      assertTrue("Socket is connected", client.isConnected());
+
+      InputStream inputStream = combineResource(Progresses.allFiles);
+      OutputStream outputStream = Channels.newOutputStream(client);
+      ByteStreams.copy(inputStream, outputStream);
+    }
+
+    parser.stop();
+
+    assertThat(progesses, equalTo(Progresses.allProgresses));
+  }
+
+  @Test
+  public void testSocketDeleted() throws IOException {
+    assertTrue(Files.exists(Paths.get(uri.getPath())));
+
+    parser.start();
+    parser.stop();
+
+    assertFalse(Files.exists(Paths.get(uri.getPath())));
+  }
+
+  @Test
+  public void testPrematureDisconnect() throws Exception {
+    parser.start();
+    connect().close();
+    parser.stop();
+
+    assertTrue(progesses.isEmpty());
+  }
+}